@@ -0,0 +1,335 @@
+package no.petroware.npdio;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A reactive view of an NPD reader. Each subscriber gets its own read
+ * of the file, and lines are parsed only as the subscriber requests
+ * instances, so memory use is bounded by demand rather than by the
+ * size of the table:
+ *
+ * <pre>
+ *   Flow.Publisher&lt;NpdWellbore&gt; publisher = new NpdPublisher&lt;&gt;(new NpdWellboreReader(url));
+ *   publisher.subscribe(subscriber);
+ * </pre>
+ *
+ * The file is opened on the first request. Cancelling a subscription
+ * closes the stream at once, also ending a read waiting for data, and
+ * no further signals are sent. Read errors and lines that cannot be
+ * parsed are signalled by <em>onError</em> with the IOException or
+ * ParseException, and other failures of the reader by the runtime
+ * exception, after which the stream is closed. Note that
+ * {@link NpdReader#read} instead logs and skips lines that cannot be
+ * parsed. A subscriber throwing from a signal breaks the protocol and
+ * its subscription is cancelled.
+ * <p>
+ * Subscribers are signalled from the executor of the publisher, one
+ * signal at the time. Reading blocks the executor thread while waiting
+ * for data, so an executor dedicated to I/O is preferable to the
+ * default common pool for many concurrent subscriptions.
+ * <p>
+ * This class requires Java 9 or later, and is built into NpdIoFlow.jar
+ * next to NpdIo.jar, see the README.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of instances published.
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdPublisher<T> implements Flow.Publisher<T>
+{
+  /** The logger instance */
+  private static final Logger logger_ = Logger.getLogger(NpdPublisher.class.getName());
+
+  /** Reader to publish instances of. Non-null. */
+  private final NpdReader<T> reader_;
+
+  /** Executor reading and signalling subscribers. Non-null. */
+  private final Executor executor_;
+
+  /**
+   * Create a publisher of the instances of the specified reader.
+   *
+   * @param reader    Reader to publish instances of. Non-null.
+   * @param executor  Executor reading and signalling subscribers. Non-null.
+   * @throws IllegalArgumentException  If reader or executor is null.
+   */
+  public NpdPublisher(NpdReader<T> reader, Executor executor)
+  {
+    if (reader == null)
+      throw new IllegalArgumentException("reader cannot be null");
+
+    if (executor == null)
+      throw new IllegalArgumentException("executor cannot be null");
+
+    reader_ = reader;
+    executor_ = executor;
+  }
+
+  /**
+   * Create a publisher of the instances of the specified reader,
+   * signalling subscribers from the common fork/join pool.
+   *
+   * @param reader  Reader to publish instances of. Non-null.
+   * @throws IllegalArgumentException  If reader is null.
+   */
+  public NpdPublisher(NpdReader<T> reader)
+  {
+    this(reader, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * As required by the reactive streams specification a null subscriber
+   * gives a NullPointerException.
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super T> subscriber)
+  {
+    if (subscriber == null)
+      throw new NullPointerException("subscriber cannot be null");
+
+    Subscription subscription = new Subscription(subscriber);
+    subscriber.onSubscribe(subscription);
+  }
+
+  /**
+   * One subscription, reading the file by a cursor of its own.
+   * Requests and cancellation may come from any thread, while the
+   * cursor is read by one executor task at the time. Cancellation
+   * closes the cursor from the cancelling thread.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private final class Subscription implements Flow.Subscription, Runnable
+  {
+    /** The subscriber. Non-null. */
+    private final Flow.Subscriber<? super T> subscriber_;
+
+    /** Outstanding demand. Long.MAX_VALUE for unbounded. */
+    private final AtomicLong demand_ = new AtomicLong();
+
+    /** Number of signals not yet handled by the executor task. */
+    private final AtomicInteger nMissed_ = new AtomicInteger();
+
+    /** Indicates if the subscription is cancelled. */
+    private volatile boolean isCancelled_;
+
+    /** Invalid request to signal, or null if none. */
+    private volatile IllegalArgumentException invalidRequest_;
+
+    /** Cursor of the open file. Null before the first request and when closed. */
+    private final AtomicReference<NpdReader<T>.Cursor> cursor_ = new AtomicReference<>();
+
+    /** Indicates if a terminal signal has been sent. Accessed by the task only. */
+    private boolean isDone_;
+
+    /**
+     * Create a subscription for the specified subscriber.
+     *
+     * @param subscriber  The subscriber. Non-null.
+     */
+    Subscription(Flow.Subscriber<? super T> subscriber)
+    {
+      assert subscriber != null : "subscriber cannot be null";
+      subscriber_ = subscriber;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void request(long n)
+    {
+      if (n <= 0)
+        invalidRequest_ = new IllegalArgumentException("Non-positive request: " + n);
+      else
+        demand_.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+
+      schedule();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void cancel()
+    {
+      isCancelled_ = true;
+
+      // Ends a read in progress, which the task then takes as cancellation
+      closeCursor();
+
+      schedule();
+    }
+
+    /**
+     * Make sure the executor task runs to handle the latest signal.
+     */
+    private void schedule()
+    {
+      if (nMissed_.getAndIncrement() != 0)
+        return;
+
+      try {
+        executor_.execute(this);
+      }
+      catch (RejectedExecutionException exception) {
+        // The task never ran, so nothing else touches the subscription
+        isCancelled_ = true;
+        if (!isDone_) {
+          isDone_ = true;
+          subscriber_.onError(exception);
+        }
+      }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run()
+    {
+      int nMissed = 1;
+      while (true) {
+        drain();
+
+        nMissed = nMissed_.addAndGet(-nMissed);
+        if (nMissed == 0)
+          break;
+      }
+    }
+
+    /**
+     * Emit instances while there is demand, and handle cancellation
+     * and invalid requests.
+     */
+    private void drain()
+    {
+      if (isDone_)
+        return;
+
+      if (isCancelled_) {
+        isDone_ = true;
+        closeCursor();
+        return;
+      }
+
+      IllegalArgumentException invalidRequest = invalidRequest_;
+      if (invalidRequest != null) {
+        fail(invalidRequest);
+        return;
+      }
+
+      while (demand_.get() > 0 && !isCancelled_ && invalidRequest_ == null) {
+        T instance;
+        try {
+          instance = next();
+        }
+        catch (IOException | ParseException | RuntimeException exception) {
+          // A read ended by cancel fails as the cursor is closed under it
+          if (isCancelled_)
+            break;
+
+          fail(exception);
+          return;
+        }
+
+        // A read ended by cancel may also look like the end of the file
+        if (isCancelled_)
+          break;
+
+        if (instance == null) {
+          isDone_ = true;
+          closeCursor();
+          try {
+            subscriber_.onComplete();
+          }
+          catch (RuntimeException exception) {
+            logger_.log(Level.WARNING, "Subscriber failed on completion", exception);
+          }
+          return;
+        }
+
+        try {
+          subscriber_.onNext(instance);
+        }
+        catch (RuntimeException exception) {
+          // The subscriber broke the protocol by throwing. Consider the subscription cancelled.
+          logger_.log(Level.WARNING, "Subscriber failed, subscription cancelled", exception);
+          isDone_ = true;
+          isCancelled_ = true;
+          closeCursor();
+          return;
+        }
+
+        if (demand_.get() != Long.MAX_VALUE)
+          demand_.decrementAndGet();
+      }
+
+      // Picks up cancellation or invalid requests that stopped the loop
+      if (isCancelled_ || invalidRequest_ != null)
+        drain();
+    }
+
+    /**
+     * Read the next instance, opening the file on the first call.
+     *
+     * @return  The next instance, or null if there are no more.
+     * @throws IOException     If the file cannot be opened or read.
+     * @throws ParseException  If the next line cannot be parsed into an instance.
+     */
+    private T next()
+      throws IOException, ParseException
+    {
+      NpdReader<T>.Cursor cursor = cursor_.get();
+      if (cursor == null) {
+        cursor = reader_.open();
+        cursor_.set(cursor);
+      }
+
+      return cursor.next();
+    }
+
+    /**
+     * Terminate the subscription by the specified error.
+     *
+     * @param throwable  Error to signal. Non-null.
+     */
+    private void fail(Throwable throwable)
+    {
+      isDone_ = true;
+      isCancelled_ = true;
+      closeCursor();
+      try {
+        subscriber_.onError(throwable);
+      }
+      catch (RuntimeException exception) {
+        logger_.log(Level.WARNING, "Subscriber failed on error", exception);
+      }
+    }
+
+    /**
+     * Close the cursor if open, ignoring errors. Called by both the task
+     * and cancel, and closes each cursor once only.
+     */
+    private void closeCursor()
+    {
+      NpdReader<T>.Cursor cursor = cursor_.getAndSet(null);
+      if (cursor == null)
+        return;
+
+      try {
+        cursor.close();
+      }
+      catch (IOException exception) {
+        // Ignore. The subscription is over anyway.
+      }
+    }
+  }
+}
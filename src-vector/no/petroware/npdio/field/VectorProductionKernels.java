@@ -0,0 +1,191 @@
+package no.petroware.npdio.field;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Production kernels by the vector API of the jdk.incubator.vector module,
+ * using the widest SIMD registers of the platform.
+ * <p>
+ * This class requires JDK 17 or later and is compiled and run with
+ * <code>--add-modules jdk.incubator.vector</code>. It is built into the
+ * Java 17 section of the multi-release NpdIo.jar, see the README, so that
+ * earlier Java versions do not see it. It is loaded reflectively
+ * by {@link ProductionAnalytics}, which falls back to
+ * {@link ScalarProductionKernels} if it is not available.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class VectorProductionKernels implements ProductionKernels
+{
+  /** The vector shape being used. */
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  /** Number of lanes of each vector. */
+  private static final int LENGTH = SPECIES.length();
+
+  /**
+   * Create vector production kernels.
+   */
+  VectorProductionKernels()
+  {
+    // Nothing
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void cumulativeSum(double[] values, double[] result, int n)
+  {
+    DoubleVector zero = DoubleVector.zero(SPECIES);
+    double sum = 0.0;
+
+    int i = 0;
+    for (int bound = SPECIES.loopBound(n); i < bound; i += LENGTH) {
+      DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+
+      // Prefix sum within the vector by log2(LENGTH) shifted adds
+      for (int shift = 1; shift < LENGTH; shift <<= 1)
+        v = v.add(zero.slice(LENGTH - shift, v));
+
+      v = v.add(sum);
+      v.intoArray(result, i);
+      sum = v.lane(LENGTH - 1);
+    }
+
+    for (; i < n; i++) {
+      sum += values[i];
+      result[i] = sum;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void windowAverage(double[] cumulatives, int window, double[] result, int n)
+  {
+    int head = Math.min(window, n);
+    for (int i = 0; i < head; i++)
+      result[i] = cumulatives[i] / (i + 1);
+
+    double scale = 1.0 / window;
+
+    int i = head;
+    for (int bound = head + SPECIES.loopBound(n - head); i < bound; i += LENGTH) {
+      DoubleVector current = DoubleVector.fromArray(SPECIES, cumulatives, i);
+      DoubleVector previous = DoubleVector.fromArray(SPECIES, cumulatives, i - window);
+      current.sub(previous).mul(scale).intoArray(result, i);
+    }
+
+    for (; i < n; i++)
+      result[i] = (cumulatives[i] - cumulatives[i - window]) * scale;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void ratio(double[] numerators, double[] denominators, double[] result, int n)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(n); i < bound; i += LENGTH) {
+      DoubleVector numerator = DoubleVector.fromArray(SPECIES, numerators, i);
+      DoubleVector denominator = DoubleVector.fromArray(SPECIES, denominators, i);
+      VectorMask<Double> isZero = denominator.compare(VectorOperators.EQ, 0.0);
+      numerator.div(denominator).blend(Double.NaN, isZero).intoArray(result, i);
+    }
+
+    for (; i < n; i++)
+      result[i] = denominators[i] != 0.0 ? numerators[i] / denominators[i] : Double.NaN;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void fraction(double[] parts, double[] others, double[] result, int n)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(n); i < bound; i += LENGTH) {
+      DoubleVector part = DoubleVector.fromArray(SPECIES, parts, i);
+      DoubleVector total = part.add(DoubleVector.fromArray(SPECIES, others, i));
+      VectorMask<Double> isZero = total.compare(VectorOperators.EQ, 0.0);
+      part.div(total).blend(Double.NaN, isZero).intoArray(result, i);
+    }
+
+    for (; i < n; i++) {
+      double total = parts[i] + others[i];
+      result[i] = total != 0.0 ? parts[i] / total : Double.NaN;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void delta(double[] values, int lag, double[] result, int n)
+  {
+    int head = Math.min(lag, n);
+    for (int i = 0; i < head; i++)
+      result[i] = Double.NaN;
+
+    int i = head;
+    for (int bound = head + SPECIES.loopBound(n - head); i < bound; i += LENGTH) {
+      DoubleVector current = DoubleVector.fromArray(SPECIES, values, i);
+      DoubleVector previous = DoubleVector.fromArray(SPECIES, values, i - lag);
+      current.sub(previous).intoArray(result, i);
+    }
+
+    for (; i < n; i++)
+      result[i] = values[i] - values[i - lag];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void declineRate(double[] values, int lag, double[] result, int n)
+  {
+    int head = Math.min(lag, n);
+    for (int i = 0; i < head; i++)
+      result[i] = Double.NaN;
+
+    int i = head;
+    for (int bound = head + SPECIES.loopBound(n - head); i < bound; i += LENGTH) {
+      DoubleVector current = DoubleVector.fromArray(SPECIES, values, i);
+      DoubleVector previous = DoubleVector.fromArray(SPECIES, values, i - lag);
+      VectorMask<Double> isZero = previous.compare(VectorOperators.EQ, 0.0);
+      previous.sub(current).div(previous).blend(Double.NaN, isZero).intoArray(result, i);
+    }
+
+    for (; i < n; i++) {
+      double previous = values[i - lag];
+      result[i] = previous != 0.0 ? (previous - values[i]) / previous : Double.NaN;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void addTo(double[] values, double[] sums, int offset, int n)
+  {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(n); i < bound; i += LENGTH) {
+      DoubleVector value = DoubleVector.fromArray(SPECIES, values, i);
+      DoubleVector.fromArray(SPECIES, sums, offset + i).add(value).intoArray(sums, offset + i);
+    }
+
+    for (; i < n; i++)
+      sums[offset + i] += values[i];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double sum(double[] values, int n)
+  {
+    DoubleVector sums = DoubleVector.zero(SPECIES);
+
+    int i = 0;
+    for (int bound = SPECIES.loopBound(n); i < bound; i += LENGTH)
+      sums = sums.add(DoubleVector.fromArray(SPECIES, values, i));
+
+    double sum = sums.reduceLanes(VectorOperators.ADD);
+    for (; i < n; i++)
+      sum += values[i];
+
+    return sum;
+  }
+}
@@ -0,0 +1,324 @@
+package no.petroware.npdio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a UTF-8 CSV stream and splits them into tokens,
+ * working on the raw bytes.
+ * <p>
+ * The delimiters of CSV (comma, quote and line breaks) are ASCII, and
+ * ASCII bytes never occur within multi-byte UTF-8 sequences, so lines
+ * and tokens are found without decoding. Each token then becomes a
+ * string directly from the buffer. Pure ASCII tokens, being the vast
+ * majority in NPD files, skip UTF-8 decoding altogether, and only
+ * tokens holding non-ASCII characters, like Norwegian letters in names,
+ * are decoded.
+ * <p>
+ * Tokens are split, un-quoted, trimmed and nullified exactly as the
+ * text based NPD tokenizer does. The rare lines this class cannot
+ * tokenize identically are left to the text based tokenizer, see
+ * {@link #getTokens}.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class CsvLineReader implements Closeable
+{
+  /** Initial size of the byte buffer. Grows to fit the longest line. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Charset of tokens holding ASCII characters only. */
+  private static final Charset ASCII = StandardCharsets.ISO_8859_1;
+
+  /** Charset of other tokens. */
+  private static final Charset UTF8 = StandardCharsets.UTF_8;
+
+  /** The stream to read. Non-null. */
+  private final InputStream stream_;
+
+  /** Bytes read from the stream. Non-null. */
+  private byte[] buffer_ = new byte[BUFFER_SIZE];
+
+  /** Position of the first byte not yet consumed. */
+  private int position_;
+
+  /** Position after the last byte read into the buffer. */
+  private int limit_;
+
+  /** Position of the first byte of the current line. */
+  private int lineStart_;
+
+  /** Position after the last byte of the current line, before the line break. */
+  private int lineEnd_;
+
+  /** Indicates if there is a current line. */
+  private boolean hasLine_;
+
+  /** Indicates if the end of the stream is reached. */
+  private boolean isEof_;
+
+  /** Indicates if the last line ended by CR, so that a following LF belongs to it. */
+  private boolean isSkipLineFeed_;
+
+  /** Positions of the separating commas of the current line. Non-null. */
+  private int[] commas_ = new int[64];
+
+  /** Work area for un-quoting tokens. Non-null. */
+  private byte[] unquoted_ = new byte[256];
+
+  /**
+   * Create a CSV line reader of the specified stream.
+   *
+   * @param stream  Stream to read. Closed with this reader. Non-null.
+   */
+  CsvLineReader(InputStream stream)
+  {
+    assert stream != null : "stream cannot be null";
+    stream_ = stream;
+  }
+
+  /**
+   * Advance to the next line. Lines end by LF, CR or CR LF, as by
+   * {@link java.io.BufferedReader#readLine}.
+   *
+   * @return  True if there is a next line, false at the end of the stream.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  boolean nextLine()
+    throws IOException
+  {
+    hasLine_ = false;
+
+    if (isSkipLineFeed_) {
+      if (position_ == limit_ && !isEof_)
+        fill();
+
+      if (position_ < limit_ && buffer_[position_] == '\n')
+        position_++;
+
+      isSkipLineFeed_ = false;
+    }
+
+    int nScanned = 0;
+    while (true) {
+      for (int i = position_ + nScanned; i < limit_; i++) {
+        byte b = buffer_[i];
+        if (b == '\n' || b == '\r') {
+          lineStart_ = position_;
+          lineEnd_ = i;
+          position_ = i + 1;
+          isSkipLineFeed_ = b == '\r';
+          hasLine_ = true;
+          return true;
+        }
+      }
+
+      nScanned = limit_ - position_;
+
+      if (isEof_) {
+        if (position_ == limit_)
+          return false;
+
+        // Last line without line break
+        lineStart_ = position_;
+        lineEnd_ = limit_;
+        position_ = limit_;
+        hasLine_ = true;
+        return true;
+      }
+
+      fill();
+    }
+  }
+
+  /**
+   * Read more bytes from the stream, keeping the unconsumed ones.
+   *
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private void fill()
+    throws IOException
+  {
+    if (position_ > 0) {
+      System.arraycopy(buffer_, position_, buffer_, 0, limit_ - position_);
+      limit_ -= position_;
+      position_ = 0;
+    }
+
+    if (limit_ == buffer_.length)
+      buffer_ = Arrays.copyOf(buffer_, 2 * buffer_.length);
+
+    int nBytes = stream_.read(buffer_, limit_, buffer_.length - limit_);
+    if (nBytes == -1)
+      isEof_ = true;
+    else
+      limit_ += nBytes;
+  }
+
+  /**
+   * Return the current line as text.
+   *
+   * @return  The current line, or null if there is none.
+   */
+  String getLine()
+  {
+    return hasLine_ ? new String(buffer_, lineStart_, lineEnd_ - lineStart_, UTF8) : null;
+  }
+
+  /**
+   * Check if the current line is blank, i.e. holds white space only.
+   *
+   * @return  True if the current line is blank, false otherwise.
+   */
+  boolean isBlank()
+  {
+    assert hasLine_ : "No current line";
+
+    for (int i = lineStart_; i < lineEnd_; i++) {
+      if ((buffer_[i] & 0xff) > ' ')
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Split the current line into tokens. Commas within quotes do not
+   * split. Each token is trimmed, one pair of enclosing quotes is
+   * removed, double quotes are made single, and the result is trimmed
+   * again and nullified if empty.
+   *
+   * @return  The tokens of the current line, or null if the line must
+   *          be tokenized from its text, see {@link #getLine}.
+   */
+  String[] getTokens()
+  {
+    assert hasLine_ : "No current line";
+
+    // Locate the separating commas
+    int nCommas = 0;
+    boolean isInQuote = false;
+    for (int i = lineStart_; i < lineEnd_; i++) {
+      byte b = buffer_[i];
+      if (b == '"')
+        isInQuote = !isInQuote;
+      else if (b == ',' && !isInQuote) {
+        if (nCommas == commas_.length)
+          commas_ = Arrays.copyOf(commas_, 2 * nCommas);
+        commas_[nCommas++] = i;
+      }
+    }
+
+    String[] tokens = new String[nCommas + 1];
+
+    int from = lineStart_;
+    for (int tokenNo = 0; tokenNo < tokens.length; tokenNo++) {
+      int to = tokenNo < nCommas ? commas_[tokenNo] : lineEnd_;
+
+      int start = skipSpace(from, to);
+      int end = skipTrailingSpace(start, to);
+
+      if (end - start >= 2 && buffer_[start] == '"' && buffer_[end - 1] == '"') {
+        start = skipSpace(start + 1, end - 1);
+        end = skipTrailingSpace(start, end - 1);
+      }
+
+      // A lone quote is not handled consistently by the text tokenizer
+      else if (end - start == 1 && buffer_[start] == '"')
+        return null;
+
+      tokens[tokenNo] = start < end ? newToken(start, end) : null;
+
+      from = to + 1;
+    }
+
+    return tokens;
+  }
+
+  /**
+   * Return the position of the first non-space byte of the specified range.
+   *
+   * @param start  Start of range.
+   * @param end    End of range, exclusive.
+   * @return       Position of first non-space byte, or end if none.
+   */
+  private int skipSpace(int start, int end)
+  {
+    int position = start;
+    while (position < end && (buffer_[position] & 0xff) <= ' ')
+      position++;
+
+    return position;
+  }
+
+  /**
+   * Return the position after the last non-space byte of the specified range.
+   *
+   * @param start  Start of range.
+   * @param end    End of range, exclusive.
+   * @return       Position after last non-space byte, or start if none.
+   */
+  private int skipTrailingSpace(int start, int end)
+  {
+    int position = end;
+    while (position > start && (buffer_[position - 1] & 0xff) <= ' ')
+      position--;
+
+    return position;
+  }
+
+  /**
+   * Create the token of the specified range of the buffer, making
+   * double quotes single.
+   *
+   * @param start  Start of token.
+   * @param end    End of token, exclusive.
+   * @return       The token. Never null.
+   */
+  private String newToken(int start, int end)
+  {
+    boolean isAscii = true;
+    boolean hasQuote = false;
+    for (int i = start; i < end; i++) {
+      byte b = buffer_[i];
+      if (b < 0)
+        isAscii = false;
+      else if (b == '"')
+        hasQuote = true;
+    }
+
+    Charset charset = isAscii ? ASCII : UTF8;
+
+    if (!hasQuote)
+      return new String(buffer_, start, end - start, charset);
+
+    // Double quote is CSV for a quote
+    if (unquoted_.length < end - start)
+      unquoted_ = new byte[end - start];
+
+    int length = 0;
+    for (int i = start; i < end; i++) {
+      byte b = buffer_[i];
+      unquoted_[length++] = b;
+      if (b == '"' && i + 1 < end && buffer_[i + 1] == '"')
+        i++;
+    }
+
+    return new String(unquoted_, 0, length, charset);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close()
+    throws IOException
+  {
+    hasLine_ = false;
+    stream_.close();
+  }
+}
@@ -1,10 +1,15 @@
 package no.petroware.npdio;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -36,6 +41,15 @@ public abstract class NpdObject
   /** Date synced with NPD back-end database. Null if unknown. */
   private final Date syncDate_;
 
+  /** The toString() formatter of each NpdObject class, created on first use. */
+  private static final ClassValue<Formatter> FORMATTERS = new ClassValue<Formatter>() {
+    @Override
+    protected Formatter computeValue(Class<?> clazz)
+    {
+      return new Formatter(clazz);
+    }
+  };
+
   /**
    * Create a new NPD object.
    *
@@ -172,85 +186,163 @@ public abstract class NpdObject
   @Override
   public String toString()
   {
-    //
-    // Find all getter methods and create the toString based on them
-    //
-
-    //
-    // Step 1: Extract all key/value pairs
-    //
-    Map<String, String> values = new TreeMap<String, String>();
-
-    try {
-      Method[] methods = getClass().getMethods();
-      for (Method method : methods) {
-        String name = method.getName();
-        boolean isGetter = name.startsWith("get");
-        boolean hasArguments = method.getParameterTypes().length > 0;
-        Class<?> returnType = method.getReturnType();
-        boolean returnsCollection = Arrays.asList(returnType.getInterfaces()).contains(Collection.class);
-
-        if (isGetter && !hasArguments && !returnsCollection) {
-          String key = getClass().getSimpleName() + "." + name.substring(3);
-          Object object = method.invoke(this);
+    return FORMATTERS.get(getClass()).format(this);
+  }
+
+  /**
+   * Formatter for the {@link #toString} output of one NpdObject class.
+   * <p>
+   * The output lists all getter methods of the class (public no-argument
+   * methods named <em>get*</em> not returning a collection) sorted on
+   * name, one per line with the keys padded to a common width. As this
+   * is the same for all instances of a class, the getters are located
+   * and their keys are formatted once, and the getters are captured as
+   * method handles so formatting an instance involves no reflection.
+   * <p>
+   * This class is thread-safe.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class Formatter
+  {
+    /** Formatted key of each getter, like "NpdField.MainArea....: ". Sorted. */
+    private final String[] prefixes_;
+
+    /** The getters, as (Object)Object method handles. Same order as prefixes_. */
+    private final MethodHandle[] getters_;
+
+    /** Estimated output length. */
+    private final int capacity_;
+
+    /**
+     * Create a formatter for the specified class.
+     *
+     * @param clazz  Class to create formatter for. Non-null.
+     */
+    Formatter(Class<?> clazz)
+    {
+      assert clazz != null : "clazz cannot be null";
+
+      //
+      // Locate the getters. Sort on key.
+      //
+      Map<String, Method> getters = new TreeMap<String, Method>();
+
+      try {
+        for (Method method : clazz.getMethods()) {
+          String name = method.getName();
+          boolean isGetter = name.startsWith("get");
+          boolean hasArguments = method.getParameterTypes().length > 0;
+          Class<?> returnType = method.getReturnType();
+          boolean returnsCollection = Arrays.asList(returnType.getInterfaces()).contains(Collection.class);
+
+          if (isGetter && !hasArguments && !returnsCollection) {
+            String key = clazz.getSimpleName() + "." + name.substring(3);
+            getters.put(key, method);
+          }
+        }
+      }
+      catch (SecurityException exception) {
+        assert false : "Programming error: " + exception.getMessage();
+      }
+
+      // Find the longest key
+      int maxKeyLength = 0;
+      for (String key : getters.keySet()) {
+        int keyLength = key.length();
+        if (keyLength > maxKeyLength)
+          maxKeyLength = keyLength;
+      }
+
+      //
+      // Create key prefixes and getter handles
+      //
+      List<String> prefixes = new ArrayList<>();
+      List<MethodHandle> handles = new ArrayList<>();
+
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      MethodType getterType = MethodType.methodType(Object.class, Object.class);
+
+      for (Map.Entry<String, Method> entry : getters.entrySet()) {
+        String key = entry.getKey();
+        Method method = entry.getValue();
+
+        MethodHandle handle;
+        try {
+          handle = lookup.unreflect(method);
+          if (Modifier.isStatic(method.getModifiers()))
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+          handle = handle.asType(getterType);
+        }
+        catch (IllegalAccessException exception) {
+          assert false : "Programming error: " + exception.getMessage();
+          continue;
+        }
+
+        StringBuilder prefix = new StringBuilder(key);
+
+        // "............."
+        for (int i = key.length(); i < maxKeyLength; i++)
+          prefix.append('.');
+
+        prefix.append(": ");
+
+        prefixes.add(prefix.toString());
+        handles.add(handle);
+      }
+
+      prefixes_ = prefixes.toArray(new String[prefixes.size()]);
+      getters_ = handles.toArray(new MethodHandle[handles.size()]);
+      capacity_ = prefixes_.length * (maxKeyLength + 32);
+    }
+
+    /**
+     * Format the specified instance.
+     *
+     * @param npdObject  Instance to format. Non-null.
+     * @return           The formatted instance. Never null.
+     */
+    String format(NpdObject npdObject)
+    {
+      assert npdObject != null : "npdObject cannot be null";
+
+      StringBuilder s = new StringBuilder(capacity_);
+
+      try {
+        for (int i = 0; i < getters_.length; i++) {
+          Object object = (Object) getters_[i].invokeExact((Object) npdObject);
 
           String value;
           if (object == null)
             value = "";
-          else if (object == this)
+          else if (object == npdObject)
             value = "this";
           else if (object instanceof NpdObject)
             value = object.getClass().toString();
           else
             value = object.toString();
 
-          values.put(key, value);
+          // "key.......: value"
+          s.append(prefixes_[i]);
+          s.append(value);
+
+          if (!value.endsWith("\n"))
+            s.append('\n');
         }
       }
-    }
-    catch (SecurityException exception) {
-      assert false : "Programming error: " + exception.getMessage();
-    }
-    catch (IllegalAccessException exception) {
-      assert false : "Programming error: " + exception.getMessage();
-    }
-    catch (InvocationTargetException exception) {
-      exception.printStackTrace();
-      assert false : "Programming error: " + exception.getCause().getMessage();
-    }
-
-    //
-    // Step 2: Create the output string
-    //
-
-    // Find the longest key
-    int maxKeyLength = 0;
-    for (Map.Entry<String, String> entry : values.entrySet()) {
-      int keyLength = entry.getKey().length();
-      if (keyLength > maxKeyLength)
-        maxKeyLength = keyLength;
-    }
-
-    // Build the output
-    StringBuilder s = new StringBuilder();
-    for (Map.Entry<String, String> entry : values.entrySet()) {
-      String key = entry.getKey();
-      String value = entry.getValue();
-
-      // "key"
-      s.append(key);
-
-      // "............."
-      for (int i = key.length(); i < maxKeyLength; i++)
-        s.append(".");
-
-      // ": value"
-      s.append(": " + value);
+      catch (RuntimeException exception) {
+        // A failing getter, as InvocationTargetException by reflection
+        assert false : "Programming error: " + exception.getMessage();
+      }
+      catch (Error error) {
+        throw error;
+      }
+      catch (Throwable throwable) {
+        // Declared by invokeExact only. The getters throw no checked exceptions.
+        throw new AssertionError("Programming error: " + throwable.getMessage(), throwable);
+      }
 
-      if (!value.endsWith("\n"))
-        s.append("\n");
+      return s.toString();
     }
-
-    return s.toString();
   }
 }
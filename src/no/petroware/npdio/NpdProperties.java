@@ -0,0 +1,676 @@
+package no.petroware.npdio;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import no.petroware.npdio.company.NpdCompany;
+import no.petroware.npdio.discovery.NpdDiscovery;
+import no.petroware.npdio.facility.NpdFixedFacility;
+import no.petroware.npdio.facility.NpdMoveableFacility;
+import no.petroware.npdio.field.NpdField;
+import no.petroware.npdio.license.NpdLicense;
+import no.petroware.npdio.pipeline.NpdPipeline;
+import no.petroware.npdio.survey.NpdSurvey;
+import no.petroware.npdio.well.NpdDevelopmentWellbore;
+import no.petroware.npdio.well.NpdExplorationWellbore;
+import no.petroware.npdio.well.NpdOtherWellbore;
+
+/**
+ * Registry of the properties of the NPD object classes.
+ * <p>
+ * The properties of a class are its public no-argument getters
+ * (<em>get*</em> and <em>is*</em>) of scalar type, i.e. String, Date,
+ * Boolean, Integer, Long and Double or their primitive counterparts.
+ * Properties read from an NPD table are listed first, in the column
+ * order of that table, followed by the remaining properties sorted on
+ * name.
+ * <p>
+ * The properties of a class are collected on first request, and the
+ * accessor of each property is created through {@link LambdaMetafactory}
+ * so that per-object access involves no reflection:
+ *
+ * <pre>
+ *   for (NpdProperty&lt;NpdField&gt; property : NpdProperties.getProperties(NpdField.class))
+ *     System.out.println(property.getColumnName() + " = " + property.getValue(field));
+ * </pre>
+ *
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdProperties
+{
+  /** Supported property types. Primitives are reported as their wrapper type. */
+  private static final Map<Class<?>, Class<?>> TYPES = new HashMap<>();
+
+  /** Property name to NPD column name, in table column order, per class. */
+  private static final Map<Class<?>, Map<String, String>> COLUMNS = new HashMap<>();
+
+  /** Properties that are never null even if having a reference type. */
+  private static final List<String> NON_NULLABLE = Arrays.asList("Type", "NpdId", "Name");
+
+  /** The properties of each class, created on first use. */
+  private static final ClassValue<List<NpdProperty<?>>> PROPERTIES = new ClassValue<List<NpdProperty<?>>>() {
+    @Override
+    protected List<NpdProperty<?>> computeValue(Class<?> clazz)
+    {
+      return createProperties(clazz);
+    }
+  };
+
+  static {
+    TYPES.put(String.class, String.class);
+    TYPES.put(Date.class, Date.class);
+    TYPES.put(Boolean.class, Boolean.class);
+    TYPES.put(boolean.class, Boolean.class);
+    TYPES.put(Integer.class, Integer.class);
+    TYPES.put(int.class, Integer.class);
+    TYPES.put(Long.class, Long.class);
+    TYPES.put(long.class, Long.class);
+    TYPES.put(Double.class, Double.class);
+    TYPES.put(double.class, Double.class);
+
+    columns(NpdCompany.class,
+            "Name",                   "cmpLongName",
+            "OrganizationNumber",     "cmpOrgNumberBrReg",
+            "ShortName",              "cmpShortName",
+            "NationCode",             "cmpNationCode",
+            "SurveyPrefix",           "cmpSurveyPrefix",
+            "NpdId",                  "cmpNpdidCompany",
+            "CurrentLicenseOperator", "cmpLicenceOperCurrent",
+            "FormerLicenseOperator",  "cmpLicenceOperFormer",
+            "CurrentLicenseLicensee", "cmpLicenceLicenseeCurrent",
+            "FormerLicenseLicensee",  "cmpLicenceLicenseeFormer",
+            "SyncDate",               "dateSyncNPD");
+
+    columns(NpdDiscovery.class,
+            "Name",                    "dscName",
+            "ActivityStatus",          "dscCurrentActivityStatus",
+            "HydrocarbonType",         "dscHcType",
+            "WellboreName",            "wlbName",
+            "MainArea",                "nmaName",
+            "FieldName",               "fldName",
+            "IncludedInFieldFromDate", "dscDateFromInclInField",
+            "DiscoveryYear",           "dscDiscoveryYear",
+            "ResourcesDiscoveryName",  "dscResInclInDiscoveryName",
+            "OwnerKind",               "dscOwnerKind",
+            "OwnerName",               "dscOwnerName",
+            "NpdId",                   "dscNpdidDiscovery",
+            "NpdidField",              "fldNpdidField",
+            "NpdidWellbore",           "wlbNpdidWellbore",
+            "FactPageUrl",             "dscFactPageUrl",
+            "FactMapUrl",              "dscFactMapUrl",
+            "LastChangedDate",         "dscDateUpdatedMax",
+            "SyncDate",                "DatesyncNPD");
+
+    columns(NpdFixedFacility.class,
+            "Name",             "fclName",
+            "Phase",            "fclPhase",
+            "SurfaceFacility",  "fclSurface",
+            "Kind",             "fclKind",
+            "BelongsToId",      "fclBelongsToS",
+            "StartupDate",      "fclStartupDate",
+            "GeodeticDatum",    "fclGeodeticDatum",
+            "NsDegrees",        "fclNsDeg",
+            "NsMinutes",        "fclNsMin",
+            "NsSeconds",        "fclNsSec",
+            "NsCode",           "fclNsCode",
+            "EwDegrees",        "fclEwDeg",
+            "EwMinutes",        "fclEwMin",
+            "EwSeconds",        "fclEwSec",
+            "EwCode",           "fclEwCode",
+            "WaterDepth",       "fclWaterDepth",
+            "Functions",        "fclFunctions",
+            "DesignedLifetime", "fclDesignLifetime",
+            "FactPageUrl",      "fclFactPageUrl",
+            "FactMapUrl",       "fclFactMapUrl",
+            "NpdId",            "fclNpdidFacility",
+            "LastChangedDate",  "fclDateUpdated",
+            "SyncDate",         "datesyncNPD");
+
+    columns(NpdMoveableFacility.class,
+            "Name",                   "fclName",
+            "ResponsibleCompanyName", "fclCurrentRespCompanyName",
+            "Kind",                   "fclKind",
+            "Functions",              "fclFunctions",
+            "AocStatus",              "fclStatus",
+            "Nation",                 "fclNationName",
+            "FactPageUrl",            "fclFactPageUrl",
+            "NpdId",                  "fclNpdidFacility",
+            "ResponsibleCompanyId",   "fclNpdidCurrentRespCompany",
+            "LastChangedDate",        "fclDateUpdated",
+            "SyncDate",               "datesyncNPD");
+
+    columns(NpdField.class,
+            "Name",                            "fldName",
+            "OperatorName",                    "cmpLongName",
+            "ActivityStatus",                  "fldCurrentActivitySatus",
+            "DiscoveryWellboreName",           "wlbName",
+            "DiscoveryWellboreCompletionDate", "wlbCompletionDate",
+            "MainArea",                        "fldMainArea",
+            "OwnerKind",                       "fldOwnerKind",
+            "OwnerName",                       "fldOwnerName",
+            "MainSupplyBase",                  "fldMainSupplyBase",
+            "NpdidOwner",                      "fldNpdidOwner",
+            "NpdId",                           "fldNpdidField",
+            "NpdidDiscoveryWellbore",          "wlbNpdidWellbore",
+            "NpdidOperator",                   "cmpNpdidCompany",
+            "FactPageUrl",                     "fldFactPageUrl",
+            "FactMapUrl",                      "fldFactMapUrl",
+            "LastChangedDate",                 "fldDateUpdatedMax",
+            "SyncDate",                        "DatesyncNPD");
+
+    columns(NpdLicense.class,
+            "Name",            "prlName",
+            "Activity",        "prlLicensingActivityName",
+            "MainArea",        "prlMainArea",
+            "Status",          "prlStatus",
+            "Stratigraphical", "prlStratigraphical",
+            "DateGranted",     "prlDateGranted",
+            "ValidToDate",     "prlDateValidTo",
+            "OriginalArea",    "prlOriginalArea",
+            "CurrentArea",     "prlCurrentArea",
+            "Phase",           "prlPhaseCurrent",
+            "NpdId",           "prlNpdidLicence",
+            "FactPageUrl",     "prlFactPageUrl",
+            "FactMapUrl",      "prlFactMapUrl",
+            "LastChangedDate", "prlDateUpdatedMax",
+            "SyncDate",        "DatesyncNPD");
+
+    columns(NpdPipeline.class,
+            "Name",                 "pplName",
+            "MapLabel",             "pplMapLabel",
+            "FromFacility",         "fclNameFrom",
+            "ToFacility",           "fclNameTo",
+            "BelongsTo",            "pplBelongsToName",
+            "Operator",             "cmpLongName",
+            "CurrentPhase",         "pplCurrentPhase",
+            "CurrentPhaseFromDate", "pplCurrentPhaseFromDate",
+            "Medium",               "pplMedium",
+            "MainGrouping",         "pplMainGroupingName",
+            "Dimension",            "pplDimension",
+            "WaterDepth",           "pplWaterDepth",
+            "NpdidOperator",        "cmpNpdidCompany",
+            "NpdidFromFacility",    "fclNpdidFacilityFrom",
+            "NpdidToFacility",      "fclNpdidFacilityTo",
+            "FactPageUrl",          "pplFactPageUrl",
+            "FactMapUrl",           "pplFactMapUrl",
+            "NpdId",                "pplNpdidPipeline",
+            "LastChangedDate",      "pplDateUpdated",
+            "SyncDate",             "DatesyncNPD");
+
+    columns(NpdSurvey.class,
+            "Name",                        "seaName",
+            "PlannedStartDate",            "seaPlanFromDate",
+            "NpdId",                       "seaNpdidSurvey",
+            "Status",                      "seaStatus",
+            "Area",                        "seaGeographicalArea",
+            "MidPoint",                    "seaMidPoint",
+            "Category",                    "seaCategory",
+            "MainType",                    "seaSurveyTypeMain",
+            "SubType",                     "seaSurveyTypePart",
+            "Company",                     "seaCompanyReported",
+            "Vessel",                      "seaVesselAll",
+            "PlannedCompleteDate",         "seaPlanToDate",
+            "StartDate",                   "seaDateStarting",
+            "CompleteDate",                "seaDateFinalized",
+            "PlannedTotalLengthCdp",       "seaCdpTotalKm",
+            "PlannedTotalLengthBoat",      "seaBoatTotalKm",
+            "NetAreaPlanned",              "sea3DKm2",
+            "NetAreaActual",               "seaSurveyAcquired",
+            "Available",                   "seaMarketAvailable",
+            "SamplingDone",                "seaSampling",
+            "ShallowDrillingDone",         "seaShallowDrilling",
+            "GeotechnicalMeasurementDone", "seaGeotechnical",
+            "FactPageUrl",                 "seaFactPageUrl",
+            "FactMapUrl",                  "seaFactMapHtml5Url",
+            "SyncDate",                    "datesyncNPD");
+
+    columns(NpdDevelopmentWellbore.class,
+            "Name",                         "wlbWellboreName",
+            "WellName",                     "wlbWell",
+            "DrillingOperator",             "wlbDrillingOperator",
+            "ProductionLicense",            "wlbProductionLicence",
+            "Status",                       "wlbStatus",
+            "Purpose",                      "wlbPurpose",
+            "PurposePlanned",               "wlbPurposePlanned",
+            "Content",                      "wlbContent",
+            "WellType",                     "wlbWellType",
+            "Subsea",                       "wlbSubSea",
+            "EntryDate",                    "wlbEntryDate",
+            "CompletionDate",               "wlbCompletionDate",
+            "PreDrillEntryDate",            "wlbEntryPreDrillDate",
+            "PreDrillCompletionDate",       "wlbCompPreDrillDate",
+            "Field",                        "wlbField",
+            "DrillPermit",                  "wlbDrillPermit",
+            "Discovery",                    "wlbDiscovery",
+            "DiscoveryWellbore",            "wlbDiscoveryWellbore",
+            "KellyBushElevation",           "wlbKellyBushElevation",
+            "FinalVerticalDepth",           "wlbFinalVerticalDepth",
+            "TotalDepth",                   "wlbTotalDepth",
+            "WaterDepth",                   "wlbWaterDepth",
+            "KickOffPoint",                 "wlbKickOffPoint",
+            "MainArea",                     "wlbMainArea",
+            "DrillingFacility",             "wlbDrillingFacility",
+            "DrillingFacilityType",         "wlbFacilityTypeDrilling",
+            "DrillingFacilityCategory",     "wlbDrillingFacilityFixedOrMoveable",
+            "ProductionFacility",           "wlbProductionFacility",
+            "LicensingActivity",            "wlbLicensingActivity",
+            "Multilateral",                 "wlbMultilateral",
+            "ContentPlanned",               "wlbContentPlanned",
+            "EntryYear",                    "wlbEntryYear",
+            "CompletionYear",               "wlbCompletionYear",
+            "ReclassFromWellbore",          "wlbReclassFromWellbore",
+            "PluggedAndAbandonDate",        "wlbPluggedAbandonDate",
+            "PluggedDate",                  "wlbPluggedDate",
+            "LicenseTargetName",            "wlbLicenceTargetName",
+            "PlotSymbol",                   "wlbPlotSymbol",
+            "GeodeticDatum",                "wlbGeodeticDatum",
+            "NsDeg",                        "wlbNsDeg",
+            "NsMin",                        "wlbNsMin",
+            "NsSec",                        "wlbNsSec",
+            "NsCode",                       "wlbNsCode",
+            "EwDeg",                        "wlbEwDeg",
+            "EwMin",                        "wlbEwMin",
+            "EwSec",                        "wlbEwSec",
+            "EwCode",                       "wlbEwCode",
+            "Latitude",                     "wlbNsDecDeg",
+            "Longitude",                    "wlbEwDesDeg",
+            "NsUtm",                        "wlbNsUtm",
+            "EwUtm",                        "wlbEwUtm",
+            "UtmZone",                      "wlbUtmZone",
+            "NamePart1",                    "wlbNamePart1",
+            "NamePart2",                    "wlbNamePart2",
+            "NamePart3",                    "wlbNamePart3",
+            "NamePart4",                    "wlbNamePart4",
+            "NamePart5",                    "wlbNamePart5",
+            "NamePart6",                    "wlbNamePart6",
+            "FactPageUrl",                  "wlbFactPageUrl",
+            "FactMapUrl",                   "wlbFactMapUrl",
+            "DiskosWellboreType",           "wlbDiskosWellboreType",
+            "DiskosWellboreParent",         "wlbDiskosWellboreParent",
+            "NpdId",                        "wlbNpdidWellbore",
+            "NpdidDiscovery",               "dscNpdidDiscovery",
+            "NpdidField",                   "fldNpdidField",
+            "WdssQcDate",                   "wlbWdssQcDate",
+            "ReleaseDate",                  "wlbReleasedDate",
+            "NpdidProductionLicense",       "prlNpdidProductionLicence",
+            "NpdidTargetProductionLicense", "prlNpdidProdLicenceTarget",
+            "NpdidFacilityDrilling",        "fclNpdidFacilityDrilling",
+            "NpdidFacilityProducing",       "fclNpdidFacilityProducing",
+            "NpdidWellboreReclass",         "wlbNpdidWellboreReclass",
+            "MainLevelUpdatedDate",         "wlbDateUpdated",
+            "UpdatedDate",                  "wlbDateUpdatedMax",
+            "SyncDate",                     "datesyncNPD");
+
+    columns(NpdExplorationWellbore.class,
+            "Name",                       "wlbWellboreName",
+            "WellName",                   "wlbWell",
+            "DrillingOperator",           "wlbDrillingOperator",
+            "ProductionLicense",          "wlbProductionLicence",
+            "Purpose",                    "wlbPurpose",
+            "Status",                     "wlbStatus",
+            "Content",                    "wlbContent",
+            "WellType",                   "wlbWellType",
+            "Subsea",                     "wlbSubSea",
+            "EntryDate",                  "wlbEntryDate",
+            "CompletionDate",             "wlbCompletionDate",
+            "Field",                      "wlbField",
+            "DrillPermit",                "wlbDrillPermit",
+            "Discovery",                  "wlbDiscovery",
+            "DiscoveryWellbore",          "wlbDiscoveryWellbore",
+            "BottomHoleTemperature",      "wlbBottomHoleTemperature",
+            "SiteSurvey",                 "wlbSiteSurvey",
+            "SeismicLocation",            "wlbSeismicLocation",
+            "MaxInclination",             "wlbMaxInclation",
+            "KellyBushElevation",         "wlbKellyBushElevation",
+            "FinalVerticalDepth",         "wlbFinalVerticalDepth",
+            "TotalDepth",                 "wlbTotalDepth",
+            "WaterDepth",                 "wlbWaterDepth",
+            "KickOffPoint",               "wlbKickOffPoint",
+            "AgeAtTd",                    "wlbAgeAtTd",
+            "FormationAtTd",              "wlbFormationAtTd",
+            "MainArea",                   "wlbMainArea",
+            "DrillingFacility",           "wlbDrillingFacility",
+            "DrillingFacilityType",       "wlbFacilityTypeDrilling",
+            "DrillingFacilityCategory",   "wlbDrillingFacilityFixedOrMoveable",
+            "LicensingActivity",          "wlbLicensingActivity",
+            "Multilateral",               "wlbMultilateral",
+            "PurposePlanned",             "wlbPurposePlanned",
+            "EntryYear",                  "wlbEntryYear",
+            "CompletionYear",             "wlbCompletionYear",
+            "ReclassFromWellbore",        "wlbReclassFromWellbore",
+            "ReentryExplorationActivity", "wlbReentryExplorationActivity",
+            "PlotSymbol",                 "wlbPlotSymbol",
+            "FormationWithHc1",           "wlbFormationWithHc1",
+            "AgeWithHc1",                 "wlbAgeWithHc1",
+            "FormationWithHc2",           "wlbFormationWithHc2",
+            "AgeWithHc2",                 "wlbAgeWithHc2",
+            "FormationWithHc3",           "wlbFormationWithHc3",
+            "AgeWithHc3",                 "wlbAgeWithHc3",
+            "DrillingDays",               "wlbDrillingDays",
+            "Reentry",                    "wlbReentry",
+            "LicenseTargetName",          "wlbLicenceTargetName",
+            "PluggedAndAbandonDate",      "wlbPluggedAbandonDate",
+            "PluggedDate",                "wlbPluggedDate",
+            "GeodeticDatum",              "wlbGeodeticDatum",
+            "NsDeg",                      "wlbNsDeg",
+            "NsMin",                      "wlbNsMin",
+            "NsSec",                      "wlbNsSec",
+            "NsCode",                     "wlbNsCode",
+            "EwDeg",                      "wlbEwDeg",
+            "EwMin",                      "wlbEwMin",
+            "EwSec",                      "wlbEwSec",
+            "EwCode",                     "wlbEwCode",
+            "Latitude",                   "wlbNsDecDeg",
+            "Longitude",                  "wlbEwDesDeg",
+            "NsUtm",                      "wlbNsUtm",
+            "EwUtm",                      "wlbEwUtm",
+            "UtmZone",                    "wlbUtmZone",
+            "NamePart1",                  "wlbNamePart1",
+            "NamePart2",                  "wlbNamePart2",
+            "NamePart3",                  "wlbNamePart3",
+            "NamePart4",                  "wlbNamePart4",
+            "NamePart5",                  "wlbNamePart5",
+            "NamePart6",                  "wlbNamePart6",
+            "PressReleaseUrl",            "wlbPressReleaseUrl",
+            "FactPageUrl",                "wlbFactPageUrl",
+            "FactMapUrl",                 "wlbFactMapUrl",
+            "DiskosWellboreType",         "wlbDiskosWellboreType",
+            "DiskosWellboreParent",       "wlbDiskosWellboreParent",
+            "WdssQcDate",                 "wlbWdssQcDate",
+            "ReleaseDate",                "wlbReleasedDate",
+            "ReclassificationDate",       "wlbDateReclass",
+            "NpdId",                      "wlbNpdidWellbore",
+            "NpdidDiscovery",             "dscNpdidDiscovery",
+            "NpdidField",                 "fldNpdidField",
+            "NpdidFacilityDrilling",      "fclNpdidFacilityDrilling",
+            "NpdidWellboreReclass",       "wlbNpdidWellboreReclass",
+            "NpdidProductionLicense",     "prlNpdidProductionLicence",
+            "NpdidSiteSurvey",            "wlbNpdidSiteSurvey",
+            "MainLevelUpdatedDate",       "wlbDateUpdated",
+            "UpdatedDate",                "wlbDateUpdatedMax",
+            "SyncDate",                   "datesyncNPD");
+
+    columns(NpdOtherWellbore.class,
+            "Name",                  "wlbWellboreName",
+            "WellName",              "wlbWell",
+            "WellType",              "wlbWellType",
+            "Purpose",               "wlbPurpose",
+            "DrillingOperator",      "wlbDrillingOperator",
+            "ProductionLicense",     "wlbProductionLicence",
+            "DrillingFacility",      "wlbDrillingFacility",
+            "EntryDate",             "wlbEntryDate",
+            "CompletionDate",        "wlbCompletionDate",
+            "DrillPermit",           "wlbDrillPermit",
+            "TotalDepth",            "wlbTotalDepth",
+            "KellyBushElevation",    "wlbKellyBushElevation",
+            "WaterDepth",            "wlbWaterDepth",
+            "MainArea",              "wlbMainArea",
+            "EntryYear",             "wlbEntryYear",
+            "CompletionYear",        "wlbCompletionYear",
+            "SiteSurvey",            "wlbSiteSurvey",
+            "SeismicLocation",       "wlbSeismicLocation",
+            "GeodeticDatum",         "wlbGeodeticDatum",
+            "LicenseTargetName",     "wlbLicenceTargetName",
+            "PluggedAndAbandonDate", "wlbPluggedAbandonDate",
+            "PluggedDate",           "wlbPluggedDate",
+            "NsDeg",                 "wlbNsDeg",
+            "NsMin",                 "wlbNsMin",
+            "NsSec",                 "wlbNsSec",
+            "NsCode",                "wlbNsCode",
+            "EwDeg",                 "wlbEwDeg",
+            "EwMin",                 "wlbEwMin",
+            "EwSec",                 "wlbEwSec",
+            "EwCode",                "wlbEwCode",
+            "Latitude",              "wlbNsDecDeg",
+            "Longitude",             "wlbEwDesDeg",
+            "NsUtm",                 "wlbNsUtm",
+            "EwUtm",                 "wlbEwUtm",
+            "UtmZone",               "wlbUtmZone",
+            "NamePart1",             "wlbNamePart1",
+            "NamePart2",             "wlbNamePart2",
+            "NamePart3",             "wlbNamePart3",
+            "NamePart4",             "wlbNamePart4",
+            "NamePart5",             "wlbNamePart5",
+            "NamePart6",             "wlbNamePart6",
+            "NpdId",                 "wlbNpdidWellbore",
+            "NpdidSiteSurvey",       "wlbNpdidSiteSurvey",
+            "FactPageUrl",           "wlbFactPageUrl",
+            "MainLevelUpdatedDate",  "wlbDateUpdated",
+            "UpdatedDate",           "wlbDateUpdatedMax",
+            "SyncDate",              "datesyncNPD");
+  }
+
+  /**
+   * Private constructor to prevent client instantiation.
+   */
+  private NpdProperties()
+  {
+    assert false : "This constructor should never be called";
+  }
+
+  /**
+   * Register the NPD column names of the properties of the specified class.
+   *
+   * @param clazz               Class to register columns of. Non-null.
+   * @param propertyAndColumns  Pairs of property name and column name,
+   *                            in table column order. Non-null.
+   */
+  private static void columns(Class<?> clazz, String... propertyAndColumns)
+  {
+    assert clazz != null : "clazz cannot be null";
+    assert propertyAndColumns != null : "propertyAndColumns cannot be null";
+    assert propertyAndColumns.length % 2 == 0 : "Unpaired property: " + clazz;
+
+    Map<String, String> columns = new LinkedHashMap<>();
+    for (int i = 0; i < propertyAndColumns.length; i += 2)
+      columns.put(propertyAndColumns[i], propertyAndColumns[i + 1]);
+
+    COLUMNS.put(clazz, columns);
+  }
+
+  /**
+   * Create the properties of the specified class.
+   *
+   * @param clazz  Class to create properties of. Non-null.
+   * @return       The properties of the class. Never null.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static List<NpdProperty<?>> createProperties(Class<?> clazz)
+  {
+    assert clazz != null : "clazz cannot be null";
+
+    //
+    // Locate the getters. Sort on property name.
+    //
+    Map<String, Method> getters = new TreeMap<>();
+    for (Method method : clazz.getMethods()) {
+      String methodName = method.getName();
+
+      String name;
+      if (methodName.startsWith("get") && methodName.length() > 3)
+        name = methodName.substring(3);
+      else if (methodName.startsWith("is") && methodName.length() > 2)
+        name = methodName.substring(2);
+      else
+        continue;
+
+      if (method.getParameterTypes().length > 0)
+        continue;
+
+      if (Modifier.isStatic(method.getModifiers()))
+        continue;
+
+      if (!TYPES.containsKey(method.getReturnType()))
+        continue;
+
+      getters.put(name, method);
+    }
+
+    //
+    // Table columns first, then the rest
+    //
+    Map<String, String> columns = COLUMNS.get(clazz);
+    if (columns == null)
+      columns = Collections.emptyMap();
+
+    List<String> names = new ArrayList<>();
+    for (String name : columns.keySet()) {
+      assert getters.containsKey(name) : "Unknown property: " + clazz.getSimpleName() + "." + name;
+      if (getters.containsKey(name))
+        names.add(name);
+    }
+
+    for (String name : getters.keySet()) {
+      if (!columns.containsKey(name))
+        names.add(name);
+    }
+
+    //
+    // Create the properties
+    //
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    List<NpdProperty<?>> properties = new ArrayList<>();
+    for (String name : names) {
+      Method getter = getters.get(name);
+      Class<?> returnType = getter.getReturnType();
+      Class<?> type = TYPES.get(returnType);
+      boolean isNullable = !returnType.isPrimitive() && !NON_NULLABLE.contains(name);
+
+      Function<?, Object> accessor = createAccessor(lookup, clazz, getter, type);
+      if (accessor == null)
+        continue;
+
+      properties.add(new NpdProperty(clazz, name, type, isNullable, columns.get(name), accessor));
+    }
+
+    return Collections.unmodifiableList(properties);
+  }
+
+  /**
+   * Create an accessor for the specified getter. The accessor is a
+   * {@link Function} implemented by a call to the getter.
+   *
+   * @param lookup  Lookup to use. Non-null.
+   * @param clazz   Class of objects the accessor is applied to. Non-null.
+   * @param getter  Getter to create accessor for. Non-null.
+   * @param type    Value type of the getter, wrapper if primitive. Non-null.
+   * @return        The requested accessor. Null if it could not be created.
+   */
+  @SuppressWarnings("unchecked")
+  private static Function<?, Object> createAccessor(MethodHandles.Lookup lookup,
+                                                    Class<?> clazz,
+                                                    Method getter,
+                                                    Class<?> type)
+  {
+    assert lookup != null : "lookup cannot be null";
+    assert clazz != null : "clazz cannot be null";
+    assert getter != null : "getter cannot be null";
+    assert type != null : "type cannot be null";
+
+    try {
+      MethodHandle handle = lookup.unreflect(getter);
+
+      CallSite callSite = LambdaMetafactory.metafactory(lookup,
+                                                        "apply",
+                                                        MethodType.methodType(Function.class),
+                                                        MethodType.methodType(Object.class, Object.class),
+                                                        handle,
+                                                        MethodType.methodType(type, clazz));
+
+      return (Function<?, Object>) callSite.getTarget().invoke();
+    }
+    catch (Throwable throwable) {
+      assert false : "Programming error: " + throwable.getMessage();
+      return null;
+    }
+  }
+
+  /**
+   * Return the properties of the specified class.
+   *
+   * @param <T>    Class type.
+   * @param clazz  Class to get properties of. Non-null.
+   * @return       The properties of the class, table columns first.
+   *               Never null.
+   * @throws IllegalArgumentException  If clazz is null.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public static <T extends NpdObject> List<NpdProperty<T>> getProperties(Class<T> clazz)
+  {
+    if (clazz == null)
+      throw new IllegalArgumentException("clazz cannot be null");
+
+    return (List) PROPERTIES.get(clazz);
+  }
+
+  /**
+   * Return the property of the specified class with the specified name.
+   *
+   * @param <T>    Class type.
+   * @param clazz  Class to get property of. Non-null.
+   * @param name   Name of property to get, like "TotalDepth". Non-null.
+   * @return       The requested property, or null if not found.
+   * @throws IllegalArgumentException  If clazz or name is null.
+   */
+  public static <T extends NpdObject> NpdProperty<T> getProperty(Class<T> clazz, String name)
+  {
+    if (clazz == null)
+      throw new IllegalArgumentException("clazz cannot be null");
+
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+
+    for (NpdProperty<T> property : getProperties(clazz)) {
+      if (property.getName().equals(name))
+        return property;
+    }
+
+    // Not found
+    return null;
+  }
+
+  /**
+   * Return the property of the specified class with the specified NPD
+   * column name. The column name is case insensitive.
+   *
+   * @param <T>         Class type.
+   * @param clazz       Class to get property of. Non-null.
+   * @param columnName  NPD column name of property to get, like "wlbTotalDepth". Non-null.
+   * @return            The requested property, or null if not found.
+   * @throws IllegalArgumentException  If clazz or columnName is null.
+   */
+  public static <T extends NpdObject> NpdProperty<T> findPropertyByColumnName(Class<T> clazz, String columnName)
+  {
+    if (clazz == null)
+      throw new IllegalArgumentException("clazz cannot be null");
+
+    if (columnName == null)
+      throw new IllegalArgumentException("columnName cannot be null");
+
+    for (NpdProperty<T> property : getProperties(clazz)) {
+      if (columnName.equalsIgnoreCase(property.getColumnName()))
+        return property;
+    }
+
+    // Not found
+    return null;
+  }
+}
@@ -0,0 +1,195 @@
+package no.petroware.npdio;
+
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * Meta data of a property of an NPD object class, like the
+ * <em>total depth</em> of an exploration wellbore, together with a
+ * compiled accessor for the property value.
+ * <p>
+ * Properties are obtained from {@link NpdProperties}:
+ *
+ * <pre>
+ *   NpdProperty&lt;NpdExplorationWellbore&gt; totalDepth =
+ *     NpdProperties.getProperty(NpdExplorationWellbore.class, "TotalDepth");
+ *
+ *   totalDepth.getColumnName();         // "wlbTotalDepth"
+ *   totalDepth.getType();               // Double.class
+ *   totalDepth.getValue(wellbore);      // 2725.0
+ * </pre>
+ *
+ * The accessor is bound directly to the getter method of the property,
+ * so getting a value costs the same as calling the getter.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of object holding the property.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdProperty<T extends NpdObject>
+{
+  /** Class holding the property. Non-null. */
+  private final Class<T> ownerClass_;
+
+  /** Name of property, like "TotalDepth". Non-null. */
+  private final String name_;
+
+  /** Value type of property. Never primitive. Non-null. */
+  private final Class<?> type_;
+
+  /** Indicate if the property value may be absent. */
+  private final boolean isNullable_;
+
+  /** NPD column name of property, like "wlbTotalDepth". Null if none. */
+  private final String columnName_;
+
+  /** Accessor for the property value. Non-null. */
+  private final Function<T, Object> accessor_;
+
+  /** Comparator on the property value. Non-null. */
+  private final Comparator<T> comparator_;
+
+  /**
+   * Create an NPD property.
+   *
+   * @param ownerClass  Class holding the property. Non-null.
+   * @param name        Name of property. Non-null.
+   * @param type        Value type of property. Non-null.
+   * @param isNullable  True if the value may be absent, false if not.
+   * @param columnName  NPD column name of property. Null if none.
+   * @param accessor    Accessor for the property value. Non-null.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  NpdProperty(Class<T> ownerClass,
+              String name,
+              Class<?> type,
+              boolean isNullable,
+              String columnName,
+              Function<T, Object> accessor)
+  {
+    assert ownerClass != null : "ownerClass cannot be null";
+    assert name != null : "name cannot be null";
+    assert type != null : "type cannot be null";
+    assert !type.isPrimitive() : "type cannot be primitive";
+    assert accessor != null : "accessor cannot be null";
+
+    ownerClass_ = ownerClass;
+    name_ = name;
+    type_ = type;
+    isNullable_ = isNullable;
+    columnName_ = columnName;
+    accessor_ = accessor;
+
+    // All property types are comparable, see NpdProperties
+    comparator_ = (object1, object2) -> {
+      Comparable value1 = (Comparable) accessor.apply(object1);
+      Comparable value2 = (Comparable) accessor.apply(object2);
+
+      if (value1 == null)
+        return value2 == null ? 0 : 1;
+
+      if (value2 == null)
+        return -1;
+
+      return value1.compareTo(value2);
+    };
+  }
+
+  /**
+   * Return the class holding this property.
+   *
+   * @return  The class holding this property. Never null.
+   */
+  public Class<T> getOwnerClass()
+  {
+    return ownerClass_;
+  }
+
+  /**
+   * Return name of this property. This is the getter name without
+   * the <em>get</em> or <em>is</em> prefix, like "TotalDepth".
+   *
+   * @return  Name of this property. Never null.
+   */
+  public String getName()
+  {
+    return name_;
+  }
+
+  /**
+   * Return value type of this property. Primitive getter types are
+   * reported as their wrapper class.
+   *
+   * @return  Value type of this property. Never null.
+   */
+  public Class<?> getType()
+  {
+    return type_;
+  }
+
+  /**
+   * Check if the value of this property may be absent.
+   *
+   * @return  True if the value may be null, false if it is always present.
+   */
+  public boolean isNullable()
+  {
+    return isNullable_;
+  }
+
+  /**
+   * Return the NPD column name of this property, like "wlbTotalDepth".
+   *
+   * @return  NPD column name of this property. Null if the property
+   *          has no NPD counterpart.
+   */
+  public String getColumnName()
+  {
+    return columnName_;
+  }
+
+  /**
+   * Return the accessor of this property.
+   *
+   * @return  The accessor of this property. Never null.
+   */
+  public Function<T, Object> getAccessor()
+  {
+    return accessor_;
+  }
+
+  /**
+   * Return the value of this property for the specified object.
+   *
+   * @param object  Object to get property value of. Non-null.
+   * @return        The property value. May be null.
+   * @throws IllegalArgumentException  If object is null.
+   */
+  public Object getValue(T object)
+  {
+    if (object == null)
+      throw new IllegalArgumentException("object cannot be null");
+
+    return accessor_.apply(object);
+  }
+
+  /**
+   * Return a comparator ordering objects ascending on the value of
+   * this property. Absent values are ordered last.
+   *
+   * @return  Comparator on this property. Never null.
+   */
+  public Comparator<T> getComparator()
+  {
+    return comparator_;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return ownerClass_.getSimpleName() + "." + name_;
+  }
+}
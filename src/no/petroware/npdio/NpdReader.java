@@ -1,18 +1,28 @@
 package no.petroware.npdio;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -29,18 +39,54 @@ public abstract class NpdReader<T>
   /** The logger instance */
   private static final Logger logger_ = Logger.getLogger(NpdReader.class.getName());
 
-  /** URL of file to read. Non-null. */
-  private final String url_;
+  /** Reads in progress by reader class, sources and mode, shared by concurrent callers. */
+  private static final ConcurrentMap<String, CompletableFuture<List<?>>> inFlightReads_ = new ConcurrentHashMap<>();
+
+  /** Source of file to read. Non-null. */
+  private final NpdSource source_;
+
+  /** Source to read if the file cannot be read. Null if none. */
+  private volatile NpdSource fallbackSource_;
+
+  /** Indicates if the file is downloaded on a separate thread while parsed. */
+  private volatile boolean isPipelined_;
+
+  /** Indicates if reads may be served by the reader cache. */
+  private volatile boolean isCached_ = true;
+
+  /**
+   * Create an NPD reader instance.
+   *
+   * @param source  Source of file to read. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  protected NpdReader(NpdSource source)
+  {
+    if (source == null)
+      throw new IllegalArgumentException("source cannot be null");
+
+    source_ = source;
+  }
 
   /**
    * Create an NPD reader instance.
    *
    * @param url  URL of file to read. Non-null.
+   * @throws IllegalArgumentException  If url is null.
    */
   protected NpdReader(String url)
   {
-    assert url != null : "url cannot be null";
-    url_ = url;
+    this(NpdSource.newUrlSource(url));
+  }
+
+  /**
+   * Return the source of the file of this reader.
+   *
+   * @return  Source of file to read. Never null.
+   */
+  public NpdSource getSource()
+  {
+    return source_;
   }
 
   /**
@@ -220,8 +266,184 @@ public abstract class NpdReader<T>
     return tokens;
   }
 
+  /**
+   * Split the specified line into trimmed tokens, empty tokens being null.
+   * Used for lines not tokenized by {@link CsvLineReader}.
+   *
+   * @param line  Line to tokenize. Non-null.
+   * @return      The tokens of the line. Never null.
+   */
+  private static String[] tokenize(String line)
+  {
+    assert line != null : "line cannot be null";
+
+    // Capture the tokens
+    String[] tokens = csvSplit(line);
+
+    // Trim and nullify
+    for (int i = 0; i < tokens.length; i++) {
+      String token = tokens[i];
+      String newToken = token.trim();
+
+      if (newToken.length() == 0)
+        newToken = null;
+      tokens[i] = newToken;
+    }
+
+    return tokens;
+  }
+
+  /**
+   * Set the source to read if the file of this reader cannot be read,
+   * like an embedded snapshot of the table, see
+   * {@link NpdSource#getEmbeddedSource}.
+   * <p>
+   * If reading the file fails by an IOException, the failure is logged
+   * and the instances of the fallback source are returned instead.
+   * Their sync dates, see {@link NpdObject#getSyncDate}, tell how old
+   * they are. Instances of the fallback source are not cached, so later
+   * reads try the file again. A file that is read but holds no
+   * instances is returned as is, and interrupted reads do not fall back.
+   *
+   * @param fallbackSource  Source to read if the file cannot be read.
+   *                        Null for none, the default.
+   */
+  public void setFallbackSource(NpdSource fallbackSource)
+  {
+    fallbackSource_ = fallbackSource;
+  }
+
+  /**
+   * Return the source to read if the file of this reader cannot be read.
+   *
+   * @return  The fallback source, or null if none.
+   */
+  public NpdSource getFallbackSource()
+  {
+    return fallbackSource_;
+  }
+
+  /**
+   * Set if the file should be downloaded on a separate thread while
+   * being parsed. Default is false, reading and parsing alternately
+   * on the calling thread.
+   * <p>
+   * In pipelined mode a download thread reads the file ahead into a
+   * bounded ring of buffers, while the calling thread parses. On slow
+   * or high latency connections this hides most of the parsing time
+   * behind the download. The download runs on a virtual thread if
+   * available, see {@link #readAsync()}.
+   * <p>
+   * A pipelined read stops with an InterruptedIOException if the
+   * calling thread is interrupted while waiting for data.
+   *
+   * @param isPipelined  True to download and parse concurrently, false
+   *                     to do both on the calling thread.
+   */
+  public void setPipelined(boolean isPipelined)
+  {
+    isPipelined_ = isPipelined;
+  }
+
+  /**
+   * Check if this reader downloads the file on a separate thread while
+   * parsing.
+   *
+   * @return  True if pipelined, false otherwise.
+   */
+  public boolean isPipelined()
+  {
+    return isPipelined_;
+  }
+
+  /**
+   * Set if reads may be served from {@link NpdReaderCache} when it is
+   * enabled. Default is true.
+   * <p>
+   * A reader that is not cached always reads the file, like when
+   * refreshing data that must be current. The instances read still
+   * replace those in the cache, so later cached reads get them.
+   *
+   * @param isCached  True to let the cache serve reads, false to always
+   *                  read the file.
+   */
+  public void setCached(boolean isCached)
+  {
+    isCached_ = isCached;
+  }
+
+  /**
+   * Check if reads may be served from {@link NpdReaderCache}.
+   *
+   * @return  True if reads may be served from the cache, false otherwise.
+   */
+  public boolean isCached()
+  {
+    return isCached_;
+  }
+
+  /**
+   * Open the file for reading one instance at the time.
+   * The returned cursor must be closed by the client.
+   *
+   * @return  Cursor positioned at the first instance. Never null.
+   * @throws IOException  If the file cannot be opened.
+   */
+  public Cursor open()
+    throws IOException
+  {
+    return open(source_);
+  }
+
+  /**
+   * Open the specified source for reading one instance at the time.
+   *
+   * @param source  Source to open. Non-null.
+   * @return        Cursor positioned at the first instance. Never null.
+   * @throws IOException  If the source cannot be opened.
+   */
+  private Cursor open(NpdSource source)
+    throws IOException
+  {
+    assert source != null : "source cannot be null";
+
+    // Open connection
+    logger_.log(Level.INFO, "Connecting to : " + source);
+    InputStream stream = source.open();
+
+    if (isPipelined_) {
+      try {
+        stream = new PipelinedInputStream(stream, AsyncExecutor.INSTANCE);
+      }
+      catch (IOException exception) {
+        stream.close();
+        throw exception;
+      }
+    }
+
+    CsvLineReader reader = new CsvLineReader(stream);
+
+    try {
+      // Skip past the header line
+      reader.nextLine();
+    }
+    catch (IOException exception) {
+      reader.close();
+      throw exception;
+    }
+
+    return new Cursor(reader);
+  }
+
   /**
    * Read file.
+   * <p>
+   * Concurrent reads of the same source by readers of the same class and
+   * setup are coalesced: the file is read once, and all callers get the
+   * same instances, each in a list of its own. Clients modifying the
+   * instances should be aware that they may be shared. If
+   * {@link NpdReaderCache} is enabled, the instances are also shared with
+   * later reads until they expire, see {@link #setCached}.
    *
    * @return  The read instances. Never null.
    * @throws IOException  If the read operation fails for some reason.
@@ -229,65 +451,345 @@ public abstract class NpdReader<T>
   public List<T> read()
     throws IOException
   {
-    // Prepare return structure
-    List<T> instances = new ArrayList<>();
+    return new ArrayList<>(readShared(false));
+  }
 
-    // Create URL instance from the specified string
-    URL url;
-    try {
-      url = new URL(url_);
-    }
-    catch (MalformedURLException exception) {
-      throw new IOException("Malformed URL: " + url_, exception);
+  /**
+   * Read file, or share the result of a concurrent read of the same file
+   * by a reader of the same class and setup. Optionally stop if the
+   * current thread is interrupted.
+   *
+   * @param isInterruptible  True to stop on interrupt, false to ignore it.
+   * @return                 The read instances, shared with other callers.
+   *                         Never null. Unmodifiable.
+   * @throws IOException  If the read operation fails for some reason, or is interrupted.
+   */
+  @SuppressWarnings("unchecked")
+  private List<T> readShared(boolean isInterruptible)
+    throws IOException
+  {
+    // The cache holds results of the file only, and these are the same for any setup
+    String key = getClass().getName() + " " + source_.getKey();
+
+    NpdReaderCache cache = NpdReaderCache.getInstance();
+    if (cache.isEnabled() && isCached_) {
+      List<?> cachedInstances = cache.get(key);
+      if (cachedInstances != null)
+        return (List<T>) cachedInstances;
     }
 
-    // Open connection
-    logger_.log(Level.INFO, "Connecting to : " + url);
-    InputStream stream = url.openStream();
-    BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+    // Reads with another fallback or mode may give other results or failures
+    NpdSource fallbackSource = fallbackSource_;
+    String inFlightKey = key + " " + (fallbackSource != null ? fallbackSource.getKey() : "-") + " " + isPipelined_;
 
-    try {
-      // Skip past the header line
-      reader.readLine();
+    while (true) {
+      CompletableFuture<List<?>> future = new CompletableFuture<>();
+      CompletableFuture<List<?>> inFlightRead = inFlightReads_.putIfAbsent(inFlightKey, future);
 
-      // Read line by line. There is data entry per line
-      while (true) {
-        String line = reader.readLine();
-        if (line == null)
-          break;
+      //
+      // No read in progress: Do it and share the result
+      //
+      if (inFlightRead == null) {
+        try {
+          long loadTime = System.currentTimeMillis();
+
+          List<T> instances;
+          boolean isFallback = false;
+          try {
+            instances = readFile(source_, isInterruptible);
+          }
+          catch (IOException exception) {
+            if (fallbackSource == null || exception instanceof InterruptedIOException)
+              throw exception;
+
+            logger_.log(Level.WARNING, "Unable to read " + source_ + ", using " + fallbackSource, exception);
+            instances = readFile(fallbackSource, isInterruptible);
+            isFallback = true;
+          }
+
+          instances = Collections.unmodifiableList(instances);
+          if (cache.isEnabled() && !isFallback)
+            cache.put(key, getClass(), instances, loadTime);
+
+          future.complete(instances);
+          return instances;
+        }
+        catch (IOException | RuntimeException | Error throwable) {
+          // If this caller gave up by interrupt, let the others try again rather than fail
+          if (isInterruptible && Thread.currentThread().isInterrupted())
+            future.completeExceptionally(new InterruptedIOException("Read interrupted: " + source_));
+          else
+            future.completeExceptionally(throwable);
+          throw throwable;
+        }
+        finally {
+          inFlightReads_.remove(inFlightKey, future);
+        }
+      }
 
-        // Skip empty lines
-        if (line.trim().length() == 0)
+      //
+      // Wait for the read in progress. The key includes the reader class, so the
+      // instances are of type T.
+      //
+      try {
+        if (!isInterruptible)
+          return (List<T>) inFlightRead.join();
+
+        try {
+          return (List<T>) inFlightRead.get();
+        }
+        catch (ExecutionException exception) {
+          throw new CompletionException(exception.getCause());
+        }
+        catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Read interrupted: " + source_);
+        }
+      }
+      catch (CompletionException exception) {
+        Throwable cause = exception.getCause();
+
+        // The read in progress was interrupted by its caller, not by us. Try again.
+        if (cause instanceof InterruptedIOException && !(isInterruptible && Thread.currentThread().isInterrupted()))
           continue;
 
-        // Capture the tokens
-        String[] tokens = csvSplit(line);
+        if (cause instanceof IOException)
+          throw new IOException(cause.getMessage(), cause);
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
 
-        // Trim and nullify
-        for (int i = 0; i < tokens.length; i++) {
-          String token = tokens[i];
-          String newToken = token.trim();
+        throw new IOException(cause);
+      }
+    }
+  }
 
-          if (newToken.length() == 0)
-            newToken = null;
-          tokens[i] = newToken;
-        }
+  /**
+   * Read the specified source, optionally stopping if the current
+   * thread is interrupted.
+   *
+   * @param source           Source to read. Non-null.
+   * @param isInterruptible  True to stop on interrupt, false to ignore it.
+   * @return                 The read instances. Never null.
+   * @throws IOException  If the read operation fails for some reason, or is interrupted.
+   */
+  private List<T> readFile(NpdSource source, boolean isInterruptible)
+    throws IOException
+  {
+    assert source != null : "source cannot be null";
+
+    // Prepare return structure
+    List<T> instances = new ArrayList<>();
+
+    try (Cursor cursor = open(source)) {
+      while (true) {
+        if (isInterruptible && Thread.currentThread().isInterrupted())
+          throw new InterruptedIOException("Read interrupted: " + source);
 
         try {
-          T instance = newInstance(tokens);
+          T instance = cursor.next();
+          if (instance == null)
+            break;
+
           instances.add(instance);
         }
         catch (ParseException exception) {
-          logger_.log(Level.WARNING, "Skip illegal line: " + line, exception);
+          logger_.log(Level.WARNING, "Skip illegal line: " + cursor.getLine(), exception);
         }
       }
     }
-    finally {
-      reader.close();
-    }
 
     logger_.log(Level.INFO, "Read " + instances.size() + " NPD instances OK.");
 
     return instances;
   }
+
+  /**
+   * Read file asynchronously on the specified executor.
+   * <p>
+   * Cancelling the returned future interrupts the read. On a virtual
+   * thread this aborts a blocked download at once, on other threads the
+   * read stops at the next line. The stream is closed either way.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of the read instances. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public CompletableFuture<List<T>> readAsync(Executor executor)
+  {
+    if (executor == null)
+      throw new IllegalArgumentException("executor cannot be null");
+
+    CompletableFuture<List<T>> future = new CompletableFuture<>();
+
+    // FutureTask takes care of interrupting only while the read is running
+    FutureTask<Void> task = new FutureTask<>(() -> {
+      try {
+        future.complete(new ArrayList<>(readShared(true)));
+      }
+      catch (Throwable throwable) {
+        // Ignored by the future if it is already cancelled
+        future.completeExceptionally(throwable);
+      }
+      return null;
+    });
+
+    future.whenComplete((instances, throwable) -> {
+      if (future.isCancelled())
+        task.cancel(true);
+    });
+
+    try {
+      executor.execute(task);
+    }
+    catch (RejectedExecutionException exception) {
+      future.completeExceptionally(exception);
+    }
+
+    return future;
+  }
+
+  /**
+   * Read file asynchronously. The file is read on a virtual thread if
+   * available (Java 21 or later), otherwise on a daemon thread of a
+   * shared pool.
+   * <p>
+   * Cancelling the returned future interrupts the read, see
+   * {@link #readAsync(Executor)}.
+   *
+   * @return  Future of the read instances. Never null.
+   */
+  public CompletableFuture<List<T>> readAsync()
+  {
+    return readAsync(AsyncExecutor.INSTANCE);
+  }
+
+  /**
+   * Holder of the default executor of asynchronous reads, created
+   * on first use.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class AsyncExecutor
+  {
+    /** The default executor. Non-null. */
+    static final Executor INSTANCE = newExecutor();
+
+    /**
+     * Private constructor to prevent client instantiation.
+     */
+    private AsyncExecutor()
+    {
+      assert false : "This constructor should never be called";
+    }
+
+    /**
+     * Create an executor running each task on a new virtual thread, or
+     * on a cached daemon thread where virtual threads are not available.
+     * The library is built for Java 8, so virtual threads are looked up
+     * reflectively.
+     *
+     * @return  The default executor. Never null.
+     */
+    private static Executor newExecutor()
+    {
+      try {
+        Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (Executor) method.invoke(null);
+      }
+      catch (ReflectiveOperationException | RuntimeException exception) {
+        // Before Java 21, or preview features not enabled
+        AtomicInteger threadNo = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+          Thread thread = new Thread(runnable, "NpdReader-" + threadNo.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
+  }
+
+  /**
+   * Reads the instances of an open file one at the time, so that only
+   * the current line is held in memory. Closing the cursor closes the
+   * underlying stream.
+   * <p>
+   * This class is not thread-safe.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  public final class Cursor implements Closeable
+  {
+    /** Reader of the open file, positioned after the header. Non-null. */
+    private final CsvLineReader reader_;
+
+    /** Indicates if the end of file has been reached or the cursor is closed. */
+    private boolean isDone_;
+
+    /**
+     * Create a cursor over the specified reader.
+     *
+     * @param reader  Reader positioned after the header. Non-null.
+     */
+    private Cursor(CsvLineReader reader)
+    {
+      assert reader != null : "reader cannot be null";
+      reader_ = reader;
+    }
+
+    /**
+     * Read the next instance. If the next line cannot be parsed, a parse
+     * exception is thrown and the cursor is left at the following line,
+     * so that reading may continue.
+     *
+     * @return  The next instance, or null if there are no more.
+     * @throws IOException     If the read operation fails for some reason.
+     * @throws ParseException  If the next line cannot be parsed into an instance.
+     */
+    public T next()
+      throws IOException, ParseException
+    {
+      while (!isDone_) {
+        if (!reader_.nextLine()) {
+          isDone_ = true;
+          break;
+        }
+
+        // Skip empty lines
+        if (reader_.isBlank())
+          continue;
+
+        String[] tokens = reader_.getTokens();
+        if (tokens == null)
+          tokens = tokenize(reader_.getLine());
+
+        T instance = newInstance(tokens);
+        if (instance != null)
+          return instance;
+      }
+
+      return null;
+    }
+
+    /**
+     * Return the last line read by this cursor, like the line of
+     * the latest parse exception.
+     *
+     * @return  The last line read. Null if none.
+     */
+    public String getLine()
+    {
+      return reader_.getLine();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close()
+      throws IOException
+    {
+      isDone_ = true;
+      reader_.close();
+    }
+  }
 }
@@ -0,0 +1,501 @@
+package no.petroware.npdio;
+
+import java.lang.ref.SoftReference;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of the instances read by {@link NpdReader#read}.
+ * The cache is off by default and is enabled by the client:
+ *
+ * <pre>
+ *   NpdReaderCache cache = NpdReaderCache.getInstance();
+ *   cache.setTtl(ProductionReader.class, 1, TimeUnit.DAYS);
+ *   cache.setEnabled(true);
+ *
+ *   List&lt;NpdField&gt; fields = NpdFieldReader.readAll(); // Downloads
+ *   fields = NpdFieldReader.readAll();                  // From memory
+ * </pre>
+ *
+ * Results are cached by reader class and URL, and expire after the
+ * time-to-live of their reader class, or the default time-to-live if
+ * none is set.
+ * <p>
+ * The size of each result is estimated in bytes, from the property
+ * values of a sample of its instances. Results are held strongly while
+ * their total size is within the memory budget. When it is exceeded, the
+ * least recently used results are evicted to soft references, where the
+ * garbage collector may reclaim them if memory runs low. Results larger
+ * than the entire budget are held softly from the start. A softly held
+ * result that is used again is held strongly again.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdReaderCache
+{
+  /** Default time-to-live. Milliseconds. */
+  public static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(1);
+
+  /** Default memory budget. Bytes. */
+  public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+  /** Number of instances sampled when estimating the size of a result. */
+  private static final int SAMPLE_SIZE = 64;
+
+  /** Estimated size of an object header. Bytes. */
+  private static final int OBJECT_SIZE = 16;
+
+  /** Estimated size of a reference. Bytes. */
+  private static final int REFERENCE_SIZE = 8;
+
+  /** Estimated size of an instance that is not an NPD object. Bytes. */
+  private static final int DEFAULT_INSTANCE_SIZE = 96;
+
+  /** The sole instance of this class. */
+  private static final NpdReaderCache INSTANCE = new NpdReaderCache();
+
+  /** Results by key, least recently used first. Access synchronized on this. */
+  private final LinkedHashMap<String, Entry> entries_ = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** Time-to-live by reader class. Milliseconds. Access synchronized on this. */
+  private final Map<Class<?>, Long> ttls_ = new HashMap<>();
+
+  /** Indicates if the cache is in use. */
+  private volatile boolean isEnabled_ = false;
+
+  /** Time-to-live of reader classes without one of their own. Milliseconds. */
+  private long defaultTtl_ = DEFAULT_TTL;
+
+  /** Maximum total size of the strongly held results. Bytes. */
+  private long memoryBudget_ = DEFAULT_MEMORY_BUDGET;
+
+  /** Total size of the strongly held results. Bytes. Access synchronized on this. */
+  private long size_ = 0;
+
+  /** Number of lookups served from the cache. */
+  private final AtomicLong nHits_ = new AtomicLong();
+
+  /** Number of lookups not served from the cache. */
+  private final AtomicLong nMisses_ = new AtomicLong();
+
+  /** Number of results evicted to soft references. */
+  private final AtomicLong nEvictions_ = new AtomicLong();
+
+  /**
+   * Create the NPD reader cache.
+   */
+  private NpdReaderCache()
+  {
+    // Nothing
+  }
+
+  /**
+   * Return the process-wide NPD reader cache.
+   *
+   * @return  The NPD reader cache. Never null.
+   */
+  public static NpdReaderCache getInstance()
+  {
+    return INSTANCE;
+  }
+
+  /**
+   * Enable or disable this cache. Disabling it clears it.
+   *
+   * @param isEnabled  True to enable, false to disable.
+   */
+  public void setEnabled(boolean isEnabled)
+  {
+    isEnabled_ = isEnabled;
+    if (!isEnabled)
+      clear();
+  }
+
+  /**
+   * Check if this cache is enabled.
+   *
+   * @return  True if enabled, false otherwise.
+   */
+  public boolean isEnabled()
+  {
+    return isEnabled_;
+  }
+
+  /**
+   * Set the time-to-live of the results of the specified reader class.
+   *
+   * @param readerClass  Reader class to set time-to-live of. Non-null.
+   * @param ttl          Time-to-live. [0,&gt;.
+   * @param unit         Unit of ttl. Non-null.
+   * @throws IllegalArgumentException  If readerClass or unit is null, or ttl is negative.
+   */
+  public synchronized void setTtl(Class<? extends NpdReader<?>> readerClass, long ttl, TimeUnit unit)
+  {
+    if (readerClass == null)
+      throw new IllegalArgumentException("readerClass cannot be null");
+
+    if (ttl < 0)
+      throw new IllegalArgumentException("Invalid ttl: " + ttl);
+
+    if (unit == null)
+      throw new IllegalArgumentException("unit cannot be null");
+
+    ttls_.put(readerClass, unit.toMillis(ttl));
+  }
+
+  /**
+   * Set the time-to-live of the results of reader classes without
+   * one of their own. Default is {@link #DEFAULT_TTL}.
+   *
+   * @param ttl   Time-to-live. [0,&gt;.
+   * @param unit  Unit of ttl. Non-null.
+   * @throws IllegalArgumentException  If unit is null or ttl is negative.
+   */
+  public synchronized void setDefaultTtl(long ttl, TimeUnit unit)
+  {
+    if (ttl < 0)
+      throw new IllegalArgumentException("Invalid ttl: " + ttl);
+
+    if (unit == null)
+      throw new IllegalArgumentException("unit cannot be null");
+
+    defaultTtl_ = unit.toMillis(ttl);
+  }
+
+  /**
+   * Return the time-to-live of the results of the specified reader class.
+   *
+   * @param readerClass  Reader class to get time-to-live of. Non-null.
+   * @return             Time-to-live in milliseconds.
+   * @throws IllegalArgumentException  If readerClass is null.
+   */
+  public synchronized long getTtl(Class<?> readerClass)
+  {
+    if (readerClass == null)
+      throw new IllegalArgumentException("readerClass cannot be null");
+
+    Long ttl = ttls_.get(readerClass);
+    return ttl != null ? ttl : defaultTtl_;
+  }
+
+  /**
+   * Set the maximum total size of the results held strongly by this cache.
+   * Default is {@link #DEFAULT_MEMORY_BUDGET}.
+   *
+   * @param memoryBudget  Memory budget in bytes. [0,&gt;.
+   * @throws IllegalArgumentException  If memoryBudget is negative.
+   */
+  public synchronized void setMemoryBudget(long memoryBudget)
+  {
+    if (memoryBudget < 0)
+      throw new IllegalArgumentException("Invalid memoryBudget: " + memoryBudget);
+
+    memoryBudget_ = memoryBudget;
+    evict();
+  }
+
+  /**
+   * Return the maximum total size of the results held strongly by this cache.
+   *
+   * @return  Memory budget in bytes.
+   */
+  public synchronized long getMemoryBudget()
+  {
+    return memoryBudget_;
+  }
+
+  /**
+   * Return the estimated total size of the results held strongly by
+   * this cache.
+   *
+   * @return  Estimated size in bytes. [0,memoryBudget].
+   */
+  public synchronized long getSize()
+  {
+    return size_;
+  }
+
+  /**
+   * Return the number of results in this cache, strongly or softly held.
+   * Softly held results may already have been reclaimed.
+   *
+   * @return  Number of results in this cache. [0,&gt;.
+   */
+  public synchronized int getNEntries()
+  {
+    return entries_.size();
+  }
+
+  /**
+   * Return the number of reads served from this cache.
+   *
+   * @return  Number of cache hits. [0,&gt;.
+   */
+  public long getNHits()
+  {
+    return nHits_.get();
+  }
+
+  /**
+   * Return the number of reads not served from this cache because the
+   * result was not cached, had expired or had been reclaimed.
+   *
+   * @return  Number of cache misses. [0,&gt;.
+   */
+  public long getNMisses()
+  {
+    return nMisses_.get();
+  }
+
+  /**
+   * Return the number of results evicted to soft references in order
+   * to stay within the memory budget.
+   *
+   * @return  Number of evictions. [0,&gt;.
+   */
+  public long getNEvictions()
+  {
+    return nEvictions_.get();
+  }
+
+  /**
+   * Remove the results of the specified reader class from this cache.
+   *
+   * @param readerClass  Reader class to remove results of. Non-null.
+   * @throws IllegalArgumentException  If readerClass is null.
+   */
+  public synchronized void invalidate(Class<?> readerClass)
+  {
+    if (readerClass == null)
+      throw new IllegalArgumentException("readerClass cannot be null");
+
+    for (Iterator<Entry> i = entries_.values().iterator(); i.hasNext(); ) {
+      Entry entry = i.next();
+      if (entry.readerClass_ == readerClass) {
+        size_ -= entry.getStrongSize();
+        i.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove all results from this cache. Counters are not reset.
+   */
+  public synchronized void clear()
+  {
+    entries_.clear();
+    size_ = 0;
+  }
+
+  /**
+   * Return the cached result of the specified key, if present and not
+   * expired.
+   *
+   * @param key  Key of result, being reader class and URL. Non-null.
+   * @return     The cached result, or null if none.
+   */
+  synchronized List<?> get(String key)
+  {
+    assert key != null : "key cannot be null";
+
+    Entry entry = entries_.get(key);
+    List<?> instances = entry != null ? entry.get() : null;
+
+    if (instances == null || System.currentTimeMillis() - entry.loadTime_ > getTtl(entry.readerClass_)) {
+      if (entry != null) {
+        size_ -= entry.getStrongSize();
+        entries_.remove(key);
+      }
+      nMisses_.incrementAndGet();
+      return null;
+    }
+
+    // Used again: Hold strongly if it fits the budget
+    if (entry.strongInstances_ == null && entry.size_ <= memoryBudget_) {
+      entry.strongInstances_ = instances;
+      size_ += entry.size_;
+      evict();
+    }
+
+    nHits_.incrementAndGet();
+    return instances;
+  }
+
+  /**
+   * Add the specified result to this cache.
+   *
+   * @param key          Key of result, being reader class and URL. Non-null.
+   * @param readerClass  Class of reader producing the result. Non-null.
+   * @param instances    Result to add. Unmodifiable. Non-null.
+   * @param loadTime     Time the result was read. Milliseconds since the epoch.
+   */
+  void put(String key, Class<?> readerClass, List<?> instances, long loadTime)
+  {
+    assert key != null : "key cannot be null";
+    assert readerClass != null : "readerClass cannot be null";
+    assert instances != null : "instances cannot be null";
+
+    // Estimate outside the lock
+    long size = estimateSize(instances);
+
+    synchronized (this) {
+      Entry oldEntry = entries_.remove(key);
+      if (oldEntry != null)
+        size_ -= oldEntry.getStrongSize();
+
+      Entry entry = new Entry(readerClass, instances, size, loadTime);
+      if (size > memoryBudget_)
+        entry.strongInstances_ = null;
+      else
+        size_ += size;
+
+      entries_.put(key, entry);
+      evict();
+    }
+  }
+
+  /**
+   * Evict the least recently used results to soft references until
+   * the strongly held results are within the memory budget.
+   */
+  private void evict()
+  {
+    assert Thread.holdsLock(this) : "Must hold lock";
+
+    for (Iterator<Entry> i = entries_.values().iterator(); i.hasNext() && size_ > memoryBudget_; ) {
+      Entry entry = i.next();
+      if (entry.strongInstances_ != null) {
+        entry.strongInstances_ = null;
+        size_ -= entry.size_;
+        nEvictions_.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Estimate the memory used by the specified instances, from the
+   * property values of a sample of them.
+   *
+   * @param instances  Instances to estimate size of. Non-null.
+   * @return           Estimated size in bytes. [0,&gt;.
+   */
+  @SuppressWarnings("unchecked")
+  static long estimateSize(List<?> instances)
+  {
+    assert instances != null : "instances cannot be null";
+
+    int nInstances = instances.size();
+    long listSize = OBJECT_SIZE + (long) nInstances * REFERENCE_SIZE;
+    if (nInstances == 0)
+      return listSize;
+
+    int nSamples = Math.min(nInstances, SAMPLE_SIZE);
+    long sampleSize = 0;
+    for (int i = 0; i < nSamples; i++) {
+      Object instance = instances.get((int) ((long) i * nInstances / nSamples));
+      if (!(instance instanceof NpdObject)) {
+        sampleSize += DEFAULT_INSTANCE_SIZE;
+        continue;
+      }
+
+      NpdObject npdObject = (NpdObject) instance;
+      sampleSize += OBJECT_SIZE;
+      for (NpdProperty<NpdObject> property : NpdProperties.getProperties((Class<NpdObject>) npdObject.getClass()))
+        sampleSize += REFERENCE_SIZE + estimateSize(property.getValue(npdObject));
+    }
+
+    return listSize + sampleSize * nInstances / nSamples;
+  }
+
+  /**
+   * Estimate the memory used by the specified property value, not
+   * including the reference to it.
+   *
+   * @param value  Value to estimate size of. May be null.
+   * @return       Estimated size in bytes. [0,&gt;.
+   */
+  private static long estimateSize(Object value)
+  {
+    if (value == null)
+      return 0;
+
+    if (value instanceof String)
+      return OBJECT_SIZE * 3 + ((String) value).length() * 2L;
+
+    if (value instanceof Date)
+      return OBJECT_SIZE + 8;
+
+    if (value instanceof Number || value instanceof Boolean)
+      return OBJECT_SIZE + 8;
+
+    return DEFAULT_INSTANCE_SIZE;
+  }
+
+  /**
+   * A cached result.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class Entry
+  {
+    /** Class of the reader producing the result. Non-null. */
+    private final Class<?> readerClass_;
+
+    /** The result if strongly held, null if only softly held. */
+    private List<?> strongInstances_;
+
+    /** The result, softly held. Non-null. */
+    private final SoftReference<List<?>> softInstances_;
+
+    /** Estimated size of the result. Bytes. */
+    private final long size_;
+
+    /** Time the result was read. Milliseconds since the epoch. */
+    private final long loadTime_;
+
+    /**
+     * Create a strongly held cache entry.
+     *
+     * @param readerClass  Class of the reader producing the result. Non-null.
+     * @param instances    The result. Non-null.
+     * @param size         Estimated size of the result.
+     * @param loadTime     Time the result was read.
+     */
+    Entry(Class<?> readerClass, List<?> instances, long size, long loadTime)
+    {
+      readerClass_ = readerClass;
+      strongInstances_ = instances;
+      softInstances_ = new SoftReference<>(instances);
+      size_ = size;
+      loadTime_ = loadTime;
+    }
+
+    /**
+     * Return the result of this entry.
+     *
+     * @return  The result, or null if reclaimed.
+     */
+    List<?> get()
+    {
+      return strongInstances_ != null ? strongInstances_ : softInstances_.get();
+    }
+
+    /**
+     * Return the size this entry counts in the memory budget.
+     *
+     * @return  Size of the result if strongly held, 0 otherwise.
+     */
+    long getStrongSize()
+    {
+      return strongInstances_ != null ? size_ : 0;
+    }
+  }
+}
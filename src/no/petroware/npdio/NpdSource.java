@@ -0,0 +1,521 @@
+package no.petroware.npdio;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A source of an NPD CSV file: an HTTP (or other) URL, a local file,
+ * a class path resource or a byte array in memory. All sources are
+ * read by the same parser, so an offline dump of an NPD table reads
+ * exactly as the online table:
+ *
+ * <pre>
+ *   NpdSource source = NpdSource.newFileSource(new File("/data/npd/field.csv"));
+ *   List&lt;NpdField&gt; fields = new NpdFieldReader(source).read();
+ * </pre>
+ *
+ * Large local files are memory mapped, leaving the buffering to the
+ * operating system.
+ * <p>
+ * Concurrent reads and cached results of a reader class are shared by
+ * source, see {@link NpdReader#read}. URL and resource sources are
+ * identified by location, file sources also by size and modification
+ * time so that a replaced file is read anew, and byte array sources by
+ * instance.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public abstract class NpdSource
+{
+  /** Files of at least this size are memory mapped. */
+  private static final long MAP_THRESHOLD = 1024L * 1024L;
+
+  /** Class path location of embedded snapshots of the NPD tables. */
+  public static final String EMBEDDED_PATH = "/no/petroware/npdio/embedded/";
+
+  /** Sequence number of byte array sources, making them unique. */
+  private static final AtomicLong byteSourceNo_ = new AtomicLong();
+
+  /**
+   * Create a source. Sources are created by the factory methods of
+   * this class only.
+   */
+  private NpdSource()
+  {
+    // Nothing
+  }
+
+  /**
+   * Create a source of the specified URL.
+   *
+   * @param url  URL of file. Non-null.
+   * @return     The source. Never null.
+   * @throws IllegalArgumentException  If url is null.
+   */
+  public static NpdSource newUrlSource(String url)
+  {
+    if (url == null)
+      throw new IllegalArgumentException("url cannot be null");
+
+    return new UrlSource(url);
+  }
+
+  /**
+   * Create a source of the specified local file.
+   *
+   * @param file  File to read. Non-null.
+   * @return      The source. Never null.
+   * @throws IllegalArgumentException  If file is null.
+   */
+  public static NpdSource newFileSource(File file)
+  {
+    if (file == null)
+      throw new IllegalArgumentException("file cannot be null");
+
+    return new FileSource(file.getAbsoluteFile());
+  }
+
+  /**
+   * Create a source of the specified class path resource. The name is
+   * resolved as by {@link Class#getResource}, relative to the package
+   * of the specified class unless it starts with "/".
+   *
+   * @param clazz  Class to resolve the resource by. Non-null.
+   * @param name   Name of resource. Non-null.
+   * @return       The source. Never null.
+   * @throws IllegalArgumentException  If clazz or name is null.
+   */
+  public static NpdSource newResourceSource(Class<?> clazz, String name)
+  {
+    if (clazz == null)
+      throw new IllegalArgumentException("clazz cannot be null");
+
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+
+    return new ResourceSource(clazz, name);
+  }
+
+  /**
+   * Create a source of the specified bytes. The bytes are not copied,
+   * and should not be modified while the source is in use.
+   *
+   * @param bytes  Content of file, UTF-8 encoded. Non-null.
+   * @return       The source. Never null.
+   * @throws IllegalArgumentException  If bytes is null.
+   */
+  public static NpdSource newByteSource(byte[] bytes)
+  {
+    if (bytes == null)
+      throw new IllegalArgumentException("bytes cannot be null");
+
+    return new ByteSource(bytes, byteSourceNo_.incrementAndGet());
+  }
+
+  /**
+   * Create a source decompressing the GZIP content of the specified
+   * source, like a compressed local dump.
+   *
+   * @param source  Source of GZIP compressed file. Non-null.
+   * @return        The source. Never null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public static NpdSource newGzipSource(NpdSource source)
+  {
+    if (source == null)
+      throw new IllegalArgumentException("source cannot be null");
+
+    return new GzipSource(source);
+  }
+
+  /**
+   * Return the class path resource name of the embedded snapshot of
+   * the table of the specified reader class.
+   *
+   * @param readerClass  Reader class to get resource name of. Non-null.
+   * @return             Absolute resource name. Never null.
+   * @throws IllegalArgumentException  If readerClass is null.
+   */
+  public static String getEmbeddedResourceName(Class<?> readerClass)
+  {
+    if (readerClass == null)
+      throw new IllegalArgumentException("readerClass cannot be null");
+
+    return EMBEDDED_PATH + readerClass.getSimpleName() + ".csv.gz";
+  }
+
+  /**
+   * Return the source of the embedded snapshot of the table of the
+   * specified reader class. Embedded snapshots are GZIP compressed
+   * copies of the NPD files, bundled as class path resources by
+   * {@link no.petroware.npdio.snapshot.NpdEmbeddedSnapshotBuilder}.
+   *
+   * @param readerClass  Reader class to get embedded snapshot of. Non-null.
+   * @return             Source of the embedded snapshot, or null if
+   *                     there is none on the class path.
+   * @throws IllegalArgumentException  If readerClass is null.
+   */
+  public static NpdSource getEmbeddedSource(Class<?> readerClass)
+  {
+    String name = getEmbeddedResourceName(readerClass);
+    if (readerClass.getResource(name) == null)
+      return null;
+
+    return newGzipSource(newResourceSource(readerClass, name));
+  }
+
+  /**
+   * Open a stream of the content of this source.
+   *
+   * @return  Stream of the content. Must be closed by the caller. Never null.
+   * @throws IOException  If the source cannot be opened.
+   */
+  public abstract InputStream open()
+    throws IOException;
+
+  /**
+   * Return the key identifying the current content of this source,
+   * as used for sharing reads and cached results.
+   *
+   * @return  Key of this source. Never null.
+   */
+  abstract String getKey();
+
+  /**
+   * A source of a URL.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class UrlSource extends NpdSource
+  {
+    /** URL of file. Non-null. */
+    private final String url_;
+
+    /**
+     * Create a URL source.
+     *
+     * @param url  URL of file. Non-null.
+     */
+    UrlSource(String url)
+    {
+      assert url != null : "url cannot be null";
+      url_ = url;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream open()
+      throws IOException
+    {
+      // Create URL instance from the specified string
+      URL url;
+      try {
+        url = new URL(url_);
+      }
+      catch (MalformedURLException exception) {
+        throw new IOException("Malformed URL: " + url_, exception);
+      }
+
+      return url.openStream();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    String getKey()
+    {
+      return url_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+      return url_;
+    }
+  }
+
+  /**
+   * A source of a local file.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class FileSource extends NpdSource
+  {
+    /** File to read. Absolute. Non-null. */
+    private final File file_;
+
+    /**
+     * Create a file source.
+     *
+     * @param file  File to read. Absolute. Non-null.
+     */
+    FileSource(File file)
+    {
+      assert file != null : "file cannot be null";
+      file_ = file;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream open()
+      throws IOException
+    {
+      if (!file_.isFile())
+        throw new FileNotFoundException("No such file: " + file_);
+
+      long size = file_.length();
+      if (size < MAP_THRESHOLD || size > Integer.MAX_VALUE)
+        return new FileInputStream(file_);
+
+      // The mapping stays valid after the channel is closed
+      try (FileChannel channel = FileChannel.open(file_.toPath(), StandardOpenOption.READ)) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        return new ByteBufferInputStream(buffer);
+      }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    String getKey()
+    {
+      return "file:" + file_ + " " + file_.length() + " " + file_.lastModified();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+      return file_.toString();
+    }
+  }
+
+  /**
+   * A source of a class path resource.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class ResourceSource extends NpdSource
+  {
+    /** Class to resolve the resource by. Non-null. */
+    private final Class<?> clazz_;
+
+    /** Name of resource. Non-null. */
+    private final String name_;
+
+    /**
+     * Create a resource source.
+     *
+     * @param clazz  Class to resolve the resource by. Non-null.
+     * @param name   Name of resource. Non-null.
+     */
+    ResourceSource(Class<?> clazz, String name)
+    {
+      assert clazz != null : "clazz cannot be null";
+      assert name != null : "name cannot be null";
+
+      clazz_ = clazz;
+      name_ = name;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream open()
+      throws IOException
+    {
+      InputStream stream = clazz_.getResourceAsStream(name_);
+      if (stream == null)
+        throw new FileNotFoundException("No such resource: " + name_);
+
+      return stream;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    String getKey()
+    {
+      URL url = clazz_.getResource(name_);
+      return url != null ? url.toString() : "resource:" + clazz_.getName() + " " + name_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+      return "resource " + name_;
+    }
+  }
+
+  /**
+   * A source of a byte array.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class ByteSource extends NpdSource
+  {
+    /** Content of file. Non-null. */
+    private final byte[] bytes_;
+
+    /** Unique number of this source. */
+    private final long sourceNo_;
+
+    /**
+     * Create a byte array source.
+     *
+     * @param bytes     Content of file. Non-null.
+     * @param sourceNo  Unique number of this source.
+     */
+    ByteSource(byte[] bytes, long sourceNo)
+    {
+      assert bytes != null : "bytes cannot be null";
+
+      bytes_ = bytes;
+      sourceNo_ = sourceNo;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream open()
+    {
+      return new ByteArrayInputStream(bytes_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    String getKey()
+    {
+      return "bytes:" + sourceNo_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+      return bytes_.length + " bytes";
+    }
+  }
+
+  /**
+   * A source decompressing the GZIP content of another source.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class GzipSource extends NpdSource
+  {
+    /** Size of the inflater input buffer. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Source of compressed content. Non-null. */
+    private final NpdSource source_;
+
+    /**
+     * Create a GZIP source.
+     *
+     * @param source  Source of compressed content. Non-null.
+     */
+    GzipSource(NpdSource source)
+    {
+      assert source != null : "source cannot be null";
+      source_ = source;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream open()
+      throws IOException
+    {
+      InputStream stream = source_.open();
+      try {
+        return new GZIPInputStream(stream, BUFFER_SIZE);
+      }
+      catch (IOException exception) {
+        stream.close();
+        throw exception;
+      }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    String getKey()
+    {
+      return "gzip:" + source_.getKey();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+      return source_.toString();
+    }
+  }
+
+  /**
+   * An input stream of the remaining bytes of a byte buffer.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class ByteBufferInputStream extends InputStream
+  {
+    /** The bytes to read. Non-null. */
+    private final ByteBuffer buffer_;
+
+    /**
+     * Create a stream of the specified buffer.
+     *
+     * @param buffer  Buffer to read, from its position to its limit. Non-null.
+     */
+    ByteBufferInputStream(ByteBuffer buffer)
+    {
+      assert buffer != null : "buffer cannot be null";
+      buffer_ = buffer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int read()
+    {
+      return buffer_.hasRemaining() ? buffer_.get() & 0xff : -1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int read(byte[] bytes, int offset, int length)
+    {
+      if (bytes == null)
+        throw new NullPointerException("bytes cannot be null");
+
+      if (offset < 0 || length < 0 || length > bytes.length - offset)
+        throw new IndexOutOfBoundsException("Invalid range: " + offset + "+" + length);
+
+      if (length == 0)
+        return 0;
+
+      if (!buffer_.hasRemaining())
+        return -1;
+
+      int nBytes = Math.min(length, buffer_.remaining());
+      buffer_.get(bytes, offset, nBytes);
+      return nBytes;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int available()
+    {
+      return buffer_.remaining();
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package no.petroware.npdio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An input stream downloading its source ahead of the reader on a
+ * thread of its own, so that network I/O and parsing overlap.
+ * <p>
+ * The downloading thread reads into a bounded ring of reusable buffers
+ * and hands them to the reading thread in order. When all buffers are
+ * full the download waits for the reader, so memory use is bounded
+ * regardless of the size of the file.
+ * <p>
+ * Read errors of the source are reported to the reader once the bytes
+ * read before them are consumed. Closing the stream closes the source
+ * and stops the download.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class PipelinedInputStream extends InputStream
+{
+  /** Default number of buffers of the ring. */
+  static final int N_BUFFERS = 8;
+
+  /** Default size of each buffer of the ring. */
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Marks the end of the source in the queue of filled buffers. */
+  private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+  /** The source being downloaded. Non-null. */
+  private final InputStream source_;
+
+  /** Buffers ready to be filled. Non-null. */
+  private final BlockingQueue<ByteBuffer> freeBuffers_ = new LinkedBlockingQueue<>();
+
+  /** Buffers filled and ready to be read, ending with END. Non-null. */
+  private final BlockingQueue<ByteBuffer> filledBuffers_;
+
+  /** Buffer currently being read. Null if none. */
+  private ByteBuffer buffer_;
+
+  /** Error of the download, reported after the bytes read before it. Null if none. */
+  private volatile IOException error_;
+
+  /** Indicates if the stream is closed. */
+  private volatile boolean isClosed_;
+
+  /**
+   * Create a pipelined stream of the specified source and start the
+   * download.
+   *
+   * @param source      Stream to download. Non-null.
+   * @param executor    Executor running the download. Non-null.
+   * @param nBuffers    Number of buffers of the ring. [1,&gt;.
+   * @param bufferSize  Size of each buffer. [1,&gt;.
+   * @throws IOException  If the download cannot be started.
+   */
+  PipelinedInputStream(InputStream source, Executor executor, int nBuffers, int bufferSize)
+    throws IOException
+  {
+    assert source != null : "source cannot be null";
+    assert executor != null : "executor cannot be null";
+    assert nBuffers > 0 : "Invalid nBuffers: " + nBuffers;
+    assert bufferSize > 0 : "Invalid bufferSize: " + bufferSize;
+
+    source_ = source;
+    filledBuffers_ = new ArrayBlockingQueue<>(nBuffers + 1);
+
+    for (int i = 0; i < nBuffers; i++)
+      freeBuffers_.add(ByteBuffer.allocate(bufferSize));
+
+    try {
+      executor.execute(this::download);
+    }
+    catch (RejectedExecutionException exception) {
+      throw new IOException("Unable to start download", exception);
+    }
+  }
+
+  /**
+   * Create a pipelined stream of the specified source with the default
+   * ring of buffers, and start the download.
+   *
+   * @param source    Stream to download. Non-null.
+   * @param executor  Executor running the download. Non-null.
+   * @throws IOException  If the download cannot be started.
+   */
+  PipelinedInputStream(InputStream source, Executor executor)
+    throws IOException
+  {
+    this(source, executor, N_BUFFERS, BUFFER_SIZE);
+  }
+
+  /**
+   * Download the source into the ring of buffers until the end of the
+   * source, an error or the stream is closed. Run by the executor.
+   */
+  private void download()
+  {
+    try {
+      while (!isClosed_) {
+        ByteBuffer buffer = freeBuffers_.take();
+        if (isClosed_)
+          break;
+
+        // Hand over whatever one read gives, so the reader never waits
+        // for a full buffer on a slow link. Buffer methods are called
+        // through Buffer, as ByteBuffer overrides them from Java 9 only.
+        ((Buffer) buffer).clear();
+        int nBytes = source_.read(buffer.array(), 0, buffer.capacity());
+        if (nBytes == -1)
+          break;
+
+        ((Buffer) buffer).limit(nBytes);
+        filledBuffers_.put(buffer);
+      }
+    }
+    catch (IOException exception) {
+      if (!isClosed_)
+        error_ = exception;
+    }
+    catch (InterruptedException exception) {
+      error_ = new InterruptedIOException("Download interrupted");
+    }
+    finally {
+      closeSource();
+
+      // There is always room for END, as the ring holds one buffer less
+      filledBuffers_.offer(END);
+    }
+  }
+
+  /**
+   * Make the next filled buffer current, waiting for the download if
+   * necessary.
+   *
+   * @return  True if there are bytes to read, false at the end of the source.
+   * @throws IOException  If the download failed or the wait is interrupted.
+   */
+  private boolean nextBuffer()
+    throws IOException
+  {
+    if (isClosed_)
+      throw new IOException("Stream closed");
+
+    if (buffer_ == END)
+      return false;
+
+    while (buffer_ == null || !buffer_.hasRemaining()) {
+      if (buffer_ != null)
+        freeBuffers_.add(buffer_);
+
+      try {
+        buffer_ = filledBuffers_.take();
+      }
+      catch (InterruptedException exception) {
+        buffer_ = null;
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Read interrupted");
+      }
+
+      if (buffer_ == END) {
+        IOException error = error_;
+        if (error != null)
+          throw new IOException(error.getMessage(), error);
+
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int read()
+    throws IOException
+  {
+    return nextBuffer() ? buffer_.get() & 0xff : -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int read(byte[] bytes, int offset, int length)
+    throws IOException
+  {
+    if (bytes == null)
+      throw new NullPointerException("bytes cannot be null");
+
+    if (offset < 0 || length < 0 || length > bytes.length - offset)
+      throw new IndexOutOfBoundsException("Invalid range: " + offset + "+" + length);
+
+    if (length == 0)
+      return 0;
+
+    if (!nextBuffer())
+      return -1;
+
+    int nBytes = Math.min(length, buffer_.remaining());
+    buffer_.get(bytes, offset, nBytes);
+    return nBytes;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int available()
+  {
+    return buffer_ != null ? buffer_.remaining() : 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close()
+  {
+    if (isClosed_)
+      return;
+
+    isClosed_ = true;
+
+    // Unblock a download waiting for a free buffer or for the source
+    freeBuffers_.add(END);
+    closeSource();
+  }
+
+  /**
+   * Close the source, ignoring errors.
+   */
+  private void closeSource()
+  {
+    try {
+      source_.close();
+    }
+    catch (IOException exception) {
+      // Ignore. The download is over anyway.
+    }
+  }
+}
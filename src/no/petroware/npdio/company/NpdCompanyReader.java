@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * NPD company reader.
@@ -57,6 +60,31 @@ public final class NpdCompanyReader extends NpdReader<NpdCompany>
     super(url);
   }
 
+  /**
+   * Create a reader for NPD companies.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdCompanyReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD companies at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdCompanyReader newDefaultReader()
+  {
+    NpdCompanyReader reader = new NpdCompanyReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdCompanyReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD companies.
    * <p>
@@ -73,10 +101,36 @@ public final class NpdCompanyReader extends NpdReader<NpdCompany>
   public static List<NpdCompany> readAll()
     throws IOException
   {
-    NpdCompanyReader reader = new NpdCompanyReader(URL);
+    NpdCompanyReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD companies asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD companies. Never null.
+   */
+  public static CompletableFuture<List<NpdCompany>> readAllAsync()
+  {
+    NpdCompanyReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD companies asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD companies. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdCompany>> readAllAsync(Executor executor)
+  {
+    NpdCompanyReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD company instance from the given tokens.
    *
@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * Reader for NPD discoveries.
@@ -75,6 +78,31 @@ public final class NpdDiscoveryReader extends NpdReader<NpdDiscovery>
     super(url);
   }
 
+  /**
+   * Create a reader for NPD discoveries.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdDiscoveryReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD discoveries at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdDiscoveryReader newDefaultReader()
+  {
+    NpdDiscoveryReader reader = new NpdDiscoveryReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdDiscoveryReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD discoveries.
    * <p>
@@ -91,10 +119,36 @@ public final class NpdDiscoveryReader extends NpdReader<NpdDiscovery>
   public static List<NpdDiscovery> readAll()
     throws IOException
   {
-    NpdDiscoveryReader reader = new NpdDiscoveryReader(URL);
+    NpdDiscoveryReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD discoveries asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD discoveries. Never null.
+   */
+  public static CompletableFuture<List<NpdDiscovery>> readAllAsync()
+  {
+    NpdDiscoveryReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD discoveries asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD discoveries. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdDiscovery>> readAllAsync(Executor executor)
+  {
+    NpdDiscoveryReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD discovery instance from the given tokens.
    *
@@ -0,0 +1,419 @@
+package no.petroware.npdio.export;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal FlatBuffers encoder, as needed for the Arrow IPC metadata.
+ * <p>
+ * Clients build a tree of {@link Table} nodes which is then encoded by
+ * {@link #encode}. In contrast to the regular FlatBuffers builder which
+ * works back to front, the buffer is written front to back: a table is
+ * written with its vtable immediately in front of it, and the objects it
+ * refers to are written after it and the offsets patched. All scalars
+ * are aligned to their size relative to the start of the buffer.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class FlatBuffer
+{
+  /** The buffer being written. */
+  private byte[] bytes_ = new byte[1024];
+
+  /** Current write position. */
+  private int position_ = 0;
+
+  /**
+   * Create a FlatBuffer encoder.
+   */
+  private FlatBuffer()
+  {
+    // Nothing
+  }
+
+  /**
+   * Encode the specified table as the root of a FlatBuffer.
+   *
+   * @param root  Root table to encode. Non-null.
+   * @return      The encoded buffer, padded to a multiple of 8 bytes. Never null.
+   */
+  static byte[] encode(Table root)
+  {
+    assert root != null : "root cannot be null";
+
+    FlatBuffer buffer = new FlatBuffer();
+
+    // Root offset, patched below
+    buffer.putInt(0);
+
+    int rootPosition = root.write(buffer);
+    buffer.patchOffset(0, rootPosition);
+
+    buffer.align(8);
+    return Arrays.copyOf(buffer.bytes_, buffer.position_);
+  }
+
+  /**
+   * Ensure there is room for the specified number of bytes.
+   *
+   * @param nBytes  Number of bytes to make room for. [0,&gt;.
+   */
+  private void ensureCapacity(int nBytes)
+  {
+    if (position_ + nBytes > bytes_.length)
+      bytes_ = Arrays.copyOf(bytes_, Math.max(2 * bytes_.length, position_ + nBytes));
+  }
+
+  /**
+   * Pad with zeros to the specified alignment.
+   *
+   * @param alignment  Alignment in bytes. 1, 2, 4 or 8.
+   */
+  private void align(int alignment)
+  {
+    int nPadding = (alignment - position_ % alignment) % alignment;
+    ensureCapacity(nPadding);
+    position_ += nPadding;
+  }
+
+  /**
+   * Write a little endian value of the specified size at the specified position.
+   *
+   * @param position  Position to write at. [0,&gt;.
+   * @param value     Value to write.
+   * @param size      Number of bytes to write. 1, 2, 4 or 8.
+   */
+  private void set(int position, long value, int size)
+  {
+    for (int i = 0; i < size; i++)
+      bytes_[position + i] = (byte) (value >>> (8 * i));
+  }
+
+  /**
+   * Append a little endian 16-bit value.
+   *
+   * @param value  Value to append.
+   */
+  private void putShort(int value)
+  {
+    ensureCapacity(2);
+    set(position_, value, 2);
+    position_ += 2;
+  }
+
+  /**
+   * Append a little endian 32-bit value.
+   *
+   * @param value  Value to append.
+   */
+  private void putInt(int value)
+  {
+    ensureCapacity(4);
+    set(position_, value, 4);
+    position_ += 4;
+  }
+
+  /**
+   * Set the offset at the specified position to refer to the specified target.
+   *
+   * @param offsetPosition  Position of the offset. [0,&gt;.
+   * @param targetPosition  Position of the referred object. &gt; offsetPosition.
+   */
+  private void patchOffset(int offsetPosition, int targetPosition)
+  {
+    assert targetPosition > offsetPosition : "Offsets must point forward";
+    set(offsetPosition, targetPosition - offsetPosition, 4);
+  }
+
+  /**
+   * An object that can be referred to from a table.
+   */
+  abstract static class Node
+  {
+    /**
+     * Write this node to the specified buffer.
+     *
+     * @param buffer  Buffer to write to. Non-null.
+     * @return        Position of the node, as referred to by offsets.
+     */
+    abstract int write(FlatBuffer buffer);
+  }
+
+  /**
+   * A FlatBuffers table. Fields are identified by their slot number,
+   * being the order in which they are declared in the schema.
+   */
+  static final class Table extends Node
+  {
+    /** Size in bytes of each field. 0 if absent. Indexed by slot. */
+    private final int[] sizes_;
+
+    /** Scalar value of each field. Indexed by slot. */
+    private final long[] values_;
+
+    /** Referred node of each field. Null if scalar. Indexed by slot. */
+    private final Node[] nodes_;
+
+    /**
+     * Create a table.
+     *
+     * @param nSlots  Number of fields in the table schema. [0,&gt;.
+     */
+    Table(int nSlots)
+    {
+      sizes_ = new int[nSlots];
+      values_ = new long[nSlots];
+      nodes_ = new Node[nSlots];
+    }
+
+    /**
+     * Set a scalar field. Scalars are always written, also if equal
+     * to the schema default.
+     *
+     * @param slot   Field slot. [0,nSlots&gt;.
+     * @param value  Value of field.
+     * @param size   Size of field in bytes. 1, 2, 4 or 8.
+     * @return       This table. Never null.
+     */
+    Table add(int slot, long value, int size)
+    {
+      sizes_[slot] = size;
+      values_[slot] = value;
+      return this;
+    }
+
+    /**
+     * Set a boolean field.
+     *
+     * @param slot   Field slot. [0,nSlots&gt;.
+     * @param value  Value of field.
+     * @return       This table. Never null.
+     */
+    Table addBoolean(int slot, boolean value)
+    {
+      return add(slot, value ? 1 : 0, 1);
+    }
+
+    /**
+     * Set an offset field referring to the specified node.
+     *
+     * @param slot  Field slot. [0,nSlots&gt;.
+     * @param node  Node to refer to. Non-null.
+     * @return      This table. Never null.
+     */
+    Table add(int slot, Node node)
+    {
+      assert node != null : "node cannot be null";
+
+      sizes_[slot] = 4;
+      nodes_[slot] = node;
+      return this;
+    }
+
+    /**
+     * Set a string field.
+     *
+     * @param slot  Field slot. [0,nSlots&gt;.
+     * @param text  Value of field. Non-null.
+     * @return      This table. Never null.
+     */
+    Table add(int slot, String text)
+    {
+      return add(slot, new StringNode(text));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int write(FlatBuffer buffer)
+    {
+      int nSlots = sizes_.length;
+
+      //
+      // Lay out the fields, largest first, after the vtable offset
+      //
+      int[] fieldOffsets = new int[nSlots];
+      int tableSize = 4;
+      for (int size = 8; size >= 1; size /= 2) {
+        for (int slot = 0; slot < nSlots; slot++) {
+          if (sizes_[slot] == size) {
+            tableSize = (tableSize + size - 1) / size * size;
+            fieldOffsets[slot] = tableSize;
+            tableSize += size;
+          }
+        }
+      }
+      tableSize = (tableSize + 3) / 4 * 4;
+
+      //
+      // The vtable. Placed so that the table following it is 8 aligned.
+      //
+      int vtableSize = 4 + 2 * nSlots;
+      buffer.align(2);
+      while ((buffer.position_ + vtableSize) % 8 != 0)
+        buffer.putShort(0);
+
+      int vtablePosition = buffer.position_;
+      buffer.putShort(vtableSize);
+      buffer.putShort(tableSize);
+      for (int slot = 0; slot < nSlots; slot++)
+        buffer.putShort(fieldOffsets[slot]);
+
+      //
+      // The table
+      //
+      int tablePosition = buffer.position_;
+      assert tablePosition % 8 == 0 : "Misaligned table";
+
+      buffer.ensureCapacity(tableSize);
+      Arrays.fill(buffer.bytes_, tablePosition, tablePosition + tableSize, (byte) 0);
+      buffer.set(tablePosition, tablePosition - vtablePosition, 4);
+      for (int slot = 0; slot < nSlots; slot++) {
+        if (sizes_[slot] > 0 && nodes_[slot] == null)
+          buffer.set(tablePosition + fieldOffsets[slot], values_[slot], sizes_[slot]);
+      }
+      buffer.position_ += tableSize;
+
+      //
+      // The referred nodes
+      //
+      for (int slot = 0; slot < nSlots; slot++) {
+        if (nodes_[slot] != null) {
+          int nodePosition = nodes_[slot].write(buffer);
+          buffer.patchOffset(tablePosition + fieldOffsets[slot], nodePosition);
+        }
+      }
+
+      return tablePosition;
+    }
+  }
+
+  /**
+   * A vector of tables.
+   */
+  static final class TableVector extends Node
+  {
+    /** The tables of the vector. Non-null. */
+    private final List<Table> tables_;
+
+    /**
+     * Create a table vector.
+     *
+     * @param tables  Tables of the vector. Non-null.
+     */
+    TableVector(List<Table> tables)
+    {
+      assert tables != null : "tables cannot be null";
+      tables_ = new ArrayList<>(tables);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int write(FlatBuffer buffer)
+    {
+      buffer.align(4);
+
+      int vectorPosition = buffer.position_;
+      buffer.putInt(tables_.size());
+      for (int i = 0; i < tables_.size(); i++)
+        buffer.putInt(0);
+
+      for (int i = 0; i < tables_.size(); i++) {
+        int tablePosition = tables_.get(i).write(buffer);
+        buffer.patchOffset(vectorPosition + 4 + 4 * i, tablePosition);
+      }
+
+      return vectorPosition;
+    }
+  }
+
+  /**
+   * A vector of structs consisting of 64-bit fields only, like the
+   * Arrow FieldNode, Buffer and Block structs.
+   */
+  static final class StructVector extends Node
+  {
+    /** The struct fields, struct by struct. Non-null. */
+    private final long[] values_;
+
+    /** Number of structs. */
+    private final int nStructs_;
+
+    /**
+     * Create a struct vector.
+     *
+     * @param values    The struct fields, struct by struct. Non-null.
+     * @param nStructs  Number of structs. [0,&gt;.
+     */
+    StructVector(long[] values, int nStructs)
+    {
+      assert values != null : "values cannot be null";
+      assert nStructs == 0 || values.length % nStructs == 0 : "Invalid struct size";
+
+      values_ = values.clone();
+      nStructs_ = nStructs;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int write(FlatBuffer buffer)
+    {
+      // The elements must be 8 aligned, i.e. the length just in front of them
+      buffer.align(4);
+      if (buffer.position_ % 8 == 0)
+        buffer.putInt(0);
+
+      int vectorPosition = buffer.position_;
+      buffer.putInt(nStructs_);
+
+      buffer.ensureCapacity(8 * values_.length);
+      for (long value : values_) {
+        buffer.set(buffer.position_, value, 8);
+        buffer.position_ += 8;
+      }
+
+      return vectorPosition;
+    }
+  }
+
+  /**
+   * A UTF-8 string.
+   */
+  static final class StringNode extends Node
+  {
+    /** The encoded string. Non-null. */
+    private final byte[] bytes_;
+
+    /**
+     * Create a string node.
+     *
+     * @param text  Text of node. Non-null.
+     */
+    StringNode(String text)
+    {
+      assert text != null : "text cannot be null";
+      bytes_ = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int write(FlatBuffer buffer)
+    {
+      buffer.align(4);
+
+      int stringPosition = buffer.position_;
+      buffer.putInt(bytes_.length);
+
+      // Content and null terminator
+      buffer.ensureCapacity(bytes_.length + 1);
+      System.arraycopy(bytes_, 0, buffer.bytes_, buffer.position_, bytes_.length);
+      buffer.position_ += bytes_.length;
+      buffer.bytes_[buffer.position_++] = 0;
+
+      return stringPosition;
+    }
+  }
+}
@@ -0,0 +1,1321 @@
+package no.petroware.npdio.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperties;
+import no.petroware.npdio.NpdProperty;
+
+/**
+ * Streaming writer of NPD objects in the Apache Arrow IPC format.
+ * <p>
+ * Both the IPC <em>stream</em> format and the IPC <em>file</em> format
+ * (also known as Feather V2) are supported:
+ *
+ * <pre>
+ *   try (NpdArrowWriter&lt;NpdField&gt; writer = new NpdArrowWriter&lt;&gt;(outputStream, NpdField.class, true)) {
+ *     writer.writeAll(fields);
+ *   }
+ * </pre>
+ *
+ * Each property becomes a column named by its NPD column name (or the
+ * property name if it has no NPD column) with the following types:
+ *
+ * <table summary="Arrow types">
+ *   <tr><td>String</td>  <td>Utf8, or Utf8 dictionary with Int32 indices</td></tr>
+ *   <tr><td>Date</td>    <td>Date32 (days since epoch in the default time zone)</td></tr>
+ *   <tr><td>Double</td>  <td>Float64</td></tr>
+ *   <tr><td>Integer</td> <td>Int32</td></tr>
+ *   <tr><td>Long</td>    <td>Int64</td></tr>
+ *   <tr><td>Boolean</td> <td>Bool</td></tr>
+ * </table>
+ *
+ * Absent values are recorded in validity bitmaps, omitted for columns
+ * of a batch with no absent values.
+ * <p>
+ * Objects are collected into record batches of a fixed number of rows,
+ * so only one batch is held in memory at any time. The columns grow with
+ * the rows of the batch, so small tables take little memory regardless
+ * of the batch size. A string column is
+ * dictionary encoded if the first batch has at most half as many distinct
+ * values as present values. New dictionary values of later batches are
+ * written as dictionary deltas ahead of the batch.
+ * <p>
+ * The writer is self-contained and has no dependencies on the Arrow
+ * libraries.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <T>  Type of objects being written.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdArrowWriter<T extends NpdObject> implements Closeable
+{
+  /** Default number of rows per record batch. */
+  public static final int DEFAULT_BATCH_SIZE = 65536;
+
+  /** Number of rows the columns initially have room for. */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Magic bytes at start and end of the IPC file format. */
+  private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+
+  /** MetadataVersion.V5 */
+  private static final int METADATA_VERSION = 4;
+
+  /** MessageHeader.Schema */
+  private static final int SCHEMA_MESSAGE = 1;
+
+  /** MessageHeader.DictionaryBatch */
+  private static final int DICTIONARY_BATCH_MESSAGE = 2;
+
+  /** MessageHeader.RecordBatch */
+  private static final int RECORD_BATCH_MESSAGE = 3;
+
+  /** Type.Int */
+  private static final int INT_TYPE = 2;
+
+  /** Type.FloatingPoint */
+  private static final int FLOATING_POINT_TYPE = 3;
+
+  /** Type.Utf8 */
+  private static final int UTF8_TYPE = 5;
+
+  /** Type.Bool */
+  private static final int BOOL_TYPE = 6;
+
+  /** Type.Date */
+  private static final int DATE_TYPE = 8;
+
+  /** Milliseconds per day. */
+  private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+  /** Stream to write to. Non-null. */
+  private final OutputStream outputStream_;
+
+  /** True to write the IPC file format, false for the stream format. */
+  private final boolean isFileFormat_;
+
+  /** Number of rows per record batch. */
+  private final int batchSize_;
+
+  /** The properties to write. Non-null. */
+  private final List<NpdProperty<T>> properties_;
+
+  /** Accessor of each property. Non-null. */
+  private final Function<T, Object>[] accessors_;
+
+  /** Column of each property. Non-null. */
+  private final Column[] columns_;
+
+  /** Number of rows in the current batch. */
+  private int nRows_ = 0;
+
+  /** Number of rows the columns have room for. [1,batchSize]. */
+  private int capacity_;
+
+  /** Number of bytes written so far. */
+  private long position_ = 0;
+
+  /** Indicate if the schema has been written. */
+  private boolean isStarted_ = false;
+
+  /** Number of objects written. */
+  private long nObjects_ = 0;
+
+  /** Dictionary blocks of the file format footer. Offset, metadata length, body length per block. */
+  private final List<long[]> dictionaryBlocks_ = new ArrayList<>();
+
+  /** Record batch blocks of the file format footer. Offset, metadata length, body length per block. */
+  private final List<long[]> recordBatchBlocks_ = new ArrayList<>();
+
+  /**
+   * Create an Arrow writer for the specified properties.
+   *
+   * @param outputStream  Stream to write to. Non-null.
+   * @param properties    Properties to write, in column order. Non-null.
+   * @param isFileFormat  True to write the IPC file format, false to
+   *                      write the IPC stream format.
+   * @param batchSize     Number of rows per record batch. [1,&gt;.
+   * @throws IllegalArgumentException  If outputStream or properties is null
+   *                      or batchSize is less than 1.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public NpdArrowWriter(OutputStream outputStream,
+                        List<NpdProperty<T>> properties,
+                        boolean isFileFormat,
+                        int batchSize)
+  {
+    if (outputStream == null)
+      throw new IllegalArgumentException("outputStream cannot be null");
+
+    if (properties == null)
+      throw new IllegalArgumentException("properties cannot be null");
+
+    if (batchSize < 1)
+      throw new IllegalArgumentException("Invalid batchSize: " + batchSize);
+
+    outputStream_ = outputStream;
+    isFileFormat_ = isFileFormat;
+    batchSize_ = batchSize;
+    properties_ = Collections.unmodifiableList(new ArrayList<>(properties));
+    accessors_ = new Function[properties_.size()];
+    columns_ = new Column[properties_.size()];
+
+    // Columns grow on demand, as most NPD tables are far smaller than a batch
+    capacity_ = Math.min(batchSize, INITIAL_CAPACITY);
+
+    TimeZone timeZone = TimeZone.getDefault();
+
+    for (int i = 0; i < columns_.length; i++) {
+      NpdProperty<T> property = properties_.get(i);
+      accessors_[i] = property.getAccessor();
+
+      String columnName = property.getColumnName();
+      String name = columnName != null ? columnName : property.getName();
+      boolean isNullable = property.isNullable();
+
+      Class<?> type = property.getType();
+      if (type == String.class)
+        columns_[i] = new StringColumn(name, isNullable, capacity_, i);
+      else if (type == Date.class)
+        columns_[i] = new DateColumn(name, isNullable, capacity_, timeZone);
+      else if (type == Double.class)
+        columns_[i] = new DoubleColumn(name, isNullable, capacity_);
+      else if (type == Integer.class)
+        columns_[i] = new IntColumn(name, isNullable, capacity_);
+      else if (type == Long.class)
+        columns_[i] = new LongColumn(name, isNullable, capacity_);
+      else if (type == Boolean.class)
+        columns_[i] = new BooleanColumn(name, isNullable, capacity_);
+      else
+        throw new IllegalArgumentException("Unsupported property type: " + property + ": " + type);
+    }
+  }
+
+  /**
+   * Create an Arrow writer for all properties of the specified class.
+   *
+   * @param outputStream  Stream to write to. Non-null.
+   * @param clazz         Class of objects to write. Non-null.
+   * @param isFileFormat  True to write the IPC file format, false to
+   *                      write the IPC stream format.
+   * @throws IllegalArgumentException  If outputStream or clazz is null.
+   */
+  public NpdArrowWriter(OutputStream outputStream, Class<T> clazz, boolean isFileFormat)
+  {
+    this(outputStream, NpdProperties.getProperties(clazz), isFileFormat, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Return the properties being written.
+   *
+   * @return  The properties being written, in column order. Never null.
+   */
+  public List<NpdProperty<T>> getProperties()
+  {
+    return properties_;
+  }
+
+  /**
+   * Return number of objects written so far.
+   *
+   * @return  Number of objects written. [0,&gt;.
+   */
+  public long getNObjects()
+  {
+    return nObjects_;
+  }
+
+  /**
+   * Write the specified object.
+   *
+   * @param object  Object to write. Non-null.
+   * @throws IllegalArgumentException  If object is null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  public void write(T object)
+    throws IOException
+  {
+    if (object == null)
+      throw new IllegalArgumentException("object cannot be null");
+
+    if (nRows_ == capacity_) {
+      capacity_ = (int) Math.min(2L * capacity_, batchSize_);
+      for (Column column : columns_)
+        column.grow(capacity_);
+    }
+
+    for (int i = 0; i < columns_.length; i++) {
+      Object value = accessors_[i].apply(object);
+      if (value == null)
+        columns_[i].nNulls_++;
+      else {
+        columns_[i].setValid(nRows_);
+        columns_[i].set(nRows_, value);
+      }
+    }
+
+    nRows_++;
+    nObjects_++;
+
+    if (nRows_ == batchSize_)
+      writeBatch();
+  }
+
+  /**
+   * Write the specified objects.
+   *
+   * @param objects  Objects to write. Non-null.
+   * @throws IllegalArgumentException  If objects is null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  public void writeAll(Iterable<? extends T> objects)
+    throws IOException
+  {
+    if (objects == null)
+      throw new IllegalArgumentException("objects cannot be null");
+
+    for (T object : objects)
+      write(object);
+  }
+
+  /**
+   * Write the objects of the specified stream. The stream is consumed
+   * sequentially, so it is never held in memory.
+   *
+   * @param objects  Objects to write. Non-null.
+   * @throws IllegalArgumentException  If objects is null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  public void writeAll(Stream<? extends T> objects)
+    throws IOException
+  {
+    if (objects == null)
+      throw new IllegalArgumentException("objects cannot be null");
+
+    Iterator<? extends T> iterator = objects.iterator();
+    while (iterator.hasNext())
+      write(iterator.next());
+  }
+
+  /**
+   * Write pending objects, end the stream and close the underlying stream.
+   *
+   * @throws IOException  If the close operation fails for some reason.
+   */
+  @Override
+  public void close()
+    throws IOException
+  {
+    try {
+      if (nRows_ > 0)
+        writeBatch();
+      else
+        start();
+
+      // End-of-stream marker
+      writeInts(0xffffffff, 0);
+
+      if (isFileFormat_)
+        writeFooter();
+
+      outputStream_.flush();
+    }
+    finally {
+      outputStream_.close();
+    }
+  }
+
+  /**
+   * Write file magic and schema unless already done.
+   *
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void start()
+    throws IOException
+  {
+    if (isStarted_)
+      return;
+
+    if (isFileFormat_) {
+      writeBytes(MAGIC);
+      writeBytes(new byte[2]);
+    }
+
+    // The dictionary encoding is decided from the first batch
+    for (Column column : columns_) {
+      if (column instanceof StringColumn)
+        ((StringColumn) column).decideEncoding(nRows_);
+    }
+
+    writeMessage(SCHEMA_MESSAGE, newSchema(), new byte[0]);
+    isStarted_ = true;
+  }
+
+  /**
+   * Write the current batch, preceded by any new dictionary values.
+   *
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void writeBatch()
+    throws IOException
+  {
+    start();
+
+    //
+    // Dictionaries
+    //
+    for (Column column : columns_) {
+      if (column instanceof StringColumn) {
+        StringColumn stringColumn = (StringColumn) column;
+        if (stringColumn.isDictionary_) {
+          stringColumn.encodeIndices(nRows_);
+          if (stringColumn.hasUnsentValues())
+            writeDictionary(stringColumn);
+        }
+      }
+    }
+
+    //
+    // The record batch
+    //
+    List<byte[]> buffers = new ArrayList<>();
+    long[] nodes = new long[2 * columns_.length];
+
+    for (int i = 0; i < columns_.length; i++) {
+      Column column = columns_[i];
+      nodes[2 * i] = nRows_;
+      nodes[2 * i + 1] = column.nNulls_;
+
+      buffers.add(column.nNulls_ > 0 ? Arrays.copyOf(column.validity_, (nRows_ + 7) / 8) : new byte[0]);
+      column.addBuffers(nRows_, buffers);
+    }
+
+    long[] block = writeMessage(RECORD_BATCH_MESSAGE, newRecordBatch(nRows_, nodes, buffers), toBody(buffers));
+    recordBatchBlocks_.add(block);
+
+    for (Column column : columns_)
+      column.reset();
+
+    nRows_ = 0;
+  }
+
+  /**
+   * Write the unsent values of the dictionary of the specified column.
+   *
+   * @param column  Column to write dictionary of. Non-null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void writeDictionary(StringColumn column)
+    throws IOException
+  {
+    assert column != null : "column cannot be null";
+
+    boolean isDelta = column.isDictionaryWritten_;
+    List<String> values = column.dictionaryValues_.subList(column.nSentValues_, column.dictionaryValues_.size());
+
+    List<byte[]> buffers = new ArrayList<>();
+    buffers.add(new byte[0]);
+    addUtf8Buffers(values.toArray(new String[values.size()]), values.size(), buffers);
+
+    long[] nodes = {values.size(), 0};
+    FlatBuffer.Table recordBatch = newRecordBatch(values.size(), nodes, buffers);
+
+    FlatBuffer.Table dictionaryBatch = new FlatBuffer.Table(3)
+      .add(0, column.dictionaryId_, 8)
+      .add(1, recordBatch)
+      .addBoolean(2, isDelta);
+
+    long[] block = writeMessage(DICTIONARY_BATCH_MESSAGE, dictionaryBatch, toBody(buffers));
+    dictionaryBlocks_.add(block);
+
+    column.nSentValues_ = column.dictionaryValues_.size();
+    column.isDictionaryWritten_ = true;
+  }
+
+  /**
+   * Write the file format footer.
+   *
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void writeFooter()
+    throws IOException
+  {
+    FlatBuffer.Table footer = new FlatBuffer.Table(5)
+      .add(0, METADATA_VERSION, 2)
+      .add(1, newSchema())
+      .add(2, newBlockVector(dictionaryBlocks_))
+      .add(3, newBlockVector(recordBatchBlocks_));
+
+    byte[] bytes = FlatBuffer.encode(footer);
+    writeBytes(bytes);
+    writeInts(bytes.length);
+    writeBytes(MAGIC);
+  }
+
+  /**
+   * Write an encapsulated IPC message.
+   *
+   * @param headerType  Message header type. One of the *_MESSAGE constants.
+   * @param header      Message header. Non-null.
+   * @param body        Message body. Length multiple of 8. Non-null.
+   * @return            The file block of the message: offset, metadata
+   *                    length and body length. Never null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private long[] writeMessage(int headerType, FlatBuffer.Table header, byte[] body)
+    throws IOException
+  {
+    assert header != null : "header cannot be null";
+    assert body != null : "body cannot be null";
+    assert body.length % 8 == 0 : "Misaligned body";
+
+    FlatBuffer.Table message = new FlatBuffer.Table(5)
+      .add(0, METADATA_VERSION, 2)
+      .add(1, headerType, 1)
+      .add(2, header)
+      .add(3, body.length, 8);
+
+    byte[] metadata = FlatBuffer.encode(message);
+
+    long offset = position_;
+    writeInts(0xffffffff, metadata.length);
+    writeBytes(metadata);
+    writeBytes(body);
+
+    return new long[] {offset, 8 + metadata.length, body.length};
+  }
+
+  /**
+   * Write the specified little endian 32-bit values.
+   *
+   * @param values  Values to write. Non-null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void writeInts(int... values)
+    throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+    for (int value : values)
+      buffer.putInt(value);
+
+    writeBytes(buffer.array());
+  }
+
+  /**
+   * Write the specified bytes.
+   *
+   * @param bytes  Bytes to write. Non-null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void writeBytes(byte[] bytes)
+    throws IOException
+  {
+    outputStream_.write(bytes);
+    position_ += bytes.length;
+  }
+
+  /**
+   * Create the schema table.
+   *
+   * @return  The schema table. Never null.
+   */
+  private FlatBuffer.Table newSchema()
+  {
+    List<FlatBuffer.Table> fields = new ArrayList<>();
+    for (Column column : columns_)
+      fields.add(column.newField());
+
+    return new FlatBuffer.Table(4)
+      .add(0, 0, 2) // Little endian
+      .add(1, new FlatBuffer.TableVector(fields));
+  }
+
+  /**
+   * Create a record batch table.
+   *
+   * @param nRows    Number of rows in batch.
+   * @param nodes    Length and null count of each column. Non-null.
+   * @param buffers  The buffers of the batch. Non-null.
+   * @return         The record batch table. Never null.
+   */
+  private static FlatBuffer.Table newRecordBatch(int nRows, long[] nodes, List<byte[]> buffers)
+  {
+    assert nodes != null : "nodes cannot be null";
+    assert buffers != null : "buffers cannot be null";
+
+    long[] bufferLocations = new long[2 * buffers.size()];
+    long offset = 0;
+    for (int i = 0; i < buffers.size(); i++) {
+      int length = buffers.get(i).length;
+      bufferLocations[2 * i] = offset;
+      bufferLocations[2 * i + 1] = length;
+      offset += padded(length);
+    }
+
+    return new FlatBuffer.Table(4)
+      .add(0, nRows, 8)
+      .add(1, new FlatBuffer.StructVector(nodes, nodes.length / 2))
+      .add(2, new FlatBuffer.StructVector(bufferLocations, buffers.size()));
+  }
+
+  /**
+   * Create a vector of file blocks.
+   *
+   * @param blocks  Offset, metadata length and body length of each block. Non-null.
+   * @return        The block vector. Never null.
+   */
+  private static FlatBuffer.StructVector newBlockVector(List<long[]> blocks)
+  {
+    assert blocks != null : "blocks cannot be null";
+
+    long[] values = new long[3 * blocks.size()];
+    for (int i = 0; i < blocks.size(); i++)
+      System.arraycopy(blocks.get(i), 0, values, 3 * i, 3);
+
+    return new FlatBuffer.StructVector(values, blocks.size());
+  }
+
+  /**
+   * Concatenate the specified buffers into a message body,
+   * each buffer padded to a multiple of 8 bytes.
+   *
+   * @param buffers  Buffers to concatenate. Non-null.
+   * @return         The message body. Never null.
+   */
+  private static byte[] toBody(List<byte[]> buffers)
+  {
+    assert buffers != null : "buffers cannot be null";
+
+    int bodyLength = 0;
+    for (byte[] buffer : buffers)
+      bodyLength += padded(buffer.length);
+
+    byte[] body = new byte[bodyLength];
+    int offset = 0;
+    for (byte[] buffer : buffers) {
+      System.arraycopy(buffer, 0, body, offset, buffer.length);
+      offset += padded(buffer.length);
+    }
+
+    return body;
+  }
+
+  /**
+   * Return the specified length rounded up to a multiple of 8.
+   *
+   * @param length  Length to round up. [0,&gt;.
+   * @return        The padded length.
+   */
+  private static int padded(int length)
+  {
+    return (length + 7) & ~7;
+  }
+
+  /**
+   * Add offsets and data buffers of the specified strings.
+   *
+   * @param values   Strings to add. Null elements are written as empty. Non-null.
+   * @param nValues  Number of values to add. [0,values.length].
+   * @param buffers  Buffers to add to. Non-null.
+   */
+  private static void addUtf8Buffers(String[] values, int nValues, List<byte[]> buffers)
+  {
+    assert values != null : "values cannot be null";
+    assert buffers != null : "buffers cannot be null";
+
+    ByteBuffer offsets = ByteBuffer.allocate(4 * (nValues + 1)).order(ByteOrder.LITTLE_ENDIAN);
+    byte[][] encoded = new byte[nValues][];
+
+    int offset = 0;
+    offsets.putInt(offset);
+    for (int i = 0; i < nValues; i++) {
+      encoded[i] = values[i] != null ? values[i].getBytes(StandardCharsets.UTF_8) : new byte[0];
+      offset += encoded[i].length;
+      offsets.putInt(offset);
+    }
+
+    byte[] data = new byte[offset];
+    offset = 0;
+    for (byte[] bytes : encoded) {
+      System.arraycopy(bytes, 0, data, offset, bytes.length);
+      offset += bytes.length;
+    }
+
+    buffers.add(offsets.array());
+    buffers.add(data);
+  }
+
+  /**
+   * Create an Int type table.
+   *
+   * @param bitWidth  Bit width of the type. 32 or 64.
+   * @return          The requested type table. Never null.
+   */
+  private static FlatBuffer.Table newIntType(int bitWidth)
+  {
+    return new FlatBuffer.Table(2)
+      .add(0, bitWidth, 4)
+      .addBoolean(1, true);
+  }
+
+  /**
+   * The values of one property within the current batch.
+   */
+  private abstract static class Column
+  {
+    /** Name of column. Non-null. */
+    private final String name_;
+
+    /** Indicate if the column may have absent values. */
+    private final boolean isNullable_;
+
+    /** Validity bitmap of the current batch. */
+    private byte[] validity_;
+
+    /** Number of absent values in the current batch. */
+    int nNulls_ = 0;
+
+    /**
+     * Create a column.
+     *
+     * @param name        Name of column. Non-null.
+     * @param isNullable  True if the column may have absent values.
+     * @param capacity    Number of rows to make room for.
+     */
+    Column(String name, boolean isNullable, int capacity)
+    {
+      assert name != null : "name cannot be null";
+
+      name_ = name;
+      isNullable_ = isNullable;
+      validity_ = new byte[(capacity + 7) / 8];
+    }
+
+    /**
+     * Mark the specified row as present.
+     *
+     * @param row  Row to mark. [0,capacity&gt;.
+     */
+    final void setValid(int row)
+    {
+      validity_[row >> 3] |= (byte) (1 << (row & 7));
+    }
+
+    /**
+     * Set the value of the specified row.
+     *
+     * @param row    Row to set. [0,capacity&gt;.
+     * @param value  Value to set. Of the column type. Non-null.
+     */
+    abstract void set(int row, Object value);
+
+    /**
+     * Add the data buffers of the current batch, i.e. all buffers
+     * following the validity bitmap.
+     *
+     * @param nRows    Number of rows in batch.
+     * @param buffers  Buffers to add to. Non-null.
+     */
+    abstract void addBuffers(int nRows, List<byte[]> buffers);
+
+    /**
+     * Return the Type union type of this column.
+     *
+     * @return  The Type union type of this column.
+     */
+    abstract int getTypeType();
+
+    /**
+     * Create the Type table of this column.
+     *
+     * @return  The Type table of this column. Never null.
+     */
+    abstract FlatBuffer.Table newType();
+
+    /**
+     * Create the dictionary encoding table of this column.
+     *
+     * @return  The dictionary encoding table. Null if not dictionary encoded.
+     */
+    FlatBuffer.Table newDictionaryEncoding()
+    {
+      return null;
+    }
+
+    /**
+     * Create the Field table of this column.
+     *
+     * @return  The Field table of this column. Never null.
+     */
+    final FlatBuffer.Table newField()
+    {
+      FlatBuffer.Table field = new FlatBuffer.Table(7)
+        .add(0, name_)
+        .addBoolean(1, isNullable_)
+        .add(2, getTypeType(), 1)
+        .add(3, newType())
+        .add(5, new FlatBuffer.TableVector(Collections.<FlatBuffer.Table>emptyList()));
+
+      FlatBuffer.Table dictionaryEncoding = newDictionaryEncoding();
+      if (dictionaryEncoding != null)
+        field.add(4, dictionaryEncoding);
+
+      return field;
+    }
+
+    /**
+     * Make room for the specified number of rows, keeping the rows
+     * of the current batch.
+     *
+     * @param capacity  Number of rows to make room for.
+     */
+    void grow(int capacity)
+    {
+      validity_ = Arrays.copyOf(validity_, (capacity + 7) / 8);
+    }
+
+    /**
+     * Prepare for the next batch.
+     */
+    void reset()
+    {
+      Arrays.fill(validity_, (byte) 0);
+      nNulls_ = 0;
+    }
+  }
+
+  /**
+   * Column of Double values, written as Float64.
+   */
+  private static final class DoubleColumn extends Column
+  {
+    /** Values of the current batch. */
+    private double[] values_;
+
+    /**
+     * Create a column.
+     *
+     * @param name        Name of column. Non-null.
+     * @param isNullable  True if the column may have absent values.
+     * @param capacity    Number of rows to make room for.
+     */
+    DoubleColumn(String name, boolean isNullable, int capacity)
+    {
+      super(name, isNullable, capacity);
+      values_ = new double[capacity];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void set(int row, Object value)
+    {
+      values_[row] = (Double) value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void addBuffers(int nRows, List<byte[]> buffers)
+    {
+      ByteBuffer buffer = ByteBuffer.allocate(8 * nRows).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.asDoubleBuffer().put(values_, 0, nRows);
+      buffers.add(buffer.array());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int getTypeType()
+    {
+      return FLOATING_POINT_TYPE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    FlatBuffer.Table newType()
+    {
+      return new FlatBuffer.Table(1).add(0, 2, 2); // Precision.DOUBLE
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void grow(int capacity)
+    {
+      super.grow(capacity);
+      values_ = Arrays.copyOf(values_, capacity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void reset()
+    {
+      super.reset();
+      Arrays.fill(values_, 0.0);
+    }
+  }
+
+  /**
+   * Column of Integer values, written as Int32.
+   */
+  private static final class IntColumn extends Column
+  {
+    /** Values of the current batch. */
+    private int[] values_;
+
+    /**
+     * Create a column.
+     *
+     * @param name        Name of column. Non-null.
+     * @param isNullable  True if the column may have absent values.
+     * @param capacity    Number of rows to make room for.
+     */
+    IntColumn(String name, boolean isNullable, int capacity)
+    {
+      super(name, isNullable, capacity);
+      values_ = new int[capacity];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void set(int row, Object value)
+    {
+      values_[row] = (Integer) value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void addBuffers(int nRows, List<byte[]> buffers)
+    {
+      ByteBuffer buffer = ByteBuffer.allocate(4 * nRows).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.asIntBuffer().put(values_, 0, nRows);
+      buffers.add(buffer.array());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int getTypeType()
+    {
+      return INT_TYPE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    FlatBuffer.Table newType()
+    {
+      return newIntType(32);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void grow(int capacity)
+    {
+      super.grow(capacity);
+      values_ = Arrays.copyOf(values_, capacity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void reset()
+    {
+      super.reset();
+      Arrays.fill(values_, 0);
+    }
+  }
+
+  /**
+   * Column of Long values, written as Int64.
+   */
+  private static final class LongColumn extends Column
+  {
+    /** Values of the current batch. */
+    private long[] values_;
+
+    /**
+     * Create a column.
+     *
+     * @param name        Name of column. Non-null.
+     * @param isNullable  True if the column may have absent values.
+     * @param capacity    Number of rows to make room for.
+     */
+    LongColumn(String name, boolean isNullable, int capacity)
+    {
+      super(name, isNullable, capacity);
+      values_ = new long[capacity];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void set(int row, Object value)
+    {
+      values_[row] = (Long) value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void addBuffers(int nRows, List<byte[]> buffers)
+    {
+      ByteBuffer buffer = ByteBuffer.allocate(8 * nRows).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.asLongBuffer().put(values_, 0, nRows);
+      buffers.add(buffer.array());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int getTypeType()
+    {
+      return INT_TYPE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    FlatBuffer.Table newType()
+    {
+      return newIntType(64);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void grow(int capacity)
+    {
+      super.grow(capacity);
+      values_ = Arrays.copyOf(values_, capacity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void reset()
+    {
+      super.reset();
+      Arrays.fill(values_, 0L);
+    }
+  }
+
+  /**
+   * Column of Date values, written as Date32.
+   */
+  private static final class DateColumn extends Column
+  {
+    /** Time zone of the dates. Non-null. */
+    private final TimeZone timeZone_;
+
+    /** Days since epoch of the current batch. */
+    private int[] values_;
+
+    /**
+     * Create a column.
+     *
+     * @param name        Name of column. Non-null.
+     * @param isNullable  True if the column may have absent values.
+     * @param capacity    Number of rows to make room for.
+     * @param timeZone    Time zone of the dates. Non-null.
+     */
+    DateColumn(String name, boolean isNullable, int capacity, TimeZone timeZone)
+    {
+      super(name, isNullable, capacity);
+      timeZone_ = timeZone;
+      values_ = new int[capacity];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void set(int row, Object value)
+    {
+      long time = ((Date) value).getTime();
+      values_[row] = (int) Math.floorDiv(time + timeZone_.getOffset(time), MILLIS_PER_DAY);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void addBuffers(int nRows, List<byte[]> buffers)
+    {
+      ByteBuffer buffer = ByteBuffer.allocate(4 * nRows).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.asIntBuffer().put(values_, 0, nRows);
+      buffers.add(buffer.array());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int getTypeType()
+    {
+      return DATE_TYPE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    FlatBuffer.Table newType()
+    {
+      return new FlatBuffer.Table(1).add(0, 0, 2); // DateUnit.DAY
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void grow(int capacity)
+    {
+      super.grow(capacity);
+      values_ = Arrays.copyOf(values_, capacity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void reset()
+    {
+      super.reset();
+      Arrays.fill(values_, 0);
+    }
+  }
+
+  /**
+   * Column of Boolean values, written as Bool.
+   */
+  private static final class BooleanColumn extends Column
+  {
+    /** Value bitmap of the current batch. */
+    private byte[] values_;
+
+    /**
+     * Create a column.
+     *
+     * @param name        Name of column. Non-null.
+     * @param isNullable  True if the column may have absent values.
+     * @param capacity    Number of rows to make room for.
+     */
+    BooleanColumn(String name, boolean isNullable, int capacity)
+    {
+      super(name, isNullable, capacity);
+      values_ = new byte[(capacity + 7) / 8];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void set(int row, Object value)
+    {
+      if ((Boolean) value)
+        values_[row >> 3] |= (byte) (1 << (row & 7));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void addBuffers(int nRows, List<byte[]> buffers)
+    {
+      buffers.add(Arrays.copyOf(values_, (nRows + 7) / 8));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int getTypeType()
+    {
+      return BOOL_TYPE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    FlatBuffer.Table newType()
+    {
+      return new FlatBuffer.Table(0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void grow(int capacity)
+    {
+      super.grow(capacity);
+      values_ = Arrays.copyOf(values_, (capacity + 7) / 8);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void reset()
+    {
+      super.reset();
+      Arrays.fill(values_, (byte) 0);
+    }
+  }
+
+  /**
+   * Column of String values, written as Utf8 or as a Utf8
+   * dictionary with Int32 indices.
+   */
+  private static final class StringColumn extends Column
+  {
+    /** ID of the dictionary of this column, if dictionary encoded. */
+    private final int dictionaryId_;
+
+    /** Values of the current batch. */
+    private String[] values_;
+
+    /** Indicate if the column is dictionary encoded. */
+    private boolean isDictionary_ = false;
+
+    /** Dictionary index of each dictionary value. Non-null. */
+    private final Map<String, Integer> dictionary_ = new HashMap<>();
+
+    /** Dictionary values in index order. Non-null. */
+    private final List<String> dictionaryValues_ = new ArrayList<>();
+
+    /** Number of dictionary values written so far. */
+    private int nSentValues_ = 0;
+
+    /** Indicate if the dictionary has been written at all. */
+    private boolean isDictionaryWritten_ = false;
+
+    /** Dictionary indices of the current batch. */
+    private int[] indices_;
+
+    /**
+     * Create a column.
+     *
+     * @param name          Name of column. Non-null.
+     * @param isNullable    True if the column may have absent values.
+     * @param capacity      Number of rows to make room for.
+     * @param dictionaryId  ID of the dictionary, if dictionary encoded.
+     */
+    StringColumn(String name, boolean isNullable, int capacity, int dictionaryId)
+    {
+      super(name, isNullable, capacity);
+      dictionaryId_ = dictionaryId;
+      values_ = new String[capacity];
+      indices_ = new int[capacity];
+    }
+
+    /**
+     * Decide whether to dictionary encode this column,
+     * based on the values of the current batch.
+     *
+     * @param nRows  Number of rows in the current batch.
+     */
+    void decideEncoding(int nRows)
+    {
+      Set<String> distinctValues = new HashSet<>();
+      int nValues = 0;
+      for (int row = 0; row < nRows; row++) {
+        if (values_[row] != null) {
+          distinctValues.add(values_[row]);
+          nValues++;
+        }
+      }
+
+      isDictionary_ = nValues > 0 && 2 * distinctValues.size() <= nValues;
+    }
+
+    /**
+     * Compute the dictionary indices of the current batch,
+     * adding new values to the dictionary.
+     *
+     * @param nRows  Number of rows in the current batch.
+     */
+    void encodeIndices(int nRows)
+    {
+      for (int row = 0; row < nRows; row++) {
+        String value = values_[row];
+        if (value == null)
+          continue;
+
+        Integer index = dictionary_.get(value);
+        if (index == null) {
+          index = dictionaryValues_.size();
+          dictionary_.put(value, index);
+          dictionaryValues_.add(value);
+        }
+
+        indices_[row] = index;
+      }
+    }
+
+    /**
+     * Check if there are dictionary values not yet written.
+     *
+     * @return  True if there are unsent dictionary values, false otherwise.
+     */
+    boolean hasUnsentValues()
+    {
+      // The first dictionary batch is written even if empty
+      return nSentValues_ < dictionaryValues_.size() || !isDictionaryWritten_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void set(int row, Object value)
+    {
+      values_[row] = (String) value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void addBuffers(int nRows, List<byte[]> buffers)
+    {
+      if (!isDictionary_) {
+        addUtf8Buffers(values_, nRows, buffers);
+        return;
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocate(4 * nRows).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.asIntBuffer().put(indices_, 0, nRows);
+      buffers.add(buffer.array());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int getTypeType()
+    {
+      return UTF8_TYPE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    FlatBuffer.Table newType()
+    {
+      return new FlatBuffer.Table(0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    FlatBuffer.Table newDictionaryEncoding()
+    {
+      if (!isDictionary_)
+        return null;
+
+      return new FlatBuffer.Table(4)
+        .add(0, dictionaryId_, 8)
+        .add(1, newIntType(32))
+        .addBoolean(2, false)
+        .add(3, 0, 2); // DictionaryKind.DenseArray
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void grow(int capacity)
+    {
+      super.grow(capacity);
+      values_ = Arrays.copyOf(values_, capacity);
+      indices_ = Arrays.copyOf(indices_, capacity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void reset()
+    {
+      super.reset();
+      Arrays.fill(values_, null);
+      Arrays.fill(indices_, 0);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package no.petroware.npdio.export;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperties;
+import no.petroware.npdio.NpdProperty;
+
+/**
+ * Streaming CSV writer for NPD objects.
+ * <p>
+ * The output has a header line with the NPD column name of each property
+ * (or the property name if it has no NPD column) followed by one line per
+ * object:
+ *
+ * <pre>
+ *   try (NpdCsvWriter&lt;NpdField&gt; writer = new NpdCsvWriter&lt;&gt;(outputStream, NpdField.class)) {
+ *     writer.writeAll(fields);
+ *   }
+ * </pre>
+ *
+ * Values containing commas, quotes or line breaks are quoted, with quotes
+ * doubled. Absent values are written as empty fields, booleans as
+ * YES/NO as in the NPD tables, and dates as yyyy-MM-dd.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <T>  Type of objects being written.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdCsvWriter<T extends NpdObject> extends NpdWriter<T>
+{
+  /**
+   * Create a CSV writer for the specified properties.
+   *
+   * @param writer      Writer to write to. Non-null.
+   * @param properties  Properties to write, in column order. Non-null.
+   * @throws IllegalArgumentException  If writer or properties is null.
+   */
+  public NpdCsvWriter(Writer writer, List<NpdProperty<T>> properties)
+  {
+    super(writer, properties);
+  }
+
+  /**
+   * Create a CSV writer for all properties of the specified class.
+   *
+   * @param writer  Writer to write to. Non-null.
+   * @param clazz   Class of objects to write. Non-null.
+   * @throws IllegalArgumentException  If writer or clazz is null.
+   */
+  public NpdCsvWriter(Writer writer, Class<T> clazz)
+  {
+    this(writer, NpdProperties.getProperties(clazz));
+  }
+
+  /**
+   * Create a UTF-8 CSV writer for all properties of the specified class.
+   *
+   * @param outputStream  Stream to write to. Non-null.
+   * @param clazz         Class of objects to write. Non-null.
+   * @throws IllegalArgumentException  If outputStream or clazz is null.
+   */
+  public NpdCsvWriter(OutputStream outputStream, Class<T> clazz)
+  {
+    this(toWriter(outputStream), NpdProperties.getProperties(clazz));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  void writeStart()
+  {
+    for (int i = 0; i < getNProperties(); i++) {
+      if (i > 0)
+        append(',');
+      appendText(getName(i));
+    }
+    append('\n');
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  void writeObject(T object)
+  {
+    for (int i = 0; i < getNProperties(); i++) {
+      if (i > 0)
+        append(',');
+
+      Object value = getValue(object, i);
+      if (value == null)
+        continue;
+
+      if (value instanceof String)
+        appendText((String) value);
+      else if (value instanceof Date)
+        appendDate((Date) value);
+      else if (value instanceof Double)
+        appendNumber((Double) value);
+      else if (value instanceof Integer || value instanceof Long)
+        appendLong(((Number) value).longValue());
+      else if (value instanceof Boolean)
+        append(((Boolean) value) ? "YES" : "NO");
+      else
+        appendText(value.toString());
+    }
+    append('\n');
+  }
+
+  /**
+   * Append the specified floating point value. Non-finite values are
+   * written as their Java representation.
+   *
+   * @param value  Value to append.
+   */
+  private void appendNumber(double value)
+  {
+    if (Double.isNaN(value) || Double.isInfinite(value))
+      append(Double.toString(value));
+    else
+      appendDouble(value);
+  }
+
+  /**
+   * Append the specified text, quoted if necessary.
+   *
+   * @param text  Text to append. Non-null.
+   */
+  private void appendText(String text)
+  {
+    assert text != null : "text cannot be null";
+
+    boolean isQuoteNeeded = false;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+        isQuoteNeeded = true;
+        break;
+      }
+    }
+
+    if (!isQuoteNeeded) {
+      append(text);
+      return;
+    }
+
+    append('"');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '"')
+        append('"');
+      append(c);
+    }
+    append('"');
+  }
+}
@@ -0,0 +1,359 @@
+package no.petroware.npdio.export;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperty;
+import no.petroware.npdio.facility.NpdFixedFacility;
+import no.petroware.npdio.geo.Datum;
+import no.petroware.npdio.geo.NpdPositions;
+import no.petroware.npdio.pipeline.NpdPipeline;
+import no.petroware.npdio.well.NpdWellbore;
+
+/**
+ * Streaming GeoJSON writer for NPD objects.
+ * <p>
+ * The output is a single FeatureCollection with one feature per object
+ * having a known location. Objects are written as they are passed to the
+ * writer, so any number of objects can be written in constant memory:
+ *
+ * <pre>
+ *   List&lt;NpdProperty&lt;NpdExplorationWellbore&gt;&gt; properties = Arrays.asList(
+ *     NpdProperties.getProperty(NpdExplorationWellbore.class, "Name"),
+ *     NpdProperties.getProperty(NpdExplorationWellbore.class, "Content"));
+ *
+ *   try (NpdGeoJsonWriter&lt;NpdExplorationWellbore&gt; writer = NpdGeoJsonWriter.newWellboreWriter(fileWriter, properties)) {
+ *     writer.setBoundingBox(0.0, 56.0, 10.0, 62.0);
+ *     writer.writeAll(wellbores);
+ *   }
+ * </pre>
+ *
+ * The geometry of an object is given by a function returning its
+ * coordinates as longitude/latitude pairs in decimal degrees. A single
+ * pair gives a Point, more pairs give a LineString. Objects with no
+ * coordinates, or outside the bounding box if one is set, are skipped.
+ * <p>
+ * GeoJSON coordinates are WGS 84 (RFC 7946). The NPD gives positions in
+ * ED50, so the predefined writers transform them by {@link NpdPositions}.
+ * This moves them some 100m compared to the NPD coordinates. Positions
+ * of unknown datum are skipped.
+ * <p>
+ * Feature properties are keyed by the NPD column name of each property,
+ * or the property name if it has no NPD column. The feature ID is the
+ * NPDID of the object.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <T>  Type of objects being written.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdGeoJsonWriter<T extends NpdObject> extends NpdWriter<T>
+{
+  /** Default number of decimals of the coordinates, being about 0.1m. */
+  public static final int DEFAULT_PRECISION = 6;
+
+  /** Geometry of the objects, as longitude/latitude pairs. Non-null. */
+  private final Function<? super T, double[]> geometry_;
+
+  /** The quoted key of each property followed by colon, like "\"wlbWellboreName\":". */
+  private final String[] keys_;
+
+  /** Number of decimals of the coordinates. */
+  private int precision_ = DEFAULT_PRECISION;
+
+  /** Bounding box as min longitude, min latitude, max longitude, max latitude. Null if none. */
+  private double[] boundingBox_ = null;
+
+  /** Number of features written. */
+  private long nFeatures_ = 0;
+
+  /**
+   * Create a GeoJSON writer.
+   *
+   * @param writer      Writer to write to. Non-null.
+   * @param properties  Properties to write for each feature. Non-null.
+   * @param geometry    Function returning the coordinates of an object as
+   *                    WGS 84 longitude/latitude pairs in decimal degrees,
+   *                    or null if the object has no known location. Non-null.
+   * @throws IllegalArgumentException  If writer, properties or geometry is null.
+   */
+  public NpdGeoJsonWriter(Writer writer,
+                          List<NpdProperty<T>> properties,
+                          Function<? super T, double[]> geometry)
+  {
+    super(writer, properties);
+
+    if (geometry == null)
+      throw new IllegalArgumentException("geometry cannot be null");
+
+    geometry_ = geometry;
+
+    keys_ = new String[getNProperties()];
+    for (int i = 0; i < keys_.length; i++)
+      keys_[i] = "\"" + getName(i) + "\":";
+  }
+
+  /**
+   * Create a GeoJSON writer of wellbores as points at the wellhead.
+   *
+   * @param <T>         Wellbore type.
+   * @param writer      Writer to write to. Non-null.
+   * @param properties  Properties to write for each feature. Use
+   *                    {@link no.petroware.npdio.NpdProperties#getProperties}
+   *                    for all. Non-null.
+   * @return            The requested writer. Never null.
+   * @throws IllegalArgumentException  If writer or properties is null.
+   */
+  public static <T extends NpdWellbore> NpdGeoJsonWriter<T> newWellboreWriter(Writer writer, List<NpdProperty<T>> properties)
+  {
+    return new NpdGeoJsonWriter<T>(writer, properties,
+                                   wellbore -> NpdPositions.getWellborePosition(wellbore, Datum.WGS84));
+  }
+
+  /**
+   * Create a GeoJSON writer of fixed facilities as points.
+   *
+   * @param writer      Writer to write to. Non-null.
+   * @param properties  Properties to write for each feature. Use
+   *                    {@link no.petroware.npdio.NpdProperties#getProperties}
+   *                    for all. Non-null.
+   * @return            The requested writer. Never null.
+   * @throws IllegalArgumentException  If writer or properties is null.
+   */
+  public static NpdGeoJsonWriter<NpdFixedFacility> newFacilityWriter(Writer writer, List<NpdProperty<NpdFixedFacility>> properties)
+  {
+    return new NpdGeoJsonWriter<NpdFixedFacility>(writer, properties,
+                                                  facility -> NpdPositions.getFacilityPosition(facility, Datum.WGS84));
+  }
+
+  /**
+   * Create a GeoJSON writer of pipelines as line strings between
+   * the facilities at their ends. The facilities are identified by
+   * NPDID, or by name if the NPDID is unknown. Pipelines with an end
+   * not among the specified facilities are skipped.
+   *
+   * @param writer      Writer to write to. Non-null.
+   * @param properties  Properties to write for each feature. Use
+   *                    {@link no.petroware.npdio.NpdProperties#getProperties}
+   *                    for all. Non-null.
+   * @param facilities  Facilities giving the positions of the pipeline ends. Non-null.
+   * @return            The requested writer. Never null.
+   * @throws IllegalArgumentException  If writer, properties or facilities is null.
+   */
+  public static NpdGeoJsonWriter<NpdPipeline> newPipelineWriter(Writer writer,
+                                                                List<NpdProperty<NpdPipeline>> properties,
+                                                                Collection<NpdFixedFacility> facilities)
+  {
+    if (facilities == null)
+      throw new IllegalArgumentException("facilities cannot be null");
+
+    // Transform the facility positions once, as a batch
+    List<NpdFixedFacility> facilityList = new ArrayList<>(facilities);
+    double[][] positions = NpdPositions.getFacilityPositions(facilityList, Datum.WGS84);
+
+    final Map<String, double[]> positionsByNpdId = new HashMap<>();
+    final Map<String, double[]> positionsByName = new HashMap<>();
+    for (int i = 0; i < facilityList.size(); i++) {
+      NpdFixedFacility facility = facilityList.get(i);
+      double[] position = new double[] {positions[0][i], positions[1][i]};
+      positionsByNpdId.put(facility.getNpdId(), position);
+      positionsByName.put(facility.getName().toUpperCase(Locale.US), position);
+    }
+
+    Function<NpdPipeline, double[]> geometry = pipeline -> {
+      double[] from = findPosition(pipeline.getNpdidFromFacility(), pipeline.getFromFacility(),
+                                   positionsByNpdId, positionsByName);
+      double[] to = findPosition(pipeline.getNpdidToFacility(), pipeline.getToFacility(),
+                                 positionsByNpdId, positionsByName);
+      if (from == null || to == null)
+        return null;
+
+      if (Double.isNaN(from[0]) || Double.isNaN(from[1]) || Double.isNaN(to[0]) || Double.isNaN(to[1]))
+        return null;
+
+      return new double[] {from[0], from[1], to[0], to[1]};
+    };
+
+    return new NpdGeoJsonWriter<NpdPipeline>(writer, properties, geometry);
+  }
+
+  /**
+   * Find the position of the facility of the specified NPDID or name.
+   *
+   * @param npdId             NPDID of facility. Null if unknown.
+   * @param name              Name of facility. Null if unknown.
+   * @param positionsByNpdId  Facility positions by NPDID. Non-null.
+   * @param positionsByName   Facility positions by upper case name. Non-null.
+   * @return                  The requested position, NaN if unknown,
+   *                          or null if the facility is not found.
+   */
+  private static double[] findPosition(String npdId,
+                                       String name,
+                                       Map<String, double[]> positionsByNpdId,
+                                       Map<String, double[]> positionsByName)
+  {
+    if (npdId != null) {
+      double[] position = positionsByNpdId.get(npdId);
+      if (position != null)
+        return position;
+    }
+
+    return name != null ? positionsByName.get(name.toUpperCase(Locale.US)) : null;
+  }
+
+  /**
+   * Set number of decimals of the coordinates of subsequent features.
+   * Default is {@link #DEFAULT_PRECISION}.
+   *
+   * @param precision  Number of decimals. [0,9].
+   * @throws IllegalArgumentException  If precision is out of range.
+   */
+  public void setPrecision(int precision)
+  {
+    if (precision < 0 || precision > 9)
+      throw new IllegalArgumentException("Invalid precision: " + precision);
+
+    precision_ = precision;
+  }
+
+  /**
+   * Limit subsequent features to those within the specified bounding box.
+   * A line string is included if its extent overlaps the box.
+   *
+   * @param minLongitude  Western bound in decimal degrees.
+   * @param minLatitude   Southern bound in decimal degrees.
+   * @param maxLongitude  Eastern bound in decimal degrees.
+   * @param maxLatitude   Northern bound in decimal degrees.
+   * @throws IllegalArgumentException  If a min bound exceeds its max bound.
+   */
+  public void setBoundingBox(double minLongitude, double minLatitude, double maxLongitude, double maxLatitude)
+  {
+    if (minLongitude > maxLongitude)
+      throw new IllegalArgumentException("Invalid longitude range: " + minLongitude + "," + maxLongitude);
+
+    if (minLatitude > maxLatitude)
+      throw new IllegalArgumentException("Invalid latitude range: " + minLatitude + "," + maxLatitude);
+
+    boundingBox_ = new double[] {minLongitude, minLatitude, maxLongitude, maxLatitude};
+  }
+
+  /**
+   * Remove the bounding box so that all subsequent features with a
+   * known location are written.
+   */
+  public void clearBoundingBox()
+  {
+    boundingBox_ = null;
+  }
+
+  /**
+   * Return number of features written so far. This is the number of
+   * objects written minus those skipped for lack of location or for
+   * being outside the bounding box.
+   *
+   * @return  Number of features written. [0,&gt;.
+   */
+  public long getNFeatures()
+  {
+    return nFeatures_;
+  }
+
+  /**
+   * Check if the specified coordinates are within the bounding box.
+   *
+   * @param coordinates  Longitude/latitude pairs. Non-null.
+   * @return             True if within (or no bounding box is set), false otherwise.
+   */
+  private boolean isInside(double[] coordinates)
+  {
+    assert coordinates != null : "coordinates cannot be null";
+
+    if (boundingBox_ == null)
+      return true;
+
+    double minLongitude = Double.POSITIVE_INFINITY;
+    double minLatitude = Double.POSITIVE_INFINITY;
+    double maxLongitude = Double.NEGATIVE_INFINITY;
+    double maxLatitude = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < coordinates.length; i += 2) {
+      minLongitude = Math.min(minLongitude, coordinates[i]);
+      maxLongitude = Math.max(maxLongitude, coordinates[i]);
+      minLatitude = Math.min(minLatitude, coordinates[i + 1]);
+      maxLatitude = Math.max(maxLatitude, coordinates[i + 1]);
+    }
+
+    return minLongitude <= boundingBox_[2] && maxLongitude >= boundingBox_[0] &&
+           minLatitude <= boundingBox_[3] && maxLatitude >= boundingBox_[1];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  void writeStart()
+  {
+    append("{\"type\":\"FeatureCollection\",\"features\":[");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  void writeObject(T object)
+  {
+    double[] coordinates = geometry_.apply(object);
+    if (coordinates == null || coordinates.length < 2 || !isInside(coordinates))
+      return;
+
+    assert coordinates.length % 2 == 0 : "Unpaired coordinate";
+
+    append(nFeatures_ == 0 ? "\n" : ",\n");
+
+    append("{\"type\":\"Feature\",\"id\":");
+    appendJsonString(object.getNpdId());
+
+    //
+    // Geometry
+    //
+    boolean isPoint = coordinates.length == 2;
+    append(isPoint ? ",\"geometry\":{\"type\":\"Point\",\"coordinates\":" :
+                     ",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+
+    for (int i = 0; i < coordinates.length; i += 2) {
+      if (i > 0)
+        append(',');
+      append('[');
+      appendDouble(coordinates[i], precision_);
+      append(',');
+      appendDouble(coordinates[i + 1], precision_);
+      append(']');
+    }
+
+    append(isPoint ? "}" : "]}");
+
+    //
+    // Properties
+    //
+    append(",\"properties\":{");
+    for (int i = 0; i < keys_.length; i++) {
+      if (i > 0)
+        append(',');
+      append(keys_[i]);
+      appendJsonValue(getValue(object, i));
+    }
+    append("}}");
+
+    nFeatures_++;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  void writeEnd()
+  {
+    append("\n]}\n");
+  }
+}
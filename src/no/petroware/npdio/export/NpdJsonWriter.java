@@ -0,0 +1,100 @@
+package no.petroware.npdio.export;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperties;
+import no.petroware.npdio.NpdProperty;
+
+/**
+ * Streaming JSON Lines writer for NPD objects.
+ * <p>
+ * Each object is written as a single line JSON object keyed by the NPD
+ * column name of each property (or the property name if it has no NPD
+ * column):
+ *
+ * <pre>
+ *   {"fldName":"TROLL","cmpLongName":"Equinor Energy AS",...,"DatesyncNPD":"2020-04-18"}
+ * </pre>
+ *
+ * Absent values and non-finite numbers are written as null, booleans as
+ * true/false and dates as "yyyy-MM-dd" strings.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <T>  Type of objects being written.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdJsonWriter<T extends NpdObject> extends NpdWriter<T>
+{
+  /** The quoted key of each property followed by colon, like "\"fldName\":". */
+  private final String[] keys_;
+
+  /**
+   * Create a JSON Lines writer for the specified properties.
+   *
+   * @param writer      Writer to write to. Non-null.
+   * @param properties  Properties to write, in key order. Non-null.
+   * @throws IllegalArgumentException  If writer or properties is null.
+   */
+  public NpdJsonWriter(Writer writer, List<NpdProperty<T>> properties)
+  {
+    super(writer, properties);
+
+    keys_ = new String[getNProperties()];
+    for (int i = 0; i < keys_.length; i++)
+      keys_[i] = "\"" + getName(i) + "\":";
+  }
+
+  /**
+   * Create a JSON Lines writer for all properties of the specified class.
+   *
+   * @param writer  Writer to write to. Non-null.
+   * @param clazz   Class of objects to write. Non-null.
+   * @throws IllegalArgumentException  If writer or clazz is null.
+   */
+  public NpdJsonWriter(Writer writer, Class<T> clazz)
+  {
+    this(writer, NpdProperties.getProperties(clazz));
+  }
+
+  /**
+   * Create a UTF-8 JSON Lines writer for all properties of the specified class.
+   *
+   * @param outputStream  Stream to write to. Non-null.
+   * @param clazz         Class of objects to write. Non-null.
+   * @throws IllegalArgumentException  If outputStream or clazz is null.
+   */
+  public NpdJsonWriter(OutputStream outputStream, Class<T> clazz)
+  {
+    this(toWriter(outputStream), NpdProperties.getProperties(clazz));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  void writeStart()
+  {
+    // JSON Lines has no header
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  void writeObject(T object)
+  {
+    append('{');
+
+    for (int i = 0; i < keys_.length; i++) {
+      if (i > 0)
+        append(',');
+
+      append(keys_[i]);
+      appendJsonValue(getValue(object, i));
+    }
+
+    append('}');
+    append('\n');
+  }
+}
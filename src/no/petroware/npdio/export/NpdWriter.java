@@ -0,0 +1,625 @@
+package no.petroware.npdio.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperty;
+
+/**
+ * Base class for the streaming NPD writers.
+ * <p>
+ * A writer serializes NPD objects one by one as they are passed to
+ * {@link #write}, so collections or streams of any size can be written
+ * without being held in memory. The object properties are accessed
+ * through the {@link no.petroware.npdio.NpdProperties} registry, and
+ * text is produced into an internal character buffer that is passed
+ * on to the underlying writer in large chunks. Numbers and dates are
+ * formatted directly into this buffer.
+ * <p>
+ * Dates are written as ISO 8601 dates (yyyy-MM-dd) in the default time
+ * zone, being the time zone NPD dates are read in.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <T>  Type of objects being written.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public abstract class NpdWriter<T extends NpdObject> implements Closeable
+{
+  /** Buffer size at which the buffer is passed on to the underlying writer. */
+  private static final int FLUSH_SIZE = 16384;
+
+  /** Max number of decimals written without Double.toString(). */
+  private static final int MAX_DECIMALS = 6;
+
+  /** Hexadecimal digits used for unicode escapes. */
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /** Milliseconds per day. */
+  private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+  /** The underlying writer. Non-null. */
+  private final Writer writer_;
+
+  /** The properties to write. Non-null. */
+  private final List<NpdProperty<T>> properties_;
+
+  /** Accessor of each property. Non-null. */
+  private final Function<T, Object>[] accessors_;
+
+  /** Output name of each property. Non-null. */
+  private final String[] names_;
+
+  /** Time zone of dates. Non-null. */
+  private final TimeZone timeZone_;
+
+  /** Output buffer. Grows to hold the largest object written. */
+  private char[] buffer_ = new char[2 * FLUSH_SIZE];
+
+  /** Number of characters in buffer_. */
+  private int length_ = 0;
+
+  /** Indicate if the start of the output has been written. */
+  private boolean isStarted_ = false;
+
+  /** Number of objects written. */
+  private long nObjects_ = 0;
+
+  /**
+   * Create a writer.
+   *
+   * @param writer      The underlying writer. Non-null.
+   * @param properties  The properties to write, in output order. Non-null.
+   * @throws IllegalArgumentException  If writer or properties is null.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  NpdWriter(Writer writer, List<NpdProperty<T>> properties)
+  {
+    if (writer == null)
+      throw new IllegalArgumentException("writer cannot be null");
+
+    if (properties == null)
+      throw new IllegalArgumentException("properties cannot be null");
+
+    writer_ = writer;
+    properties_ = Collections.unmodifiableList(new ArrayList<>(properties));
+    accessors_ = new Function[properties_.size()];
+    names_ = new String[properties_.size()];
+    timeZone_ = TimeZone.getDefault();
+
+    for (int i = 0; i < accessors_.length; i++) {
+      NpdProperty<T> property = properties_.get(i);
+      accessors_[i] = property.getAccessor();
+
+      // Use NPD column name if there is one
+      String columnName = property.getColumnName();
+      names_[i] = columnName != null ? columnName : property.getName();
+    }
+  }
+
+  /**
+   * Wrap the specified stream in a UTF-8 writer, for the stream
+   * constructors of the subclasses.
+   *
+   * @param outputStream  Stream to wrap. Non-null.
+   * @return              The requested writer. Never null.
+   * @throws IllegalArgumentException  If outputStream is null.
+   */
+  static Writer toWriter(OutputStream outputStream)
+  {
+    if (outputStream == null)
+      throw new IllegalArgumentException("outputStream cannot be null");
+
+    return new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Return the properties being written.
+   *
+   * @return  The properties being written, in output order. Never null.
+   */
+  public List<NpdProperty<T>> getProperties()
+  {
+    return properties_;
+  }
+
+  /**
+   * Return number of objects written so far.
+   *
+   * @return  Number of objects written. [0,&gt;.
+   */
+  public long getNObjects()
+  {
+    return nObjects_;
+  }
+
+  /**
+   * Return the output name of the specified property. This is the
+   * NPD column name, or the property name if it has no column.
+   *
+   * @param propertyNo  Index of property. [0,nProperties&gt;.
+   * @return            Output name of the property. Never null.
+   */
+  final String getName(int propertyNo)
+  {
+    return names_[propertyNo];
+  }
+
+  /**
+   * Return the number of properties being written.
+   *
+   * @return  Number of properties being written. [0,&gt;.
+   */
+  final int getNProperties()
+  {
+    return names_.length;
+  }
+
+  /**
+   * Write the start of the output, like a header.
+   * Called once, before the first object.
+   */
+  abstract void writeStart();
+
+  /**
+   * Write the end of the output, like a closing bracket.
+   * Called once, when the writer is closed.
+   */
+  void writeEnd()
+  {
+    // Nothing by default
+  }
+
+  /**
+   * Write the property values of the specified object.
+   *
+   * @param object  Object to write. Non-null.
+   */
+  abstract void writeObject(T object);
+
+  /**
+   * Return the value of the specified property of the specified object.
+   *
+   * @param object      Object to get value of. Non-null.
+   * @param propertyNo  Index of property. [0,nProperties&gt;.
+   * @return            The property value. May be null.
+   */
+  final Object getValue(T object, int propertyNo)
+  {
+    return accessors_[propertyNo].apply(object);
+  }
+
+  /**
+   * Write the specified object.
+   *
+   * @param object  Object to write. Non-null.
+   * @throws IllegalArgumentException  If object is null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  public void write(T object)
+    throws IOException
+  {
+    if (object == null)
+      throw new IllegalArgumentException("object cannot be null");
+
+    start();
+
+    writeObject(object);
+    nObjects_++;
+
+    if (length_ >= FLUSH_SIZE)
+      flushBuffer();
+  }
+
+  /**
+   * Write the specified objects.
+   *
+   * @param objects  Objects to write. Non-null.
+   * @throws IllegalArgumentException  If objects is null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  public void writeAll(Iterable<? extends T> objects)
+    throws IOException
+  {
+    if (objects == null)
+      throw new IllegalArgumentException("objects cannot be null");
+
+    for (T object : objects)
+      write(object);
+  }
+
+  /**
+   * Write the objects of the specified stream. The stream is consumed
+   * sequentially, so it is never held in memory.
+   *
+   * @param objects  Objects to write. Non-null.
+   * @throws IllegalArgumentException  If objects is null.
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  public void writeAll(Stream<? extends T> objects)
+    throws IOException
+  {
+    if (objects == null)
+      throw new IllegalArgumentException("objects cannot be null");
+
+    Iterator<? extends T> iterator = objects.iterator();
+    while (iterator.hasNext())
+      write(iterator.next());
+  }
+
+  /**
+   * Write the start of the output unless already done.
+   */
+  private void start()
+  {
+    if (!isStarted_) {
+      writeStart();
+      isStarted_ = true;
+    }
+  }
+
+  /**
+   * Pass the buffer content on to the underlying writer.
+   *
+   * @throws IOException  If the write operation fails for some reason.
+   */
+  private void flushBuffer()
+    throws IOException
+  {
+    writer_.write(buffer_, 0, length_);
+    length_ = 0;
+  }
+
+  /**
+   * Flush this writer and the underlying writer.
+   *
+   * @throws IOException  If the flush operation fails for some reason.
+   */
+  public void flush()
+    throws IOException
+  {
+    start();
+    flushBuffer();
+    writer_.flush();
+  }
+
+  /**
+   * Flush and close this writer and the underlying writer.
+   *
+   * @throws IOException  If the close operation fails for some reason.
+   */
+  @Override
+  public void close()
+    throws IOException
+  {
+    try {
+      start();
+      writeEnd();
+      flush();
+    }
+    finally {
+      writer_.close();
+    }
+  }
+
+  /**
+   * Ensure there is room for the specified number of characters in the buffer.
+   *
+   * @param nChars  Number of characters to make room for. [0,&gt;.
+   */
+  private void ensureCapacity(int nChars)
+  {
+    if (length_ + nChars > buffer_.length)
+      buffer_ = Arrays.copyOf(buffer_, Math.max(2 * buffer_.length, length_ + nChars));
+  }
+
+  /**
+   * Append the specified character to the output.
+   *
+   * @param c  Character to append.
+   */
+  final void append(char c)
+  {
+    ensureCapacity(1);
+    buffer_[length_++] = c;
+  }
+
+  /**
+   * Append the specified text to the output.
+   *
+   * @param text  Text to append. Non-null.
+   */
+  final void append(String text)
+  {
+    assert text != null : "text cannot be null";
+
+    int textLength = text.length();
+    ensureCapacity(textLength);
+    text.getChars(0, textLength, buffer_, length_);
+    length_ += textLength;
+  }
+
+  /**
+   * Append the specified integer value to the output.
+   *
+   * @param value  Value to append.
+   */
+  final void appendLong(long value)
+  {
+    // Long.MIN_VALUE cannot be negated
+    if (value == Long.MIN_VALUE) {
+      append(Long.toString(value));
+      return;
+    }
+
+    ensureCapacity(20);
+
+    if (value < 0) {
+      buffer_[length_++] = '-';
+      value = -value;
+    }
+
+    // Number of digits
+    int nDigits = 1;
+    for (long v = value; v >= 10; v /= 10)
+      nDigits++;
+
+    // Digits from the right
+    int position = length_ + nDigits;
+    do {
+      buffer_[--position] = (char) ('0' + (int) (value % 10));
+      value /= 10;
+    } while (value > 0);
+
+    length_ += nDigits;
+  }
+
+  /**
+   * Append the specified floating point value to the output.
+   * <p>
+   * Values with up to six decimals, which covers the NPD data, are
+   * written as a scaled integer with the decimal point inserted. A
+   * scaled value is accepted only if dividing it back gives the exact
+   * same double, so the text always reads back to the original value.
+   * Other values are written through Double.toString().
+   *
+   * @param value  Value to append. Must be finite.
+   */
+  final void appendDouble(double value)
+  {
+    assert !Double.isNaN(value) && !Double.isInfinite(value) : "Invalid value: " + value;
+
+    long scale = 1;
+    for (int nDecimals = 0; nDecimals <= MAX_DECIMALS; nDecimals++) {
+      double scaled = value * scale;
+      if (Math.abs(scaled) >= 1.0e15)
+        break;
+
+      long integer = (long) scaled;
+      if (integer == scaled && integer / (double) scale == value) {
+        appendDecimal(integer, nDecimals);
+        return;
+      }
+
+      scale *= 10;
+    }
+
+    append(Double.toString(value));
+  }
+
+  /**
+   * Append the specified floating point value rounded to the
+   * specified number of decimals. Trailing zeros are omitted.
+   *
+   * @param value      Value to append. Must be finite.
+   * @param nDecimals  Max number of decimals. [0,9].
+   */
+  final void appendDouble(double value, int nDecimals)
+  {
+    assert !Double.isNaN(value) && !Double.isInfinite(value) : "Invalid value: " + value;
+    assert nDecimals >= 0 && nDecimals <= 9 : "Invalid nDecimals: " + nDecimals;
+
+    long scale = 1;
+    for (int i = 0; i < nDecimals; i++)
+      scale *= 10;
+
+    appendDecimal(Math.round(value * scale), nDecimals);
+  }
+
+  /**
+   * Append the specified scaled integer as a decimal number with at
+   * least one decimal, like 27250 with one decimal as "2725.0".
+   *
+   * @param integer    Scaled integer value.
+   * @param nDecimals  Number of decimals in integer. [0,9].
+   */
+  private void appendDecimal(long integer, int nDecimals)
+  {
+    if (integer < 0) {
+      append('-');
+      integer = -integer;
+    }
+
+    // Rounding in the scaling may leave trailing zeros
+    while (nDecimals > 0 && integer % 10 == 0) {
+      integer /= 10;
+      nDecimals--;
+    }
+
+    if (nDecimals == 0) {
+      appendLong(integer);
+      append('.');
+      append('0');
+      return;
+    }
+
+    long scale = 1;
+    for (int i = 0; i < nDecimals; i++)
+      scale *= 10;
+
+    appendLong(integer / scale);
+    append('.');
+
+    // Fraction digits, with leading zeros
+    long fraction = integer % scale;
+    ensureCapacity(nDecimals);
+    for (int i = nDecimals - 1; i >= 0; i--) {
+      buffer_[length_ + i] = (char) ('0' + (int) (fraction % 10));
+      fraction /= 10;
+    }
+    length_ += nDecimals;
+  }
+
+  /**
+   * Append the specified value as a JSON value. Absent values and
+   * non-finite numbers are written as null, booleans as true/false
+   * and dates as "yyyy-MM-dd" strings.
+   *
+   * @param value  Value to append. May be null.
+   */
+  final void appendJsonValue(Object value)
+  {
+    if (value == null)
+      append("null");
+    else if (value instanceof String)
+      appendJsonString((String) value);
+    else if (value instanceof Date) {
+      append('"');
+      appendDate((Date) value);
+      append('"');
+    }
+    else if (value instanceof Double) {
+      double v = (Double) value;
+      if (Double.isNaN(v) || Double.isInfinite(v))
+        append("null");
+      else
+        appendDouble(v);
+    }
+    else if (value instanceof Integer || value instanceof Long)
+      appendLong(((Number) value).longValue());
+    else if (value instanceof Boolean)
+      append(((Boolean) value) ? "true" : "false");
+    else
+      appendJsonString(value.toString());
+  }
+
+  /**
+   * Append the specified text as a quoted and escaped JSON string.
+   *
+   * @param text  Text to append. Non-null.
+   */
+  final void appendJsonString(String text)
+  {
+    assert text != null : "text cannot be null";
+
+    append('"');
+
+    // Fast path for the common case of nothing to escape
+    int length = text.length();
+    int firstEscape = 0;
+    while (firstEscape < length) {
+      char c = text.charAt(firstEscape);
+      if (c == '"' || c == '\\' || c < 0x20)
+        break;
+      firstEscape++;
+    }
+
+    if (firstEscape == length) {
+      append(text);
+      append('"');
+      return;
+    }
+
+    append(text.substring(0, firstEscape));
+
+    for (int i = firstEscape; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\') {
+        append('\\');
+        append(c);
+      }
+      else if (c == '\n') {
+        append('\\');
+        append('n');
+      }
+      else if (c == '\r') {
+        append('\\');
+        append('r');
+      }
+      else if (c == '\t') {
+        append('\\');
+        append('t');
+      }
+      else if (c < 0x20) {
+        append("\\u00");
+        append(HEX_DIGITS[c >> 4]);
+        append(HEX_DIGITS[c & 0xf]);
+      }
+      else {
+        append(c);
+      }
+    }
+
+    append('"');
+  }
+
+  /**
+   * Append the specified date to the output as yyyy-MM-dd.
+   *
+   * @param date  Date to append. Non-null.
+   */
+  final void appendDate(Date date)
+  {
+    assert date != null : "date cannot be null";
+
+    long time = date.getTime();
+    long localTime = time + timeZone_.getOffset(time);
+    long epochDay = Math.floorDiv(localTime, MILLIS_PER_DAY);
+
+    // Civil date from day number in the proleptic Gregorian calendar
+    long z = epochDay + 719468;
+    long era = Math.floorDiv(z, 146097);
+    long dayOfEra = z - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long mp = (5 * dayOfYear + 2) / 153;
+    int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+    int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+    if (year >= 0 && year <= 9999) {
+      ensureCapacity(10);
+      int y = (int) year;
+      buffer_[length_++] = (char) ('0' + y / 1000);
+      buffer_[length_++] = (char) ('0' + y / 100 % 10);
+      buffer_[length_++] = (char) ('0' + y / 10 % 10);
+      buffer_[length_++] = (char) ('0' + y % 10);
+    }
+    else {
+      appendLong(year);
+      ensureCapacity(6);
+    }
+
+    buffer_[length_++] = '-';
+    buffer_[length_++] = (char) ('0' + month / 10);
+    buffer_[length_++] = (char) ('0' + month % 10);
+    buffer_[length_++] = '-';
+    buffer_[length_++] = (char) ('0' + day / 10);
+    buffer_[length_++] = (char) ('0' + day % 10);
+  }
+}
@@ -4,9 +4,12 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdObject;
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * Reader for NPD fixed facilities.
@@ -88,6 +91,31 @@ public final class NpdFixedFacilityReader extends NpdReader<NpdFixedFacility>
     super(url);
   }
 
+  /**
+   * Create a reader for NPD fixed facilities.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdFixedFacilityReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD fixed facilities at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdFixedFacilityReader newDefaultReader()
+  {
+    NpdFixedFacilityReader reader = new NpdFixedFacilityReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdFixedFacilityReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD fixed facilities.
    * <p>
@@ -104,10 +132,36 @@ public final class NpdFixedFacilityReader extends NpdReader<NpdFixedFacility>
   public static List<NpdFixedFacility> readAll()
     throws IOException
   {
-    NpdFixedFacilityReader reader = new NpdFixedFacilityReader(URL);
+    NpdFixedFacilityReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD fixed facilities asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD fixed facilities. Never null.
+   */
+  public static CompletableFuture<List<NpdFixedFacility>> readAllAsync()
+  {
+    NpdFixedFacilityReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD fixed facilities asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD fixed facilities. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdFixedFacility>> readAllAsync(Executor executor)
+  {
+    NpdFixedFacilityReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD fixed facility instance from the given tokens.
    *
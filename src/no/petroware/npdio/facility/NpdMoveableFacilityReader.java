@@ -4,9 +4,12 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdObject;
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * Reader for NPD moveable facilities.
@@ -58,6 +61,31 @@ public final class NpdMoveableFacilityReader extends NpdReader<NpdMoveableFacili
     super(url);
   }
 
+  /**
+   * Create a reader for NPD moveable facilities.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdMoveableFacilityReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD moveable facilities at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdMoveableFacilityReader newDefaultReader()
+  {
+    NpdMoveableFacilityReader reader = new NpdMoveableFacilityReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdMoveableFacilityReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD moveable facilities.
    * <p>
@@ -74,10 +102,36 @@ public final class NpdMoveableFacilityReader extends NpdReader<NpdMoveableFacili
   public static List<NpdMoveableFacility> readAll()
     throws IOException
   {
-    NpdMoveableFacilityReader reader = new NpdMoveableFacilityReader(URL);
+    NpdMoveableFacilityReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD moveable facilities asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD moveable facilities. Never null.
+   */
+  public static CompletableFuture<List<NpdMoveableFacility>> readAllAsync()
+  {
+    NpdMoveableFacilityReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD moveable facilities asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD moveable facilities. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdMoveableFacility>> readAllAsync(Executor executor)
+  {
+    NpdMoveableFacilityReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD moveable facility instance from the given tokens.
    *
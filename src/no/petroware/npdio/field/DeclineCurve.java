@@ -0,0 +1,275 @@
+package no.petroware.npdio.field;
+
+/**
+ * An Arps decline curve fitted to a monthly production series, as
+ * created by {@link DeclineCurveFitter}.
+ * <p>
+ * The rate <em>t</em> months after the start month of the curve is
+ * <pre>
+ *   q(t) = qi / (1 + b di t)^(1/b)
+ * </pre>
+ * where <em>qi</em> is the initial rate, <em>di</em> the initial nominal
+ * decline per month and <em>b</em> the hyperbolic exponent in [0,1].
+ * b = 0 is the exponential limit q(t) = qi exp(-di t), and b = 1 is
+ * harmonic decline.
+ * <p>
+ * Rates are in the unit of the series being fitted, typically million
+ * Sm\u00b3 per month.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class DeclineCurve
+{
+  /** Exponential decline, b = 0. */
+  public static final int EXPONENTIAL = 0;
+
+  /** Hyperbolic decline, b in [0,1]. */
+  public static final int HYPERBOLIC = 1;
+
+  /** Harmonic decline, b = 1. */
+  public static final int HARMONIC = 2;
+
+  /** Exponents below this are evaluated by the exponential limit. */
+  static final double EXPONENTIAL_LIMIT = 1.0e-8;
+
+  /** Model type as given to the fitter. EXPONENTIAL, HYPERBOLIC or HARMONIC. */
+  private final int type_;
+
+  /** Month index of t = 0, see {@link ProductionAnalytics#getMonthIndex}. */
+  private final int startMonth_;
+
+  /** Month index of the last month of the fitted series. */
+  private final int endMonth_;
+
+  /** Initial rate. [0,&gt;. */
+  private final double qi_;
+
+  /** Initial nominal decline per month. [0,&gt;. */
+  private final double di_;
+
+  /** Hyperbolic exponent. [0,1]. */
+  private final double b_;
+
+  /** Root mean square of the log residuals of the fit. */
+  private final double rms_;
+
+  /** Number of months the curve is fitted to. */
+  private final int nPoints_;
+
+  /** Number of solver iterations used. */
+  private final int nIterations_;
+
+  /**
+   * Create a decline curve.
+   *
+   * @param type         Model type. EXPONENTIAL, HYPERBOLIC or HARMONIC.
+   * @param startMonth   Month index of t = 0.
+   * @param endMonth     Month index of the last fitted month. [startMonth,&gt;.
+   * @param qi           Initial rate. [0,&gt;.
+   * @param di           Initial nominal decline per month. [0,&gt;.
+   * @param b            Hyperbolic exponent. [0,1].
+   * @param rms          Root mean square of the log residuals.
+   * @param nPoints      Number of fitted months. [0,&gt;.
+   * @param nIterations  Number of solver iterations used. [0,&gt;.
+   */
+  DeclineCurve(int type, int startMonth, int endMonth,
+               double qi, double di, double b,
+               double rms, int nPoints, int nIterations)
+  {
+    assert type == EXPONENTIAL || type == HYPERBOLIC || type == HARMONIC : "Invalid type: " + type;
+    assert endMonth >= startMonth : "Invalid month range: " + startMonth + " - " + endMonth;
+    assert b >= 0.0 && b <= 1.0 : "Invalid b: " + b;
+
+    type_ = type;
+    startMonth_ = startMonth;
+    endMonth_ = endMonth;
+    qi_ = qi;
+    di_ = di;
+    b_ = b;
+    rms_ = rms;
+    nPoints_ = nPoints;
+    nIterations_ = nIterations;
+  }
+
+  /**
+   * Return the model type of this curve.
+   *
+   * @return  Model type. EXPONENTIAL, HYPERBOLIC or HARMONIC.
+   */
+  public int getType()
+  {
+    return type_;
+  }
+
+  /**
+   * Return the month index of t = 0 of this curve, being the first
+   * fitted month.
+   *
+   * @return  Month index of t = 0, see {@link ProductionAnalytics#getMonthIndex}.
+   */
+  public int getStartMonth()
+  {
+    return startMonth_;
+  }
+
+  /**
+   * Return the month index of the last month of the fitted series.
+   * Forecasts start the month after.
+   *
+   * @return  Month index of the last fitted month.
+   */
+  public int getEndMonth()
+  {
+    return endMonth_;
+  }
+
+  /**
+   * Return the initial rate of this curve.
+   *
+   * @return  Initial rate. [0,&gt;.
+   */
+  public double getInitialRate()
+  {
+    return qi_;
+  }
+
+  /**
+   * Return the initial nominal decline per month of this curve.
+   *
+   * @return  Initial nominal decline per month. [0,&gt;.
+   */
+  public double getInitialDecline()
+  {
+    return di_;
+  }
+
+  /**
+   * Return the hyperbolic exponent of this curve.
+   *
+   * @return  Hyperbolic exponent. 0 for exponential, 1 for harmonic. [0,1].
+   */
+  public double getExponent()
+  {
+    return b_;
+  }
+
+  /**
+   * Return the root mean square of the residuals of the fit, in natural
+   * logarithm of the rate. 0.1 corresponds to a typical deviation of
+   * about 10%.
+   *
+   * @return  Root mean square of the log residuals. [0,&gt;.
+   */
+  public double getRms()
+  {
+    return rms_;
+  }
+
+  /**
+   * Return the number of months this curve is fitted to.
+   *
+   * @return  Number of fitted months. [0,&gt;.
+   */
+  public int getNPoints()
+  {
+    return nPoints_;
+  }
+
+  /**
+   * Return the number of solver iterations used to fit this curve.
+   *
+   * @return  Number of iterations. 0 for closed form fits. [0,&gt;.
+   */
+  public int getNIterations()
+  {
+    return nIterations_;
+  }
+
+  /**
+   * Return the rate of this curve the specified number of months after
+   * its start month.
+   *
+   * @param t  Months after the start month.
+   * @return   The rate at t.
+   */
+  public double getRate(double t)
+  {
+    return getRate(qi_, di_, b_, t);
+  }
+
+  /**
+   * Return the nominal decline per month of this curve the specified
+   * number of months after its start month.
+   *
+   * @param t  Months after the start month.
+   * @return   The nominal decline at t.
+   */
+  public double getDecline(double t)
+  {
+    return di_ / (1.0 + b_ * di_ * t);
+  }
+
+  /**
+   * Return the rate of the specified Arps curve.
+   *
+   * @param qi  Initial rate.
+   * @param di  Initial nominal decline.
+   * @param b   Hyperbolic exponent. [0,1].
+   * @param t   Time since start.
+   * @return    The rate at t.
+   */
+  static double getRate(double qi, double di, double b, double t)
+  {
+    return b < EXPONENTIAL_LIMIT ? qi * Math.exp(-di * t) : qi * Math.pow(1.0 + b * di * t, -1.0 / b);
+  }
+
+  /**
+   * Return the forecast rates of the specified number of months
+   * following the last fitted month.
+   *
+   * @param nMonths  Number of months to forecast. [0,&gt;.
+   * @return         The forecast rates, one per month. Never null.
+   * @throws IllegalArgumentException  If nMonths is negative.
+   */
+  public double[] getForecast(int nMonths)
+  {
+    if (nMonths < 0)
+      throw new IllegalArgumentException("Invalid nMonths: " + nMonths);
+
+    double[] forecast = new double[nMonths];
+    int t0 = endMonth_ - startMonth_ + 1;
+    for (int i = 0; i < nMonths; i++)
+      forecast[i] = getRate(t0 + i);
+
+    return forecast;
+  }
+
+  /**
+   * Return the rates of this curve for the specified range of months.
+   *
+   * @param firstMonth  Month index of the first month, see {@link ProductionAnalytics#getMonthIndex}.
+   * @param nMonths     Number of months. [0,&gt;.
+   * @return            The rates, one per month. Never null.
+   * @throws IllegalArgumentException  If nMonths is negative.
+   */
+  public double[] getRates(int firstMonth, int nMonths)
+  {
+    if (nMonths < 0)
+      throw new IllegalArgumentException("Invalid nMonths: " + nMonths);
+
+    double[] rates = new double[nMonths];
+    for (int i = 0; i < nMonths; i++)
+      rates[i] = getRate(firstMonth - startMonth_ + i);
+
+    return rates;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return "qi=" + qi_ + " di=" + di_ + " b=" + b_ + " rms=" + rms_ + " n=" + nPoints_;
+  }
+}
@@ -0,0 +1,652 @@
+package no.petroware.npdio.field;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fits Arps decline curves to monthly production series, like the
+ * oil or gas production of all producing fields:
+ *
+ * <pre>
+ *   DeclineCurveFitter fitter = new DeclineCurveFitter(DeclineCurve.HYPERBOLIC);
+ *   Map&lt;NpdField, DeclineCurve&gt; curves = fitter.fit(fields, ProductionCube.OIL);
+ *   double[] forecast = curves.get(field).getForecast(120);
+ * </pre>
+ *
+ * Each series is fitted from its peak month, or over its last months
+ * if so specified, to its last producing month. Months without
+ * production are left out. The fit minimizes the squared error of the
+ * logarithm of the rates so that late, low rates weigh as much as
+ * early ones.
+ * <p>
+ * Exponential curves are fitted in closed form by linear regression.
+ * Harmonic and hyperbolic curves are fitted by Levenberg-Marquardt,
+ * started from the exponential fit or, when given, from a previous fit
+ * of the same series, whichever fits best. Refitting with the curves of
+ * the previous refresh typically converges in a few iterations.
+ * <p>
+ * Series are fitted in parallel on the fork/join pool of the fitter.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class DeclineCurveFitter
+{
+  /** Minimum number of producing months needed to fit a curve. */
+  private static final int MIN_N_POINTS = 6;
+
+  /** Maximum number of solver iterations. */
+  private static final int MAX_ITERATIONS = 100;
+
+  /** Relative change of the squared error below which the solver stops. */
+  private static final double TOLERANCE = 1.0e-10;
+
+  /** Damping above which the solver gives up improving the fit. */
+  private static final double MAX_DAMPING = 1.0e10;
+
+  /** Number of series below which a fork/join task fits them itself. */
+  private static final int SEQUENTIAL_THRESHOLD = 4;
+
+  /** Number of curve parameters: ln(qi), di and b. */
+  private static final int N_PARAMETERS = 3;
+
+  /** Model type to fit. EXPONENTIAL, HYPERBOLIC or HARMONIC. */
+  private final int type_;
+
+  /** Maximum number of trailing months to fit. 0 for all months from peak. */
+  private final int maxMonths_;
+
+  /** Pool to fit series on. Non-null. */
+  private final ForkJoinPool pool_;
+
+  /**
+   * Create a decline curve fitter.
+   *
+   * @param type       Model type to fit. DeclineCurve.EXPONENTIAL,
+   *                   DeclineCurve.HYPERBOLIC or DeclineCurve.HARMONIC.
+   * @param maxMonths  Maximum number of trailing months to fit. 0 to fit
+   *                   all months from the peak month. [0,&gt;.
+   * @param pool       Pool to fit series on. Non-null.
+   * @throws IllegalArgumentException  If type is invalid, maxMonths is negative
+   *                                   or pool is null.
+   */
+  public DeclineCurveFitter(int type, int maxMonths, ForkJoinPool pool)
+  {
+    if (type != DeclineCurve.EXPONENTIAL && type != DeclineCurve.HYPERBOLIC && type != DeclineCurve.HARMONIC)
+      throw new IllegalArgumentException("Invalid type: " + type);
+
+    if (maxMonths < 0)
+      throw new IllegalArgumentException("Invalid maxMonths: " + maxMonths);
+
+    if (pool == null)
+      throw new IllegalArgumentException("pool cannot be null");
+
+    type_ = type;
+    maxMonths_ = maxMonths;
+    pool_ = pool;
+  }
+
+  /**
+   * Create a decline curve fitter that fits all months from the peak
+   * month, using the common fork/join pool.
+   *
+   * @param type  Model type to fit. DeclineCurve.EXPONENTIAL,
+   *              DeclineCurve.HYPERBOLIC or DeclineCurve.HARMONIC.
+   * @throws IllegalArgumentException  If type is invalid.
+   */
+  public DeclineCurveFitter(int type)
+  {
+    this(type, 0, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Fit a decline curve to the specified monthly series.
+   *
+   * @param values      Monthly values, one per month. Non-null.
+   * @param firstMonth  Month index of the first value, see {@link ProductionAnalytics#getMonthIndex}.
+   * @param start       Previous curve of the same series to start from. Null if none.
+   * @return            The fitted curve, or null if the series has too few
+   *                    producing months.
+   * @throws IllegalArgumentException  If values is null.
+   */
+  public DeclineCurve fit(double[] values, int firstMonth, DeclineCurve start)
+  {
+    if (values == null)
+      throw new IllegalArgumentException("values cannot be null");
+
+    return new Solver().fit(values, firstMonth, start);
+  }
+
+  /**
+   * Fit decline curves to the specified monthly series in parallel.
+   *
+   * @param series       Monthly values of each series. Non-null.
+   * @param firstMonths  Month index of the first value of each series. Non-null.
+   * @param starts       Previous curve of each series to start from, or null
+   *                     entries where there is none. Null if none at all.
+   * @return             The fitted curve of each series, with null entries where
+   *                     a series has too few producing months. Never null.
+   * @throws IllegalArgumentException  If series or firstMonths is null, or the
+   *                                   arrays are of different length.
+   */
+  public DeclineCurve[] fit(double[][] series, int[] firstMonths, DeclineCurve[] starts)
+  {
+    if (series == null)
+      throw new IllegalArgumentException("series cannot be null");
+
+    if (firstMonths == null)
+      throw new IllegalArgumentException("firstMonths cannot be null");
+
+    if (firstMonths.length != series.length)
+      throw new IllegalArgumentException("series and firstMonths must be of equal length");
+
+    if (starts != null && starts.length != series.length)
+      throw new IllegalArgumentException("series and starts must be of equal length");
+
+    for (double[] values : series) {
+      if (values == null)
+        throw new IllegalArgumentException("series cannot contain null");
+    }
+
+    DeclineCurve[] curves = new DeclineCurve[series.length];
+    pool_.invoke(new FitTask(series, firstMonths, starts, curves, 0, series.length));
+    return curves;
+  }
+
+  /**
+   * Fit decline curves to the specified measure of the production of the
+   * specified fields in parallel, starting from previous curves of the
+   * same fields where given.
+   *
+   * @param fields          Fields to fit. Fields without production are skipped. Non-null.
+   * @param measure         Measure index, like {@link ProductionCube#OIL}.
+   * @param previousCurves  Previous curves by field to start from. Null if none.
+   * @return                The fitted curves by field, in the order of fields. Fields
+   *                        with too few producing months are not included. Never null.
+   * @throws IllegalArgumentException  If fields is null or measure is out of range.
+   */
+  public Map<NpdField, DeclineCurve> fit(Collection<NpdField> fields, int measure,
+                                         Map<NpdField, DeclineCurve> previousCurves)
+  {
+    if (fields == null)
+      throw new IllegalArgumentException("fields cannot be null");
+
+    if (measure < 0 || measure >= ProductionCube.N_MEASURES)
+      throw new IllegalArgumentException("Invalid measure: " + measure);
+
+    List<NpdField> producingFields = new ArrayList<>();
+    List<double[]> series = new ArrayList<>();
+    List<Integer> firstMonths = new ArrayList<>();
+
+    for (NpdField field : fields) {
+      Production production = field.getProduction();
+      if (production == null || production.getEntries().isEmpty())
+        continue;
+
+      List<Production.Entry> entries = production.getEntries();
+      int firstMonth = ProductionAnalytics.getMonthIndex(entries.get(0));
+      int lastMonth = ProductionAnalytics.getMonthIndex(entries.get(entries.size() - 1));
+
+      producingFields.add(field);
+      series.add(ProductionAnalytics.getMonthlyValues(production, measure, firstMonth, lastMonth - firstMonth + 1));
+      firstMonths.add(firstMonth);
+    }
+
+    int nSeries = producingFields.size();
+    int[] firstMonthsArray = new int[nSeries];
+    DeclineCurve[] starts = previousCurves != null ? new DeclineCurve[nSeries] : null;
+    for (int i = 0; i < nSeries; i++) {
+      firstMonthsArray[i] = firstMonths.get(i);
+      if (starts != null)
+        starts[i] = previousCurves.get(producingFields.get(i));
+    }
+
+    DeclineCurve[] curves = fit(series.toArray(new double[nSeries][]), firstMonthsArray, starts);
+
+    Map<NpdField, DeclineCurve> curvesByField = new LinkedHashMap<>();
+    for (int i = 0; i < nSeries; i++) {
+      if (curves[i] != null)
+        curvesByField.put(producingFields.get(i), curves[i]);
+    }
+
+    return Collections.unmodifiableMap(curvesByField);
+  }
+
+  /**
+   * Fit decline curves to the specified measure of the production of the
+   * specified fields in parallel.
+   *
+   * @param fields   Fields to fit. Fields without production are skipped. Non-null.
+   * @param measure  Measure index, like {@link ProductionCube#OIL}.
+   * @return         The fitted curves by field, in the order of fields. Fields
+   *                 with too few producing months are not included. Never null.
+   * @throws IllegalArgumentException  If fields is null or measure is out of range.
+   */
+  public Map<NpdField, DeclineCurve> fit(Collection<NpdField> fields, int measure)
+  {
+    return fit(fields, measure, null);
+  }
+
+  /**
+   * Fork/join task fitting a range of series.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private final class FitTask extends RecursiveAction
+  {
+    /** Version number for serialization. Not really used. */
+    private static final long serialVersionUID = 1L;
+
+    /** All series. Non-null. */
+    private final transient double[][] series_;
+
+    /** Month index of the first value of each series. Non-null. */
+    private final transient int[] firstMonths_;
+
+    /** Curves to start from. Null if none. */
+    private final transient DeclineCurve[] starts_;
+
+    /** Resulting curves. Non-null. */
+    private final transient DeclineCurve[] curves_;
+
+    /** First series of this task. */
+    private final int from_;
+
+    /** Last series of this task, exclusive. */
+    private final int to_;
+
+    /**
+     * Create a task fitting the specified range of series.
+     *
+     * @param series       All series. Non-null.
+     * @param firstMonths  Month index of the first value of each series. Non-null.
+     * @param starts       Curves to start from. Null if none.
+     * @param curves       Resulting curves. Non-null.
+     * @param from         First series to fit.
+     * @param to           Last series to fit, exclusive.
+     */
+    FitTask(double[][] series, int[] firstMonths, DeclineCurve[] starts,
+            DeclineCurve[] curves, int from, int to)
+    {
+      series_ = series;
+      firstMonths_ = firstMonths;
+      starts_ = starts;
+      curves_ = curves;
+      from_ = from;
+      to_ = to;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void compute()
+    {
+      if (to_ - from_ <= SEQUENTIAL_THRESHOLD) {
+        Solver solver = new Solver();
+        for (int i = from_; i < to_; i++)
+          curves_[i] = solver.fit(series_[i], firstMonths_[i], starts_ != null ? starts_[i] : null);
+        return;
+      }
+
+      int middle = (from_ + to_) >>> 1;
+      invokeAll(new FitTask(series_, firstMonths_, starts_, curves_, from_, middle),
+                new FitTask(series_, firstMonths_, starts_, curves_, middle, to_));
+    }
+  }
+
+  /**
+   * Fits one series at the time. Holds work arrays that are reused
+   * between series.
+   * <p>
+   * This class is not thread-safe.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private final class Solver
+  {
+    /** Months since start of the fitted points. */
+    private double[] t_ = new double[0];
+
+    /** Natural logarithm of the rate of the fitted points. */
+    private double[] y_ = new double[0];
+
+    /** Number of fitted points. */
+    private int n_;
+
+    /** Gauss-Newton matrix, row major. */
+    private final double[] a_ = new double[N_PARAMETERS * N_PARAMETERS];
+
+    /** Gradient. */
+    private final double[] g_ = new double[N_PARAMETERS];
+
+    /** Cholesky factor of the damped matrix, row major. */
+    private final double[] l_ = new double[N_PARAMETERS * N_PARAMETERS];
+
+    /** Parameter step. */
+    private final double[] step_ = new double[N_PARAMETERS];
+
+    /** Jacobian row of one point. */
+    private final double[] jacobian_ = new double[N_PARAMETERS];
+
+    /** Current parameters: ln(qi), di and b. */
+    private final double[] p_ = new double[N_PARAMETERS];
+
+    /** Trial parameters. */
+    private final double[] trial_ = new double[N_PARAMETERS];
+
+    /**
+     * Create a solver.
+     */
+    Solver()
+    {
+      // Nothing
+    }
+
+    /**
+     * Fit a curve to the specified series.
+     *
+     * @param values      Monthly values. Non-null.
+     * @param firstMonth  Month index of the first value.
+     * @param start       Curve to start from. Null if none.
+     * @return            The fitted curve, or null if too few points.
+     */
+    DeclineCurve fit(double[] values, int firstMonth, DeclineCurve start)
+    {
+      assert values != null : "values cannot be null";
+
+      //
+      // Find the window: from peak (or the last maxMonths) to the last producing month
+      //
+      int end = values.length - 1;
+      while (end >= 0 && !(values[end] > 0.0))
+        end--;
+
+      if (end < 0)
+        return null;
+
+      int begin = maxMonths_ > 0 ? Math.max(0, end - maxMonths_ + 1) : 0;
+      int peak = begin;
+      for (int i = begin + 1; i <= end; i++) {
+        if (values[i] > values[peak])
+          peak = i;
+      }
+
+      //
+      // Collect producing months
+      //
+      if (t_.length < end - peak + 1) {
+        t_ = new double[end - peak + 1];
+        y_ = new double[end - peak + 1];
+      }
+
+      n_ = 0;
+      for (int i = peak; i <= end; i++) {
+        if (values[i] > 0.0 && !Double.isInfinite(values[i])) {
+          t_[n_] = i - peak;
+          y_[n_] = Math.log(values[i]);
+          n_++;
+        }
+      }
+
+      if (n_ < MIN_N_POINTS)
+        return null;
+
+      int startMonth = firstMonth + peak;
+      int endMonth = firstMonth + end;
+
+      //
+      // Exponential by linear regression of the log rates
+      //
+      fitExponential();
+      if (type_ == DeclineCurve.EXPONENTIAL)
+        return newCurve(startMonth, endMonth, 0);
+
+      double b = type_ == DeclineCurve.HARMONIC ? 1.0 : 0.0;
+      p_[2] = b;
+      double error = getError(p_);
+
+      //
+      // Warm start from the previous curve, moved to this start month
+      //
+      if (start != null) {
+        double t = startMonth - start.getStartMonth();
+        double qi = start.getRate(t);
+        double di = start.getDecline(t);
+        if (qi > 0.0 && di >= 0.0 && !Double.isInfinite(qi) && !Double.isNaN(di)) {
+          trial_[0] = Math.log(qi);
+          trial_[1] = di;
+          trial_[2] = type_ == DeclineCurve.HARMONIC ? 1.0 : start.getExponent();
+          double startError = getError(trial_);
+          if (startError < error) {
+            System.arraycopy(trial_, 0, p_, 0, N_PARAMETERS);
+            error = startError;
+          }
+        }
+      }
+
+      int nIterations = solve(error, type_ == DeclineCurve.HYPERBOLIC ? N_PARAMETERS : N_PARAMETERS - 1);
+      return newCurve(startMonth, endMonth, nIterations);
+    }
+
+    /**
+     * Fit an exponential curve in closed form and store its parameters
+     * as the current parameters. A rising series gives zero decline.
+     */
+    private void fitExponential()
+    {
+      double tMean = 0.0;
+      double yMean = 0.0;
+      for (int i = 0; i < n_; i++) {
+        tMean += t_[i];
+        yMean += y_[i];
+      }
+      tMean /= n_;
+      yMean /= n_;
+
+      double sty = 0.0;
+      double stt = 0.0;
+      for (int i = 0; i < n_; i++) {
+        double dt = t_[i] - tMean;
+        sty += dt * (y_[i] - yMean);
+        stt += dt * dt;
+      }
+
+      double slope = stt > 0.0 ? sty / stt : 0.0;
+      if (slope > 0.0)
+        slope = 0.0;
+
+      p_[0] = yMean - slope * tMean;
+      p_[1] = -slope;
+      p_[2] = 0.0;
+    }
+
+    /**
+     * Return the log of the rate of the curve of the specified parameters.
+     * If requested, also compute the derivatives with respect to the
+     * parameters.
+     *
+     * @param p         Parameters: ln(qi), di and b. Non-null.
+     * @param t         Months since start.
+     * @param jacobian  Derivatives of ln(q) with respect to the parameters. Null if not needed.
+     * @return          ln(q(t)).
+     */
+    private double getLogRate(double[] p, double t, double[] jacobian)
+    {
+      double di = p[1];
+      double b = p[2];
+      double u = b * di * t;
+
+      double log1pu = b < DeclineCurve.EXPONENTIAL_LIMIT ? 0.0 : Math.log1p(u);
+      double logRate = b < DeclineCurve.EXPONENTIAL_LIMIT ? p[0] - di * t : p[0] - log1pu / b;
+
+      if (jacobian != null) {
+        jacobian[0] = 1.0;
+        jacobian[1] = -t / (1.0 + u);
+
+        // d/db of -ln(1 + u) / b = (ln(1 + u) - u / (1 + u)) / b^2, by series for small u
+        double dit = di * t;
+        jacobian[2] = u < 1.0e-3 ?
+          dit * dit * (0.5 - u * 2.0 / 3.0 + u * u * 0.75) :
+          (log1pu - u / (1.0 + u)) / (b * b);
+      }
+
+      return logRate;
+    }
+
+    /**
+     * Return the sum of squared log residuals of the specified parameters.
+     *
+     * @param p  Parameters: ln(qi), di and b. Non-null.
+     * @return   Sum of squared residuals.
+     */
+    private double getError(double[] p)
+    {
+      double error = 0.0;
+      for (int i = 0; i < n_; i++) {
+        double r = getLogRate(p, t_[i], null) - y_[i];
+        error += r * r;
+      }
+      return error;
+    }
+
+    /**
+     * Improve the current parameters by Levenberg-Marquardt iterations,
+     * keeping di non-negative and b within [0,1].
+     *
+     * @param error        Squared error of the current parameters.
+     * @param nParameters  Number of free parameters, 2 when b is fixed.
+     * @return             Number of iterations used.
+     */
+    private int solve(double error, int nParameters)
+    {
+      double damping = 1.0e-3;
+
+      int iteration = 0;
+      while (iteration < MAX_ITERATIONS) {
+        iteration++;
+
+        //
+        // Build the Gauss-Newton system
+        //
+        Arrays.fill(a_, 0.0);
+        Arrays.fill(g_, 0.0);
+        for (int i = 0; i < n_; i++) {
+          double r = getLogRate(p_, t_[i], jacobian_) - y_[i];
+          for (int j = 0; j < nParameters; j++) {
+            g_[j] += jacobian_[j] * r;
+            for (int k = 0; k <= j; k++)
+              a_[j * N_PARAMETERS + k] += jacobian_[j] * jacobian_[k];
+          }
+        }
+
+        //
+        // Increase damping until the step improves the fit
+        //
+        boolean isImproved = false;
+        double trialError = error;
+        while (!isImproved && damping < MAX_DAMPING) {
+          if (!solveStep(damping, nParameters)) {
+            damping *= 10.0;
+            continue;
+          }
+
+          for (int j = 0; j < N_PARAMETERS; j++)
+            trial_[j] = j < nParameters ? p_[j] + step_[j] : p_[j];
+          trial_[1] = Math.max(trial_[1], 0.0);
+          trial_[2] = Math.min(Math.max(trial_[2], 0.0), 1.0);
+
+          trialError = getError(trial_);
+          if (trialError < error)
+            isImproved = true;
+          else
+            damping *= 10.0;
+        }
+
+        if (!isImproved)
+          break;
+
+        System.arraycopy(trial_, 0, p_, 0, N_PARAMETERS);
+        damping = Math.max(damping * 0.1, 1.0e-12);
+
+        boolean isConverged = error - trialError <= TOLERANCE * error;
+        error = trialError;
+        if (isConverged)
+          break;
+      }
+
+      return iteration;
+    }
+
+    /**
+     * Solve the damped system for the parameter step by Cholesky
+     * decomposition of its lower triangle.
+     *
+     * @param damping      Levenberg-Marquardt damping.
+     * @param nParameters  Number of free parameters.
+     * @return             True if solved, false if the system is singular.
+     */
+    private boolean solveStep(double damping, int nParameters)
+    {
+      double[] l = l_;
+      for (int j = 0; j < nParameters; j++) {
+        for (int k = 0; k <= j; k++) {
+          double sum = a_[j * N_PARAMETERS + k];
+          if (k == j)
+            sum += damping * (sum + 1.0e-12);
+
+          for (int m = 0; m < k; m++)
+            sum -= l[j * N_PARAMETERS + m] * l[k * N_PARAMETERS + m];
+
+          if (k == j) {
+            if (!(sum > 0.0))
+              return false;
+            l[j * N_PARAMETERS + j] = Math.sqrt(sum);
+          }
+          else {
+            l[j * N_PARAMETERS + k] = sum / l[k * N_PARAMETERS + k];
+          }
+        }
+      }
+
+      // Forward substitution of L z = -g, then back substitution of L' x = z
+      for (int j = 0; j < nParameters; j++) {
+        double sum = -g_[j];
+        for (int m = 0; m < j; m++)
+          sum -= l[j * N_PARAMETERS + m] * step_[m];
+        step_[j] = sum / l[j * N_PARAMETERS + j];
+      }
+
+      for (int j = nParameters - 1; j >= 0; j--) {
+        double sum = step_[j];
+        for (int m = j + 1; m < nParameters; m++)
+          sum -= l[m * N_PARAMETERS + j] * step_[m];
+        step_[j] = sum / l[j * N_PARAMETERS + j];
+      }
+
+      return true;
+    }
+
+    /**
+     * Create a curve of the current parameters.
+     *
+     * @param startMonth   Month index of t = 0.
+     * @param endMonth     Month index of the last fitted month.
+     * @param nIterations  Number of iterations used.
+     * @return             The curve. Never null.
+     */
+    private DeclineCurve newCurve(int startMonth, int endMonth, int nIterations)
+    {
+      double rms = Math.sqrt(getError(p_) / n_);
+      return new DeclineCurve(type_, startMonth, endMonth,
+                              Math.exp(p_[0]), p_[1], p_[2],
+                              rms, n_, nIterations);
+    }
+  }
+}
@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * NPD field reader.
@@ -71,6 +74,31 @@ public final class NpdFieldReader extends NpdReader<NpdField>
     super(url);
   }
 
+  /**
+   * Create a reader for NPD fields.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdFieldReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD fields at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdFieldReader newDefaultReader()
+  {
+    NpdFieldReader reader = new NpdFieldReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdFieldReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD fields.
    * <p>
@@ -87,10 +115,36 @@ public final class NpdFieldReader extends NpdReader<NpdField>
   public static List<NpdField> readAll()
     throws IOException
   {
-    NpdFieldReader reader = new NpdFieldReader(URL);
+    NpdFieldReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD fields asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD fields. Never null.
+   */
+  public static CompletableFuture<List<NpdField>> readAllAsync()
+  {
+    NpdFieldReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD fields asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD fields. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdField>> readAllAsync(Executor executor)
+  {
+    NpdFieldReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD field instance from the given tokens.
    *
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * The monthly petroleum production for some entity.
@@ -84,6 +85,7 @@ public final class Production
     /** Water production. Million Sm\u00b3. */
     private final double water_;
 
+    /** NPDID of the associated field. */
     private final String npdidField_;
 
     /**
@@ -203,11 +205,45 @@ public final class Production
       return water_;
     }
 
-    String getNpdidField()
+    /**
+     * Return NPDID of the field of this production entry.
+     *
+     * @return  NPDID of the field of this production entry.
+     */
+    public String getNpdidField()
     {
       return npdidField_;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash(year_, month_, oil_, gas_, ngl_, condensate_, oilEquivalents_, water_, npdidField_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object object)
+    {
+      if (object == this)
+        return true;
+
+      if (!(object instanceof Entry))
+        return false;
+
+      Entry entry = (Entry) object;
+      return year_ == entry.year_ &&
+             month_ == entry.month_ &&
+             Double.compare(oil_, entry.oil_) == 0 &&
+             Double.compare(gas_, entry.gas_) == 0 &&
+             Double.compare(ngl_, entry.ngl_) == 0 &&
+             Double.compare(condensate_, entry.condensate_) == 0 &&
+             Double.compare(oilEquivalents_, entry.oilEquivalents_) == 0 &&
+             Double.compare(water_, entry.water_) == 0 &&
+             Objects.equals(npdidField_, entry.npdidField_);
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString()
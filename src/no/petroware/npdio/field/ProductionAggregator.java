@@ -0,0 +1,184 @@
+package no.petroware.npdio.field;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Group-by aggregation of field production.
+ * <p>
+ * Fields are grouped by any number of dimensions, each being a function
+ * from a field to a category like its operator or main area, and their
+ * monthly production is summed per group into time buckets of one or
+ * more months:
+ *
+ * <pre>
+ *   List&lt;Function&lt;? super NpdField, String&gt;&gt; dimensions =
+ *     Arrays.asList(ProductionAggregator.OPERATOR, ProductionAggregator.MAIN_AREA);
+ *
+ *   ProductionCube cube = ProductionAggregator.aggregate(fields, dimensions, 3);
+ *   int groupNo = cube.findGroup("Equinor Energy AS", "North sea");
+ *   double[] quarterlyOil = cube.getValues(groupNo, ProductionCube.OIL);
+ * </pre>
+ *
+ * An empty list of dimensions gives a single group, being the total of
+ * all fields. The groups are summed in parallel.
+ * <p>
+ * The production of the fields must have been loaded, see
+ * {@link ProductionReader#read(Collection)}. Fields without production
+ * are ignored.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class ProductionAggregator
+{
+  /** Dimension of the field operator. */
+  public static final Function<NpdField, String> OPERATOR = NpdField::getOperatorName;
+
+  /** Dimension of the field main area. */
+  public static final Function<NpdField, String> MAIN_AREA = NpdField::getMainArea;
+
+  /** Dimension of the field owner. */
+  public static final Function<NpdField, String> OWNER = NpdField::getOwnerName;
+
+  /** Dimension of the field activity status. */
+  public static final Function<NpdField, String> ACTIVITY_STATUS = NpdField::getActivityStatus;
+
+  /** Dimension of the field itself, by name. */
+  public static final Function<NpdField, String> FIELD = NpdField::getName;
+
+  /** Comparator of group keys, element by element with nulls last. */
+  private static final Comparator<List<String>> KEY_COMPARATOR = (key1, key2) -> {
+    for (int i = 0; i < key1.size(); i++) {
+      String value1 = key1.get(i);
+      String value2 = key2.get(i);
+      int c = value1 == null ? (value2 == null ? 0 : 1) : value2 == null ? -1 : value1.compareTo(value2);
+      if (c != 0)
+        return c;
+    }
+    return 0;
+  };
+
+  /**
+   * Private constructor to prevent client instantiation.
+   */
+  private ProductionAggregator()
+  {
+    assert false : "This constructor should never be called";
+  }
+
+  /**
+   * Aggregate the production of the specified fields.
+   *
+   * @param fields           Fields to aggregate. Non-null.
+   * @param dimensions       Dimensions to group the fields by. Non-null.
+   * @param monthsPerBucket  Number of months of each time bucket: 1 for
+   *                         monthly, 3 for quarterly, 12 for yearly etc.
+   *                         Must divide 12.
+   * @return                 The aggregated production. Never null.
+   * @throws IllegalArgumentException  If fields or dimensions is null, or
+   *                                   monthsPerBucket does not divide 12.
+   */
+  public static ProductionCube aggregate(Collection<NpdField> fields,
+                                         List<? extends Function<? super NpdField, String>> dimensions,
+                                         int monthsPerBucket)
+  {
+    if (fields == null)
+      throw new IllegalArgumentException("fields cannot be null");
+
+    if (dimensions == null)
+      throw new IllegalArgumentException("dimensions cannot be null");
+
+    if (monthsPerBucket < 1 || 12 % monthsPerBucket != 0)
+      throw new IllegalArgumentException("Invalid monthsPerBucket: " + monthsPerBucket);
+
+    //
+    // Collect the entries of each field and the time range
+    //
+    List<NpdField> producingFields = new ArrayList<>();
+    List<List<Production.Entry>> fieldEntries = new ArrayList<>();
+    int firstBucket = Integer.MAX_VALUE;
+    int lastBucket = Integer.MIN_VALUE;
+
+    for (NpdField field : fields) {
+      Production production = field.getProduction();
+      if (production == null)
+        continue;
+
+      List<Production.Entry> entries = production.getEntries();
+      if (entries.isEmpty())
+        continue;
+
+      producingFields.add(field);
+      fieldEntries.add(entries);
+
+      // Entries are sorted on time
+      firstBucket = Math.min(firstBucket, getBucket(entries.get(0), monthsPerBucket));
+      lastBucket = Math.max(lastBucket, getBucket(entries.get(entries.size() - 1), monthsPerBucket));
+    }
+
+    int nBuckets = producingFields.isEmpty() ? 0 : lastBucket - firstBucket + 1;
+
+    //
+    // Find the group of each field
+    //
+    Map<List<String>, List<Integer>> fieldsByKey = new HashMap<>();
+    for (int i = 0; i < producingFields.size(); i++) {
+      String[] key = new String[dimensions.size()];
+      for (int d = 0; d < key.length; d++)
+        key[d] = dimensions.get(d).apply(producingFields.get(i));
+
+      fieldsByKey.computeIfAbsent(Collections.unmodifiableList(Arrays.asList(key)), k -> new ArrayList<>()).add(i);
+    }
+
+    List<List<String>> groupKeys = new ArrayList<>(fieldsByKey.keySet());
+    Collections.sort(groupKeys, KEY_COMPARATOR);
+
+    Map<List<String>, Integer> groupIndices = new HashMap<>();
+    for (int groupNo = 0; groupNo < groupKeys.size(); groupNo++)
+      groupIndices.put(groupKeys.get(groupNo), groupNo);
+
+    //
+    // Sum each group in parallel. Groups write to disjoint parts of the array.
+    //
+    int groupSize = nBuckets * ProductionCube.N_MEASURES;
+    double[] values = new double[groupKeys.size() * groupSize];
+    int first = firstBucket;
+
+    IntStream.range(0, groupKeys.size()).parallel().forEach(groupNo -> {
+      int offset = groupNo * groupSize;
+      for (int fieldNo : fieldsByKey.get(groupKeys.get(groupNo))) {
+        for (Production.Entry entry : fieldEntries.get(fieldNo)) {
+          int index = offset + (getBucket(entry, monthsPerBucket) - first) * ProductionCube.N_MEASURES;
+          values[index + ProductionCube.OIL] += entry.getOil();
+          values[index + ProductionCube.GAS] += entry.getGas();
+          values[index + ProductionCube.NGL] += entry.getNgl();
+          values[index + ProductionCube.CONDENSATE] += entry.getCondensate();
+          values[index + ProductionCube.OIL_EQUIVALENTS] += entry.getOilEquivalents();
+          values[index + ProductionCube.WATER] += entry.getWater();
+        }
+      }
+    });
+
+    return new ProductionCube(groupKeys, groupIndices, monthsPerBucket, first, nBuckets, values);
+  }
+
+  /**
+   * Return the time bucket of the specified entry, counted from year 0.
+   *
+   * @param entry            Production entry. Non-null.
+   * @param monthsPerBucket  Number of months of each time bucket.
+   * @return                 The time bucket of the entry.
+   */
+  private static int getBucket(Production.Entry entry, int monthsPerBucket)
+  {
+    return (entry.getYear() * 12 + entry.getMonth() - 1) / monthsPerBucket;
+  }
+}
@@ -0,0 +1,423 @@
+package no.petroware.npdio.field;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Analytics over production series held in primitive arrays, like
+ * cumulative production, moving averages, year over year changes,
+ * decline rates, water cut, gas/oil ratio and sums across fields:
+ *
+ * <pre>
+ *   double[] oil = ProductionAnalytics.getValues(field.getProduction(), ProductionCube.OIL);
+ *   double[] cumulativeOil = ProductionAnalytics.cumulativeSum(oil);
+ *   double[] yearOverYear = ProductionAnalytics.delta(oil, 12);
+ * </pre>
+ *
+ * The kernels use the SIMD instructions of the platform through the
+ * vector API when the jdk.incubator.vector module is present (JDK 17
+ * or later, run with <code>--add-modules jdk.incubator.vector</code>)
+ * and the vector implementation is on the class path, as it is in the
+ * Java 17 section of the multi-release NpdIo.jar. Otherwise plain
+ * loops are used. The vector API can be disabled by setting the system
+ * property <code>no.petroware.npdio.vector</code> to false.
+ * <p>
+ * Results may differ from sequential summation in the last digits as
+ * the vector kernels add in a different order.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class ProductionAnalytics
+{
+  /** Name of the class of the vector kernels. */
+  private static final String VECTOR_KERNELS_CLASS = "no.petroware.npdio.field.VectorProductionKernels";
+
+  /** The kernels in use. Non-null. */
+  private static final ProductionKernels KERNELS = newKernels();
+
+  /**
+   * Private constructor to prevent client instantiation.
+   */
+  private ProductionAnalytics()
+  {
+    assert false : "This constructor should never be called";
+  }
+
+  /**
+   * Create the best kernels available on this platform.
+   *
+   * @return  The kernels to use. Never null.
+   */
+  private static ProductionKernels newKernels()
+  {
+    if (!Boolean.parseBoolean(System.getProperty("no.petroware.npdio.vector", "true")))
+      return new ScalarProductionKernels();
+
+    try {
+      Class<?> vectorKernelsClass = Class.forName(VECTOR_KERNELS_CLASS);
+      ProductionKernels kernels = (ProductionKernels) vectorKernelsClass.getDeclaredConstructor().newInstance();
+
+      // Exercise once so that a missing module shows up here rather than on first use
+      kernels.sum(new double[1], 1);
+      return kernels;
+    }
+    catch (ReflectiveOperationException | LinkageError | RuntimeException exception) {
+      // Vector API not available
+      return new ScalarProductionKernels();
+    }
+  }
+
+  /**
+   * Check if the vector API kernels are in use.
+   *
+   * @return  True if the vector API kernels are in use, false if the
+   *          plain loops are.
+   */
+  public static boolean isVectorized()
+  {
+    return !(KERNELS instanceof ScalarProductionKernels);
+  }
+
+  /**
+   * Check that the specified array is non-null.
+   *
+   * @param array  Array to check.
+   * @param name   Name of array, for error messages. Non-null.
+   * @throws IllegalArgumentException  If array is null.
+   */
+  private static void checkNotNull(double[] array, String name)
+  {
+    if (array == null)
+      throw new IllegalArgumentException(name + " cannot be null");
+  }
+
+  /**
+   * Check that the specified measure is in range.
+   *
+   * @param measure  Measure index to check.
+   * @throws IllegalArgumentException  If measure is out of range.
+   */
+  private static void checkMeasure(int measure)
+  {
+    if (measure < 0 || measure >= ProductionCube.N_MEASURES)
+      throw new IllegalArgumentException("Invalid measure: " + measure);
+  }
+
+  /**
+   * Check that the specified arrays are non-null and of equal length.
+   *
+   * @param array1  First array.
+   * @param name1   Name of first array, for error messages. Non-null.
+   * @param array2  Second array.
+   * @param name2   Name of second array, for error messages. Non-null.
+   * @throws IllegalArgumentException  If an array is null or the lengths differ.
+   */
+  private static void checkEqualLength(double[] array1, String name1, double[] array2, String name2)
+  {
+    checkNotNull(array1, name1);
+    checkNotNull(array2, name2);
+
+    if (array1.length != array2.length)
+      throw new IllegalArgumentException(name1 + " and " + name2 + " must be of equal length");
+  }
+
+  /**
+   * Return the month index of the specified production entry, being
+   * the number of months since January of year 0.
+   *
+   * @param entry  Production entry. Non-null.
+   * @return       Month index of the entry.
+   * @throws IllegalArgumentException  If entry is null.
+   */
+  public static int getMonthIndex(Production.Entry entry)
+  {
+    if (entry == null)
+      throw new IllegalArgumentException("entry cannot be null");
+
+    return entry.getYear() * 12 + entry.getMonth() - 1;
+  }
+
+  /**
+   * Return the value of the specified measure of the specified entry.
+   *
+   * @param entry    Production entry. Non-null.
+   * @param measure  Measure index, like {@link ProductionCube#OIL}.
+   * @return         The requested value.
+   * @throws IllegalArgumentException  If measure is out of range.
+   */
+  private static double getValue(Production.Entry entry, int measure)
+  {
+    if (measure == ProductionCube.OIL)
+      return entry.getOil();
+    if (measure == ProductionCube.GAS)
+      return entry.getGas();
+    if (measure == ProductionCube.NGL)
+      return entry.getNgl();
+    if (measure == ProductionCube.CONDENSATE)
+      return entry.getCondensate();
+    if (measure == ProductionCube.OIL_EQUIVALENTS)
+      return entry.getOilEquivalents();
+    if (measure == ProductionCube.WATER)
+      return entry.getWater();
+
+    throw new IllegalArgumentException("Invalid measure: " + measure);
+  }
+
+  /**
+   * Return the values of the specified measure of the entries of the
+   * specified production, one per entry.
+   *
+   * @param production  Production to get values of. Non-null.
+   * @param measure     Measure index, like {@link ProductionCube#OIL}.
+   * @return            The requested values, oldest first. Never null.
+   * @throws IllegalArgumentException  If production is null or measure is out of range.
+   */
+  public static double[] getValues(Production production, int measure)
+  {
+    if (production == null)
+      throw new IllegalArgumentException("production cannot be null");
+
+    checkMeasure(measure);
+
+    List<Production.Entry> entries = production.getEntries();
+    double[] values = new double[entries.size()];
+    for (int i = 0; i < values.length; i++)
+      values[i] = getValue(entries.get(i), measure);
+
+    return values;
+  }
+
+  /**
+   * Return the monthly values of the specified measure of the specified
+   * production within the specified range of months. Months without an
+   * entry are zero.
+   *
+   * @param production  Production to get values of. Non-null.
+   * @param measure     Measure index, like {@link ProductionCube#OIL}.
+   * @param firstMonth  Month index of the first month, see {@link #getMonthIndex}.
+   * @param nMonths     Number of months. [0,&gt;.
+   * @return            The requested values. Never null.
+   * @throws IllegalArgumentException  If production is null, measure is out of
+   *                                   range or nMonths is negative.
+   */
+  public static double[] getMonthlyValues(Production production, int measure, int firstMonth, int nMonths)
+  {
+    if (production == null)
+      throw new IllegalArgumentException("production cannot be null");
+
+    checkMeasure(measure);
+
+    if (nMonths < 0)
+      throw new IllegalArgumentException("Invalid nMonths: " + nMonths);
+
+    double[] values = new double[nMonths];
+    for (Production.Entry entry : production.getEntries()) {
+      int month = getMonthIndex(entry) - firstMonth;
+      if (month >= 0 && month < nMonths)
+        values[month] += getValue(entry, measure);
+    }
+
+    return values;
+  }
+
+  /**
+   * Return the monthly sum of the specified measure across the specified
+   * productions, within the specified range of months.
+   *
+   * @param productions  Productions to sum. Non-null.
+   * @param measure      Measure index, like {@link ProductionCube#OIL}.
+   * @param firstMonth   Month index of the first month, see {@link #getMonthIndex}.
+   * @param nMonths      Number of months. [0,&gt;.
+   * @return             The monthly sums. Never null.
+   * @throws IllegalArgumentException  If productions is null, measure is out of
+   *                                   range or nMonths is negative.
+   */
+  public static double[] sum(Collection<Production> productions, int measure, int firstMonth, int nMonths)
+  {
+    if (productions == null)
+      throw new IllegalArgumentException("productions cannot be null");
+
+    checkMeasure(measure);
+
+    if (nMonths < 0)
+      throw new IllegalArgumentException("Invalid nMonths: " + nMonths);
+
+    double[] sums = new double[nMonths];
+    for (Production production : productions) {
+      double[] values = getMonthlyValues(production, measure, firstMonth, nMonths);
+      KERNELS.addTo(values, sums, 0, nMonths);
+    }
+
+    return sums;
+  }
+
+  /**
+   * Add the specified values to the specified sums, element by element
+   * from the specified offset.
+   *
+   * @param values  Values to add. Non-null.
+   * @param sums    Sums to add to. Non-null.
+   * @param offset  Position in sums of the first value. [0,sums.length - values.length].
+   * @throws IllegalArgumentException  If values or sums is null or offset is out of range.
+   */
+  public static void addTo(double[] values, double[] sums, int offset)
+  {
+    checkNotNull(values, "values");
+    checkNotNull(sums, "sums");
+
+    if (offset < 0 || offset + values.length > sums.length)
+      throw new IllegalArgumentException("Invalid offset: " + offset);
+
+    KERNELS.addTo(values, sums, offset, values.length);
+  }
+
+  /**
+   * Return the sum of the specified values.
+   *
+   * @param values  Values to sum. Non-null.
+   * @return        The sum.
+   * @throws IllegalArgumentException  If values is null.
+   */
+  public static double sum(double[] values)
+  {
+    checkNotNull(values, "values");
+    return KERNELS.sum(values, values.length);
+  }
+
+  /**
+   * Return the running sum of the specified values, like cumulative
+   * production from monthly production.
+   *
+   * @param values  Values to sum. Non-null.
+   * @return        Running sum at each position. Never null.
+   * @throws IllegalArgumentException  If values is null.
+   */
+  public static double[] cumulativeSum(double[] values)
+  {
+    checkNotNull(values, "values");
+
+    double[] result = new double[values.length];
+    KERNELS.cumulativeSum(values, result, values.length);
+    return result;
+  }
+
+  /**
+   * Return the trailing moving average of the specified values. The
+   * first window - 1 positions are averaged over the values available.
+   *
+   * @param values  Values to average. Non-null.
+   * @param window  Number of values of each average. [1,&gt;.
+   * @return        Moving average at each position. Never null.
+   * @throws IllegalArgumentException  If values is null or window is less than 1.
+   */
+  public static double[] movingAverage(double[] values, int window)
+  {
+    checkNotNull(values, "values");
+
+    if (window < 1)
+      throw new IllegalArgumentException("Invalid window: " + window);
+
+    double[] cumulatives = new double[values.length];
+    KERNELS.cumulativeSum(values, cumulatives, values.length);
+
+    double[] result = new double[values.length];
+    KERNELS.windowAverage(cumulatives, window, result, values.length);
+    return result;
+  }
+
+  /**
+   * Return the change of each value from the value the specified lag
+   * before it, like the year over year change of monthly production
+   * for a lag of 12.
+   *
+   * @param values  Values. Non-null.
+   * @param lag     Number of positions to compare with. [1,&gt;.
+   * @return        Change at each position, NaN for the first lag positions. Never null.
+   * @throws IllegalArgumentException  If values is null or lag is less than 1.
+   */
+  public static double[] delta(double[] values, int lag)
+  {
+    checkNotNull(values, "values");
+
+    if (lag < 1)
+      throw new IllegalArgumentException("Invalid lag: " + lag);
+
+    double[] result = new double[values.length];
+    KERNELS.delta(values, lag, result, values.length);
+    return result;
+  }
+
+  /**
+   * Return the relative decline of each value from the value the
+   * specified lag before it, being (previous - current) / previous.
+   *
+   * @param values  Values. Non-null.
+   * @param lag     Number of positions to compare with. [1,&gt;.
+   * @return        Decline rate at each position, NaN for the first lag
+   *                positions and where the previous value is zero. Never null.
+   * @throws IllegalArgumentException  If values is null or lag is less than 1.
+   */
+  public static double[] declineRate(double[] values, int lag)
+  {
+    checkNotNull(values, "values");
+
+    if (lag < 1)
+      throw new IllegalArgumentException("Invalid lag: " + lag);
+
+    double[] result = new double[values.length];
+    KERNELS.declineRate(values, lag, result, values.length);
+    return result;
+  }
+
+  /**
+   * Return the ratio of the specified values, element by element.
+   *
+   * @param numerators    Numerators. Non-null.
+   * @param denominators  Denominators. Non-null.
+   * @return              Ratio at each position, NaN where the denominator is zero. Never null.
+   * @throws IllegalArgumentException  If an array is null or their lengths differ.
+   */
+  public static double[] ratio(double[] numerators, double[] denominators)
+  {
+    checkEqualLength(numerators, "numerators", denominators, "denominators");
+
+    double[] result = new double[numerators.length];
+    KERNELS.ratio(numerators, denominators, result, numerators.length);
+    return result;
+  }
+
+  /**
+   * Return the gas/oil ratio of the specified production, in the units
+   * of the arguments.
+   *
+   * @param gas  Gas production. Non-null.
+   * @param oil  Oil production. Non-null.
+   * @return     Gas/oil ratio at each position, NaN where there is no oil. Never null.
+   * @throws IllegalArgumentException  If an array is null or their lengths differ.
+   */
+  public static double[] gasOilRatio(double[] gas, double[] oil)
+  {
+    checkEqualLength(gas, "gas", oil, "oil");
+    return ratio(gas, oil);
+  }
+
+  /**
+   * Return the water cut of the specified production, being the fraction
+   * of water in the produced liquids.
+   *
+   * @param water  Water production. Non-null.
+   * @param oil    Oil production. Non-null.
+   * @return       Water cut at each position, NaN where there is no liquid. Never null.
+   * @throws IllegalArgumentException  If an array is null or their lengths differ.
+   */
+  public static double[] waterCut(double[] water, double[] oil)
+  {
+    checkEqualLength(water, "water", oil, "oil");
+
+    double[] result = new double[water.length];
+    KERNELS.fraction(water, oil, result, water.length);
+    return result;
+  }
+}
@@ -0,0 +1,299 @@
+package no.petroware.npdio.field;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Field production aggregated by groups of fields and time buckets,
+ * as computed by {@link ProductionAggregator}.
+ * <p>
+ * A group is a combination of dimension values, like operator and main
+ * area, that is present among the aggregated fields. Each group holds
+ * a dense block of values for every time bucket from the first to the
+ * last month of production, and for every measure. Groups are ordered
+ * by their key.
+ * <p>
+ * Values are in million Sm\u00b3, as in {@link Production.Entry}.
+ * <p>
+ * This class is immutable and thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class ProductionCube
+{
+  /** Measure index of net oil production. */
+  public static final int OIL = 0;
+
+  /** Measure index of net gas production. */
+  public static final int GAS = 1;
+
+  /** Measure index of net NGL production. */
+  public static final int NGL = 2;
+
+  /** Measure index of net condensate production. */
+  public static final int CONDENSATE = 3;
+
+  /** Measure index of net oil equivalents production. */
+  public static final int OIL_EQUIVALENTS = 4;
+
+  /** Measure index of water production. */
+  public static final int WATER = 5;
+
+  /** Number of measures. */
+  public static final int N_MEASURES = 6;
+
+  /** Key of each group. Non-null. */
+  private final List<List<String>> groupKeys_;
+
+  /** Group index of each key. Non-null. */
+  private final Map<List<String>, Integer> groupIndices_;
+
+  /** Number of months of each time bucket. */
+  private final int monthsPerBucket_;
+
+  /** Bucket number, counted from year 0, of the first time bucket. */
+  private final int firstBucket_;
+
+  /** Number of time buckets. */
+  private final int nBuckets_;
+
+  /** Values by group, then time bucket, then measure. */
+  private final double[] values_;
+
+  /** Cumulative values, laid out as values_. */
+  private final double[] cumulatives_;
+
+  /**
+   * Create a production cube.
+   *
+   * @param groupKeys        Key of each group. Non-null.
+   * @param groupIndices     Group index of each key. Non-null.
+   * @param monthsPerBucket  Number of months of each time bucket.
+   * @param firstBucket      Bucket number of the first time bucket.
+   * @param nBuckets         Number of time buckets. [0,&gt;.
+   * @param values           Values by group, then time bucket, then measure. Non-null.
+   */
+  ProductionCube(List<List<String>> groupKeys,
+                 Map<List<String>, Integer> groupIndices,
+                 int monthsPerBucket,
+                 int firstBucket,
+                 int nBuckets,
+                 double[] values)
+  {
+    assert groupKeys != null : "groupKeys cannot be null";
+    assert groupIndices != null : "groupIndices cannot be null";
+    assert values != null && values.length == groupKeys.size() * nBuckets * N_MEASURES : "Invalid values";
+
+    groupKeys_ = Collections.unmodifiableList(groupKeys);
+    groupIndices_ = groupIndices;
+    monthsPerBucket_ = monthsPerBucket;
+    firstBucket_ = firstBucket;
+    nBuckets_ = nBuckets;
+    values_ = values;
+
+    // Running sums along time, per group and measure
+    cumulatives_ = new double[values.length];
+    for (int group = 0; group < groupKeys.size(); group++) {
+      int offset = group * nBuckets * N_MEASURES;
+      for (int bucket = 0; bucket < nBuckets; bucket++) {
+        for (int measure = 0; measure < N_MEASURES; measure++) {
+          int index = offset + bucket * N_MEASURES + measure;
+          cumulatives_[index] = values[index] + (bucket > 0 ? cumulatives_[index - N_MEASURES] : 0.0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Return number of groups.
+   *
+   * @return  Number of groups. [0,&gt;.
+   */
+  public int getNGroups()
+  {
+    return groupKeys_.size();
+  }
+
+  /**
+   * Return the key of the specified group, being its value of each
+   * dimension in the order they were specified.
+   *
+   * @param groupNo  Group number. [0,nGroups&gt;.
+   * @return         Key of the group. Elements are null where the
+   *                 dimension value is unknown. Never null.
+   * @throws IndexOutOfBoundsException  If groupNo is out of range.
+   */
+  public List<String> getGroupKey(int groupNo)
+  {
+    return groupKeys_.get(groupNo);
+  }
+
+  /**
+   * Find the group of the specified key.
+   *
+   * @param key  Value of each dimension, in the order they were specified. Non-null.
+   * @return     The group number, or -1 if there is no such group.
+   * @throws IllegalArgumentException  If key is null.
+   */
+  public int findGroup(String... key)
+  {
+    if (key == null)
+      throw new IllegalArgumentException("key cannot be null");
+
+    Integer groupNo = groupIndices_.get(Arrays.asList(key));
+    return groupNo != null ? groupNo : -1;
+  }
+
+  /**
+   * Return number of time buckets.
+   *
+   * @return  Number of time buckets. [0,&gt;.
+   */
+  public int getNTimeBuckets()
+  {
+    return nBuckets_;
+  }
+
+  /**
+   * Return number of months of each time bucket.
+   *
+   * @return  Number of months of each time bucket: 1, 2, 3, 4, 6 or 12.
+   */
+  public int getMonthsPerBucket()
+  {
+    return monthsPerBucket_;
+  }
+
+  /**
+   * Return the year of the specified time bucket.
+   *
+   * @param bucketNo  Time bucket number. [0,nTimeBuckets&gt;.
+   * @return          Year of the time bucket.
+   */
+  public int getYear(int bucketNo)
+  {
+    return (firstBucket_ + bucketNo) * monthsPerBucket_ / 12;
+  }
+
+  /**
+   * Return the period within the year of the specified time bucket,
+   * like the month for monthly buckets or the quarter for quarterly ones.
+   *
+   * @param bucketNo  Time bucket number. [0,nTimeBuckets&gt;.
+   * @return          Period within the year. [1,12/monthsPerBucket].
+   */
+  public int getPeriod(int bucketNo)
+  {
+    return (firstBucket_ + bucketNo) % (12 / monthsPerBucket_) + 1;
+  }
+
+  /**
+   * Return the index of the specified value.
+   *
+   * @param groupNo   Group number. [0,nGroups&gt;.
+   * @param bucketNo  Time bucket number. [0,nTimeBuckets&gt;.
+   * @param measure   Measure index. [0,N_MEASURES&gt;.
+   * @return          Index into the value arrays.
+   * @throws IndexOutOfBoundsException  If any argument is out of range.
+   */
+  private int getIndex(int groupNo, int bucketNo, int measure)
+  {
+    if (groupNo < 0 || groupNo >= groupKeys_.size())
+      throw new IndexOutOfBoundsException("Invalid groupNo: " + groupNo);
+
+    if (bucketNo < 0 || bucketNo >= nBuckets_)
+      throw new IndexOutOfBoundsException("Invalid bucketNo: " + bucketNo);
+
+    if (measure < 0 || measure >= N_MEASURES)
+      throw new IndexOutOfBoundsException("Invalid measure: " + measure);
+
+    return (groupNo * nBuckets_ + bucketNo) * N_MEASURES + measure;
+  }
+
+  /**
+   * Return the production of the specified group, time bucket and measure.
+   *
+   * @param groupNo   Group number. [0,nGroups&gt;.
+   * @param bucketNo  Time bucket number. [0,nTimeBuckets&gt;.
+   * @param measure   Measure index, like {@link #OIL}. [0,N_MEASURES&gt;.
+   * @return          Production in million Sm\u00b3.
+   * @throws IndexOutOfBoundsException  If any argument is out of range.
+   */
+  public double getValue(int groupNo, int bucketNo, int measure)
+  {
+    return values_[getIndex(groupNo, bucketNo, measure)];
+  }
+
+  /**
+   * Return the cumulative production of the specified group and measure,
+   * up to and including the specified time bucket.
+   *
+   * @param groupNo   Group number. [0,nGroups&gt;.
+   * @param bucketNo  Time bucket number. [0,nTimeBuckets&gt;.
+   * @param measure   Measure index, like {@link #OIL}. [0,N_MEASURES&gt;.
+   * @return          Cumulative production in million Sm\u00b3.
+   * @throws IndexOutOfBoundsException  If any argument is out of range.
+   */
+  public double getCumulative(int groupNo, int bucketNo, int measure)
+  {
+    return cumulatives_[getIndex(groupNo, bucketNo, measure)];
+  }
+
+  /**
+   * Return the production of the specified group and measure for all time buckets.
+   *
+   * @param groupNo  Group number. [0,nGroups&gt;.
+   * @param measure  Measure index, like {@link #OIL}. [0,N_MEASURES&gt;.
+   * @return         Production in million Sm\u00b3 of each time bucket. Never null.
+   * @throws IndexOutOfBoundsException  If groupNo or measure is out of range.
+   */
+  public double[] getValues(int groupNo, int measure)
+  {
+    return getSeries(values_, groupNo, measure);
+  }
+
+  /**
+   * Return the cumulative production of the specified group and measure
+   * for all time buckets.
+   *
+   * @param groupNo  Group number. [0,nGroups&gt;.
+   * @param measure  Measure index, like {@link #OIL}. [0,N_MEASURES&gt;.
+   * @return         Cumulative production in million Sm\u00b3 at each time bucket. Never null.
+   * @throws IndexOutOfBoundsException  If groupNo or measure is out of range.
+   */
+  public double[] getCumulatives(int groupNo, int measure)
+  {
+    return getSeries(cumulatives_, groupNo, measure);
+  }
+
+  /**
+   * Extract the time series of the specified group and measure.
+   *
+   * @param array    Values or cumulatives. Non-null.
+   * @param groupNo  Group number. [0,nGroups&gt;.
+   * @param measure  Measure index. [0,N_MEASURES&gt;.
+   * @return         The time series. Never null.
+   */
+  private double[] getSeries(double[] array, int groupNo, int measure)
+  {
+    double[] series = new double[nBuckets_];
+    if (nBuckets_ == 0)
+      return series;
+
+    int index = getIndex(groupNo, 0, measure);
+    for (int bucket = 0; bucket < nBuckets_; bucket++)
+      series[bucket] = array[index + bucket * N_MEASURES];
+
+    return series;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return "ProductionCube [nGroups=" + groupKeys_.size() + ", nTimeBuckets=" + nBuckets_ +
+           ", monthsPerBucket=" + monthsPerBucket_ + "]";
+  }
+}
@@ -0,0 +1,98 @@
+package no.petroware.npdio.field;
+
+/**
+ * Numeric kernels over primitive production arrays, as used by
+ * {@link ProductionAnalytics}.
+ * <p>
+ * Arguments are validated by the caller. The result array may be the
+ * same as an input array unless stated otherwise.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+interface ProductionKernels
+{
+  /**
+   * Compute the running sum of the specified values.
+   *
+   * @param values  Values to sum. Non-null.
+   * @param result  Running sum of each position. Non-null.
+   * @param n       Number of values. [0,values.length].
+   */
+  void cumulativeSum(double[] values, double[] result, int n);
+
+  /**
+   * Compute the difference between each value and the value the specified
+   * distance before it, divided by the number of positions it spans.
+   * This turns running sums into trailing averages.
+   *
+   * @param cumulatives  Running sums. Non-null.
+   * @param window       Window length. [1,&gt;.
+   * @param result       Resulting averages. Not the same as cumulatives. Non-null.
+   * @param n            Number of values. [0,cumulatives.length].
+   */
+  void windowAverage(double[] cumulatives, int window, double[] result, int n);
+
+  /**
+   * Compute the ratio of the numerators and denominators, NaN where the
+   * denominator is zero.
+   *
+   * @param numerators    Numerators. Non-null.
+   * @param denominators  Denominators. Non-null.
+   * @param result        Resulting ratios. Non-null.
+   * @param n             Number of values. [0,numerators.length].
+   */
+  void ratio(double[] numerators, double[] denominators, double[] result, int n);
+
+  /**
+   * Compute the ratio of the parts to the sum of the parts and the
+   * others, NaN where that sum is zero.
+   *
+   * @param parts   Parts. Non-null.
+   * @param others  Others. Non-null.
+   * @param result  Resulting fractions. Non-null.
+   * @param n       Number of values. [0,parts.length].
+   */
+  void fraction(double[] parts, double[] others, double[] result, int n);
+
+  /**
+   * Compute the change of each value from the value the specified lag
+   * before it, NaN for the first lag positions.
+   *
+   * @param values  Values. Non-null.
+   * @param lag     Lag. [1,&gt;.
+   * @param result  Resulting changes. Not the same as values. Non-null.
+   * @param n       Number of values. [0,values.length].
+   */
+  void delta(double[] values, int lag, double[] result, int n);
+
+  /**
+   * Compute the relative decline of each value from the value the specified
+   * lag before it, NaN for the first lag positions and where the earlier
+   * value is zero.
+   *
+   * @param values  Values. Non-null.
+   * @param lag     Lag. [1,&gt;.
+   * @param result  Resulting declines. Not the same as values. Non-null.
+   * @param n       Number of values. [0,values.length].
+   */
+  void declineRate(double[] values, int lag, double[] result, int n);
+
+  /**
+   * Add the specified values to the sums from the specified offset.
+   *
+   * @param values  Values to add. Non-null.
+   * @param sums    Sums to add to. Non-null.
+   * @param offset  Position in sums of the first value. [0,&gt;.
+   * @param n       Number of values. [0,values.length].
+   */
+  void addTo(double[] values, double[] sums, int offset, int n);
+
+  /**
+   * Return the sum of the specified values.
+   *
+   * @param values  Values to sum. Non-null.
+   * @param n       Number of values. [0,values.length].
+   * @return        The sum.
+   */
+  double sum(double[] values, int n);
+}
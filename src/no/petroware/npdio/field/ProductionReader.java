@@ -3,9 +3,15 @@ package no.petroware.npdio.field;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * Production reader.
@@ -55,6 +61,31 @@ public final class ProductionReader extends NpdReader<Production.Entry>
     super(url);
   }
 
+  /**
+   * Create a reader for NPD field production.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public ProductionReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD field production at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static ProductionReader newDefaultReader()
+  {
+    ProductionReader reader = new ProductionReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(ProductionReader.class));
+    return reader;
+  }
+
   /**
    * Create a new NPD company instance from the given tokens.
    *
@@ -107,11 +138,26 @@ public final class ProductionReader extends NpdReader<Production.Entry>
     if (field == null)
       throw new IllegalArgumentException("field cannot be null");
 
-    String npdidField = field.getNpdId();
-
     // Read all production entries
     List<Production.Entry> allProductionEntries = read();
 
+    setProduction(field, allProductionEntries);
+  }
+
+  /**
+   * Populate the <em>production</em> member of the specified field
+   * from the entries belonging to it.
+   *
+   * @param field                 Field to populate. Non-null.
+   * @param allProductionEntries  Production entries of all fields. Non-null.
+   */
+  private static void setProduction(NpdField field, List<Production.Entry> allProductionEntries)
+  {
+    assert field != null : "field cannot be null";
+    assert allProductionEntries != null : "allProductionEntries cannot be null";
+
+    String npdidField = field.getNpdId();
+
     //
     // Find those from the requested field
     //
@@ -124,6 +170,59 @@ public final class ProductionReader extends NpdReader<Production.Entry>
     field.setProduction(new Production(fieldProductionEntries));
   }
 
+  /**
+   * Read production entries for the specified fields and populate
+   * their <em>production</em> member. The production table is read
+   * once for all the fields.
+   *
+   * @param fields  Fields to read production of. Non-null.
+   * @throws IllegalArgumentException  If fields is null.
+   * @throws IOException               If the read operation fails for some reason.
+   */
+  public void read(Collection<NpdField> fields)
+    throws IOException
+  {
+    if (fields == null)
+      throw new IllegalArgumentException("fields cannot be null");
+
+    // Read all production entries
+    List<Production.Entry> allProductionEntries = read();
+
+    //
+    // Distribute them on field
+    //
+    Map<String, List<Production.Entry>> productionEntriesByField = new HashMap<>();
+    for (Production.Entry productionEntry : allProductionEntries) {
+      productionEntriesByField.computeIfAbsent(productionEntry.getNpdidField(), npdId -> new ArrayList<>())
+                              .add(productionEntry);
+    }
+
+    for (NpdField field : fields) {
+      List<Production.Entry> fieldProductionEntries = productionEntriesByField.get(field.getNpdId());
+      field.setProduction(new Production(fieldProductionEntries != null ? fieldProductionEntries : new ArrayList<>()));
+    }
+  }
+
+  /**
+   * Read all production entries, of all fields.
+   * <p>
+   * This is a convenient alternative to the more flexible and generic
+   * approach where the URL location of the data is provided by the client:
+   * <pre>
+   *   ProductionReader reader = new ProductionReader(url);
+   *   List&lt;Production.Entry&gt; entries = reader.read();
+   * </pre>
+   *
+   * @return  All production entries. Never null.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  public static List<Production.Entry> readAll()
+    throws IOException
+  {
+    ProductionReader reader = newDefaultReader();
+    return reader.read();
+  }
+
   /**
    * Read all production enntries for the specified field and populate
    * its <em>production</em> member.
@@ -142,10 +241,73 @@ public final class ProductionReader extends NpdReader<Production.Entry>
   public static void readAll(NpdField field)
     throws IOException
   {
-    ProductionReader reader = new ProductionReader(URL);
+    ProductionReader reader = newDefaultReader();
     reader.read(field);
   }
 
+  /**
+   * Read all production entries for the specified field asynchronously
+   * on the specified executor, and populate its <em>production</em>
+   * member. Cancelling the returned future cancels the read, see
+   * {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param field     Field to read production of. Non-null.
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future completing when the field is populated. Never null.
+   * @throws IllegalArgumentException  If field or executor is null.
+   */
+  public static CompletableFuture<Void> readAllAsync(NpdField field, Executor executor)
+  {
+    if (field == null)
+      throw new IllegalArgumentException("field cannot be null");
+
+    ProductionReader reader = newDefaultReader();
+    return setProductionAsync(field, reader.readAsync(executor));
+  }
+
+  /**
+   * Read all production entries for the specified field asynchronously,
+   * and populate its <em>production</em> member.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @param field  Field to read production of. Non-null.
+   * @return       Future completing when the field is populated. Never null.
+   * @throws IllegalArgumentException  If field is null.
+   */
+  public static CompletableFuture<Void> readAllAsync(NpdField field)
+  {
+    if (field == null)
+      throw new IllegalArgumentException("field cannot be null");
+
+    ProductionReader reader = newDefaultReader();
+    return setProductionAsync(field, reader.readAsync());
+  }
+
+  /**
+   * Populate the <em>production</em> member of the specified field when
+   * the specified read completes. Cancelling the returned future cancels
+   * the read.
+   *
+   * @param field    Field to populate. Non-null.
+   * @param entries  Future of the production entries of all fields. Non-null.
+   * @return         Future completing when the field is populated. Never null.
+   */
+  private static CompletableFuture<Void> setProductionAsync(NpdField field,
+                                                            CompletableFuture<List<Production.Entry>> entries)
+  {
+    assert field != null : "field cannot be null";
+    assert entries != null : "entries cannot be null";
+
+    CompletableFuture<Void> future = entries.thenAccept(allProductionEntries -> setProduction(field, allProductionEntries));
+
+    future.whenComplete((result, throwable) -> {
+      if (future.isCancelled())
+        entries.cancel(true);
+    });
+
+    return future;
+  }
+
 
 
 }
@@ -0,0 +1,107 @@
+package no.petroware.npdio.field;
+
+/**
+ * Production kernels by plain loops. Used where the vector API is not
+ * available. The loops are kept simple so that the JIT compiler may
+ * vectorize them by itself.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class ScalarProductionKernels implements ProductionKernels
+{
+  /**
+   * Create scalar production kernels.
+   */
+  ScalarProductionKernels()
+  {
+    // Nothing
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void cumulativeSum(double[] values, double[] result, int n)
+  {
+    double sum = 0.0;
+    for (int i = 0; i < n; i++) {
+      sum += values[i];
+      result[i] = sum;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void windowAverage(double[] cumulatives, int window, double[] result, int n)
+  {
+    int head = Math.min(window, n);
+    for (int i = 0; i < head; i++)
+      result[i] = cumulatives[i] / (i + 1);
+
+    double scale = 1.0 / window;
+    for (int i = head; i < n; i++)
+      result[i] = (cumulatives[i] - cumulatives[i - window]) * scale;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void ratio(double[] numerators, double[] denominators, double[] result, int n)
+  {
+    for (int i = 0; i < n; i++)
+      result[i] = denominators[i] != 0.0 ? numerators[i] / denominators[i] : Double.NaN;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void fraction(double[] parts, double[] others, double[] result, int n)
+  {
+    for (int i = 0; i < n; i++) {
+      double total = parts[i] + others[i];
+      result[i] = total != 0.0 ? parts[i] / total : Double.NaN;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void delta(double[] values, int lag, double[] result, int n)
+  {
+    int head = Math.min(lag, n);
+    for (int i = 0; i < head; i++)
+      result[i] = Double.NaN;
+
+    for (int i = head; i < n; i++)
+      result[i] = values[i] - values[i - lag];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void declineRate(double[] values, int lag, double[] result, int n)
+  {
+    int head = Math.min(lag, n);
+    for (int i = 0; i < head; i++)
+      result[i] = Double.NaN;
+
+    for (int i = head; i < n; i++) {
+      double previous = values[i - lag];
+      result[i] = previous != 0.0 ? (previous - values[i]) / previous : Double.NaN;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void addTo(double[] values, double[] sums, int offset, int n)
+  {
+    for (int i = 0; i < n; i++)
+      sums[offset + i] += values[i];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double sum(double[] values, int n)
+  {
+    double sum = 0.0;
+    for (int i = 0; i < n; i++)
+      sum += values[i];
+    return sum;
+  }
+}
@@ -0,0 +1,568 @@
+package no.petroware.npdio.geo;
+
+import java.util.stream.IntStream;
+
+/**
+ * Batch transformation of coordinate columns between datums and between
+ * geographic and UTM coordinates.
+ * <p>
+ * Coordinates are given as parallel arrays of primitives, like longitudes
+ * and latitudes in decimal degrees or eastings and northings in meters.
+ * Unknown positions are represented by NaN and are kept as NaN. Large
+ * batches are split in chunks processed in parallel, and no objects are
+ * created per position.
+ * <p>
+ * The transverse mercator projection uses the sixth order Kr&uuml;ger series
+ * (Karney 2011), accurate to well below a millimeter within the UTM zones.
+ * UTM coordinates are those of the northern hemisphere.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class CoordinateTransformer
+{
+  /** Scale factor at the central meridian of UTM zones. */
+  public static final double UTM_SCALE_FACTOR = 0.9996;
+
+  /** Easting at the central meridian of UTM zones. */
+  public static final double UTM_FALSE_EASTING = 500000.0;
+
+  /** Number of positions of each chunk processed in parallel. */
+  private static final int CHUNK_SIZE = 4096;
+
+  /**
+   * Private constructor to prevent client instantiation.
+   */
+  private CoordinateTransformer()
+  {
+    assert false : "This constructor should never be called";
+  }
+
+  /**
+   * A task processing a range of positions.
+   */
+  private interface RangeTask
+  {
+    /**
+     * Process the specified range of positions.
+     *
+     * @param from  Index of first position. [0,&gt;.
+     * @param to    Index past the last position. [from,&gt;.
+     */
+    void run(int from, int to);
+  }
+
+  /**
+   * Run the specified task over the specified number of positions,
+   * in parallel chunks if there are more than one chunk.
+   *
+   * @param nPositions  Number of positions. [0,&gt;.
+   * @param task        Task to run. Non-null.
+   */
+  private static void forEachChunk(int nPositions, RangeTask task)
+  {
+    assert task != null : "task cannot be null";
+
+    int nChunks = (nPositions + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    if (nChunks <= 1) {
+      task.run(0, nPositions);
+      return;
+    }
+
+    IntStream.range(0, nChunks).parallel().forEach(chunk -> {
+      int from = chunk * CHUNK_SIZE;
+      task.run(from, Math.min(from + CHUNK_SIZE, nPositions));
+    });
+  }
+
+  /**
+   * Check that the specified array is non-null and of the specified length.
+   *
+   * @param length  Required length. [0,&gt;.
+   * @param array   Array to check.
+   * @param name    Name of array, for error messages. Non-null.
+   * @throws IllegalArgumentException  If array is null or of different length.
+   */
+  private static void checkLength(int length, double[] array, String name)
+  {
+    if (array == null)
+      throw new IllegalArgumentException(name + " cannot be null");
+
+    if (array.length != length)
+      throw new IllegalArgumentException("Invalid " + name + " length: " + array.length);
+  }
+
+  /**
+   * Check that the specified array is non-null and of the specified length.
+   *
+   * @param length  Required length. [0,&gt;.
+   * @param array   Array to check.
+   * @param name    Name of array, for error messages. Non-null.
+   * @throws IllegalArgumentException  If array is null or of different length.
+   */
+  private static void checkLength(int length, int[] array, String name)
+  {
+    if (array == null)
+      throw new IllegalArgumentException(name + " cannot be null");
+
+    if (array.length != length)
+      throw new IllegalArgumentException("Invalid " + name + " length: " + array.length);
+  }
+
+  /**
+   * Return the UTM zone of the specified position, including the
+   * exceptions of south-western Norway and Svalbard.
+   *
+   * @param longitude  Longitude in decimal degrees. [-180,180].
+   * @param latitude   Latitude in decimal degrees. [-90,90].
+   * @return           The UTM zone. [1,60].
+   */
+  public static int getUtmZone(double longitude, double latitude)
+  {
+    if (latitude >= 56.0 && latitude < 64.0 && longitude >= 3.0 && longitude < 12.0)
+      return 32;
+
+    if (latitude >= 72.0 && latitude < 84.0 && longitude >= 0.0 && longitude < 42.0) {
+      if (longitude < 9.0)
+        return 31;
+      if (longitude < 21.0)
+        return 33;
+      if (longitude < 33.0)
+        return 35;
+      return 37;
+    }
+
+    int zone = (int) Math.floor((longitude + 180.0) / 6.0) + 1;
+    return Math.max(1, Math.min(60, zone));
+  }
+
+  /**
+   * Return the central meridian of the specified UTM zone.
+   *
+   * @param zone  UTM zone. [1,60].
+   * @return      Central meridian in decimal degrees.
+   */
+  public static double getCentralMeridian(int zone)
+  {
+    return 6.0 * zone - 183.0;
+  }
+
+  /**
+   * Transform geographic coordinates between the specified datums,
+   * in place. Heights are assumed to be zero.
+   *
+   * @param source      Datum of the coordinates. Non-null.
+   * @param target      Datum to transform to. Non-null.
+   * @param longitudes  Longitudes in decimal degrees, replaced by the result. Non-null.
+   * @param latitudes   Latitudes in decimal degrees, replaced by the result. Non-null.
+   * @throws IllegalArgumentException  If any argument is null or the arrays are of different length.
+   */
+  public static void transform(Datum source, Datum target, double[] longitudes, double[] latitudes)
+  {
+    if (source == null)
+      throw new IllegalArgumentException("source cannot be null");
+
+    if (target == null)
+      throw new IllegalArgumentException("target cannot be null");
+
+    if (longitudes == null)
+      throw new IllegalArgumentException("longitudes cannot be null");
+
+    checkLength(longitudes.length, latitudes, "latitudes");
+
+    if (source == target)
+      return;
+
+    forEachChunk(longitudes.length, (from, to) -> {
+      double[] xyz = new double[3];
+      double[] lonLat = new double[2];
+
+      for (int i = from; i < to; i++) {
+        if (Double.isNaN(longitudes[i]) || Double.isNaN(latitudes[i]))
+          continue;
+
+        toGeocentric(source.getEllipsoid(), longitudes[i], latitudes[i], xyz);
+
+        if (!source.isWgs84())
+          source.transform(xyz, true);
+        if (!target.isWgs84())
+          target.transform(xyz, false);
+
+        toGeographic(target.getEllipsoid(), xyz, lonLat);
+        longitudes[i] = lonLat[0];
+        latitudes[i] = lonLat[1];
+      }
+    });
+  }
+
+  /**
+   * Convert the specified geographic position at zero height to geocentric coordinates.
+   *
+   * @param ellipsoid  Ellipsoid of position. Non-null.
+   * @param longitude  Longitude in decimal degrees.
+   * @param latitude   Latitude in decimal degrees.
+   * @param xyz        Geocentric X, Y and Z in meters. Non-null.
+   */
+  private static void toGeocentric(Ellipsoid ellipsoid, double longitude, double latitude, double[] xyz)
+  {
+    double a = ellipsoid.getSemiMajorAxis();
+    double e2 = ellipsoid.getEccentricitySquared();
+
+    double phi = Math.toRadians(latitude);
+    double lambda = Math.toRadians(longitude);
+    double sinPhi = Math.sin(phi);
+    double cosPhi = Math.cos(phi);
+
+    double nu = a / Math.sqrt(1.0 - e2 * sinPhi * sinPhi);
+
+    xyz[0] = nu * cosPhi * Math.cos(lambda);
+    xyz[1] = nu * cosPhi * Math.sin(lambda);
+    xyz[2] = nu * (1.0 - e2) * sinPhi;
+  }
+
+  /**
+   * Convert the specified geocentric position to geographic coordinates,
+   * disregarding the height.
+   *
+   * @param ellipsoid  Ellipsoid of result. Non-null.
+   * @param xyz        Geocentric X, Y and Z in meters. Non-null.
+   * @param lonLat     Longitude and latitude in decimal degrees. Non-null.
+   */
+  private static void toGeographic(Ellipsoid ellipsoid, double[] xyz, double[] lonLat)
+  {
+    double a = ellipsoid.getSemiMajorAxis();
+    double e2 = ellipsoid.getEccentricitySquared();
+
+    double p = Math.hypot(xyz[0], xyz[1]);
+
+    // Iterate on latitude; converges to sub-millimeter in a few steps near the surface
+    double phi = Math.atan2(xyz[2], p * (1.0 - e2));
+    for (int i = 0; i < 4; i++) {
+      double sinPhi = Math.sin(phi);
+      double nu = a / Math.sqrt(1.0 - e2 * sinPhi * sinPhi);
+      phi = Math.atan2(xyz[2] + e2 * nu * sinPhi, p);
+    }
+
+    lonLat[0] = Math.toDegrees(Math.atan2(xyz[1], xyz[0]));
+    lonLat[1] = Math.toDegrees(phi);
+  }
+
+  /**
+   * Project geographic coordinates to UTM, each position in its own zone.
+   *
+   * @param ellipsoid   Ellipsoid of the coordinates. Non-null.
+   * @param longitudes  Longitudes in decimal degrees. Non-null.
+   * @param latitudes   Latitudes in decimal degrees. Non-null.
+   * @param zones       UTM zone of each position. Non-null.
+   * @param eastings    Resulting eastings in meters. May be the longitudes array. Non-null.
+   * @param northings   Resulting northings in meters. May be the latitudes array. Non-null.
+   * @throws IllegalArgumentException  If any argument is null or the arrays are of different length.
+   */
+  public static void toUtm(Ellipsoid ellipsoid,
+                           double[] longitudes, double[] latitudes, int[] zones,
+                           double[] eastings, double[] northings)
+  {
+    if (zones == null)
+      throw new IllegalArgumentException("zones cannot be null");
+
+    toUtm(ellipsoid, longitudes, latitudes, zones, 0, eastings, northings);
+  }
+
+  /**
+   * Project geographic coordinates to the specified UTM zone.
+   *
+   * @param ellipsoid   Ellipsoid of the coordinates. Non-null.
+   * @param longitudes  Longitudes in decimal degrees. Non-null.
+   * @param latitudes   Latitudes in decimal degrees. Non-null.
+   * @param zone        UTM zone of all positions. [1,60].
+   * @param eastings    Resulting eastings in meters. May be the longitudes array. Non-null.
+   * @param northings   Resulting northings in meters. May be the latitudes array. Non-null.
+   * @throws IllegalArgumentException  If any argument is null, zone is out of range
+   *                                   or the arrays are of different length.
+   */
+  public static void toUtm(Ellipsoid ellipsoid,
+                           double[] longitudes, double[] latitudes, int zone,
+                           double[] eastings, double[] northings)
+  {
+    if (zone < 1 || zone > 60)
+      throw new IllegalArgumentException("Invalid zone: " + zone);
+
+    toUtm(ellipsoid, longitudes, latitudes, null, zone, eastings, northings);
+  }
+
+  /**
+   * Project geographic coordinates to UTM.
+   *
+   * @param ellipsoid   Ellipsoid of the coordinates. Non-null.
+   * @param longitudes  Longitudes in decimal degrees. Non-null.
+   * @param latitudes   Latitudes in decimal degrees. Non-null.
+   * @param zones       UTM zone of each position. Null to use zone.
+   * @param zone        UTM zone of all positions if zones is null.
+   * @param eastings    Resulting eastings in meters. Non-null.
+   * @param northings   Resulting northings in meters. Non-null.
+   */
+  private static void toUtm(Ellipsoid ellipsoid,
+                            double[] longitudes, double[] latitudes, int[] zones, int zone,
+                            double[] eastings, double[] northings)
+  {
+    if (ellipsoid == null)
+      throw new IllegalArgumentException("ellipsoid cannot be null");
+
+    if (longitudes == null)
+      throw new IllegalArgumentException("longitudes cannot be null");
+
+    checkLength(longitudes.length, latitudes, "latitudes");
+    checkLength(longitudes.length, eastings, "eastings");
+    checkLength(longitudes.length, northings, "northings");
+    if (zones != null)
+      checkLength(longitudes.length, zones, "zones");
+
+    TransverseMercator projection = new TransverseMercator(ellipsoid);
+
+    forEachChunk(longitudes.length, (from, to) -> {
+      double[] eastingNorthing = new double[2];
+
+      for (int i = from; i < to; i++) {
+        int z = zones != null ? zones[i] : zone;
+        if (Double.isNaN(longitudes[i]) || Double.isNaN(latitudes[i]) || z < 1 || z > 60) {
+          eastings[i] = Double.NaN;
+          northings[i] = Double.NaN;
+          continue;
+        }
+
+        projection.forward(longitudes[i] - getCentralMeridian(z), latitudes[i], eastingNorthing);
+        eastings[i] = UTM_FALSE_EASTING + UTM_SCALE_FACTOR * eastingNorthing[0];
+        northings[i] = UTM_SCALE_FACTOR * eastingNorthing[1];
+      }
+    });
+  }
+
+  /**
+   * Convert UTM coordinates to geographic coordinates, each position
+   * in its own zone.
+   *
+   * @param ellipsoid   Ellipsoid of the coordinates. Non-null.
+   * @param eastings    Eastings in meters. Non-null.
+   * @param northings   Northings in meters. Non-null.
+   * @param zones       UTM zone of each position. Non-null.
+   * @param longitudes  Resulting longitudes in decimal degrees. May be the eastings array. Non-null.
+   * @param latitudes   Resulting latitudes in decimal degrees. May be the northings array. Non-null.
+   * @throws IllegalArgumentException  If any argument is null or the arrays are of different length.
+   */
+  public static void fromUtm(Ellipsoid ellipsoid,
+                             double[] eastings, double[] northings, int[] zones,
+                             double[] longitudes, double[] latitudes)
+  {
+    if (zones == null)
+      throw new IllegalArgumentException("zones cannot be null");
+
+    fromUtm(ellipsoid, eastings, northings, zones, 0, longitudes, latitudes);
+  }
+
+  /**
+   * Convert UTM coordinates of the specified zone to geographic coordinates.
+   *
+   * @param ellipsoid   Ellipsoid of the coordinates. Non-null.
+   * @param eastings    Eastings in meters. Non-null.
+   * @param northings   Northings in meters. Non-null.
+   * @param zone        UTM zone of all positions. [1,60].
+   * @param longitudes  Resulting longitudes in decimal degrees. May be the eastings array. Non-null.
+   * @param latitudes   Resulting latitudes in decimal degrees. May be the northings array. Non-null.
+   * @throws IllegalArgumentException  If any argument is null, zone is out of range
+   *                                   or the arrays are of different length.
+   */
+  public static void fromUtm(Ellipsoid ellipsoid,
+                             double[] eastings, double[] northings, int zone,
+                             double[] longitudes, double[] latitudes)
+  {
+    if (zone < 1 || zone > 60)
+      throw new IllegalArgumentException("Invalid zone: " + zone);
+
+    fromUtm(ellipsoid, eastings, northings, null, zone, longitudes, latitudes);
+  }
+
+  /**
+   * Convert UTM coordinates to geographic coordinates.
+   *
+   * @param ellipsoid   Ellipsoid of the coordinates. Non-null.
+   * @param eastings    Eastings in meters. Non-null.
+   * @param northings   Northings in meters. Non-null.
+   * @param zones       UTM zone of each position. Null to use zone.
+   * @param zone        UTM zone of all positions if zones is null.
+   * @param longitudes  Resulting longitudes in decimal degrees. Non-null.
+   * @param latitudes   Resulting latitudes in decimal degrees. Non-null.
+   */
+  private static void fromUtm(Ellipsoid ellipsoid,
+                              double[] eastings, double[] northings, int[] zones, int zone,
+                              double[] longitudes, double[] latitudes)
+  {
+    if (ellipsoid == null)
+      throw new IllegalArgumentException("ellipsoid cannot be null");
+
+    if (eastings == null)
+      throw new IllegalArgumentException("eastings cannot be null");
+
+    checkLength(eastings.length, northings, "northings");
+    checkLength(eastings.length, longitudes, "longitudes");
+    checkLength(eastings.length, latitudes, "latitudes");
+    if (zones != null)
+      checkLength(eastings.length, zones, "zones");
+
+    TransverseMercator projection = new TransverseMercator(ellipsoid);
+
+    forEachChunk(eastings.length, (from, to) -> {
+      double[] lonLat = new double[2];
+
+      for (int i = from; i < to; i++) {
+        int z = zones != null ? zones[i] : zone;
+        if (Double.isNaN(eastings[i]) || Double.isNaN(northings[i]) || z < 1 || z > 60) {
+          longitudes[i] = Double.NaN;
+          latitudes[i] = Double.NaN;
+          continue;
+        }
+
+        projection.inverse((eastings[i] - UTM_FALSE_EASTING) / UTM_SCALE_FACTOR,
+                           northings[i] / UTM_SCALE_FACTOR,
+                           lonLat);
+        longitudes[i] = lonLat[0] + getCentralMeridian(z);
+        latitudes[i] = lonLat[1];
+      }
+    });
+  }
+
+  /**
+   * Transverse mercator projection with unit scale at the central
+   * meridian, by the Kr&uuml;ger series to order six.
+   */
+  private static final class TransverseMercator
+  {
+    /** First eccentricity. */
+    private final double e_;
+
+    /** Rectifying radius. */
+    private final double radius_;
+
+    /** Coefficients of the forward series. */
+    private final double[] alpha_ = new double[6];
+
+    /** Coefficients of the inverse series. */
+    private final double[] beta_ = new double[6];
+
+    /**
+     * Create a transverse mercator projection on the specified ellipsoid.
+     *
+     * @param ellipsoid  Ellipsoid to project from. Non-null.
+     */
+    TransverseMercator(Ellipsoid ellipsoid)
+    {
+      double f = ellipsoid.getFlattening();
+      double n = f / (2.0 - f);
+      double n2 = n * n;
+      double n3 = n2 * n;
+      double n4 = n3 * n;
+      double n5 = n4 * n;
+      double n6 = n5 * n;
+
+      e_ = Math.sqrt(ellipsoid.getEccentricitySquared());
+      radius_ = ellipsoid.getSemiMajorAxis() / (1.0 + n) * (1.0 + n2 / 4.0 + n4 / 64.0 + n6 / 256.0);
+
+      alpha_[0] = n / 2.0 - 2.0 * n2 / 3.0 + 5.0 * n3 / 16.0 + 41.0 * n4 / 180.0 - 127.0 * n5 / 288.0 + 7891.0 * n6 / 37800.0;
+      alpha_[1] = 13.0 * n2 / 48.0 - 3.0 * n3 / 5.0 + 557.0 * n4 / 1440.0 + 281.0 * n5 / 630.0 - 1983433.0 * n6 / 1935360.0;
+      alpha_[2] = 61.0 * n3 / 240.0 - 103.0 * n4 / 140.0 + 15061.0 * n5 / 26880.0 + 167603.0 * n6 / 181440.0;
+      alpha_[3] = 49561.0 * n4 / 161280.0 - 179.0 * n5 / 168.0 + 6601661.0 * n6 / 7257600.0;
+      alpha_[4] = 34729.0 * n5 / 80640.0 - 3418889.0 * n6 / 1995840.0;
+      alpha_[5] = 212378941.0 * n6 / 319334400.0;
+
+      beta_[0] = n / 2.0 - 2.0 * n2 / 3.0 + 37.0 * n3 / 96.0 - n4 / 360.0 - 81.0 * n5 / 512.0 + 96199.0 * n6 / 604800.0;
+      beta_[1] = n2 / 48.0 + n3 / 15.0 - 437.0 * n4 / 1440.0 + 46.0 * n5 / 105.0 - 1118711.0 * n6 / 3870720.0;
+      beta_[2] = 17.0 * n3 / 480.0 - 37.0 * n4 / 840.0 - 209.0 * n5 / 4480.0 + 5569.0 * n6 / 90720.0;
+      beta_[3] = 4397.0 * n4 / 161280.0 - 11.0 * n5 / 504.0 - 830251.0 * n6 / 7257600.0;
+      beta_[4] = 4583.0 * n5 / 161280.0 - 108847.0 * n6 / 3991680.0;
+      beta_[5] = 20648693.0 * n6 / 638668800.0;
+    }
+
+    /**
+     * Return the inverse hyperbolic tangent of the specified value.
+     *
+     * @param x  Value to consider. &lt;-1,1&gt;.
+     * @return   The inverse hyperbolic tangent of x.
+     */
+    private static double atanh(double x)
+    {
+      return 0.5 * Math.log((1.0 + x) / (1.0 - x));
+    }
+
+    /**
+     * Project the specified position.
+     *
+     * @param longitude        Longitude relative to the central meridian, in decimal degrees.
+     * @param latitude         Latitude in decimal degrees.
+     * @param eastingNorthing  Resulting easting and northing in meters, relative
+     *                         to the central meridian and equator. Non-null.
+     */
+    void forward(double longitude, double latitude, double[] eastingNorthing)
+    {
+      double phi = Math.toRadians(latitude);
+      double lambda = Math.toRadians(longitude);
+      double sinPhi = Math.sin(phi);
+
+      // Tangent of the conformal latitude
+      double t = Math.sinh(atanh(sinPhi) - e_ * atanh(e_ * sinPhi));
+
+      double xi0 = Math.atan2(t, Math.cos(lambda));
+      double eta0 = atanh(Math.sin(lambda) / Math.sqrt(1.0 + t * t));
+
+      double xi = xi0;
+      double eta = eta0;
+      for (int j = 1; j <= 6; j++) {
+        xi += alpha_[j - 1] * Math.sin(2 * j * xi0) * Math.cosh(2 * j * eta0);
+        eta += alpha_[j - 1] * Math.cos(2 * j * xi0) * Math.sinh(2 * j * eta0);
+      }
+
+      eastingNorthing[0] = radius_ * eta;
+      eastingNorthing[1] = radius_ * xi;
+    }
+
+    /**
+     * Unproject the specified position.
+     *
+     * @param easting   Easting in meters relative to the central meridian.
+     * @param northing  Northing in meters relative to the equator.
+     * @param lonLat    Resulting longitude relative to the central meridian
+     *                  and latitude, in decimal degrees. Non-null.
+     */
+    void inverse(double easting, double northing, double[] lonLat)
+    {
+      double xi = northing / radius_;
+      double eta = easting / radius_;
+
+      double xi0 = xi;
+      double eta0 = eta;
+      for (int j = 1; j <= 6; j++) {
+        xi0 -= beta_[j - 1] * Math.sin(2 * j * xi) * Math.cosh(2 * j * eta);
+        eta0 -= beta_[j - 1] * Math.cos(2 * j * xi) * Math.sinh(2 * j * eta);
+      }
+
+      double sinhEta0 = Math.sinh(eta0);
+      double cosXi0 = Math.cos(xi0);
+
+      // Tangent of the conformal latitude, then of the latitude by Newton iteration
+      double tau0 = Math.sin(xi0) / Math.sqrt(sinhEta0 * sinhEta0 + cosXi0 * cosXi0);
+      double e2 = e_ * e_;
+      double tau = tau0;
+      for (int i = 0; i < 5; i++) {
+        double sigma = Math.sinh(e_ * atanh(e_ * tau / Math.sqrt(1.0 + tau * tau)));
+        double taui = tau * Math.sqrt(1.0 + sigma * sigma) - sigma * Math.sqrt(1.0 + tau * tau);
+        double delta = (tau0 - taui) / Math.sqrt(1.0 + taui * taui) *
+                       (1.0 + (1.0 - e2) * tau * tau) / ((1.0 - e2) * Math.sqrt(1.0 + tau * tau));
+        tau += delta;
+        if (Math.abs(delta) < 1.0e-12)
+          break;
+      }
+
+      lonLat[0] = Math.toDegrees(Math.atan2(sinhEta0, cosXi0));
+      lonLat[1] = Math.toDegrees(Math.atan(tau));
+    }
+  }
+}
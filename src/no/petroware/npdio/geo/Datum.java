@@ -0,0 +1,228 @@
+package no.petroware.npdio.geo;
+
+import java.util.Locale;
+
+/**
+ * A geodetic datum, defined by its ellipsoid and a seven parameter
+ * (Helmert) transformation to WGS 84 using the position vector
+ * convention (EPSG method 9606).
+ * <p>
+ * Transformations of a datum may be regional, using a different set
+ * of parameters north of a given latitude, see {@link #ED50}.
+ * <p>
+ * This class is immutable and thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class Datum
+{
+  /** The WGS 84 datum, EPSG:6326. */
+  public static final Datum WGS84 = new Datum("WGS84", Ellipsoid.WGS84,
+                                              0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+
+  /** Latitude, in decimal degrees, dividing the regional ED50 transformations. */
+  private static final double ED50_NORTH_LATITUDE = 62.0;
+
+  /**
+   * The ED50 datum, EPSG:6230, with the transformations to WGS 84 of
+   * the Norwegian offshore: EPSG:1613 south of 62N and EPSG:1612 north
+   * of 62N, each accurate to about 1m. Both are used outside their
+   * area as well, like onshore and in the Barents Sea east of the
+   * Norwegian sector, where the accuracy is lower.
+   */
+  public static final Datum ED50 = new Datum(new Datum("ED50", Ellipsoid.INTERNATIONAL_1924,
+                                                       -90.365, -101.13, -123.384, 0.333, 0.077, 0.894, 1.994),
+                                             ED50_NORTH_LATITUDE,
+                                             new Datum("ED50", Ellipsoid.INTERNATIONAL_1924,
+                                                       -116.641, -56.931, -110.559, 0.893, 0.921, -0.917, -3.52));
+
+  /** Name of datum. Non-null. */
+  private final String name_;
+
+  /** Ellipsoid of datum. Non-null. */
+  private final Ellipsoid ellipsoid_;
+
+  /** Translations to WGS 84 in meters. */
+  private final double tx_, ty_, tz_;
+
+  /** Rotations to WGS 84 in radians. */
+  private final double rx_, ry_, rz_;
+
+  /** Scale difference to WGS 84, as a fraction. */
+  private final double scale_;
+
+  /** Datum with the transformation north of northLatitude_. Null if none. */
+  private final Datum northDatum_;
+
+  /** Latitude north of which northDatum_ applies, in radians. */
+  private final double northLatitude_;
+
+  /**
+   * Create a datum.
+   *
+   * @param name       Name of datum. Non-null.
+   * @param ellipsoid  Ellipsoid of datum. Non-null.
+   * @param tx         X translation to WGS 84 in meters.
+   * @param ty         Y translation to WGS 84 in meters.
+   * @param tz         Z translation to WGS 84 in meters.
+   * @param rx         X rotation to WGS 84 in arc seconds.
+   * @param ry         Y rotation to WGS 84 in arc seconds.
+   * @param rz         Z rotation to WGS 84 in arc seconds.
+   * @param ppm        Scale difference to WGS 84 in parts per million.
+   * @throws IllegalArgumentException  If name or ellipsoid is null.
+   */
+  public Datum(String name, Ellipsoid ellipsoid,
+               double tx, double ty, double tz,
+               double rx, double ry, double rz,
+               double ppm)
+  {
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+
+    if (ellipsoid == null)
+      throw new IllegalArgumentException("ellipsoid cannot be null");
+
+    double arcSecond = Math.PI / (180.0 * 3600.0);
+
+    name_ = name;
+    ellipsoid_ = ellipsoid;
+    tx_ = tx;
+    ty_ = ty;
+    tz_ = tz;
+    rx_ = rx * arcSecond;
+    ry_ = ry * arcSecond;
+    rz_ = rz * arcSecond;
+    scale_ = ppm * 1.0e-6;
+    northDatum_ = null;
+    northLatitude_ = 0.0;
+  }
+
+  /**
+   * Create a datum with regional transformations to WGS 84.
+   *
+   * @param southDatum     Datum with the transformation south of northLatitude. Non-null.
+   * @param northLatitude  Latitude dividing the transformations, in decimal degrees.
+   * @param northDatum     Datum with the transformation north of northLatitude.
+   *                       Same ellipsoid as southDatum. Non-null.
+   */
+  private Datum(Datum southDatum, double northLatitude, Datum northDatum)
+  {
+    assert southDatum != null : "southDatum cannot be null";
+    assert northDatum != null : "northDatum cannot be null";
+    assert southDatum.ellipsoid_ == northDatum.ellipsoid_ : "Different ellipsoids";
+
+    name_ = southDatum.name_;
+    ellipsoid_ = southDatum.ellipsoid_;
+    tx_ = southDatum.tx_;
+    ty_ = southDatum.ty_;
+    tz_ = southDatum.tz_;
+    rx_ = southDatum.rx_;
+    ry_ = southDatum.ry_;
+    rz_ = southDatum.rz_;
+    scale_ = southDatum.scale_;
+    northDatum_ = northDatum;
+    northLatitude_ = Math.toRadians(northLatitude);
+  }
+
+  /**
+   * Return the datum of the specified name, as used in the geodetic
+   * datum fields of the NPD, like "ED50" or "WGS84".
+   *
+   * @param name  Name of datum. Case and spaces are ignored. Null to return null.
+   * @return      The requested datum, or null if not known.
+   */
+  public static Datum get(String name)
+  {
+    if (name == null)
+      return null;
+
+    String key = name.replace(" ", "").replace("-", "").toUpperCase(Locale.US);
+
+    if (key.equals("ED50") || key.equals("EUROPEANDATUM1950"))
+      return ED50;
+
+    if (key.equals("WGS84"))
+      return WGS84;
+
+    return null;
+  }
+
+  /**
+   * Return name of this datum.
+   *
+   * @return  Name of this datum. Never null.
+   */
+  public String getName()
+  {
+    return name_;
+  }
+
+  /**
+   * Return the ellipsoid of this datum.
+   *
+   * @return  The ellipsoid of this datum. Never null.
+   */
+  public Ellipsoid getEllipsoid()
+  {
+    return ellipsoid_;
+  }
+
+  /**
+   * Check if this datum coincides with WGS 84.
+   *
+   * @return  True if no transformation to WGS 84 is needed, false otherwise.
+   */
+  boolean isWgs84()
+  {
+    return ellipsoid_ == Ellipsoid.WGS84 &&
+           tx_ == 0.0 && ty_ == 0.0 && tz_ == 0.0 &&
+           rx_ == 0.0 && ry_ == 0.0 && rz_ == 0.0 && scale_ == 0.0;
+  }
+
+  /**
+   * Transform the specified geocentric position between this datum
+   * and WGS 84. The reverse transformation uses the negated parameters,
+   * which is the EPSG convention for these small rotations.
+   *
+   * @param xyz          Geocentric X, Y and Z in meters, replaced by the result. Non-null.
+   * @param isToWgs84    True to transform to WGS 84, false to transform from WGS 84.
+   */
+  void transform(double[] xyz, boolean isToWgs84)
+  {
+    assert xyz != null : "xyz cannot be null";
+
+    // The transformation is picked by the latitude of the position in
+    // the datum it is given in. Positions within some 50m of the dividing
+    // latitude may therefore not transform back by the same parameters.
+    if (northDatum_ != null) {
+      Ellipsoid ellipsoid = isToWgs84 ? ellipsoid_ : Ellipsoid.WGS84;
+      double p = Math.hypot(xyz[0], xyz[1]);
+      double latitude = Math.atan2(xyz[2], p * (1.0 - ellipsoid.getEccentricitySquared()));
+      if (latitude >= northLatitude_) {
+        northDatum_.transform(xyz, isToWgs84);
+        return;
+      }
+    }
+
+    double sign = isToWgs84 ? 1.0 : -1.0;
+    double s = 1.0 + sign * scale_;
+    double rx = sign * rx_;
+    double ry = sign * ry_;
+    double rz = sign * rz_;
+
+    double x = xyz[0];
+    double y = xyz[1];
+    double z = xyz[2];
+
+    xyz[0] = sign * tx_ + s * (x - rz * y + ry * z);
+    xyz[1] = sign * ty_ + s * (rz * x + y - rx * z);
+    xyz[2] = sign * tz_ + s * (-ry * x + rx * y + z);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return name_;
+  }
+}
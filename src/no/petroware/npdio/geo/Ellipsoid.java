@@ -0,0 +1,97 @@
+package no.petroware.npdio.geo;
+
+/**
+ * A reference ellipsoid, defined by its semi-major axis and flattening.
+ * <p>
+ * This class is immutable and thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class Ellipsoid
+{
+  /** The WGS 84 ellipsoid, EPSG:7030. */
+  public static final Ellipsoid WGS84 = new Ellipsoid("WGS 84", 6378137.0, 298.257223563);
+
+  /** The International 1924 ellipsoid used by ED50, EPSG:7022. */
+  public static final Ellipsoid INTERNATIONAL_1924 = new Ellipsoid("International 1924", 6378388.0, 297.0);
+
+  /** Name of ellipsoid. Non-null. */
+  private final String name_;
+
+  /** Semi-major axis in meters. */
+  private final double semiMajorAxis_;
+
+  /** Flattening. */
+  private final double flattening_;
+
+  /**
+   * Create an ellipsoid.
+   *
+   * @param name               Name of ellipsoid. Non-null.
+   * @param semiMajorAxis      Semi-major axis in meters. &gt; 0.
+   * @param inverseFlattening  Inverse flattening. &gt; 1.
+   * @throws IllegalArgumentException  If name is null or an axis parameter is out of range.
+   */
+  public Ellipsoid(String name, double semiMajorAxis, double inverseFlattening)
+  {
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+
+    if (!(semiMajorAxis > 0.0))
+      throw new IllegalArgumentException("Invalid semiMajorAxis: " + semiMajorAxis);
+
+    if (!(inverseFlattening > 1.0))
+      throw new IllegalArgumentException("Invalid inverseFlattening: " + inverseFlattening);
+
+    name_ = name;
+    semiMajorAxis_ = semiMajorAxis;
+    flattening_ = 1.0 / inverseFlattening;
+  }
+
+  /**
+   * Return name of this ellipsoid.
+   *
+   * @return  Name of this ellipsoid. Never null.
+   */
+  public String getName()
+  {
+    return name_;
+  }
+
+  /**
+   * Return the semi-major (equatorial) axis of this ellipsoid.
+   *
+   * @return  Semi-major axis in meters.
+   */
+  public double getSemiMajorAxis()
+  {
+    return semiMajorAxis_;
+  }
+
+  /**
+   * Return the flattening of this ellipsoid.
+   *
+   * @return  Flattening. [0,1&gt;.
+   */
+  public double getFlattening()
+  {
+    return flattening_;
+  }
+
+  /**
+   * Return the square of the first eccentricity of this ellipsoid.
+   *
+   * @return  Eccentricity squared. [0,1&gt;.
+   */
+  public double getEccentricitySquared()
+  {
+    return flattening_ * (2.0 - flattening_);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return name_;
+  }
+}
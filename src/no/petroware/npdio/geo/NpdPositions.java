@@ -0,0 +1,341 @@
+package no.petroware.npdio.geo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.petroware.npdio.facility.NpdFixedFacility;
+import no.petroware.npdio.well.NpdWellbore;
+
+/**
+ * Extraction of the positions of NPD objects as coordinate columns
+ * in a common datum.
+ * <p>
+ * The NPD gives positions in the geodetic datum of each object. Objects
+ * of the same datum are transformed together by
+ * {@link CoordinateTransformer}. Objects without a datum are taken to
+ * be in ED50, being the datum of the NPD fact pages. Objects of a datum
+ * not known by {@link Datum#get} cannot be transformed, and get unknown
+ * positions.
+ * <p>
+ * Wellbores without geographic coordinates are positioned by their
+ * UTM coordinates instead, if given. Fixed facilities are positioned by
+ * the degrees, minutes and seconds of their location.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdPositions
+{
+  /**
+   * Private constructor to prevent client instantiation.
+   */
+  private NpdPositions()
+  {
+    assert false : "This constructor should never be called";
+  }
+
+  /**
+   * Return the wellhead positions of the specified wellbores.
+   *
+   * @param wellbores  Wellbores to get positions of. Non-null.
+   * @param target     Datum of the result. Non-null.
+   * @return           Longitudes and latitudes in decimal degrees, as
+   *                   two arrays in the order of the wellbores. NaN
+   *                   for unknown positions. Never null.
+   * @throws IllegalArgumentException  If wellbores or target is null.
+   */
+  public static double[][] getWellborePositions(List<? extends NpdWellbore> wellbores, Datum target)
+  {
+    if (wellbores == null)
+      throw new IllegalArgumentException("wellbores cannot be null");
+
+    int nWellbores = wellbores.size();
+    double[] longitudes = new double[nWellbores];
+    double[] latitudes = new double[nWellbores];
+    double[] eastings = new double[nWellbores];
+    double[] northings = new double[nWellbores];
+    int[] zones = new int[nWellbores];
+    Datum[] datums = new Datum[nWellbores];
+
+    for (int i = 0; i < nWellbores; i++) {
+      NpdWellbore wellbore = wellbores.get(i);
+      longitudes[i] = toDouble(wellbore.getLongitude());
+      latitudes[i] = toDouble(wellbore.getLatitude());
+      eastings[i] = toDouble(wellbore.getEwUtm());
+      northings[i] = toDouble(wellbore.getNsUtm());
+      zones[i] = wellbore.getUtmZone() != null ? wellbore.getUtmZone() : 0;
+      datums[i] = getDatum(wellbore.getGeodeticDatum());
+    }
+
+    fromUtm(datums, eastings, northings, zones, longitudes, latitudes);
+    transform(datums, target, longitudes, latitudes);
+
+    return new double[][] {longitudes, latitudes};
+  }
+
+  /**
+   * Return the positions of the specified fixed facilities.
+   *
+   * @param facilities  Facilities to get positions of. Non-null.
+   * @param target      Datum of the result. Non-null.
+   * @return            Longitudes and latitudes in decimal degrees, as
+   *                    two arrays in the order of the facilities. NaN
+   *                    for unknown positions. Never null.
+   * @throws IllegalArgumentException  If facilities or target is null.
+   */
+  public static double[][] getFacilityPositions(List<NpdFixedFacility> facilities, Datum target)
+  {
+    if (facilities == null)
+      throw new IllegalArgumentException("facilities cannot be null");
+
+    int nFacilities = facilities.size();
+    double[] longitudes = new double[nFacilities];
+    double[] latitudes = new double[nFacilities];
+    Datum[] datums = new Datum[nFacilities];
+
+    for (int i = 0; i < nFacilities; i++) {
+      NpdFixedFacility facility = facilities.get(i);
+      longitudes[i] = getLongitude(facility);
+      latitudes[i] = getLatitude(facility);
+      datums[i] = getDatum(facility.getGeodeticDatum());
+    }
+
+    transform(datums, target, longitudes, latitudes);
+
+    return new double[][] {longitudes, latitudes};
+  }
+
+  /**
+   * Return the wellhead position of the specified wellbore.
+   *
+   * @param wellbore  Wellbore to get position of. Non-null.
+   * @param target    Datum of the result. Non-null.
+   * @return          Longitude and latitude in decimal degrees,
+   *                  or null if the position is unknown.
+   * @throws IllegalArgumentException  If wellbore or target is null.
+   */
+  public static double[] getWellborePosition(NpdWellbore wellbore, Datum target)
+  {
+    if (wellbore == null)
+      throw new IllegalArgumentException("wellbore cannot be null");
+
+    return toPoint(getWellborePositions(Collections.singletonList(wellbore), target));
+  }
+
+  /**
+   * Return the position of the specified fixed facility.
+   *
+   * @param facility  Facility to get position of. Non-null.
+   * @param target    Datum of the result. Non-null.
+   * @return          Longitude and latitude in decimal degrees,
+   *                  or null if the position is unknown.
+   * @throws IllegalArgumentException  If facility or target is null.
+   */
+  public static double[] getFacilityPosition(NpdFixedFacility facility, Datum target)
+  {
+    if (facility == null)
+      throw new IllegalArgumentException("facility cannot be null");
+
+    return toPoint(getFacilityPositions(Collections.singletonList(facility), target));
+  }
+
+  /**
+   * Return the first of the specified positions as a point.
+   *
+   * @param positions  Longitudes and latitudes, as two arrays. Non-null.
+   * @return           Longitude and latitude of the first position,
+   *                   or null if it is unknown.
+   */
+  private static double[] toPoint(double[][] positions)
+  {
+    assert positions != null : "positions cannot be null";
+
+    double longitude = positions[0][0];
+    double latitude = positions[1][0];
+    if (Double.isNaN(longitude) || Double.isNaN(latitude))
+      return null;
+
+    return new double[] {longitude, latitude};
+  }
+
+  /**
+   * Return the latitude of the specified facility, as computed from
+   * the degrees, minutes and seconds of its position.
+   *
+   * @param facility  Facility to get latitude of. Non-null.
+   * @return          Latitude in decimal degrees, negative if south, or NaN if unknown.
+   */
+  private static double getLatitude(NpdFixedFacility facility)
+  {
+    assert facility != null : "facility cannot be null";
+
+    boolean isSouth = "S".equalsIgnoreCase(facility.getNsCode());
+    return toDecimalDegrees(facility.getNsDegrees(), facility.getNsMinutes(), facility.getNsSeconds(), isSouth);
+  }
+
+  /**
+   * Return the longitude of the specified facility, as computed from
+   * the degrees, minutes and seconds of its position.
+   *
+   * @param facility  Facility to get longitude of. Non-null.
+   * @return          Longitude in decimal degrees, negative if west, or NaN if unknown.
+   */
+  private static double getLongitude(NpdFixedFacility facility)
+  {
+    assert facility != null : "facility cannot be null";
+
+    // "V" is Norwegian notation for west
+    String code = facility.getEwCode();
+    boolean isWest = "W".equalsIgnoreCase(code) || "V".equalsIgnoreCase(code);
+    return toDecimalDegrees(facility.getEwDegrees(), facility.getEwMinutes(), facility.getEwSeconds(), isWest);
+  }
+
+  /**
+   * Convert the specified degrees, minutes and seconds to decimal degrees.
+   *
+   * @param degrees     Degrees. Null if unknown.
+   * @param minutes     Minutes. Null if 0.
+   * @param seconds     Seconds. Null if 0.
+   * @param isNegative  True if south or west, false otherwise.
+   * @return            Decimal degrees, or NaN if degrees is null.
+   */
+  private static double toDecimalDegrees(Integer degrees, Integer minutes, Double seconds, boolean isNegative)
+  {
+    if (degrees == null)
+      return Double.NaN;
+
+    double value = degrees;
+    if (minutes != null)
+      value += minutes / 60.0;
+    if (seconds != null)
+      value += seconds / 3600.0;
+
+    return isNegative ? -value : value;
+  }
+
+  /**
+   * Return the specified value as a primitive.
+   *
+   * @param value  Value to convert. Null if unknown.
+   * @return       The value, or NaN if null.
+   */
+  private static double toDouble(Double value)
+  {
+    return value != null ? value : Double.NaN;
+  }
+
+  /**
+   * Return the datum of the specified NPD datum name.
+   *
+   * @param name  Name of datum. Null if not given.
+   * @return      The datum, ED50 if name is null, or null if the
+   *              datum is not known.
+   */
+  private static Datum getDatum(String name)
+  {
+    return name != null ? Datum.get(name) : Datum.ED50;
+  }
+
+  /**
+   * Fill in the geographic coordinates of the positions having UTM
+   * coordinates only, in place.
+   *
+   * @param datums      Datum of each position. Null if not known. Non-null.
+   * @param eastings    UTM eastings in meters. NaN if unknown. Non-null.
+   * @param northings   UTM northings in meters. NaN if unknown. Non-null.
+   * @param zones       UTM zones. 0 if unknown. Non-null.
+   * @param longitudes  Longitudes in decimal degrees. Non-null.
+   * @param latitudes   Latitudes in decimal degrees. Non-null.
+   */
+  private static void fromUtm(Datum[] datums,
+                              double[] eastings, double[] northings, int[] zones,
+                              double[] longitudes, double[] latitudes)
+  {
+    assert datums != null : "datums cannot be null";
+
+    // UTM coordinates are in the datum of the geographic ones,
+    // so each group is converted on the ellipsoid of its datum
+    Map<Datum, List<Integer>> indicesByDatum = new LinkedHashMap<>();
+    for (int i = 0; i < datums.length; i++) {
+      boolean isMissing = Double.isNaN(longitudes[i]) || Double.isNaN(latitudes[i]);
+      if (isMissing && datums[i] != null && zones[i] > 0)
+        indicesByDatum.computeIfAbsent(datums[i], d -> new ArrayList<>()).add(i);
+    }
+
+    for (Map.Entry<Datum, List<Integer>> entry : indicesByDatum.entrySet()) {
+      List<Integer> indices = entry.getValue();
+      int nPositions = indices.size();
+
+      double[] groupEastings = new double[nPositions];
+      double[] groupNorthings = new double[nPositions];
+      int[] groupZones = new int[nPositions];
+      for (int i = 0; i < nPositions; i++) {
+        groupEastings[i] = eastings[indices.get(i)];
+        groupNorthings[i] = northings[indices.get(i)];
+        groupZones[i] = zones[indices.get(i)];
+      }
+
+      CoordinateTransformer.fromUtm(entry.getKey().getEllipsoid(), groupEastings, groupNorthings, groupZones,
+                                    groupEastings, groupNorthings);
+
+      for (int i = 0; i < nPositions; i++) {
+        longitudes[indices.get(i)] = groupEastings[i];
+        latitudes[indices.get(i)] = groupNorthings[i];
+      }
+    }
+  }
+
+  /**
+   * Transform positions of mixed datums to the specified datum, in place.
+   *
+   * @param datums      Datum of each position. Null if not known. Non-null.
+   * @param target      Datum to transform to. Non-null.
+   * @param longitudes  Longitudes in decimal degrees. Non-null.
+   * @param latitudes   Latitudes in decimal degrees. Non-null.
+   * @throws IllegalArgumentException  If target is null.
+   */
+  private static void transform(Datum[] datums, Datum target, double[] longitudes, double[] latitudes)
+  {
+    assert datums != null : "datums cannot be null";
+    assert longitudes != null && longitudes.length == datums.length : "Invalid longitudes";
+    assert latitudes != null && latitudes.length == datums.length : "Invalid latitudes";
+
+    if (target == null)
+      throw new IllegalArgumentException("target cannot be null");
+
+    // Group the positions by datum
+    Map<Datum, List<Integer>> indicesByDatum = new LinkedHashMap<>();
+    for (int i = 0; i < datums.length; i++) {
+      Datum datum = datums[i];
+
+      // Unknown datum: The position cannot be trusted to a few hundred meters
+      if (datum == null) {
+        longitudes[i] = Double.NaN;
+        latitudes[i] = Double.NaN;
+      }
+      else if (datum != target)
+        indicesByDatum.computeIfAbsent(datum, d -> new ArrayList<>()).add(i);
+    }
+
+    for (Map.Entry<Datum, List<Integer>> entry : indicesByDatum.entrySet()) {
+      List<Integer> indices = entry.getValue();
+      int nPositions = indices.size();
+
+      double[] groupLongitudes = new double[nPositions];
+      double[] groupLatitudes = new double[nPositions];
+      for (int i = 0; i < nPositions; i++) {
+        groupLongitudes[i] = longitudes[indices.get(i)];
+        groupLatitudes[i] = latitudes[indices.get(i)];
+      }
+
+      CoordinateTransformer.transform(entry.getKey(), target, groupLongitudes, groupLatitudes);
+
+      for (int i = 0; i < nPositions; i++) {
+        longitudes[indices.get(i)] = groupLongitudes[i];
+        latitudes[indices.get(i)] = groupLatitudes[i];
+      }
+    }
+  }
+}
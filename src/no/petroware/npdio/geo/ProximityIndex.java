@@ -0,0 +1,519 @@
+package no.petroware.npdio.geo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.facility.NpdFixedFacility;
+import no.petroware.npdio.well.NpdWellbore;
+
+/**
+ * Spatial index over the positions of a fixed collection of NPD objects,
+ * answering nearest neighbour and within distance queries for batches of
+ * positions, like "nearest fixed facility of every exploration wellbore"
+ * or "wellbores within tie-back distance of each platform":
+ *
+ * <pre>
+ *   ProximityIndex&lt;NpdFixedFacility&gt; index = ProximityIndex.newFacilityIndex(facilities);
+ *
+ *   double[][] positions = NpdPositions.getWellborePositions(wellbores, Datum.WGS84);
+ *   double[] distances = new double[wellbores.size()];
+ *   int[] nearest = index.findNearest(positions[0], positions[1], distances);
+ * </pre>
+ *
+ * Positions are WGS 84 longitudes and latitudes in decimal degrees. They
+ * are indexed as geocentric coordinates in a balanced kd-tree, so that
+ * queries visit only the parts of the tree within reach. Distances are
+ * great circle distances on a sphere of the mean earth radius, within
+ * 0.5% of the geodesic distance. Query batches are processed in parallel.
+ * <p>
+ * Results refer to objects by their position in the list returned by
+ * {@link #getObjects}, and to query positions by their array index.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of objects being indexed.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class ProximityIndex<T extends NpdObject>
+{
+  /** Mean earth radius in meters. */
+  public static final double EARTH_RADIUS = 6371008.8;
+
+  /** Number of query positions of each chunk processed in parallel. */
+  private static final int CHUNK_SIZE = 1024;
+
+  /** The indexed objects. Non-null. */
+  private final List<T> objects_;
+
+  /** Geocentric coordinates on the unit sphere, in tree order. */
+  private final double[] x_, y_, z_;
+
+  /** Position in objects_ of each tree node. */
+  private final int[] positions_;
+
+  /** Split axis of each tree node: 0 for x, 1 for y, 2 for z. */
+  private final byte[] axes_;
+
+  /**
+   * Create a proximity index.
+   *
+   * @param objects     Objects to index. Non-null.
+   * @param longitudes  WGS 84 longitude of each object in decimal degrees. NaN if unknown. Non-null.
+   * @param latitudes   WGS 84 latitude of each object in decimal degrees. NaN if unknown. Non-null.
+   * @throws IllegalArgumentException  If any argument is null or the sizes differ.
+   */
+  public ProximityIndex(List<T> objects, double[] longitudes, double[] latitudes)
+  {
+    if (objects == null)
+      throw new IllegalArgumentException("objects cannot be null");
+
+    if (longitudes == null)
+      throw new IllegalArgumentException("longitudes cannot be null");
+
+    if (latitudes == null)
+      throw new IllegalArgumentException("latitudes cannot be null");
+
+    if (longitudes.length != objects.size() || latitudes.length != objects.size())
+      throw new IllegalArgumentException("objects, longitudes and latitudes must be of equal size");
+
+    objects_ = Collections.unmodifiableList(new ArrayList<>(objects));
+
+    // Positioned objects only
+    int nPositioned = 0;
+    for (int i = 0; i < longitudes.length; i++) {
+      if (!Double.isNaN(longitudes[i]) && !Double.isNaN(latitudes[i]))
+        nPositioned++;
+    }
+
+    x_ = new double[nPositioned];
+    y_ = new double[nPositioned];
+    z_ = new double[nPositioned];
+    positions_ = new int[nPositioned];
+    axes_ = new byte[nPositioned];
+
+    double[] xyz = new double[3];
+    int node = 0;
+    for (int i = 0; i < longitudes.length; i++) {
+      if (!Double.isNaN(longitudes[i]) && !Double.isNaN(latitudes[i])) {
+        toUnitVector(longitudes[i], latitudes[i], xyz);
+        x_[node] = xyz[0];
+        y_[node] = xyz[1];
+        z_[node] = xyz[2];
+        positions_[node] = i;
+        node++;
+      }
+    }
+
+    build(0, nPositioned);
+  }
+
+  /**
+   * Create a proximity index over the wellhead positions of the specified wellbores.
+   *
+   * @param <T>        Wellbore type.
+   * @param wellbores  Wellbores to index. Non-null.
+   * @return           The requested index. Never null.
+   * @throws IllegalArgumentException  If wellbores is null.
+   */
+  public static <T extends NpdWellbore> ProximityIndex<T> newWellboreIndex(List<T> wellbores)
+  {
+    double[][] positions = NpdPositions.getWellborePositions(wellbores, Datum.WGS84);
+    return new ProximityIndex<T>(wellbores, positions[0], positions[1]);
+  }
+
+  /**
+   * Create a proximity index over the positions of the specified fixed facilities.
+   *
+   * @param facilities  Facilities to index. Non-null.
+   * @return            The requested index. Never null.
+   * @throws IllegalArgumentException  If facilities is null.
+   */
+  public static ProximityIndex<NpdFixedFacility> newFacilityIndex(List<NpdFixedFacility> facilities)
+  {
+    double[][] positions = NpdPositions.getFacilityPositions(facilities, Datum.WGS84);
+    return new ProximityIndex<NpdFixedFacility>(facilities, positions[0], positions[1]);
+  }
+
+  /**
+   * Return the indexed objects, including those without a position.
+   *
+   * @return  The indexed objects. Never null.
+   */
+  public List<T> getObjects()
+  {
+    return objects_;
+  }
+
+  /**
+   * Compute the unit vector of the specified position on the sphere.
+   *
+   * @param longitude  Longitude in decimal degrees.
+   * @param latitude   Latitude in decimal degrees.
+   * @param xyz        Resulting unit vector. Non-null.
+   */
+  private static void toUnitVector(double longitude, double latitude, double[] xyz)
+  {
+    double phi = Math.toRadians(latitude);
+    double lambda = Math.toRadians(longitude);
+    double cosPhi = Math.cos(phi);
+
+    xyz[0] = cosPhi * Math.cos(lambda);
+    xyz[1] = cosPhi * Math.sin(lambda);
+    xyz[2] = Math.sin(phi);
+  }
+
+  /**
+   * Convert the specified squared chord length on the unit sphere to
+   * great circle distance.
+   *
+   * @param chord2  Squared chord length. [0,4].
+   * @return        Distance in meters.
+   */
+  private static double toDistance(double chord2)
+  {
+    return 2.0 * EARTH_RADIUS * Math.asin(Math.min(1.0, 0.5 * Math.sqrt(chord2)));
+  }
+
+  /**
+   * Convert the specified great circle distance to squared chord length
+   * on the unit sphere.
+   *
+   * @param distance  Distance in meters. [0,&gt;.
+   * @return          Squared chord length. [0,4].
+   */
+  private static double toChord2(double distance)
+  {
+    double angle = Math.min(Math.PI, distance / EARTH_RADIUS);
+    double chord = 2.0 * Math.sin(0.5 * angle);
+    return chord * chord;
+  }
+
+  /**
+   * Return the coordinate of the specified node along the specified axis.
+   *
+   * @param node  Tree node. [0,nNodes&gt;.
+   * @param axis  Axis: 0, 1 or 2.
+   * @return      The requested coordinate.
+   */
+  private double get(int node, int axis)
+  {
+    return axis == 0 ? x_[node] : axis == 1 ? y_[node] : z_[node];
+  }
+
+  /**
+   * Swap two tree nodes.
+   *
+   * @param i  First node. [0,nNodes&gt;.
+   * @param j  Second node. [0,nNodes&gt;.
+   */
+  private void swap(int i, int j)
+  {
+    double x = x_[i]; x_[i] = x_[j]; x_[j] = x;
+    double y = y_[i]; y_[i] = y_[j]; y_[j] = y;
+    double z = z_[i]; z_[i] = z_[j]; z_[j] = z;
+    int position = positions_[i]; positions_[i] = positions_[j]; positions_[j] = position;
+  }
+
+  /**
+   * Build the kd-tree of the specified range, placing the median along
+   * the axis of largest extent in the middle and the two halves on each
+   * side of it, recursively.
+   *
+   * @param from  First node of range. [0,nNodes].
+   * @param to    Node past the end of range. [from,nNodes].
+   */
+  private void build(int from, int to)
+  {
+    if (to - from <= 1)
+      return;
+
+    // Axis of largest extent
+    double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+    double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+    for (int node = from; node < to; node++) {
+      for (int axis = 0; axis < 3; axis++) {
+        min[axis] = Math.min(min[axis], get(node, axis));
+        max[axis] = Math.max(max[axis], get(node, axis));
+      }
+    }
+    int axis = 0;
+    for (int a = 1; a < 3; a++) {
+      if (max[a] - min[a] > max[axis] - min[axis])
+        axis = a;
+    }
+
+    int middle = (from + to) >>> 1;
+    select(from, to - 1, middle, axis);
+    axes_[middle] = (byte) axis;
+
+    build(from, middle);
+    build(middle + 1, to);
+  }
+
+  /**
+   * Partially sort the specified range along the specified axis so that
+   * the node at k is the one of rank k, with smaller ones before it and
+   * larger ones after it (quickselect).
+   *
+   * @param left   First node of range.
+   * @param right  Last node of range.
+   * @param k      Node to select. [left,right].
+   * @param axis   Axis to sort along.
+   */
+  private void select(int left, int right, int k, int axis)
+  {
+    while (left < right) {
+      double pivot = get((left + right) >>> 1, axis);
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (get(i, axis) < pivot)
+          i++;
+        while (get(j, axis) > pivot)
+          j--;
+        if (i <= j) {
+          swap(i, j);
+          i++;
+          j--;
+        }
+      }
+
+      if (k <= j)
+        right = j;
+      else if (k >= i)
+        left = i;
+      else
+        return;
+    }
+  }
+
+  /**
+   * Process the specified number of queries in parallel chunks.
+   *
+   * @param nQueries  Number of queries. [0,&gt;.
+   * @param task      Task processing the chunk of the given index. Non-null.
+   */
+  private static void forEachChunk(int nQueries, IntConsumer task)
+  {
+    int nChunks = (nQueries + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    if (nChunks == 1)
+      task.accept(0);
+    else
+      IntStream.range(0, nChunks).parallel().forEach(task);
+  }
+
+  /**
+   * Check the specified query positions.
+   *
+   * @param longitudes  Query longitudes. Non-null.
+   * @param latitudes   Query latitudes. Non-null.
+   * @throws IllegalArgumentException  If longitudes or latitudes is null or their lengths differ.
+   */
+  private static void checkQuery(double[] longitudes, double[] latitudes)
+  {
+    if (longitudes == null)
+      throw new IllegalArgumentException("longitudes cannot be null");
+
+    if (latitudes == null)
+      throw new IllegalArgumentException("latitudes cannot be null");
+
+    if (longitudes.length != latitudes.length)
+      throw new IllegalArgumentException("longitudes and latitudes must be of equal length");
+  }
+
+  /**
+   * Find the nearest indexed object of each of the specified positions.
+   *
+   * @param longitudes  WGS 84 longitudes in decimal degrees. NaN if unknown. Non-null.
+   * @param latitudes   WGS 84 latitudes in decimal degrees. NaN if unknown. Non-null.
+   * @param distances   Distance in meters to the nearest object of each position,
+   *                    NaN if none. Null if not needed.
+   * @return            Position in {@link #getObjects} of the nearest object of each
+   *                    query position, -1 if the query position is unknown or
+   *                    no objects are positioned. Never null.
+   * @throws IllegalArgumentException  If longitudes or latitudes is null or
+   *                                   the array lengths differ.
+   */
+  public int[] findNearest(double[] longitudes, double[] latitudes, double[] distances)
+  {
+    checkQuery(longitudes, latitudes);
+
+    if (distances != null && distances.length != longitudes.length)
+      throw new IllegalArgumentException("Invalid distances length: " + distances.length);
+
+    int nQueries = longitudes.length;
+    int[] nearest = new int[nQueries];
+
+    forEachChunk(nQueries, chunk -> {
+      double[] xyz = new double[3];
+      Nearest best = new Nearest();
+
+      int to = Math.min(nQueries, (chunk + 1) * CHUNK_SIZE);
+      for (int i = chunk * CHUNK_SIZE; i < to; i++) {
+        best.node = -1;
+        best.chord2 = Double.MAX_VALUE;
+
+        if (!Double.isNaN(longitudes[i]) && !Double.isNaN(latitudes[i])) {
+          toUnitVector(longitudes[i], latitudes[i], xyz);
+          findNearest(0, x_.length, xyz[0], xyz[1], xyz[2], best);
+        }
+
+        nearest[i] = best.node >= 0 ? positions_[best.node] : -1;
+        if (distances != null)
+          distances[i] = best.node >= 0 ? toDistance(best.chord2) : Double.NaN;
+      }
+    });
+
+    return nearest;
+  }
+
+  /**
+   * The best candidate of a nearest neighbour search.
+   */
+  private static final class Nearest
+  {
+    /** Tree node of best candidate. -1 if none. */
+    int node;
+
+    /** Squared chord length to best candidate. */
+    double chord2;
+  }
+
+  /**
+   * Find the node nearest the specified point within the specified subtree.
+   *
+   * @param from  First node of subtree.
+   * @param to    Node past the end of subtree.
+   * @param x     X coordinate of point.
+   * @param y     Y coordinate of point.
+   * @param z     Z coordinate of point.
+   * @param best  Best candidate so far, updated if a nearer node is found. Non-null.
+   */
+  private void findNearest(int from, int to, double x, double y, double z, Nearest best)
+  {
+    if (from >= to)
+      return;
+
+    int node = (from + to) >>> 1;
+
+    double dx = x_[node] - x;
+    double dy = y_[node] - y;
+    double dz = z_[node] - z;
+    double chord2 = dx * dx + dy * dy + dz * dz;
+    if (chord2 < best.chord2) {
+      best.chord2 = chord2;
+      best.node = node;
+    }
+
+    int axis = axes_[node];
+    double delta = axis == 0 ? x - x_[node] : axis == 1 ? y - y_[node] : z - z_[node];
+
+    // Search the side of the point first, then the other if it may be nearer
+    if (delta < 0.0) {
+      findNearest(from, node, x, y, z, best);
+      if (delta * delta < best.chord2)
+        findNearest(node + 1, to, x, y, z, best);
+    }
+    else {
+      findNearest(node + 1, to, x, y, z, best);
+      if (delta * delta < best.chord2)
+        findNearest(from, node, x, y, z, best);
+    }
+  }
+
+  /**
+   * Find all pairs of query position and indexed object within the
+   * specified distance of each other.
+   *
+   * @param longitudes   WGS 84 longitudes in decimal degrees. NaN if unknown. Non-null.
+   * @param latitudes    WGS 84 latitudes in decimal degrees. NaN if unknown. Non-null.
+   * @param maxDistance  Max distance in meters. [0,&gt;.
+   * @return             The pairs within the distance, ordered by query index and
+   *                     then by distance. Never null.
+   * @throws IllegalArgumentException  If longitudes or latitudes is null,
+   *                                   their lengths differ or maxDistance is negative.
+   */
+  public ProximityJoin findWithin(double[] longitudes, double[] latitudes, double maxDistance)
+  {
+    checkQuery(longitudes, latitudes);
+
+    if (!(maxDistance >= 0.0))
+      throw new IllegalArgumentException("Invalid maxDistance: " + maxDistance);
+
+    double maxChord2 = toChord2(maxDistance);
+
+    int nQueries = longitudes.length;
+    int nChunks = (nQueries + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    ProximityJoin.Builder[] builders = new ProximityJoin.Builder[nChunks];
+
+    forEachChunk(nQueries, chunk -> {
+      double[] xyz = new double[3];
+      ProximityJoin.Builder builder = new ProximityJoin.Builder();
+
+      int to = Math.min(nQueries, (chunk + 1) * CHUNK_SIZE);
+      for (int i = chunk * CHUNK_SIZE; i < to; i++) {
+        if (Double.isNaN(longitudes[i]) || Double.isNaN(latitudes[i]))
+          continue;
+
+        toUnitVector(longitudes[i], latitudes[i], xyz);
+
+        int start = builder.size();
+        findWithin(0, x_.length, xyz[0], xyz[1], xyz[2], maxChord2, i, builder);
+        builder.sortFrom(start);
+      }
+
+      builders[chunk] = builder;
+    });
+
+    return ProximityJoin.Builder.concatenate(builders);
+  }
+
+  /**
+   * Add all nodes of the specified subtree within the specified squared
+   * chord length of the specified point.
+   *
+   * @param from       First node of subtree.
+   * @param to         Node past the end of subtree.
+   * @param x          X coordinate of point.
+   * @param y          Y coordinate of point.
+   * @param z          Z coordinate of point.
+   * @param maxChord2  Max squared chord length.
+   * @param query      Query index of point.
+   * @param builder    Result to add to. Non-null.
+   */
+  private void findWithin(int from, int to, double x, double y, double z,
+                          double maxChord2, int query, ProximityJoin.Builder builder)
+  {
+    if (from >= to)
+      return;
+
+    int node = (from + to) >>> 1;
+
+    double dx = x_[node] - x;
+    double dy = y_[node] - y;
+    double dz = z_[node] - z;
+    double chord2 = dx * dx + dy * dy + dz * dz;
+    if (chord2 <= maxChord2)
+      builder.add(query, positions_[node], toDistance(chord2));
+
+    int axis = axes_[node];
+    double delta = axis == 0 ? x - x_[node] : axis == 1 ? y - y_[node] : z - z_[node];
+
+    if (delta < 0.0 || delta * delta <= maxChord2)
+      findWithin(from, node, x, y, z, maxChord2, query, builder);
+    if (delta >= 0.0 || delta * delta <= maxChord2)
+      findWithin(node + 1, to, x, y, z, maxChord2, query, builder);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return "ProximityIndex [nObjects=" + objects_.size() + ", nPositioned=" + x_.length + "]";
+  }
+}
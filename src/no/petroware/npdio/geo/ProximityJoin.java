@@ -0,0 +1,251 @@
+package no.petroware.npdio.geo;
+
+import java.util.Arrays;
+
+/**
+ * Result of a distance join, being pairs of query position and indexed
+ * object within a given distance of each other, as computed by
+ * {@link ProximityIndex#findWithin}.
+ * <p>
+ * The pairs are held in primitive arrays, ordered by query index and
+ * then by distance.
+ * <p>
+ * This class is immutable and thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class ProximityJoin
+{
+  /** Query index of each pair. */
+  private final int[] queryIndices_;
+
+  /** Object position of each pair. */
+  private final int[] objectIndices_;
+
+  /** Distance in meters of each pair. */
+  private final double[] distances_;
+
+  /**
+   * Create a proximity join result. The arrays are not copied.
+   *
+   * @param queryIndices   Query index of each pair. Non-null.
+   * @param objectIndices  Object position of each pair. Non-null.
+   * @param distances      Distance of each pair. Non-null.
+   */
+  private ProximityJoin(int[] queryIndices, int[] objectIndices, double[] distances)
+  {
+    assert queryIndices != null : "queryIndices cannot be null";
+    assert objectIndices != null && objectIndices.length == queryIndices.length : "Invalid objectIndices";
+    assert distances != null && distances.length == queryIndices.length : "Invalid distances";
+
+    queryIndices_ = queryIndices;
+    objectIndices_ = objectIndices;
+    distances_ = distances;
+  }
+
+  /**
+   * Return number of pairs.
+   *
+   * @return  Number of pairs. [0,&gt;.
+   */
+  public int getNPairs()
+  {
+    return queryIndices_.length;
+  }
+
+  /**
+   * Return the query index of the specified pair.
+   *
+   * @param pairNo  Pair number. [0,nPairs&gt;.
+   * @return        Index of the query position of the pair.
+   * @throws IndexOutOfBoundsException  If pairNo is out of range.
+   */
+  public int getQueryIndex(int pairNo)
+  {
+    return queryIndices_[pairNo];
+  }
+
+  /**
+   * Return the object of the specified pair, as its position in
+   * {@link ProximityIndex#getObjects}.
+   *
+   * @param pairNo  Pair number. [0,nPairs&gt;.
+   * @return        Position of the object of the pair.
+   * @throws IndexOutOfBoundsException  If pairNo is out of range.
+   */
+  public int getObjectIndex(int pairNo)
+  {
+    return objectIndices_[pairNo];
+  }
+
+  /**
+   * Return the distance of the specified pair.
+   *
+   * @param pairNo  Pair number. [0,nPairs&gt;.
+   * @return        Distance in meters between query position and object.
+   * @throws IndexOutOfBoundsException  If pairNo is out of range.
+   */
+  public double getDistance(int pairNo)
+  {
+    return distances_[pairNo];
+  }
+
+  /**
+   * Return the query index of every pair.
+   *
+   * @return  Query indices. Never null.
+   */
+  public int[] getQueryIndices()
+  {
+    return queryIndices_.clone();
+  }
+
+  /**
+   * Return the object position of every pair.
+   *
+   * @return  Object positions. Never null.
+   */
+  public int[] getObjectIndices()
+  {
+    return objectIndices_.clone();
+  }
+
+  /**
+   * Return the distance of every pair.
+   *
+   * @return  Distances in meters. Never null.
+   */
+  public double[] getDistances()
+  {
+    return distances_.clone();
+  }
+
+  /**
+   * Return the number of pairs of each query position.
+   *
+   * @param nQueries  Number of query positions. [0,&gt;.
+   * @return          Number of pairs of each query position. Never null.
+   * @throws IllegalArgumentException  If nQueries is negative or not greater than every
+   *                                   query index.
+   */
+  public int[] getCounts(int nQueries)
+  {
+    if (nQueries < 0)
+      throw new IllegalArgumentException("Invalid nQueries: " + nQueries);
+
+    int[] counts = new int[nQueries];
+    for (int queryIndex : queryIndices_) {
+      if (queryIndex >= nQueries)
+        throw new IllegalArgumentException("Invalid nQueries: " + nQueries);
+      counts[queryIndex]++;
+    }
+    return counts;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return "ProximityJoin [nPairs=" + queryIndices_.length + "]";
+  }
+
+  /**
+   * Growable collection of pairs, used while joining.
+   */
+  static final class Builder
+  {
+    /** Query index of each pair. */
+    private int[] queryIndices_ = new int[64];
+
+    /** Object position of each pair. */
+    private int[] objectIndices_ = new int[64];
+
+    /** Distance of each pair. */
+    private double[] distances_ = new double[64];
+
+    /** Number of pairs. */
+    private int size_ = 0;
+
+    /**
+     * Return number of pairs added.
+     *
+     * @return  Number of pairs added. [0,&gt;.
+     */
+    int size()
+    {
+      return size_;
+    }
+
+    /**
+     * Add a pair.
+     *
+     * @param queryIndex   Query index of pair.
+     * @param objectIndex  Object position of pair.
+     * @param distance     Distance of pair.
+     */
+    void add(int queryIndex, int objectIndex, double distance)
+    {
+      if (size_ == queryIndices_.length) {
+        queryIndices_ = Arrays.copyOf(queryIndices_, 2 * size_);
+        objectIndices_ = Arrays.copyOf(objectIndices_, 2 * size_);
+        distances_ = Arrays.copyOf(distances_, 2 * size_);
+      }
+
+      queryIndices_[size_] = queryIndex;
+      objectIndices_[size_] = objectIndex;
+      distances_[size_] = distance;
+      size_++;
+    }
+
+    /**
+     * Sort the pairs from the specified one by distance. Insertion sort,
+     * as the pairs of a single query are few.
+     *
+     * @param from  First pair to sort. [0,size].
+     */
+    void sortFrom(int from)
+    {
+      for (int i = from + 1; i < size_; i++) {
+        int objectIndex = objectIndices_[i];
+        double distance = distances_[i];
+        int j = i - 1;
+        while (j >= from && distances_[j] > distance) {
+          objectIndices_[j + 1] = objectIndices_[j];
+          distances_[j + 1] = distances_[j];
+          j--;
+        }
+        objectIndices_[j + 1] = objectIndex;
+        distances_[j + 1] = distance;
+      }
+    }
+
+    /**
+     * Concatenate the pairs of the specified builders into a join result.
+     *
+     * @param builders  Builders to concatenate. Non-null.
+     * @return          The join result. Never null.
+     */
+    static ProximityJoin concatenate(Builder[] builders)
+    {
+      assert builders != null : "builders cannot be null";
+
+      int nPairs = 0;
+      for (Builder builder : builders)
+        nPairs += builder.size_;
+
+      int[] queryIndices = new int[nPairs];
+      int[] objectIndices = new int[nPairs];
+      double[] distances = new double[nPairs];
+
+      int offset = 0;
+      for (Builder builder : builders) {
+        System.arraycopy(builder.queryIndices_, 0, queryIndices, offset, builder.size_);
+        System.arraycopy(builder.objectIndices_, 0, objectIndices, offset, builder.size_);
+        System.arraycopy(builder.distances_, 0, distances, offset, builder.size_);
+        offset += builder.size_;
+      }
+
+      return new ProximityJoin(queryIndices, objectIndices, distances);
+    }
+  }
+}
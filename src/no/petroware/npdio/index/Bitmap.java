@@ -0,0 +1,778 @@
+package no.petroware.npdio.index;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative integers.
+ * <p>
+ * The implementation follows the <em>Roaring</em> bitmap layout:
+ * The 32-bit value space is partitioned into chunks of 2<sup>16</sup>
+ * values keyed by the high 16 bits of each value. Each non-empty chunk
+ * is stored in a container that is either a sorted array of the low
+ * 16 bits (sparse chunks) or a plain 2<sup>16</sup> bit bitmap (dense
+ * chunks). Set operations are performed container by container, so
+ * combining bitmaps is a matter of word-wise bit operations and merges
+ * rather than object scans.
+ * <p>
+ * Bitmaps are immutable once exposed to clients. All set operations
+ * return new instances.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class Bitmap
+{
+  /** The empty bitmap. */
+  private static final Bitmap EMPTY = new Bitmap();
+
+  /** Max cardinality of an array container. Above this a bitmap container is more compact. */
+  private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+
+  /** Number of 64-bit words in a bitmap container. */
+  private static final int N_WORDS = 1024;
+
+  /** High 16 bits of the chunks in use. Sorted. */
+  private char[] keys_ = new char[4];
+
+  /** Containers of the chunks in use. Same order as keys_. */
+  private Container[] containers_ = new Container[4];
+
+  /** Number of chunks in use. */
+  private int nContainers_ = 0;
+
+  /**
+   * Create an empty bitmap.
+   */
+  Bitmap()
+  {
+    // Nothing
+  }
+
+  /**
+   * Return the empty bitmap.
+   *
+   * @return  The empty bitmap. Never null.
+   */
+  public static Bitmap empty()
+  {
+    return EMPTY;
+  }
+
+  /**
+   * Create a bitmap containing all values in the range [0,size&gt;.
+   *
+   * @param size  Number of values in the bitmap. [0,&gt;.
+   * @return      The requested bitmap. Never null.
+   * @throws IllegalArgumentException  If size &lt; 0.
+   */
+  public static Bitmap range(int size)
+  {
+    if (size < 0)
+      throw new IllegalArgumentException("Invalid size: " + size);
+
+    Bitmap bitmap = new Bitmap();
+
+    int nFullChunks = size >>> 16;
+    for (int key = 0; key < nFullChunks; key++) {
+      BitmapContainer container = new BitmapContainer();
+      Arrays.fill(container.words_, -1L);
+      container.cardinality_ = 1 << 16;
+      bitmap.append((char) key, container);
+    }
+
+    int rest = size & 0xFFFF;
+    if (rest > 0) {
+      Container container = new ArrayContainer();
+      for (int i = 0; i < rest; i++)
+        container = container.add((char) i);
+      bitmap.append((char) nFullChunks, container);
+    }
+
+    return bitmap;
+  }
+
+  /**
+   * Create a bitmap of the specified values.
+   *
+   * @param values  Values to populate bitmap with. Non-null.
+   * @return        The requested bitmap. Never null.
+   * @throws IllegalArgumentException  If values is null or contains negative entries.
+   */
+  public static Bitmap of(int... values)
+  {
+    if (values == null)
+      throw new IllegalArgumentException("values cannot be null");
+
+    int[] sortedValues = values.clone();
+    Arrays.sort(sortedValues);
+
+    Bitmap bitmap = new Bitmap();
+    for (int value : sortedValues) {
+      if (value < 0)
+        throw new IllegalArgumentException("Invalid value: " + value);
+      bitmap.add(value);
+    }
+
+    return bitmap;
+  }
+
+  /**
+   * Add the specified value to this bitmap.
+   * <p>
+   * This is used during construction only, before the bitmap is
+   * exposed to clients. Adding values in increasing order is
+   * an amortized constant time operation.
+   *
+   * @param value  Value to add. [0,&gt;.
+   */
+  void add(int value)
+  {
+    assert value >= 0 : "Invalid value: " + value;
+
+    char key = (char) (value >>> 16);
+    char low = (char) value;
+
+    // Fast path: Append to the last container
+    if (nContainers_ > 0 && keys_[nContainers_ - 1] == key) {
+      containers_[nContainers_ - 1] = containers_[nContainers_ - 1].add(low);
+      return;
+    }
+
+    int index = Arrays.binarySearch(keys_, 0, nContainers_, key);
+    if (index >= 0) {
+      containers_[index] = containers_[index].add(low);
+      return;
+    }
+
+    index = -index - 1;
+    ensureCapacity(nContainers_ + 1);
+    System.arraycopy(keys_, index, keys_, index + 1, nContainers_ - index);
+    System.arraycopy(containers_, index, containers_, index + 1, nContainers_ - index);
+    keys_[index] = key;
+    containers_[index] = new ArrayContainer().add(low);
+    nContainers_++;
+  }
+
+  /**
+   * Append the specified container to this bitmap. The key must
+   * be larger than any key currently in use.
+   *
+   * @param key        Key of container to append.
+   * @param container  Container to append. Non-null.
+   */
+  private void append(char key, Container container)
+  {
+    assert container != null : "container cannot be null";
+    assert nContainers_ == 0 || keys_[nContainers_ - 1] < key : "Invalid key: " + (int) key;
+
+    if (container.getCardinality() == 0)
+      return;
+
+    ensureCapacity(nContainers_ + 1);
+    keys_[nContainers_] = key;
+    containers_[nContainers_] = container;
+    nContainers_++;
+  }
+
+  /**
+   * Ensure there is room for the specified number of containers.
+   *
+   * @param capacity  Requested capacity.
+   */
+  private void ensureCapacity(int capacity)
+  {
+    if (capacity <= keys_.length)
+      return;
+
+    int newCapacity = Math.max(capacity, 2 * keys_.length);
+    keys_ = Arrays.copyOf(keys_, newCapacity);
+    containers_ = Arrays.copyOf(containers_, newCapacity);
+  }
+
+  /**
+   * Check if this bitmap contains the specified value.
+   *
+   * @param value  Value to check.
+   * @return       True if the value is contained in this bitmap, false otherwise.
+   */
+  public boolean contains(int value)
+  {
+    if (value < 0)
+      return false;
+
+    int index = Arrays.binarySearch(keys_, 0, nContainers_, (char) (value >>> 16));
+    return index >= 0 && containers_[index].contains((char) value);
+  }
+
+  /**
+   * Return the number of values in this bitmap.
+   *
+   * @return  Number of values in this bitmap. [0,&gt;.
+   */
+  public int getCardinality()
+  {
+    int cardinality = 0;
+    for (int i = 0; i < nContainers_; i++)
+      cardinality += containers_[i].getCardinality();
+    return cardinality;
+  }
+
+  /**
+   * Check if this bitmap is empty.
+   *
+   * @return  True if this bitmap is empty, false otherwise.
+   */
+  public boolean isEmpty()
+  {
+    return nContainers_ == 0;
+  }
+
+  /**
+   * Return the values of this bitmap as an array.
+   *
+   * @return  Values of this bitmap in increasing order. Never null.
+   */
+  public int[] toArray()
+  {
+    int[] values = new int[getCardinality()];
+
+    int offset = 0;
+    for (int i = 0; i < nContainers_; i++)
+      offset = containers_[i].toArray(keys_[i] << 16, values, offset);
+
+    return values;
+  }
+
+  /**
+   * Return the intersection of this and the specified bitmap.
+   *
+   * @param bitmap  Bitmap to intersect with. Non-null.
+   * @return        The intersection. Never null.
+   * @throws IllegalArgumentException  If bitmap is null.
+   */
+  public Bitmap and(Bitmap bitmap)
+  {
+    if (bitmap == null)
+      throw new IllegalArgumentException("bitmap cannot be null");
+
+    Bitmap result = new Bitmap();
+
+    int i1 = 0;
+    int i2 = 0;
+    while (i1 < nContainers_ && i2 < bitmap.nContainers_) {
+      char key1 = keys_[i1];
+      char key2 = bitmap.keys_[i2];
+      if (key1 < key2)
+        i1++;
+      else if (key2 < key1)
+        i2++;
+      else {
+        result.append(key1, containers_[i1].and(bitmap.containers_[i2]));
+        i1++;
+        i2++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Return the union of this and the specified bitmap.
+   *
+   * @param bitmap  Bitmap to unite with. Non-null.
+   * @return        The union. Never null.
+   * @throws IllegalArgumentException  If bitmap is null.
+   */
+  public Bitmap or(Bitmap bitmap)
+  {
+    if (bitmap == null)
+      throw new IllegalArgumentException("bitmap cannot be null");
+
+    Bitmap result = new Bitmap();
+
+    int i1 = 0;
+    int i2 = 0;
+    while (i1 < nContainers_ || i2 < bitmap.nContainers_) {
+      if (i2 == bitmap.nContainers_ || (i1 < nContainers_ && keys_[i1] < bitmap.keys_[i2])) {
+        result.append(keys_[i1], containers_[i1]);
+        i1++;
+      }
+      else if (i1 == nContainers_ || bitmap.keys_[i2] < keys_[i1]) {
+        result.append(bitmap.keys_[i2], bitmap.containers_[i2]);
+        i2++;
+      }
+      else {
+        result.append(keys_[i1], containers_[i1].or(bitmap.containers_[i2]));
+        i1++;
+        i2++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Return the values of this bitmap that are not in the specified bitmap.
+   *
+   * @param bitmap  Bitmap to subtract. Non-null.
+   * @return        The difference. Never null.
+   * @throws IllegalArgumentException  If bitmap is null.
+   */
+  public Bitmap andNot(Bitmap bitmap)
+  {
+    if (bitmap == null)
+      throw new IllegalArgumentException("bitmap cannot be null");
+
+    Bitmap result = new Bitmap();
+
+    int i2 = 0;
+    for (int i1 = 0; i1 < nContainers_; i1++) {
+      char key = keys_[i1];
+      while (i2 < bitmap.nContainers_ && bitmap.keys_[i2] < key)
+        i2++;
+
+      if (i2 < bitmap.nContainers_ && bitmap.keys_[i2] == key)
+        result.append(key, containers_[i1].andNot(bitmap.containers_[i2]));
+      else
+        result.append(key, containers_[i1]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Return the complement of this bitmap within the range [0,size&gt;.
+   *
+   * @param size  Size of the value universe. [0,&gt;.
+   * @return      The complement. Never null.
+   * @throws IllegalArgumentException  If size &lt; 0.
+   */
+  public Bitmap not(int size)
+  {
+    return range(size).andNot(this);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int hashCode()
+  {
+    return Arrays.hashCode(toArray());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean equals(Object object)
+  {
+    if (object == this)
+      return true;
+
+    if (!(object instanceof Bitmap))
+      return false;
+
+    return Arrays.equals(toArray(), ((Bitmap) object).toArray());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return Arrays.toString(toArray());
+  }
+
+  /**
+   * A container of the low 16 bits of the values of one chunk.
+   * <p>
+   * Containers are never modified once they are part of a bitmap
+   * exposed to clients; Operations that may modify a container
+   * returns a new (or converted) instance.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static abstract class Container
+  {
+    /**
+     * Return number of values in this container.
+     *
+     * @return  Number of values in this container.
+     */
+    abstract int getCardinality();
+
+    /**
+     * Check if this container contains the specified value.
+     *
+     * @param value  Value to check.
+     * @return       True if it does, false otherwise.
+     */
+    abstract boolean contains(char value);
+
+    /**
+     * Add the specified value to this container.
+     *
+     * @param value  Value to add.
+     * @return       The container holding the result. This instance
+     *               or a converted one. Never null.
+     */
+    abstract Container add(char value);
+
+    /**
+     * Write the values of this container to the specified array.
+     *
+     * @param high    High bits of the values. Added to each entry.
+     * @param values  Array to write to. Non-null.
+     * @param offset  Position of the first value to write.
+     * @return        Position after the last written value.
+     */
+    abstract int toArray(int high, int[] values, int offset);
+
+    /**
+     * Return this container as a bitmap container.
+     *
+     * @return  This container as a bitmap container. Never null.
+     */
+    abstract BitmapContainer toBitmapContainer();
+
+    /**
+     * Return the intersection of this and the specified container.
+     *
+     * @param container  Container to intersect with. Non-null.
+     * @return           The intersection. Never null.
+     */
+    abstract Container and(Container container);
+
+    /**
+     * Return the union of this and the specified container.
+     *
+     * @param container  Container to unite with. Non-null.
+     * @return           The union. Never null.
+     */
+    abstract Container or(Container container);
+
+    /**
+     * Return the values of this container not in the specified container.
+     *
+     * @param container  Container to subtract. Non-null.
+     * @return           The difference. Never null.
+     */
+    abstract Container andNot(Container container);
+  }
+
+  /**
+   * Container for sparse chunks holding the sorted low 16 bits
+   * of each value.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class ArrayContainer extends Container
+  {
+    /** The sorted values. Only the first cardinality_ entries are in use. */
+    private char[] values_;
+
+    /** Number of values in use. */
+    private int cardinality_;
+
+    /**
+     * Create an empty array container.
+     */
+    ArrayContainer()
+    {
+      this(new char[4], 0);
+    }
+
+    /**
+     * Create an array container of the specified values.
+     *
+     * @param values       Sorted values. Non-null.
+     * @param cardinality  Number of values in use.
+     */
+    ArrayContainer(char[] values, int cardinality)
+    {
+      assert values != null : "values cannot be null";
+      values_ = values;
+      cardinality_ = cardinality;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int getCardinality()
+    {
+      return cardinality_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    boolean contains(char value)
+    {
+      return Arrays.binarySearch(values_, 0, cardinality_, value) >= 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container add(char value)
+    {
+      // Fast path: Append
+      int index;
+      if (cardinality_ == 0 || values_[cardinality_ - 1] < value)
+        index = cardinality_;
+      else {
+        index = Arrays.binarySearch(values_, 0, cardinality_, value);
+        if (index >= 0)
+          return this;
+        index = -index - 1;
+      }
+
+      if (cardinality_ == ARRAY_CONTAINER_MAX_SIZE)
+        return toBitmapContainer().add(value);
+
+      if (cardinality_ == values_.length)
+        values_ = Arrays.copyOf(values_, Math.min(2 * values_.length, ARRAY_CONTAINER_MAX_SIZE));
+
+      System.arraycopy(values_, index, values_, index + 1, cardinality_ - index);
+      values_[index] = value;
+      cardinality_++;
+
+      return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int toArray(int high, int[] values, int offset)
+    {
+      for (int i = 0; i < cardinality_; i++)
+        values[offset++] = high | values_[i];
+      return offset;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    BitmapContainer toBitmapContainer()
+    {
+      BitmapContainer container = new BitmapContainer();
+      for (int i = 0; i < cardinality_; i++) {
+        char value = values_[i];
+        container.words_[value >>> 6] |= 1L << value;
+      }
+      container.cardinality_ = cardinality_;
+      return container;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container and(Container container)
+    {
+      char[] result = new char[cardinality_];
+      int n = 0;
+
+      if (container instanceof ArrayContainer) {
+        ArrayContainer other = (ArrayContainer) container;
+        int i1 = 0;
+        int i2 = 0;
+        while (i1 < cardinality_ && i2 < other.cardinality_) {
+          char v1 = values_[i1];
+          char v2 = other.values_[i2];
+          if (v1 < v2)
+            i1++;
+          else if (v2 < v1)
+            i2++;
+          else {
+            result[n++] = v1;
+            i1++;
+            i2++;
+          }
+        }
+      }
+      else {
+        for (int i = 0; i < cardinality_; i++) {
+          if (container.contains(values_[i]))
+            result[n++] = values_[i];
+        }
+      }
+
+      return new ArrayContainer(result, n);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container or(Container container)
+    {
+      if (!(container instanceof ArrayContainer))
+        return container.or(this);
+
+      ArrayContainer other = (ArrayContainer) container;
+      if (cardinality_ + other.cardinality_ > ARRAY_CONTAINER_MAX_SIZE)
+        return toBitmapContainer().or(other);
+
+      char[] result = new char[cardinality_ + other.cardinality_];
+      int n = 0;
+      int i1 = 0;
+      int i2 = 0;
+      while (i1 < cardinality_ || i2 < other.cardinality_) {
+        if (i2 == other.cardinality_ || (i1 < cardinality_ && values_[i1] < other.values_[i2]))
+          result[n++] = values_[i1++];
+        else if (i1 == cardinality_ || other.values_[i2] < values_[i1])
+          result[n++] = other.values_[i2++];
+        else {
+          result[n++] = values_[i1];
+          i1++;
+          i2++;
+        }
+      }
+
+      return new ArrayContainer(result, n);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container andNot(Container container)
+    {
+      char[] result = new char[cardinality_];
+      int n = 0;
+      for (int i = 0; i < cardinality_; i++) {
+        if (!container.contains(values_[i]))
+          result[n++] = values_[i];
+      }
+
+      return new ArrayContainer(result, n);
+    }
+  }
+
+  /**
+   * Container for dense chunks holding one bit per possible value.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class BitmapContainer extends Container
+  {
+    /** The bits. */
+    private final long[] words_ = new long[N_WORDS];
+
+    /** Number of bits set. */
+    private int cardinality_ = 0;
+
+    /** {@inheritDoc} */
+    @Override
+    int getCardinality()
+    {
+      return cardinality_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    boolean contains(char value)
+    {
+      return (words_[value >>> 6] & (1L << value)) != 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container add(char value)
+    {
+      long word = words_[value >>> 6];
+      long newWord = word | (1L << value);
+      if (newWord != word) {
+        words_[value >>> 6] = newWord;
+        cardinality_++;
+      }
+      return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    int toArray(int high, int[] values, int offset)
+    {
+      for (int i = 0; i < N_WORDS; i++) {
+        long word = words_[i];
+        while (word != 0) {
+          values[offset++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+          word &= word - 1;
+        }
+      }
+      return offset;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    BitmapContainer toBitmapContainer()
+    {
+      return this;
+    }
+
+    /**
+     * Return the most compact container holding the values of
+     * this container.
+     *
+     * @return  This container or an equivalent array container. Never null.
+     */
+    private Container compact()
+    {
+      if (cardinality_ > ARRAY_CONTAINER_MAX_SIZE)
+        return this;
+
+      char[] values = new char[cardinality_];
+      int n = 0;
+      for (int i = 0; i < N_WORDS; i++) {
+        long word = words_[i];
+        while (word != 0) {
+          values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+
+      return new ArrayContainer(values, n);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container and(Container container)
+    {
+      if (container instanceof ArrayContainer)
+        return container.and(this);
+
+      BitmapContainer other = (BitmapContainer) container;
+      BitmapContainer result = new BitmapContainer();
+      int cardinality = 0;
+      for (int i = 0; i < N_WORDS; i++) {
+        long word = words_[i] & other.words_[i];
+        result.words_[i] = word;
+        cardinality += Long.bitCount(word);
+      }
+      result.cardinality_ = cardinality;
+
+      return result.compact();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container or(Container container)
+    {
+      BitmapContainer other = container.toBitmapContainer();
+      BitmapContainer result = new BitmapContainer();
+      int cardinality = 0;
+      for (int i = 0; i < N_WORDS; i++) {
+        long word = words_[i] | other.words_[i];
+        result.words_[i] = word;
+        cardinality += Long.bitCount(word);
+      }
+      result.cardinality_ = cardinality;
+
+      return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Container andNot(Container container)
+    {
+      BitmapContainer other = container.toBitmapContainer();
+      BitmapContainer result = new BitmapContainer();
+      int cardinality = 0;
+      for (int i = 0; i < N_WORDS; i++) {
+        long word = words_[i] & ~other.words_[i];
+        result.words_[i] = word;
+        cardinality += Long.bitCount(word);
+      }
+      result.cardinality_ = cardinality;
+
+      return result.compact();
+    }
+  }
+}
@@ -0,0 +1,494 @@
+package no.petroware.npdio.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperties;
+import no.petroware.npdio.NpdProperty;
+import no.petroware.npdio.discovery.NpdDiscovery;
+import no.petroware.npdio.field.NpdField;
+import no.petroware.npdio.license.NpdLicense;
+import no.petroware.npdio.survey.NpdSurvey;
+import no.petroware.npdio.well.NpdWellbore;
+
+/**
+ * Secondary index over categorical properties of a fixed collection
+ * of NPD objects.
+ * <p>
+ * For each indexed property and each distinct value of that property
+ * the index holds a compressed {@link Bitmap} of the positions of the
+ * objects having that value. Multi-criteria filters thus become bitwise
+ * operations on bitmaps:
+ *
+ * <pre>
+ *   BitmapIndex&lt;NpdWellbore&gt; index = BitmapIndex.newWellboreIndex(wellbores);
+ *
+ *   Bitmap bitmap = index.getBitmap("Status", "P&amp;A")
+ *                        .and(index.getBitmap("Content", "OIL"))
+ *                        .andNot(index.getBitmap("MainArea", "BARENTS SEA"));
+ *
+ *   int nWellbores = bitmap.getCardinality();
+ *   List&lt;NpdWellbore&gt; result = index.select(bitmap);
+ * </pre>
+ *
+ * Properties are identified by name, being the getter name without
+ * the <em>get</em> prefix, like "Status" for <code>getStatus()</code>.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of objects being indexed.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class BitmapIndex<T extends NpdObject>
+{
+  /** The indexed objects. Position in list is bit number in bitmaps. */
+  private final List<T> objects_;
+
+  /** Bitmaps per value per property name. Null values has a key of null. */
+  private final Map<String, Map<Object, Bitmap>> bitmaps_ = new LinkedHashMap<>();
+
+  /** Accessors of the indexed properties per property name. */
+  private final Map<String, Function<? super T, ?>> accessors_ = new HashMap<>();
+
+  /** NPD properties of the indexed properties that are getters, per property name. */
+  private final Map<String, NpdProperty<?>> npdProperties_ = new HashMap<>();
+
+  /** Bitmap of all objects. */
+  private final Bitmap all_;
+
+  /**
+   * Create a bitmap index over the specified objects and properties.
+   *
+   * @param objects     Objects to index. Non-null.
+   * @param properties  Properties to index, as property name and associated
+   *                    accessor. Non-null.
+   * @throws IllegalArgumentException  If objects or properties is null.
+   */
+  public BitmapIndex(Collection<? extends T> objects,
+                     Map<String, Function<? super T, ?>> properties)
+  {
+    this(objects, properties, null);
+  }
+
+  /**
+   * Create a bitmap index over the specified objects and properties.
+   *
+   * @param objects     Objects to index. Non-null.
+   * @param properties  Properties to index, as property name and associated
+   *                    accessor. Non-null.
+   * @param ownerClass  Class whose getters the accessors are, by property
+   *                    name. Null if the accessors are arbitrary.
+   * @throws IllegalArgumentException  If objects or properties is null.
+   */
+  private BitmapIndex(Collection<? extends T> objects,
+                      Map<String, Function<? super T, ?>> properties,
+                      Class<? extends NpdObject> ownerClass)
+  {
+    if (objects == null)
+      throw new IllegalArgumentException("objects cannot be null");
+
+    if (properties == null)
+      throw new IllegalArgumentException("properties cannot be null");
+
+    objects_ = Collections.unmodifiableList(new ArrayList<T>(objects));
+    all_ = Bitmap.range(objects_.size());
+
+    for (Map.Entry<String, Function<? super T, ?>> entry : properties.entrySet()) {
+      String propertyName = entry.getKey();
+      Function<? super T, ?> accessor = entry.getValue();
+
+      Map<Object, Bitmap> valueBitmaps = new HashMap<>();
+
+      for (int i = 0; i < objects_.size(); i++) {
+        Object value = accessor.apply(objects_.get(i));
+
+        Bitmap bitmap = valueBitmaps.get(value);
+        if (bitmap == null) {
+          bitmap = new Bitmap();
+          valueBitmaps.put(value, bitmap);
+        }
+
+        bitmap.add(i);
+      }
+
+      bitmaps_.put(propertyName, valueBitmaps);
+      accessors_.put(propertyName, accessor);
+
+      NpdProperty<?> npdProperty = ownerClass != null ? NpdProperties.getProperty(ownerClass, propertyName) : null;
+      if (npdProperty != null)
+        npdProperties_.put(propertyName, npdProperty);
+    }
+  }
+
+  /**
+   * Create a bitmap index over the categorical properties of the
+   * specified wellbores.
+   *
+   * @param <T>        Wellbore type.
+   * @param wellbores  Wellbores to index. Non-null.
+   * @return           The requested index. Never null.
+   * @throws IllegalArgumentException  If wellbores is null.
+   */
+  public static <T extends NpdWellbore> BitmapIndex<T> newWellboreIndex(Collection<? extends T> wellbores)
+  {
+    Map<String, Function<? super T, ?>> properties = new LinkedHashMap<>();
+    properties.put("Type", NpdWellbore::getType);
+    properties.put("Status", NpdWellbore::getStatus);
+    properties.put("Purpose", NpdWellbore::getPurpose);
+    properties.put("PurposePlanned", NpdWellbore::getPurposePlanned);
+    properties.put("Content", NpdWellbore::getContent);
+    properties.put("WellType", NpdWellbore::getWellType);
+    properties.put("MainArea", NpdWellbore::getMainArea);
+    properties.put("DrillingOperator", NpdWellbore::getDrillingOperator);
+    properties.put("DrillingFacilityType", NpdWellbore::getDrillingFacilityType);
+    properties.put("DrillingFacilityCategory", NpdWellbore::getDrillingFacilityCategory);
+    properties.put("Field", NpdWellbore::getField);
+    properties.put("GeodeticDatum", NpdWellbore::getGeodeticDatum);
+    properties.put("EntryYear", NpdWellbore::getEntryYear);
+    properties.put("CompletionYear", NpdWellbore::getCompletionYear);
+
+    return new BitmapIndex<T>(wellbores, properties, NpdWellbore.class);
+  }
+
+  /**
+   * Create a bitmap index over the categorical properties of the
+   * specified licenses.
+   *
+   * @param licenses  Licenses to index. Non-null.
+   * @return          The requested index. Never null.
+   * @throws IllegalArgumentException  If licenses is null.
+   */
+  public static BitmapIndex<NpdLicense> newLicenseIndex(Collection<NpdLicense> licenses)
+  {
+    Map<String, Function<? super NpdLicense, ?>> properties = new LinkedHashMap<>();
+    properties.put("Activity", NpdLicense::getActivity);
+    properties.put("MainArea", NpdLicense::getMainArea);
+    properties.put("Status", NpdLicense::getStatus);
+    properties.put("Stratigraphical", NpdLicense::getStratigraphical);
+    properties.put("Phase", NpdLicense::getPhase);
+
+    return new BitmapIndex<NpdLicense>(licenses, properties, NpdLicense.class);
+  }
+
+  /**
+   * Create a bitmap index over the categorical properties of the
+   * specified fields.
+   *
+   * @param fields  Fields to index. Non-null.
+   * @return        The requested index. Never null.
+   * @throws IllegalArgumentException  If fields is null.
+   */
+  public static BitmapIndex<NpdField> newFieldIndex(Collection<NpdField> fields)
+  {
+    Map<String, Function<? super NpdField, ?>> properties = new LinkedHashMap<>();
+    properties.put("OperatorName", NpdField::getOperatorName);
+    properties.put("ActivityStatus", NpdField::getActivityStatus);
+    properties.put("MainArea", NpdField::getMainArea);
+    properties.put("OwnerKind", NpdField::getOwnerKind);
+    properties.put("OwnerName", NpdField::getOwnerName);
+    properties.put("MainSupplyBase", NpdField::getMainSupplyBase);
+
+    return new BitmapIndex<NpdField>(fields, properties, NpdField.class);
+  }
+
+  /**
+   * Create a bitmap index over the categorical properties of the
+   * specified discoveries.
+   *
+   * @param discoveries  Discoveries to index. Non-null.
+   * @return             The requested index. Never null.
+   * @throws IllegalArgumentException  If discoveries is null.
+   */
+  public static BitmapIndex<NpdDiscovery> newDiscoveryIndex(Collection<NpdDiscovery> discoveries)
+  {
+    Map<String, Function<? super NpdDiscovery, ?>> properties = new LinkedHashMap<>();
+    properties.put("ActivityStatus", NpdDiscovery::getActivityStatus);
+    properties.put("HydrocarbonType", NpdDiscovery::getHydrocarbonType);
+    properties.put("MainArea", NpdDiscovery::getMainArea);
+    properties.put("FieldName", NpdDiscovery::getFieldName);
+    properties.put("DiscoveryYear", NpdDiscovery::getDiscoveryYear);
+    properties.put("OwnerKind", NpdDiscovery::getOwnerKind);
+    properties.put("OwnerName", NpdDiscovery::getOwnerName);
+
+    return new BitmapIndex<NpdDiscovery>(discoveries, properties, NpdDiscovery.class);
+  }
+
+  /**
+   * Create a bitmap index over the categorical properties of the
+   * specified surveys.
+   *
+   * @param surveys  Surveys to index. Non-null.
+   * @return         The requested index. Never null.
+   * @throws IllegalArgumentException  If surveys is null.
+   */
+  public static BitmapIndex<NpdSurvey> newSurveyIndex(Collection<NpdSurvey> surveys)
+  {
+    Map<String, Function<? super NpdSurvey, ?>> properties = new LinkedHashMap<>();
+    properties.put("Status", NpdSurvey::getStatus);
+    properties.put("Area", NpdSurvey::getArea);
+    properties.put("Category", NpdSurvey::getCategory);
+    properties.put("MainType", NpdSurvey::getMainType);
+    properties.put("SubType", NpdSurvey::getSubType);
+    properties.put("Company", NpdSurvey::getCompany);
+
+    return new BitmapIndex<NpdSurvey>(surveys, properties, NpdSurvey.class);
+  }
+
+  /**
+   * Return the indexed objects. The position of an object in this
+   * list is its bit number in the bitmaps of this index.
+   *
+   * @return  The indexed objects. Never null.
+   */
+  public List<T> getObjects()
+  {
+    return objects_;
+  }
+
+  /**
+   * Return number of objects in this index.
+   *
+   * @return  Number of objects in this index. [0,&gt;.
+   */
+  public int getNObjects()
+  {
+    return objects_.size();
+  }
+
+  /**
+   * Return names of the indexed properties.
+   *
+   * @return  Names of the indexed properties. Never null.
+   */
+  public Set<String> getPropertyNames()
+  {
+    return Collections.unmodifiableSet(bitmaps_.keySet());
+  }
+
+  /**
+   * Check if the specified property is indexed.
+   *
+   * @param propertyName  Name of property to check. May be null.
+   * @return              True if the property is indexed, false otherwise.
+   */
+  public boolean isIndexed(String propertyName)
+  {
+    return bitmaps_.containsKey(propertyName);
+  }
+
+  /**
+   * Return the NPD property the specified property is indexed by, if it
+   * is indexed by a getter as by the <em>new*Index</em> methods. A query
+   * condition on an NPD property of the same getter is resolved through
+   * this index, see {@link no.petroware.npdio.query.Property#getNpdProperty}.
+   *
+   * @param propertyName  Name of property. Non-null.
+   * @return              NPD property of the property, or null if it is
+   *                      indexed by an arbitrary accessor.
+   * @throws IllegalArgumentException  If propertyName is null or not indexed.
+   */
+  public NpdProperty<?> getNpdProperty(String propertyName)
+  {
+    if (propertyName == null)
+      throw new IllegalArgumentException("propertyName cannot be null");
+
+    if (!isIndexed(propertyName))
+      throw new IllegalArgumentException("Property is not indexed: " + propertyName);
+
+    return npdProperties_.get(propertyName);
+  }
+
+  /**
+   * Return the accessor the specified property is indexed by. A query
+   * condition on a property that is not an NPD property is resolved
+   * through this index only if the property has this very accessor, see
+   * {@link no.petroware.npdio.query.Property#of(BitmapIndex,String,Class)}.
+   *
+   * @param propertyName  Name of property. Non-null.
+   * @return              Accessor of the property. Never null.
+   * @throws IllegalArgumentException  If propertyName is null or not indexed.
+   */
+  public Function<? super T, ?> getAccessor(String propertyName)
+  {
+    if (propertyName == null)
+      throw new IllegalArgumentException("propertyName cannot be null");
+
+    Function<? super T, ?> accessor = accessors_.get(propertyName);
+    if (accessor == null)
+      throw new IllegalArgumentException("Property is not indexed: " + propertyName);
+
+    return accessor;
+  }
+
+  /**
+   * Return the value bitmaps of the specified property.
+   *
+   * @param propertyName  Name of property. Non-null.
+   * @return              The value bitmaps. Never null.
+   * @throws IllegalArgumentException  If propertyName is null or not indexed.
+   */
+  private Map<Object, Bitmap> getValueBitmaps(String propertyName)
+  {
+    if (propertyName == null)
+      throw new IllegalArgumentException("propertyName cannot be null");
+
+    Map<Object, Bitmap> valueBitmaps = bitmaps_.get(propertyName);
+    if (valueBitmaps == null)
+      throw new IllegalArgumentException("Property is not indexed: " + propertyName);
+
+    return valueBitmaps;
+  }
+
+  /**
+   * Return the distinct values of the specified property.
+   *
+   * @param propertyName  Name of property. Non-null.
+   * @return              Distinct values of the property. A null entry
+   *                      is included if some objects have no value.
+   *                      Never null.
+   * @throws IllegalArgumentException  If propertyName is null or not indexed.
+   */
+  public Set<Object> getValues(String propertyName)
+  {
+    return Collections.unmodifiableSet(getValueBitmaps(propertyName).keySet());
+  }
+
+  /**
+   * Return bitmap of all objects in this index.
+   *
+   * @return  Bitmap of all objects in this index. Never null.
+   */
+  public Bitmap getAll()
+  {
+    return all_;
+  }
+
+  /**
+   * Return bitmap of the objects having the specified value for the
+   * specified property.
+   *
+   * @param propertyName  Name of property. Non-null.
+   * @param value         Value to match. Null to match objects with no value.
+   * @return              The requested bitmap. Never null.
+   * @throws IllegalArgumentException  If propertyName is null or not indexed.
+   */
+  public Bitmap getBitmap(String propertyName, Object value)
+  {
+    Bitmap bitmap = getValueBitmaps(propertyName).get(value);
+    return bitmap != null ? bitmap : Bitmap.empty();
+  }
+
+  /**
+   * Return bitmap of the objects having any of the specified values for
+   * the specified property.
+   *
+   * @param propertyName  Name of property. Non-null.
+   * @param values        Values to match. Non-null.
+   * @return              The requested bitmap. Never null.
+   * @throws IllegalArgumentException  If propertyName or values is null,
+   *                                   or if the property is not indexed.
+   */
+  public Bitmap getBitmap(String propertyName, Collection<?> values)
+  {
+    if (values == null)
+      throw new IllegalArgumentException("values cannot be null");
+
+    Map<Object, Bitmap> valueBitmaps = getValueBitmaps(propertyName);
+
+    Bitmap result = Bitmap.empty();
+    for (Object value : values) {
+      Bitmap bitmap = valueBitmaps.get(value);
+      if (bitmap != null)
+        result = result.or(bitmap);
+    }
+
+    return result;
+  }
+
+  /**
+   * Return the complement of the specified bitmap with respect to
+   * the objects of this index.
+   *
+   * @param bitmap  Bitmap to complement. Non-null.
+   * @return        The complement. Never null.
+   * @throws IllegalArgumentException  If bitmap is null.
+   */
+  public Bitmap not(Bitmap bitmap)
+  {
+    if (bitmap == null)
+      throw new IllegalArgumentException("bitmap cannot be null");
+
+    return all_.andNot(bitmap);
+  }
+
+  /**
+   * Return number of objects having the specified value for the
+   * specified property.
+   *
+   * @param propertyName  Name of property. Non-null.
+   * @param value         Value to match. Null to match objects with no value.
+   * @return              Number of objects with the given value. [0,&gt;.
+   * @throws IllegalArgumentException  If propertyName is null or not indexed.
+   */
+  public int count(String propertyName, Object value)
+  {
+    return getBitmap(propertyName, value).getCardinality();
+  }
+
+  /**
+   * Return the number of objects per value of the specified property.
+   *
+   * @param propertyName  Name of property. Non-null.
+   * @param filter        Bitmap to restrict the count to. Null to count all.
+   * @return              Number of objects per value. Never null.
+   * @throws IllegalArgumentException  If propertyName is null or not indexed.
+   */
+  public Map<Object, Integer> countByValue(String propertyName, Bitmap filter)
+  {
+    Map<Object, Integer> counts = new HashMap<>();
+    for (Map.Entry<Object, Bitmap> entry : getValueBitmaps(propertyName).entrySet()) {
+      Bitmap bitmap = filter != null ? entry.getValue().and(filter) : entry.getValue();
+      int count = bitmap.getCardinality();
+      if (count > 0)
+        counts.put(entry.getKey(), count);
+    }
+
+    return counts;
+  }
+
+  /**
+   * Return the objects of the specified bitmap.
+   *
+   * @param bitmap  Bitmap of objects to return. Positions in [0,size&gt;,
+   *                see {@link #getNObjects}. Non-null.
+   * @return        The requested objects in index order. Never null.
+   * @throws IllegalArgumentException  If bitmap is null or contains
+   *                positions outside the index.
+   */
+  public List<T> select(Bitmap bitmap)
+  {
+    if (bitmap == null)
+      throw new IllegalArgumentException("bitmap cannot be null");
+
+    int[] positions = bitmap.toArray();
+
+    // Positions are sorted, so the last one is the largest
+    if (positions.length > 0 && positions[positions.length - 1] >= objects_.size())
+      throw new IllegalArgumentException("Invalid position: " + positions[positions.length - 1]);
+
+    List<T> objects = new ArrayList<>(positions.length);
+    for (int position : positions)
+      objects.add(objects_.get(position));
+
+    return objects;
+  }
+}
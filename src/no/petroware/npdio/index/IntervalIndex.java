@@ -0,0 +1,405 @@
+package no.petroware.npdio.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.license.NpdLicense;
+import no.petroware.npdio.pipeline.NpdPipeline;
+import no.petroware.npdio.survey.NpdSurvey;
+import no.petroware.npdio.well.NpdWellbore;
+
+/**
+ * Index over the date ranges of a fixed collection of NPD objects,
+ * answering "what was active at a given date" and "what was active
+ * during a given period" without scanning.
+ * <p>
+ * The date range of an object is given by a start date and an end date
+ * accessor. Objects with no start date are not indexed. Objects with no
+ * end date are considered active from their start date and onwards.
+ * <p>
+ * Internally the intervals are sorted on start date and a max end date
+ * is maintained for every node of an implicit binary tree over the
+ * sorted intervals. A query thereby visits only the subtrees that
+ * contain overlapping intervals.
+ * <p>
+ * Query results are bitmaps of positions in the collection the index was
+ * created from, so if a {@link BitmapIndex} is created from the same
+ * collection the two can be combined directly:
+ *
+ * <pre>
+ *   Bitmap drilled = intervalIndex.getActive(from, to);
+ *   Bitmap oil = bitmapIndex.getBitmap("Content", "OIL");
+ *   List&lt;NpdWellbore&gt; wellbores = bitmapIndex.select(drilled.and(oil));
+ * </pre>
+ *
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of objects being indexed.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class IntervalIndex<T extends NpdObject>
+{
+  /** The objects the index was created from. Non-null. */
+  private final List<T> objects_;
+
+  /** Start times of the indexed intervals. Sorted. */
+  private final long[] starts_;
+
+  /** End times of the indexed intervals. Long.MAX_VALUE if open. */
+  private final long[] ends_;
+
+  /** Position in objects_ of each interval. */
+  private final int[] positions_;
+
+  /** Number of leaves in the implicit tree. Power of 2. */
+  private final int nLeaves_;
+
+  /** Max end time of each node of the implicit tree. Root at 1. */
+  private final long[] maxEnds_;
+
+  /**
+   * Create an interval index over the specified objects.
+   *
+   * @param objects        Objects to index. Non-null.
+   * @param startAccessor  Accessor for the start date of each object. Non-null.
+   * @param endAccessor    Accessor for the end date of each object. Null if
+   *                       all intervals are open ended.
+   * @throws IllegalArgumentException  If objects or startAccessor is null.
+   */
+  public IntervalIndex(Collection<? extends T> objects,
+                       Function<? super T, Date> startAccessor,
+                       Function<? super T, Date> endAccessor)
+  {
+    if (objects == null)
+      throw new IllegalArgumentException("objects cannot be null");
+
+    if (startAccessor == null)
+      throw new IllegalArgumentException("startAccessor cannot be null");
+
+    objects_ = Collections.unmodifiableList(new ArrayList<T>(objects));
+
+    //
+    // Capture the intervals
+    //
+    int nObjects = objects_.size();
+    long[] starts = new long[nObjects];
+    long[] ends = new long[nObjects];
+    int[] objectPositions = new int[nObjects];
+    int nIntervals = 0;
+
+    for (int i = 0; i < nObjects; i++) {
+      T object = objects_.get(i);
+
+      Date startDate = startAccessor.apply(object);
+      if (startDate == null)
+        continue;
+
+      Date endDate = endAccessor != null ? endAccessor.apply(object) : null;
+
+      starts[nIntervals] = startDate.getTime();
+      ends[nIntervals] = endDate != null ? endDate.getTime() : Long.MAX_VALUE;
+      objectPositions[nIntervals] = i;
+      nIntervals++;
+    }
+
+    //
+    // Sort on start time
+    //
+    Integer[] order = new Integer[nIntervals];
+    for (int i = 0; i < nIntervals; i++)
+      order[i] = i;
+
+    final long[] unsortedStarts = starts;
+    Arrays.sort(order, (i1, i2) -> Long.compare(unsortedStarts[i1], unsortedStarts[i2]));
+
+    starts_ = new long[nIntervals];
+    ends_ = new long[nIntervals];
+    positions_ = new int[nIntervals];
+    for (int i = 0; i < nIntervals; i++) {
+      starts_[i] = starts[order[i]];
+      ends_[i] = ends[order[i]];
+      positions_[i] = objectPositions[order[i]];
+    }
+
+    //
+    // Build the max end tree
+    //
+    int nLeaves = 1;
+    while (nLeaves < nIntervals)
+      nLeaves *= 2;
+    nLeaves_ = nLeaves;
+
+    maxEnds_ = new long[2 * nLeaves_];
+    Arrays.fill(maxEnds_, Long.MIN_VALUE);
+    System.arraycopy(ends_, 0, maxEnds_, nLeaves_, nIntervals);
+    for (int node = nLeaves_ - 1; node >= 1; node--)
+      maxEnds_[node] = Math.max(maxEnds_[2 * node], maxEnds_[2 * node + 1]);
+  }
+
+  /**
+   * Create an interval index over the drilling periods of the
+   * specified wellbores, being from entry date to completion date.
+   *
+   * @param <T>        Wellbore type.
+   * @param wellbores  Wellbores to index. Non-null.
+   * @return           The requested index. Never null.
+   * @throws IllegalArgumentException  If wellbores is null.
+   */
+  public static <T extends NpdWellbore> IntervalIndex<T> newWellboreIndex(Collection<? extends T> wellbores)
+  {
+    return new IntervalIndex<T>(wellbores, NpdWellbore::getEntryDate, NpdWellbore::getCompletionDate);
+  }
+
+  /**
+   * Create an interval index over the validity periods of the
+   * specified licenses, being from date granted to valid-to date.
+   *
+   * @param licenses  Licenses to index. Non-null.
+   * @return          The requested index. Never null.
+   * @throws IllegalArgumentException  If licenses is null.
+   */
+  public static IntervalIndex<NpdLicense> newLicenseIndex(Collection<NpdLicense> licenses)
+  {
+    return new IntervalIndex<NpdLicense>(licenses, NpdLicense::getDateGranted, NpdLicense::getValidToDate);
+  }
+
+  /**
+   * Create an interval index over the acquisition periods of the
+   * specified surveys, being from start date to complete date.
+   *
+   * @param surveys  Surveys to index. Non-null.
+   * @return         The requested index. Never null.
+   * @throws IllegalArgumentException  If surveys is null.
+   */
+  public static IntervalIndex<NpdSurvey> newSurveyIndex(Collection<NpdSurvey> surveys)
+  {
+    return new IntervalIndex<NpdSurvey>(surveys, NpdSurvey::getStartDate, NpdSurvey::getCompleteDate);
+  }
+
+  /**
+   * Create an interval index over the current phase of the
+   * specified pipelines. The intervals are open ended.
+   *
+   * @param pipelines  Pipelines to index. Non-null.
+   * @return           The requested index. Never null.
+   * @throws IllegalArgumentException  If pipelines is null.
+   */
+  public static IntervalIndex<NpdPipeline> newPipelineIndex(Collection<NpdPipeline> pipelines)
+  {
+    return new IntervalIndex<NpdPipeline>(pipelines, NpdPipeline::getCurrentPhaseFromDate, null);
+  }
+
+  /**
+   * Return the objects the index was created from. Result bitmaps
+   * refer to positions in this list.
+   *
+   * @return  The objects of this index. Never null.
+   */
+  public List<T> getObjects()
+  {
+    return objects_;
+  }
+
+  /**
+   * Return number of objects having a date range and thereby
+   * being indexed.
+   *
+   * @return  Number of indexed objects. [0,&gt;.
+   */
+  public int getNIntervals()
+  {
+    return starts_.length;
+  }
+
+  /**
+   * Return bitmap of the objects active at the specified date.
+   *
+   * @param date  Date to check. Non-null.
+   * @return      Bitmap of the active objects. Never null.
+   * @throws IllegalArgumentException  If date is null.
+   */
+  public Bitmap getActive(Date date)
+  {
+    if (date == null)
+      throw new IllegalArgumentException("date cannot be null");
+
+    return getActive(date, date);
+  }
+
+  /**
+   * Return bitmap of the objects that were active at some point
+   * during the specified period.
+   *
+   * @param from  Start of period, inclusive. Non-null.
+   * @param to    End of period, inclusive. Not before from. Non-null.
+   * @return      Bitmap of the active objects. Never null.
+   * @throws IllegalArgumentException  If from or to is null or to is before from.
+   */
+  public Bitmap getActive(Date from, Date to)
+  {
+    if (from == null)
+      throw new IllegalArgumentException("from cannot be null");
+
+    if (to == null)
+      throw new IllegalArgumentException("to cannot be null");
+
+    if (to.before(from))
+      throw new IllegalArgumentException("Invalid period: " + from + " - " + to);
+
+    int[] positions = findPositions(from.getTime(), to.getTime());
+
+    Bitmap bitmap = new Bitmap();
+    for (int position : positions)
+      bitmap.add(position);
+
+    return bitmap;
+  }
+
+  /**
+   * Return the objects active at the specified date.
+   *
+   * @param date  Date to check. Non-null.
+   * @return      The active objects in collection order. Never null.
+   * @throws IllegalArgumentException  If date is null.
+   */
+  public List<T> findActive(Date date)
+  {
+    if (date == null)
+      throw new IllegalArgumentException("date cannot be null");
+
+    return findActive(date, date);
+  }
+
+  /**
+   * Return the objects that were active at some point during
+   * the specified period.
+   *
+   * @param from  Start of period, inclusive. Non-null.
+   * @param to    End of period, inclusive. Not before from. Non-null.
+   * @return      The active objects in collection order. Never null.
+   * @throws IllegalArgumentException  If from or to is null or to is before from.
+   */
+  public List<T> findActive(Date from, Date to)
+  {
+    if (from == null)
+      throw new IllegalArgumentException("from cannot be null");
+
+    if (to == null)
+      throw new IllegalArgumentException("to cannot be null");
+
+    if (to.before(from))
+      throw new IllegalArgumentException("Invalid period: " + from + " - " + to);
+
+    int[] positions = findPositions(from.getTime(), to.getTime());
+
+    List<T> objects = new ArrayList<>(positions.length);
+    for (int position : positions)
+      objects.add(objects_.get(position));
+
+    return objects;
+  }
+
+  /**
+   * Return number of objects that were active at some point during
+   * the specified period.
+   *
+   * @param from  Start of period, inclusive. Non-null.
+   * @param to    End of period, inclusive. Not before from. Non-null.
+   * @return      Number of active objects. [0,&gt;.
+   * @throws IllegalArgumentException  If from or to is null or to is before from.
+   */
+  public int countActive(Date from, Date to)
+  {
+    if (from == null)
+      throw new IllegalArgumentException("from cannot be null");
+
+    if (to == null)
+      throw new IllegalArgumentException("to cannot be null");
+
+    if (to.before(from))
+      throw new IllegalArgumentException("Invalid period: " + from + " - " + to);
+
+    return findPositions(from.getTime(), to.getTime()).length;
+  }
+
+  /**
+   * Find collection positions of the intervals overlapping the
+   * specified time range.
+   *
+   * @param from  Start of range, inclusive.
+   * @param to    End of range, inclusive.
+   * @return      Collection positions in increasing order. Never null.
+   */
+  private int[] findPositions(long from, long to)
+  {
+    // Intervals starting after the range are out. Find the first of those.
+    int nCandidates = upperBound(to);
+
+    int[] positions = new int[16];
+    int nPositions = 0;
+
+    if (nCandidates > 0) {
+      // Depth first traversal of the subtrees that may hold overlapping intervals
+      int[] stack = new int[64];
+      int stackSize = 0;
+      stack[stackSize++] = 1;
+
+      while (stackSize > 0) {
+        int node = stack[--stackSize];
+
+        if (maxEnds_[node] < from)
+          continue;
+
+        // Node range [first,last] in leaves
+        int level = 31 - Integer.numberOfLeadingZeros(node);
+        int width = nLeaves_ >>> level;
+        int first = (node - (1 << level)) * width;
+        if (first >= nCandidates)
+          continue;
+
+        if (width == 1) {
+          if (nPositions == positions.length)
+            positions = Arrays.copyOf(positions, 2 * nPositions);
+          positions[nPositions++] = positions_[first];
+        }
+        else {
+          stack[stackSize++] = 2 * node + 1;
+          stack[stackSize++] = 2 * node;
+        }
+      }
+    }
+
+    positions = Arrays.copyOf(positions, nPositions);
+    Arrays.sort(positions);
+
+    return positions;
+  }
+
+  /**
+   * Return number of intervals starting at or before the specified time.
+   *
+   * @param time  Time to check.
+   * @return      Number of intervals starting at or before time.
+   */
+  private int upperBound(long time)
+  {
+    int low = 0;
+    int high = starts_.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (starts_[middle] <= time)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+
+    return low;
+  }
+}
@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * NPD license reader.
@@ -67,6 +70,31 @@ public final class NpdLicenseReader extends NpdReader<NpdLicense>
     super(url);
   }
 
+  /**
+   * Create a reader for NPD licenses.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdLicenseReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD licenses at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdLicenseReader newDefaultReader()
+  {
+    NpdLicenseReader reader = new NpdLicenseReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdLicenseReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD licenses.
    * <p>
@@ -83,10 +111,36 @@ public final class NpdLicenseReader extends NpdReader<NpdLicense>
   public static List<NpdLicense> readAll()
     throws IOException
   {
-    NpdLicenseReader reader = new NpdLicenseReader(URL);
+    NpdLicenseReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD licenses asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD licenses. Never null.
+   */
+  public static CompletableFuture<List<NpdLicense>> readAllAsync()
+  {
+    NpdLicenseReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD licenses asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD licenses. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdLicense>> readAllAsync(Executor executor)
+  {
+    NpdLicenseReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD license instance from the given tokens.
    *
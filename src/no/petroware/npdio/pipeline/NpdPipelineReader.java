@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * Reader for NPD pipelines.
@@ -75,6 +78,31 @@ public final class NpdPipelineReader extends NpdReader<NpdPipeline>
     super(url);
   }
 
+  /**
+   * Create a reader for NPD pipelines.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdPipelineReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD pipelines at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdPipelineReader newDefaultReader()
+  {
+    NpdPipelineReader reader = new NpdPipelineReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdPipelineReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD pipelines.
    * <p>
@@ -91,10 +119,36 @@ public final class NpdPipelineReader extends NpdReader<NpdPipeline>
   public static List<NpdPipeline> readAll()
     throws IOException
   {
-    NpdPipelineReader reader = new NpdPipelineReader(URL);
+    NpdPipelineReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD pipelines asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD pipelines. Never null.
+   */
+  public static CompletableFuture<List<NpdPipeline>> readAllAsync()
+  {
+    NpdPipelineReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD pipelines asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD pipelines. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdPipeline>> readAllAsync(Executor executor)
+  {
+    NpdPipelineReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD pipeline instance from the given tokens.
    *
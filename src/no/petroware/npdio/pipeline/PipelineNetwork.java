@@ -0,0 +1,655 @@
+package no.petroware.npdio.pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import no.petroware.npdio.facility.NpdFixedFacility;
+
+/**
+ * The transport network formed by NPD pipelines and the facilities
+ * they connect.
+ * <p>
+ * Nodes are facilities and edges are pipelines, directed from the
+ * <em>from</em> facility to the <em>to</em> facility of each pipeline.
+ * Both are identified by primitive integer IDs: Nodes are numbered
+ * [0,nNodes&gt; and edges are numbered [0,nEdges&gt; in the order of the
+ * pipelines given. The graph is stored in compressed adjacency arrays
+ * (outgoing and incoming) and queries run on primitive arrays only,
+ * making it suitable for high query volumes:
+ *
+ * <pre>
+ *   PipelineNetwork network = new PipelineNetwork(pipelines, facilities);
+ *
+ *   // Facilities that can export to K&aring;rst&oslash;
+ *   int kaarstoe = network.findNode("KÅRSTØ");
+ *   for (int node : network.getUpstreamNodes(kaarstoe, null))
+ *     System.out.println(network.getNodeName(node));
+ * </pre>
+ *
+ * Pipelines without from or to facility are not part of the graph.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class PipelineNetwork
+{
+  /** Node names. Never null entries. */
+  private final String[] nodeNames_;
+
+  /** Node facility NPDIDs. Null entries if not known. */
+  private final String[] nodeNpdIds_;
+
+  /** Node fixed facilities. Null entries if not a known fixed facility. */
+  private final NpdFixedFacility[] nodeFacilities_;
+
+  /** Node ID per facility NPDID. */
+  private final Map<String, Integer> nodesByNpdId_ = new HashMap<>();
+
+  /** Node ID per upper case facility name. */
+  private final Map<String, Integer> nodesByName_ = new HashMap<>();
+
+  /** The pipelines, indexed by edge ID. */
+  private final NpdPipeline[] pipelines_;
+
+  /** From node of each edge. -1 if pipeline is not part of the graph. */
+  private final int[] edgeFrom_;
+
+  /** To node of each edge. -1 if pipeline is not part of the graph. */
+  private final int[] edgeTo_;
+
+  /** Medium ID of each edge. */
+  private final int[] edgeMedium_;
+
+  /** Medium ID per medium name. Null medium has ID 0. */
+  private final Map<String, Integer> mediumIds_ = new HashMap<>();
+
+  /** Offset into outEdges_ for each node. Length nNodes + 1. */
+  private final int[] outOffsets_;
+
+  /** Outgoing edges ordered by from node. */
+  private final int[] outEdges_;
+
+  /** Offset into inEdges_ for each node. Length nNodes + 1. */
+  private final int[] inOffsets_;
+
+  /** Incoming edges ordered by to node. */
+  private final int[] inEdges_;
+
+  /** Connected component of each node, ignoring edge direction. */
+  private final int[] components_;
+
+  /** Number of connected components. */
+  private final int nComponents_;
+
+  /**
+   * Create a pipeline network from the specified pipelines and facilities.
+   *
+   * @param pipelines   Pipelines making the edges of the network. Non-null.
+   * @param facilities  Fixed facilities providing node details. Facilities
+   *                    not connected by any pipeline becomes isolated nodes.
+   *                    Null if not available.
+   * @throws IllegalArgumentException  If pipelines is null.
+   */
+  public PipelineNetwork(Collection<NpdPipeline> pipelines, Collection<NpdFixedFacility> facilities)
+  {
+    if (pipelines == null)
+      throw new IllegalArgumentException("pipelines cannot be null");
+
+    List<String> nodeNames = new ArrayList<>();
+    List<String> nodeNpdIds = new ArrayList<>();
+    List<NpdFixedFacility> nodeFacilities = new ArrayList<>();
+
+    //
+    // Facilities
+    //
+    if (facilities != null) {
+      for (NpdFixedFacility facility : facilities)
+        addNode(facility.getNpdId(), facility.getName(), facility, nodeNames, nodeNpdIds, nodeFacilities);
+    }
+
+    //
+    // Pipelines. Single pass, capturing edges and endpoint nodes.
+    //
+    int nEdges = pipelines.size();
+    pipelines_ = pipelines.toArray(new NpdPipeline[nEdges]);
+    edgeFrom_ = new int[nEdges];
+    edgeTo_ = new int[nEdges];
+    edgeMedium_ = new int[nEdges];
+
+    mediumIds_.put(null, 0);
+
+    int nNodes;
+    int[] outDegrees = new int[16];
+    int[] inDegrees = new int[16];
+
+    for (int edge = 0; edge < nEdges; edge++) {
+      NpdPipeline pipeline = pipelines_[edge];
+
+      int from = addNode(pipeline.getNpdidFromFacility(), pipeline.getFromFacility(), null, nodeNames, nodeNpdIds, nodeFacilities);
+      int to = addNode(pipeline.getNpdidToFacility(), pipeline.getToFacility(), null, nodeNames, nodeNpdIds, nodeFacilities);
+
+      if (from == -1 || to == -1) {
+        from = -1;
+        to = -1;
+      }
+
+      edgeFrom_[edge] = from;
+      edgeTo_[edge] = to;
+      edgeMedium_[edge] = getMediumId(pipeline.getMedium(), true);
+
+      nNodes = nodeNames.size();
+      if (nNodes > outDegrees.length) {
+        outDegrees = Arrays.copyOf(outDegrees, 2 * nNodes);
+        inDegrees = Arrays.copyOf(inDegrees, 2 * nNodes);
+      }
+
+      if (from != -1) {
+        outDegrees[from]++;
+        inDegrees[to]++;
+      }
+    }
+
+    nNodes = nodeNames.size();
+    nodeNames_ = nodeNames.toArray(new String[nNodes]);
+    nodeNpdIds_ = nodeNpdIds.toArray(new String[nNodes]);
+    nodeFacilities_ = nodeFacilities.toArray(new NpdFixedFacility[nNodes]);
+
+    //
+    // Compressed adjacency arrays
+    //
+    outOffsets_ = new int[nNodes + 1];
+    inOffsets_ = new int[nNodes + 1];
+    for (int node = 0; node < nNodes; node++) {
+      outOffsets_[node + 1] = outOffsets_[node] + (node < outDegrees.length ? outDegrees[node] : 0);
+      inOffsets_[node + 1] = inOffsets_[node] + (node < inDegrees.length ? inDegrees[node] : 0);
+    }
+
+    outEdges_ = new int[outOffsets_[nNodes]];
+    inEdges_ = new int[inOffsets_[nNodes]];
+
+    int[] outPositions = Arrays.copyOf(outOffsets_, nNodes);
+    int[] inPositions = Arrays.copyOf(inOffsets_, nNodes);
+    for (int edge = 0; edge < nEdges; edge++) {
+      if (edgeFrom_[edge] == -1)
+        continue;
+
+      outEdges_[outPositions[edgeFrom_[edge]]++] = edge;
+      inEdges_[inPositions[edgeTo_[edge]]++] = edge;
+    }
+
+    //
+    // Connected components
+    //
+    components_ = new int[nNodes];
+    Arrays.fill(components_, -1);
+
+    int nComponents = 0;
+    int[] queue = new int[nNodes];
+    for (int node = 0; node < nNodes; node++) {
+      if (components_[node] != -1)
+        continue;
+
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = node;
+      components_[node] = nComponents;
+
+      while (head < tail) {
+        int current = queue[head++];
+
+        for (int i = outOffsets_[current]; i < outOffsets_[current + 1]; i++) {
+          int next = edgeTo_[outEdges_[i]];
+          if (components_[next] == -1) {
+            components_[next] = nComponents;
+            queue[tail++] = next;
+          }
+        }
+
+        for (int i = inOffsets_[current]; i < inOffsets_[current + 1]; i++) {
+          int next = edgeFrom_[inEdges_[i]];
+          if (components_[next] == -1) {
+            components_[next] = nComponents;
+            queue[tail++] = next;
+          }
+        }
+      }
+
+      nComponents++;
+    }
+
+    nComponents_ = nComponents;
+  }
+
+  /**
+   * Find or create the node of the specified facility.
+   *
+   * @param npdId           Facility NPDID. Null if unknown.
+   * @param name            Facility name. Null if unknown.
+   * @param facility        The facility instance. Null if unknown.
+   * @param nodeNames       Node names to populate. Non-null.
+   * @param nodeNpdIds      Node NPDIDs to populate. Non-null.
+   * @param nodeFacilities  Node facilities to populate. Non-null.
+   * @return                The node ID, or -1 if neither NPDID nor name is known.
+   */
+  private int addNode(String npdId,
+                      String name,
+                      NpdFixedFacility facility,
+                      List<String> nodeNames,
+                      List<String> nodeNpdIds,
+                      List<NpdFixedFacility> nodeFacilities)
+  {
+    String nameKey = name != null ? name.toUpperCase(Locale.US) : null;
+
+    Integer node = npdId != null ? nodesByNpdId_.get(npdId) : null;
+
+    // Endpoints without NPDID are matched by name
+    if (node == null && npdId == null && nameKey != null)
+      node = nodesByName_.get(nameKey);
+
+    if (node != null)
+      return node;
+
+    if (npdId == null && name == null)
+      return -1;
+
+    node = nodeNames.size();
+    nodeNames.add(name != null ? name : npdId);
+    nodeNpdIds.add(npdId);
+    nodeFacilities.add(facility);
+
+    if (npdId != null)
+      nodesByNpdId_.put(npdId, node);
+
+    if (nameKey != null && !nodesByName_.containsKey(nameKey))
+      nodesByName_.put(nameKey, node);
+
+    return node;
+  }
+
+  /**
+   * Return the ID of the specified medium.
+   *
+   * @param medium    Medium to get ID of. May be null.
+   * @param isCreate  True to create an ID if not already present.
+   * @return          The medium ID, or -1 if not present and not created.
+   */
+  private int getMediumId(String medium, boolean isCreate)
+  {
+    String key = medium != null ? medium.toUpperCase(Locale.US) : null;
+
+    Integer mediumId = mediumIds_.get(key);
+    if (mediumId == null) {
+      if (!isCreate)
+        return -1;
+
+      mediumId = mediumIds_.size();
+      mediumIds_.put(key, mediumId);
+    }
+
+    return mediumId;
+  }
+
+  /**
+   * Return the edges allowed by the specified medium filter.
+   *
+   * @param mediums  Mediums to allow. Null to allow all.
+   * @return         Allowed flag per edge. Null if all are allowed.
+   */
+  private boolean[] getAllowedEdges(Set<String> mediums)
+  {
+    if (mediums == null)
+      return null;
+
+    boolean[] isAllowedMedium = new boolean[mediumIds_.size()];
+    for (String medium : mediums) {
+      int mediumId = getMediumId(medium, false);
+      if (mediumId != -1)
+        isAllowedMedium[mediumId] = true;
+    }
+
+    boolean[] isAllowed = new boolean[pipelines_.length];
+    for (int edge = 0; edge < pipelines_.length; edge++)
+      isAllowed[edge] = isAllowedMedium[edgeMedium_[edge]];
+
+    return isAllowed;
+  }
+
+  /**
+   * Return number of nodes in this network.
+   *
+   * @return  Number of nodes in this network. [0,&gt;.
+   */
+  public int getNNodes()
+  {
+    return nodeNames_.length;
+  }
+
+  /**
+   * Return number of edges in this network, being the
+   * number of pipelines it was created from.
+   *
+   * @return  Number of edges in this network. [0,&gt;.
+   */
+  public int getNEdges()
+  {
+    return pipelines_.length;
+  }
+
+  /**
+   * Return the node of the facility with the specified NPDID.
+   *
+   * @param npdId  NPDID of facility to find. May be null.
+   * @return       The requested node, or -1 if not found.
+   */
+  public int getNode(String npdId)
+  {
+    Integer node = npdId != null ? nodesByNpdId_.get(npdId) : null;
+    return node != null ? node : -1;
+  }
+
+  /**
+   * Find the node of the facility with the specified name.
+   * The search is case insensitive.
+   *
+   * @param name  Name of facility to find. May be null.
+   * @return      The requested node, or -1 if not found.
+   */
+  public int findNode(String name)
+  {
+    Integer node = name != null ? nodesByName_.get(name.toUpperCase(Locale.US)) : null;
+    return node != null ? node : -1;
+  }
+
+  /**
+   * Return name of the specified node.
+   *
+   * @param node  Node to get name of.
+   * @return      Name of the node. Never null.
+   * @throws IndexOutOfBoundsException  If node is out of bounds.
+   */
+  public String getNodeName(int node)
+  {
+    return nodeNames_[node];
+  }
+
+  /**
+   * Return facility NPDID of the specified node.
+   *
+   * @param node  Node to get NPDID of.
+   * @return      NPDID of the node. Null if unknown.
+   * @throws IndexOutOfBoundsException  If node is out of bounds.
+   */
+  public String getNodeNpdId(int node)
+  {
+    return nodeNpdIds_[node];
+  }
+
+  /**
+   * Return fixed facility of the specified node.
+   *
+   * @param node  Node to get facility of.
+   * @return      Facility of the node. Null if it is not among
+   *              the fixed facilities the network was created from.
+   * @throws IndexOutOfBoundsException  If node is out of bounds.
+   */
+  public NpdFixedFacility getNodeFacility(int node)
+  {
+    return nodeFacilities_[node];
+  }
+
+  /**
+   * Return the pipeline of the specified edge.
+   *
+   * @param edge  Edge to get pipeline of.
+   * @return      The pipeline. Never null.
+   * @throws IndexOutOfBoundsException  If edge is out of bounds.
+   */
+  public NpdPipeline getPipeline(int edge)
+  {
+    return pipelines_[edge];
+  }
+
+  /**
+   * Return from node of the specified edge.
+   *
+   * @param edge  Edge to get from node of.
+   * @return      The from node, or -1 if the pipeline is not part of the graph.
+   * @throws IndexOutOfBoundsException  If edge is out of bounds.
+   */
+  public int getEdgeFrom(int edge)
+  {
+    return edgeFrom_[edge];
+  }
+
+  /**
+   * Return to node of the specified edge.
+   *
+   * @param edge  Edge to get to node of.
+   * @return      The to node, or -1 if the pipeline is not part of the graph.
+   * @throws IndexOutOfBoundsException  If edge is out of bounds.
+   */
+  public int getEdgeTo(int edge)
+  {
+    return edgeTo_[edge];
+  }
+
+  /**
+   * Return the outgoing edges of the specified node.
+   *
+   * @param node  Node to get edges of.
+   * @return      The outgoing edges. Never null.
+   * @throws IndexOutOfBoundsException  If node is out of bounds.
+   */
+  public int[] getOutgoingEdges(int node)
+  {
+    return Arrays.copyOfRange(outEdges_, outOffsets_[node], outOffsets_[node + 1]);
+  }
+
+  /**
+   * Return the incoming edges of the specified node.
+   *
+   * @param node  Node to get edges of.
+   * @return      The incoming edges. Never null.
+   * @throws IndexOutOfBoundsException  If node is out of bounds.
+   */
+  public int[] getIncomingEdges(int node)
+  {
+    return Arrays.copyOfRange(inEdges_, inOffsets_[node], inOffsets_[node + 1]);
+  }
+
+  /**
+   * Return the distinct mediums transported in this network.
+   *
+   * @return  Mediums of this network, upper case. Never null.
+   */
+  public Set<String> getMediums()
+  {
+    Set<String> mediums = new TreeSet<>();
+    for (String medium : mediumIds_.keySet()) {
+      if (medium != null)
+        mediums.add(medium);
+    }
+    return Collections.unmodifiableSet(mediums);
+  }
+
+  /**
+   * Breadth first traversal from the specified node.
+   *
+   * @param node         Start node.
+   * @param isUpstream   True to follow edges backwards, false to follow them forward.
+   * @param isAllowed    Allowed flag per edge. Null if all are allowed.
+   * @param parentEdges  Edge used to reach each node. Populated if non-null.
+   * @param target       Node to stop at. -1 to traverse all.
+   * @return             The reached nodes in traversal order, excluding the start node.
+   */
+  private int[] traverse(int node, boolean isUpstream, boolean[] isAllowed, int[] parentEdges, int target)
+  {
+    int nNodes = nodeNames_.length;
+
+    int[] offsets = isUpstream ? inOffsets_ : outOffsets_;
+    int[] edges = isUpstream ? inEdges_ : outEdges_;
+    int[] next = isUpstream ? edgeFrom_ : edgeTo_;
+
+    boolean[] isVisited = new boolean[nNodes];
+    int[] queue = new int[nNodes];
+    int head = 0;
+    int tail = 0;
+
+    queue[tail++] = node;
+    isVisited[node] = true;
+
+    while (head < tail) {
+      int current = queue[head++];
+      if (current == target)
+        break;
+
+      for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+        int edge = edges[i];
+        if (isAllowed != null && !isAllowed[edge])
+          continue;
+
+        int nextNode = next[edge];
+        if (!isVisited[nextNode]) {
+          isVisited[nextNode] = true;
+          if (parentEdges != null)
+            parentEdges[nextNode] = edge;
+          queue[tail++] = nextNode;
+        }
+      }
+    }
+
+    return Arrays.copyOfRange(queue, 1, tail);
+  }
+
+  /**
+   * Return the nodes reachable downstream from the specified node,
+   * i.e. the facilities the node can export to.
+   *
+   * @param node     Node to start from.
+   * @param mediums  Mediums of pipelines to follow. Null to follow all.
+   * @return         The downstream nodes, nearest first. Never null.
+   * @throws IndexOutOfBoundsException  If node is out of bounds.
+   */
+  public int[] getDownstreamNodes(int node, Set<String> mediums)
+  {
+    if (node < 0 || node >= nodeNames_.length)
+      throw new IndexOutOfBoundsException("Invalid node: " + node);
+
+    return traverse(node, false, getAllowedEdges(mediums), null, -1);
+  }
+
+  /**
+   * Return the nodes that can reach the specified node,
+   * i.e. the facilities that can export to it.
+   *
+   * @param node     Node to reach.
+   * @param mediums  Mediums of pipelines to follow. Null to follow all.
+   * @return         The upstream nodes, nearest first. Never null.
+   * @throws IndexOutOfBoundsException  If node is out of bounds.
+   */
+  public int[] getUpstreamNodes(int node, Set<String> mediums)
+  {
+    if (node < 0 || node >= nodeNames_.length)
+      throw new IndexOutOfBoundsException("Invalid node: " + node);
+
+    return traverse(node, true, getAllowedEdges(mediums), null, -1);
+  }
+
+  /**
+   * Return the shortest path, by number of pipelines, from one node
+   * to another following the pipeline direction.
+   *
+   * @param from     Node to start from.
+   * @param to       Node to reach.
+   * @param mediums  Mediums of pipelines to follow. Null to follow all.
+   * @return         Edges of the path in order. Empty if from equals to.
+   *                 Null if there is no path.
+   * @throws IndexOutOfBoundsException  If from or to is out of bounds.
+   */
+  public int[] getShortestPath(int from, int to, Set<String> mediums)
+  {
+    if (from < 0 || from >= nodeNames_.length)
+      throw new IndexOutOfBoundsException("Invalid node: " + from);
+
+    if (to < 0 || to >= nodeNames_.length)
+      throw new IndexOutOfBoundsException("Invalid node: " + to);
+
+    if (from == to)
+      return new int[0];
+
+    int[] parentEdges = new int[nodeNames_.length];
+    Arrays.fill(parentEdges, -1);
+
+    traverse(from, false, getAllowedEdges(mediums), parentEdges, to);
+
+    if (parentEdges[to] == -1)
+      return null;
+
+    // Walk back from the target
+    int length = 0;
+    for (int node = to; node != from; node = edgeFrom_[parentEdges[node]])
+      length++;
+
+    int[] path = new int[length];
+    for (int node = to; node != from; node = edgeFrom_[parentEdges[node]])
+      path[--length] = parentEdges[node];
+
+    return path;
+  }
+
+  /**
+   * Return number of connected components of this network,
+   * ignoring pipeline direction.
+   *
+   * @return  Number of connected components. [0,&gt;.
+   */
+  public int getNComponents()
+  {
+    return nComponents_;
+  }
+
+  /**
+   * Return connected component of the specified node.
+   *
+   * @param node  Node to get component of.
+   * @return      Component of the node. [0,nComponents&gt;.
+   * @throws IndexOutOfBoundsException  If node is out of bounds.
+   */
+  public int getComponent(int node)
+  {
+    return components_[node];
+  }
+
+  /**
+   * Return the nodes of the specified connected component.
+   *
+   * @param component  Component to get nodes of. [0,nComponents&gt;.
+   * @return           Nodes of the component in increasing order. Never null.
+   */
+  public int[] getComponentNodes(int component)
+  {
+    int n = 0;
+    for (int c : components_) {
+      if (c == component)
+        n++;
+    }
+
+    int[] nodes = new int[n];
+    int i = 0;
+    for (int node = 0; node < components_.length; node++) {
+      if (components_[node] == component)
+        nodes[i++] = node;
+    }
+
+    return nodes;
+  }
+}
@@ -0,0 +1,252 @@
+package no.petroware.npdio.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import no.petroware.npdio.index.Bitmap;
+import no.petroware.npdio.index.BitmapIndex;
+
+/**
+ * A condition on a property value, such as <em>equal to</em> or
+ * <em>between</em>.
+ * <p>
+ * Apart from {@link #isNull} all conditions are false for absent (null)
+ * property values.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <V>  Type of value being tested.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class Condition<V>
+{
+  /** Textual representation used in query plans. Non-null. */
+  private final String text_;
+
+  /** The value test. Non-null. */
+  private final Predicate<? super V> test_;
+
+  /** Values to look up directly in an index. Null if the index values must be tested instead. */
+  private final Collection<?> lookupValues_;
+
+  /**
+   * Create a condition.
+   *
+   * @param text          Textual representation. Non-null.
+   * @param test          The value test. Non-null.
+   * @param lookupValues  Values for direct index lookup. Null if N/A.
+   */
+  private Condition(String text, Predicate<? super V> test, Collection<?> lookupValues)
+  {
+    assert text != null : "text cannot be null";
+    assert test != null : "test cannot be null";
+
+    text_ = text;
+    test_ = test;
+    lookupValues_ = lookupValues;
+  }
+
+  /**
+   * Create a condition that is true for values equal to the specified one.
+   *
+   * @param <V>    Value type.
+   * @param value  Value to compare to. Non-null.
+   * @return       The requested condition. Never null.
+   * @throws IllegalArgumentException  If value is null.
+   */
+  public static <V> Condition<V> equalTo(final V value)
+  {
+    if (value == null)
+      throw new IllegalArgumentException("value cannot be null");
+
+    Collection<Object> lookupValues = new ArrayList<>();
+    lookupValues.add(value);
+
+    return new Condition<V>("= " + value, v -> value.equals(v), lookupValues);
+  }
+
+  /**
+   * Create a condition that is true for values different from the specified one.
+   *
+   * @param <V>    Value type.
+   * @param value  Value to compare to. Non-null.
+   * @return       The requested condition. Never null.
+   * @throws IllegalArgumentException  If value is null.
+   */
+  public static <V> Condition<V> notEqualTo(final V value)
+  {
+    if (value == null)
+      throw new IllegalArgumentException("value cannot be null");
+
+    return new Condition<V>("!= " + value, v -> v != null && !value.equals(v), null);
+  }
+
+  /**
+   * Create a condition that is true for values among the specified ones.
+   *
+   * @param <V>     Value type.
+   * @param values  Values to compare to. Non-null.
+   * @return        The requested condition. Never null.
+   * @throws IllegalArgumentException  If values is null.
+   */
+  public static <V> Condition<V> in(Collection<? extends V> values)
+  {
+    if (values == null)
+      throw new IllegalArgumentException("values cannot be null");
+
+    final Set<V> valueSet = new HashSet<V>(values);
+    valueSet.remove(null);
+
+    return new Condition<V>("in " + valueSet, v -> v != null && valueSet.contains(v), valueSet);
+  }
+
+  /**
+   * Create a condition that is true for absent values.
+   *
+   * @param <V>  Value type.
+   * @return     The requested condition. Never null.
+   */
+  public static <V> Condition<V> isNull()
+  {
+    Collection<Object> lookupValues = new ArrayList<>();
+    lookupValues.add(null);
+
+    return new Condition<V>("is null", v -> v == null, lookupValues);
+  }
+
+  /**
+   * Create a condition that is true for present values.
+   *
+   * @param <V>  Value type.
+   * @return     The requested condition. Never null.
+   */
+  public static <V> Condition<V> isNotNull()
+  {
+    return new Condition<V>("is not null", v -> v != null, null);
+  }
+
+  /**
+   * Create a condition that is true for values less than the specified one.
+   *
+   * @param <V>    Value type.
+   * @param value  Value to compare to. Non-null.
+   * @return       The requested condition. Never null.
+   * @throws IllegalArgumentException  If value is null.
+   */
+  public static <V extends Comparable<? super V>> Condition<V> lessThan(final V value)
+  {
+    if (value == null)
+      throw new IllegalArgumentException("value cannot be null");
+
+    return new Condition<V>("< " + value, v -> v != null && v.compareTo(value) < 0, null);
+  }
+
+  /**
+   * Create a condition that is true for values greater than the specified one.
+   *
+   * @param <V>    Value type.
+   * @param value  Value to compare to. Non-null.
+   * @return       The requested condition. Never null.
+   * @throws IllegalArgumentException  If value is null.
+   */
+  public static <V extends Comparable<? super V>> Condition<V> greaterThan(final V value)
+  {
+    if (value == null)
+      throw new IllegalArgumentException("value cannot be null");
+
+    return new Condition<V>("> " + value, v -> v != null && v.compareTo(value) > 0, null);
+  }
+
+  /**
+   * Create a condition that is true for values within the specified range.
+   *
+   * @param <V>   Value type.
+   * @param from  Lower bound, inclusive. Non-null.
+   * @param to    Upper bound, inclusive. Non-null.
+   * @return      The requested condition. Never null.
+   * @throws IllegalArgumentException  If from or to is null.
+   */
+  public static <V extends Comparable<? super V>> Condition<V> between(final V from, final V to)
+  {
+    if (from == null)
+      throw new IllegalArgumentException("from cannot be null");
+
+    if (to == null)
+      throw new IllegalArgumentException("to cannot be null");
+
+    return new Condition<V>("in [" + from + "," + to + "]",
+                            v -> v != null && v.compareTo(from) >= 0 && v.compareTo(to) <= 0,
+                            null);
+  }
+
+  /**
+   * Create a condition that is true for values accepted by the specified
+   * client predicate. The predicate is applied to present values only.
+   *
+   * @param <V>          Value type.
+   * @param description  Description of the condition, as used in query plans. Non-null.
+   * @param predicate    Predicate to apply. Non-null.
+   * @return             The requested condition. Never null.
+   * @throws IllegalArgumentException  If description or predicate is null.
+   */
+  public static <V> Condition<V> matches(String description, final Predicate<? super V> predicate)
+  {
+    if (description == null)
+      throw new IllegalArgumentException("description cannot be null");
+
+    if (predicate == null)
+      throw new IllegalArgumentException("predicate cannot be null");
+
+    return new Condition<V>(description, v -> v != null && predicate.test(v), null);
+  }
+
+  /**
+   * Return the value test of this condition.
+   *
+   * @return  The value test of this condition. Never null.
+   */
+  Predicate<? super V> getTest()
+  {
+    return test_;
+  }
+
+  /**
+   * Evaluate this condition using the specified index.
+   * <p>
+   * Equality conditions are looked up directly. Other conditions are
+   * evaluated on the distinct values of the property, which is normally
+   * a far smaller set than the objects themselves.
+   *
+   * @param index         Index to use. Non-null.
+   * @param propertyName  Name of property to evaluate. Must be indexed.
+   * @return              Bitmap of the objects satisfying this condition. Never null.
+   */
+  @SuppressWarnings("unchecked")
+  Bitmap evaluate(BitmapIndex<?> index, String propertyName)
+  {
+    assert index != null : "index cannot be null";
+    assert index.isIndexed(propertyName) : "Property is not indexed: " + propertyName;
+
+    if (lookupValues_ != null)
+      return index.getBitmap(propertyName, lookupValues_);
+
+    Bitmap bitmap = Bitmap.empty();
+    for (Object value : index.getValues(propertyName)) {
+      if (((Predicate<Object>) test_).test(value))
+        bitmap = bitmap.or(index.getBitmap(propertyName, value));
+    }
+
+    return bitmap;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return text_;
+  }
+}
@@ -0,0 +1,220 @@
+package no.petroware.npdio.query;
+
+import java.util.function.Function;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperty;
+import no.petroware.npdio.index.BitmapIndex;
+
+/**
+ * A named, typed property of some object type, like the
+ * <em>status</em> of a wellbore:
+ *
+ * <pre>
+ *   Property&lt;NpdWellbore, String&gt; status = Property.of("Status", NpdWellbore::getStatus);
+ * </pre>
+ *
+ * The name is used to identify the property in query plans. By
+ * convention it is the getter name without the <em>get</em> prefix.
+ * <p>
+ * Conditions are resolved through a {@link BitmapIndex} for properties
+ * of an NPD property indexed by the same getter, as created by
+ * {@link #of(NpdProperty,Class)} or {@link #of(BitmapIndex,String,Class)}.
+ * Other properties may compute anything from their accessor, and are
+ * resolved through the index only if they have the very accessor of the
+ * index. Otherwise they are resolved by scanning, even if their name is
+ * indexed.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of object holding the property.
+ * @param <V>  Type of property value.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class Property<T, V>
+{
+  /** Name of property. Non-null. */
+  private final String name_;
+
+  /** Accessor for the property value. Non-null. */
+  private final Function<? super T, ? extends V> accessor_;
+
+  /** NPD property this property reads. Null if none. */
+  private final NpdProperty<?> npdProperty_;
+
+  /**
+   * Create a property instance.
+   *
+   * @param name         Name of property. Non-null.
+   * @param accessor     Accessor for the property value. Non-null.
+   * @param npdProperty  NPD property read by accessor. Null if none.
+   */
+  private Property(String name, Function<? super T, ? extends V> accessor, NpdProperty<?> npdProperty)
+  {
+    assert name != null : "name cannot be null";
+    assert accessor != null : "accessor cannot be null";
+
+    name_ = name;
+    accessor_ = accessor;
+    npdProperty_ = npdProperty;
+  }
+
+  /**
+   * Create a property instance.
+   *
+   * @param name      Name of property. Non-null.
+   * @param accessor  Accessor for the property value. Non-null.
+   * @throws IllegalArgumentException  If name or accessor is null.
+   */
+  public Property(String name, Function<? super T, ? extends V> accessor)
+  {
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+
+    if (accessor == null)
+      throw new IllegalArgumentException("accessor cannot be null");
+
+    name_ = name;
+    accessor_ = accessor;
+    npdProperty_ = null;
+  }
+
+  /**
+   * Create a property instance.
+   *
+   * @param <T>       Type of object holding the property.
+   * @param <V>       Type of property value.
+   * @param name      Name of property. Non-null.
+   * @param accessor  Accessor for the property value. Non-null.
+   * @return          The requested property. Never null.
+   * @throws IllegalArgumentException  If name or accessor is null.
+   */
+  public static <T, V> Property<T, V> of(String name, Function<? super T, ? extends V> accessor)
+  {
+    return new Property<T, V>(name, accessor);
+  }
+
+  /**
+   * Create a property instance from the specified NPD property meta data,
+   * like:
+   *
+   * <pre>
+   *   Property&lt;NpdField, String&gt; mainArea =
+   *     Property.of(NpdProperties.getProperty(NpdField.class, "MainArea"), String.class);
+   * </pre>
+   *
+   * @param <T>          Type of object holding the property.
+   * @param <V>          Type of property value.
+   * @param npdProperty  NPD property to create property of. Non-null.
+   * @param valueType    Value type of property. Must match the type of npdProperty. Non-null.
+   * @return             The requested property. Never null.
+   * @throws IllegalArgumentException  If npdProperty or valueType is null or if
+   *                     valueType doesn't match the type of npdProperty.
+   */
+  public static <T extends NpdObject, V> Property<T, V> of(NpdProperty<T> npdProperty, final Class<V> valueType)
+  {
+    if (npdProperty == null)
+      throw new IllegalArgumentException("npdProperty cannot be null");
+
+    if (valueType == null)
+      throw new IllegalArgumentException("valueType cannot be null");
+
+    if (!valueType.isAssignableFrom(npdProperty.getType()))
+      throw new IllegalArgumentException("Invalid value type for " + npdProperty + ": " + valueType);
+
+    final Function<T, Object> accessor = npdProperty.getAccessor();
+    return new Property<T, V>(npdProperty.getName(), object -> valueType.cast(accessor.apply(object)), npdProperty);
+  }
+
+  /**
+   * Create a property instance of the specified indexed property,
+   * like:
+   *
+   * <pre>
+   *   Property&lt;NpdWellbore, String&gt; status = Property.of(index, "Status", String.class);
+   * </pre>
+   *
+   * The property has the accessor of the index, so that conditions on
+   * it are resolved through the index, also if the property is indexed
+   * by an arbitrary accessor.
+   *
+   * @param <T>           Type of object holding the property.
+   * @param <V>           Type of property value.
+   * @param index         Index holding the property. Non-null.
+   * @param propertyName  Name of indexed property. Non-null.
+   * @param valueType     Value type of property. Must match the indexed values. Non-null.
+   * @return              The requested property. Never null.
+   * @throws IllegalArgumentException  If index, propertyName or valueType is null,
+   *                      if the property is not indexed or if valueType doesn't
+   *                      match the indexed values.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends NpdObject, V> Property<T, V> of(BitmapIndex<T> index, String propertyName, Class<V> valueType)
+  {
+    if (index == null)
+      throw new IllegalArgumentException("index cannot be null");
+
+    if (valueType == null)
+      throw new IllegalArgumentException("valueType cannot be null");
+
+    Function<? super T, ?> accessor = index.getAccessor(propertyName);
+
+    // The distinct values are known, so the type is checked once and for all
+    for (Object value : index.getValues(propertyName)) {
+      if (value != null && !valueType.isInstance(value))
+        throw new IllegalArgumentException("Invalid value type for " + propertyName + ": " + valueType);
+    }
+
+    return new Property<T, V>(propertyName, (Function<? super T, ? extends V>) accessor, index.getNpdProperty(propertyName));
+  }
+
+  /**
+   * Return name of this property.
+   *
+   * @return  Name of this property. Never null.
+   */
+  public String getName()
+  {
+    return name_;
+  }
+
+  /**
+   * Return the accessor of this property.
+   *
+   * @return  The accessor of this property. Never null.
+   */
+  public Function<? super T, ? extends V> getAccessor()
+  {
+    return accessor_;
+  }
+
+  /**
+   * Return the NPD property this property reads.
+   *
+   * @return  The NPD property of this property, or null if this property
+   *          has an arbitrary accessor.
+   */
+  public NpdProperty<?> getNpdProperty()
+  {
+    return npdProperty_;
+  }
+
+  /**
+   * Return the value of this property for the specified object.
+   *
+   * @param object  Object to get property value of. Non-null.
+   * @return        The property value. May be null.
+   */
+  public V getValue(T object)
+  {
+    return accessor_.apply(object);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return name_;
+  }
+}
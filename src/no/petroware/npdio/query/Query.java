@@ -0,0 +1,211 @@
+package no.petroware.npdio.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.index.BitmapIndex;
+
+/**
+ * A query over a loaded collection of NPD objects.
+ * <p>
+ * Typical usage:
+ *
+ * <pre>
+ *   BitmapIndex&lt;NpdWellbore&gt; index = BitmapIndex.newWellboreIndex(wellbores);
+ *
+ *   Property&lt;NpdWellbore, String&gt; status = Property.of(index, "Status", String.class);
+ *   Property&lt;NpdWellbore, Double&gt; totalDepth = Property.of("TotalDepth", NpdWellbore::getTotalDepth);
+ *
+ *   List&lt;NpdWellbore&gt; deepest = Query.from(index)
+ *                                    .where(status, Condition.equalTo("P&amp;A"))
+ *                                    .where(totalDepth, Condition.greaterThan(5000.0))
+ *                                    .orderBy(totalDepth, false)
+ *                                    .limit(10)
+ *                                    .execute();
+ * </pre>
+ *
+ * The query is compiled into a {@link QueryPlan} consisting of specialized
+ * predicate and comparator objects. If the query is made from a
+ * {@link BitmapIndex}, conditions on properties of the index, see
+ * {@link Property#of(no.petroware.npdio.NpdProperty,Class)} and
+ * {@link Property#of(BitmapIndex,String,Class)}, are evaluated as
+ * bitmap operations, while the remaining conditions are applied to the
+ * candidates only. Use {@link #compile} to inspect the plan.
+ * <p>
+ * This class is not thread-safe. The compiled plan is.
+ *
+ * @param <T>  Type of objects being queried.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class Query<T extends NpdObject>
+{
+  /** The objects to query. Non-null. */
+  private final List<T> objects_;
+
+  /** Index of the objects to query. Null if none. */
+  private final BitmapIndex<T> index_;
+
+  /** The conditions of this query. */
+  private final List<QueryPlan.Clause<T>> clauses_ = new ArrayList<>();
+
+  /** The orderings of this query. Most significant first. */
+  private final List<QueryPlan.Ordering<T>> orderings_ = new ArrayList<>();
+
+  /** Max number of objects to return. Negative if unlimited. */
+  private int limit_ = -1;
+
+  /**
+   * Create a query.
+   *
+   * @param objects  Objects to query. Non-null.
+   * @param index    Index of the objects. Null if none.
+   */
+  private Query(List<T> objects, BitmapIndex<T> index)
+  {
+    assert objects != null : "objects cannot be null";
+
+    objects_ = objects;
+    index_ = index;
+  }
+
+  /**
+   * Create a query over the specified objects.
+   *
+   * @param <T>      Type of objects being queried.
+   * @param objects  Objects to query. Non-null.
+   * @return         The requested query. Never null.
+   * @throws IllegalArgumentException  If objects is null.
+   */
+  public static <T extends NpdObject> Query<T> from(Collection<? extends T> objects)
+  {
+    if (objects == null)
+      throw new IllegalArgumentException("objects cannot be null");
+
+    return new Query<T>(new ArrayList<T>(objects), null);
+  }
+
+  /**
+   * Create a query over the objects of the specified index. Conditions
+   * on properties of the index will be resolved through the index.
+   *
+   * @param <T>    Type of objects being queried.
+   * @param index  Index of objects to query. Non-null.
+   * @return       The requested query. Never null.
+   * @throws IllegalArgumentException  If index is null.
+   */
+  public static <T extends NpdObject> Query<T> from(BitmapIndex<T> index)
+  {
+    if (index == null)
+      throw new IllegalArgumentException("index cannot be null");
+
+    return new Query<T>(index.getObjects(), index);
+  }
+
+  /**
+   * Add a condition to this query. All conditions must be
+   * satisfied for an object to be selected.
+   *
+   * @param <V>        Property value type.
+   * @param property   Property to test. Non-null.
+   * @param condition  Condition to apply. Non-null.
+   * @return           This query. Never null.
+   * @throws IllegalArgumentException  If property or condition is null.
+   */
+  public <V> Query<T> where(Property<? super T, V> property, Condition<? super V> condition)
+  {
+    if (property == null)
+      throw new IllegalArgumentException("property cannot be null");
+
+    if (condition == null)
+      throw new IllegalArgumentException("condition cannot be null");
+
+    clauses_.add(new QueryPlan.Clause<T>(property, condition));
+    return this;
+  }
+
+  /**
+   * Add an ordering to this query. Orderings are applied in the
+   * order they are added. Absent (null) values are ordered last.
+   *
+   * @param <V>          Property value type.
+   * @param property     Property to order by. Non-null.
+   * @param isAscending  True to order ascending, false to order descending.
+   * @return             This query. Never null.
+   * @throws IllegalArgumentException  If property is null.
+   */
+  public <V extends Comparable<? super V>> Query<T> orderBy(Property<? super T, V> property, boolean isAscending)
+  {
+    if (property == null)
+      throw new IllegalArgumentException("property cannot be null");
+
+    orderings_.add(new QueryPlan.Ordering<T>(property, isAscending));
+    return this;
+  }
+
+  /**
+   * Limit the number of objects returned by this query.
+   *
+   * @param limit  Max number of objects to return. [0,&gt;.
+   * @return       This query. Never null.
+   * @throws IllegalArgumentException  If limit &lt; 0.
+   */
+  public Query<T> limit(int limit)
+  {
+    if (limit < 0)
+      throw new IllegalArgumentException("Invalid limit: " + limit);
+
+    limit_ = limit;
+    return this;
+  }
+
+  /**
+   * Compile this query into an executable plan.
+   * The plan may be executed any number of times.
+   *
+   * @return  The query plan. Never null.
+   */
+  public QueryPlan<T> compile()
+  {
+    return new QueryPlan<T>(objects_, index_, clauses_, orderings_, limit_);
+  }
+
+  /**
+   * Compile and execute this query.
+   *
+   * @return  The selected objects. Never null.
+   */
+  public List<T> execute()
+  {
+    return compile().execute();
+  }
+
+  /**
+   * Compile and execute this query and return the number
+   * of objects selected.
+   *
+   * @return  Number of objects selected. [0,&gt;.
+   */
+  public int count()
+  {
+    return compile().count();
+  }
+
+  /**
+   * Compile and execute this query and group the result on the
+   * specified property.
+   *
+   * @param <K>       Group key type.
+   * @param property  Property to group by. Non-null.
+   * @return          The selected objects per group, in order of
+   *                  first appearance. Never null.
+   * @throws IllegalArgumentException  If property is null.
+   */
+  public <K> Map<K, List<T>> groupBy(Property<? super T, K> property)
+  {
+    return compile().groupBy(property);
+  }
+}
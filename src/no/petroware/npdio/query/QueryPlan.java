@@ -0,0 +1,512 @@
+package no.petroware.npdio.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperty;
+import no.petroware.npdio.index.Bitmap;
+import no.petroware.npdio.index.BitmapIndex;
+
+/**
+ * A compiled {@link Query}.
+ * <p>
+ * The plan consists of the index lookups to perform, a single predicate
+ * combining all conditions that must be resolved by scanning, and a
+ * comparator combining all orderings. The steps of the plan can be
+ * inspected through {@link #getSteps} or {@link #toString}, like:
+ *
+ * <pre>
+ *   INDEX Status = P&amp;A
+ *   SCAN  TotalDepth &gt; 5000.0
+ *   SORT  TotalDepth DESC
+ *   LIMIT 10
+ * </pre>
+ *
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of objects being queried.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class QueryPlan<T extends NpdObject>
+{
+  /** The objects to query. Non-null. */
+  private final List<T> objects_;
+
+  /** Index of the objects. Null if none. */
+  private final BitmapIndex<T> index_;
+
+  /** Clauses resolved through the index. Non-null. */
+  private final List<Clause<T>> indexClauses_ = new ArrayList<>();
+
+  /** Clauses resolved by scanning. Non-null. */
+  private final List<Clause<T>> scanClauses_ = new ArrayList<>();
+
+  /** Predicate combining all scan clauses. Null if there are none. */
+  private final Predicate<T> predicate_;
+
+  /** The orderings. Non-null. */
+  private final List<Ordering<T>> orderings_;
+
+  /** Comparator combining all orderings. Null if there are none. */
+  private final Comparator<T> comparator_;
+
+  /** Max number of objects to return. Negative if unlimited. */
+  private final int limit_;
+
+  /**
+   * Create a query plan.
+   *
+   * @param objects    Objects to query. Non-null.
+   * @param index      Index of objects. Null if none.
+   * @param clauses    Conditions of the query. Non-null.
+   * @param orderings  Orderings of the query. Non-null.
+   * @param limit      Max number of objects to return. Negative if unlimited.
+   */
+  QueryPlan(List<T> objects,
+            BitmapIndex<T> index,
+            List<Clause<T>> clauses,
+            List<Ordering<T>> orderings,
+            int limit)
+  {
+    assert objects != null : "objects cannot be null";
+    assert clauses != null : "clauses cannot be null";
+    assert orderings != null : "orderings cannot be null";
+
+    objects_ = objects;
+    index_ = index;
+    orderings_ = new ArrayList<>(orderings);
+    limit_ = limit;
+
+    for (Clause<T> clause : clauses) {
+      if (isIndexed(clause))
+        indexClauses_.add(clause);
+      else
+        scanClauses_.add(clause);
+    }
+
+    predicate_ = compilePredicate(scanClauses_);
+    comparator_ = compileComparator(orderings_);
+  }
+
+  /**
+   * Check if the specified clause can be resolved through the index.
+   * This requires the property of the clause to read the same getter as
+   * the indexed one, not only to have the same name, as a property of
+   * the same name may have a different accessor and so different values.
+   *
+   * @param clause  Clause to check. Non-null.
+   * @return        True if the clause can be resolved through the index,
+   *                false if it must be resolved by scanning.
+   */
+  private boolean isIndexed(Clause<T> clause)
+  {
+    assert clause != null : "clause cannot be null";
+
+    Property<? super T, ?> property = clause.getProperty();
+    String propertyName = property.getName();
+    if (index_ == null || !index_.isIndexed(propertyName))
+      return false;
+
+    // NPD properties are identified by their getter, whatever the accessor instance
+    NpdProperty<?> npdProperty = property.getNpdProperty();
+    NpdProperty<?> indexedNpdProperty = index_.getNpdProperty(propertyName);
+    if (npdProperty != null && indexedNpdProperty != null)
+      return isSameGetter(npdProperty, indexedNpdProperty);
+
+    // Other accessors may compute anything, so only the very accessor of the index will do
+    return property.getAccessor() == index_.getAccessor(propertyName);
+  }
+
+  /**
+   * Check if the two specified NPD properties read the same getter,
+   * being of the same name in the same or related classes.
+   *
+   * @param npdProperty1  First NPD property. Non-null.
+   * @param npdProperty2  Second NPD property. Non-null.
+   * @return              True if they read the same getter, false otherwise.
+   */
+  private static boolean isSameGetter(NpdProperty<?> npdProperty1, NpdProperty<?> npdProperty2)
+  {
+    assert npdProperty1 != null : "npdProperty1 cannot be null";
+    assert npdProperty2 != null : "npdProperty2 cannot be null";
+
+    Class<?> ownerClass1 = npdProperty1.getOwnerClass();
+    Class<?> ownerClass2 = npdProperty2.getOwnerClass();
+
+    return npdProperty1.getName().equals(npdProperty2.getName()) &&
+           (ownerClass1.isAssignableFrom(ownerClass2) || ownerClass2.isAssignableFrom(ownerClass1));
+  }
+
+  /**
+   * Compile the specified clauses into a single predicate.
+   *
+   * @param clauses  Clauses to compile. Non-null.
+   * @return         The combined predicate. Null if clauses is empty.
+   */
+  private static <T> Predicate<T> compilePredicate(List<Clause<T>> clauses)
+  {
+    assert clauses != null : "clauses cannot be null";
+
+    if (clauses.isEmpty())
+      return null;
+
+    if (clauses.size() == 1)
+      return clauses.get(0).compile();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    final Predicate<T>[] predicates = new Predicate[clauses.size()];
+    for (int i = 0; i < predicates.length; i++)
+      predicates[i] = clauses.get(i).compile();
+
+    return object -> {
+      for (Predicate<T> predicate : predicates) {
+        if (!predicate.test(object))
+          return false;
+      }
+      return true;
+    };
+  }
+
+  /**
+   * Compile the specified orderings into a single comparator.
+   *
+   * @param orderings  Orderings to compile. Non-null.
+   * @return           The combined comparator. Null if orderings is empty.
+   */
+  private static <T> Comparator<T> compileComparator(List<Ordering<T>> orderings)
+  {
+    assert orderings != null : "orderings cannot be null";
+
+    Comparator<T> comparator = null;
+    for (Ordering<T> ordering : orderings)
+      comparator = comparator == null ? ordering.compile() : comparator.thenComparing(ordering.compile());
+
+    return comparator;
+  }
+
+  /**
+   * Check if this plan use an index.
+   *
+   * @return  True if one or more conditions are resolved through
+   *          an index, false if the plan is a pure scan.
+   */
+  public boolean isIndexUsed()
+  {
+    return !indexClauses_.isEmpty();
+  }
+
+  /**
+   * Return names of the properties resolved through the index.
+   *
+   * @return  Names of properties resolved through the index. Never null.
+   */
+  public List<String> getIndexedPropertyNames()
+  {
+    List<String> propertyNames = new ArrayList<>();
+    for (Clause<T> clause : indexClauses_)
+      propertyNames.add(clause.getProperty().getName());
+    return propertyNames;
+  }
+
+  /**
+   * Return names of the properties resolved by scanning.
+   *
+   * @return  Names of properties resolved by scanning. Never null.
+   */
+  public List<String> getScannedPropertyNames()
+  {
+    List<String> propertyNames = new ArrayList<>();
+    for (Clause<T> clause : scanClauses_)
+      propertyNames.add(clause.getProperty().getName());
+    return propertyNames;
+  }
+
+  /**
+   * Return a textual description of the steps of this plan
+   * in the order they are executed.
+   *
+   * @return  The steps of this plan. Never null.
+   */
+  public List<String> getSteps()
+  {
+    List<String> steps = new ArrayList<>();
+
+    for (Clause<T> clause : indexClauses_)
+      steps.add("INDEX " + clause);
+
+    if (scanClauses_.isEmpty() && indexClauses_.isEmpty())
+      steps.add("SCAN  *");
+
+    for (Clause<T> clause : scanClauses_)
+      steps.add("SCAN  " + clause);
+
+    for (Ordering<T> ordering : orderings_)
+      steps.add("SORT  " + ordering);
+
+    if (limit_ >= 0)
+      steps.add("LIMIT " + limit_);
+
+    return steps;
+  }
+
+  /**
+   * Return the candidate objects, being the objects selected
+   * by the index clauses.
+   *
+   * @return  The candidate objects. Never null.
+   */
+  private List<T> getCandidates()
+  {
+    if (indexClauses_.isEmpty())
+      return objects_;
+
+    Bitmap bitmap = index_.getAll();
+    for (Clause<T> clause : indexClauses_) {
+      bitmap = bitmap.and(clause.evaluate(index_));
+
+      // Nothing more to intersect with
+      if (bitmap.isEmpty())
+        break;
+    }
+
+    return index_.select(bitmap);
+  }
+
+  /**
+   * Execute this plan.
+   *
+   * @return  The selected objects. Never null.
+   */
+  public List<T> execute()
+  {
+    List<T> candidates = getCandidates();
+
+    // With no ordering we may stop as soon as the limit is reached
+    int maxSize = comparator_ == null && limit_ >= 0 ? limit_ : Integer.MAX_VALUE;
+
+    List<T> result = new ArrayList<>();
+    for (T object : candidates) {
+      if (result.size() >= maxSize)
+        break;
+
+      if (predicate_ == null || predicate_.test(object))
+        result.add(object);
+    }
+
+    if (comparator_ != null)
+      Collections.sort(result, comparator_);
+
+    if (limit_ >= 0 && result.size() > limit_)
+      return new ArrayList<>(result.subList(0, limit_));
+
+    return result;
+  }
+
+  /**
+   * Execute this plan and return the number of objects selected.
+   *
+   * @return  Number of objects selected. [0,&gt;.
+   */
+  public int count()
+  {
+    // Pure index queries can be counted without materializing the objects
+    if (predicate_ == null && !indexClauses_.isEmpty()) {
+      Bitmap bitmap = index_.getAll();
+      for (Clause<T> clause : indexClauses_)
+        bitmap = bitmap.and(clause.evaluate(index_));
+
+      int count = bitmap.getCardinality();
+      return limit_ >= 0 ? Math.min(count, limit_) : count;
+    }
+
+    return execute().size();
+  }
+
+  /**
+   * Execute this plan and group the result on the specified property.
+   *
+   * @param <K>       Group key type.
+   * @param property  Property to group by. Non-null.
+   * @return          The selected objects per group, in order of
+   *                  first appearance. Never null.
+   * @throws IllegalArgumentException  If property is null.
+   */
+  public <K> Map<K, List<T>> groupBy(Property<? super T, K> property)
+  {
+    if (property == null)
+      throw new IllegalArgumentException("property cannot be null");
+
+    Function<? super T, ? extends K> accessor = property.getAccessor();
+
+    Map<K, List<T>> groups = new LinkedHashMap<>();
+    for (T object : execute()) {
+      K key = accessor.apply(object);
+
+      List<T> group = groups.get(key);
+      if (group == null) {
+        group = new ArrayList<>();
+        groups.put(key, group);
+      }
+
+      group.add(object);
+    }
+
+    return groups;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    StringBuilder s = new StringBuilder();
+    for (String step : getSteps()) {
+      s.append(step);
+      s.append('\n');
+    }
+    return s.toString();
+  }
+
+  /**
+   * A property and a condition on its value.
+   *
+   * @param <T>  Type of objects being queried.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  static final class Clause<T>
+  {
+    /** Property to test. Non-null. */
+    private final Property<? super T, ?> property_;
+
+    /** Condition to apply. Non-null. */
+    private final Condition<?> condition_;
+
+    /**
+     * Create a clause.
+     *
+     * @param property   Property to test. Non-null.
+     * @param condition  Condition to apply. Non-null.
+     */
+    <V> Clause(Property<? super T, V> property, Condition<? super V> condition)
+    {
+      assert property != null : "property cannot be null";
+      assert condition != null : "condition cannot be null";
+
+      property_ = property;
+      condition_ = condition;
+    }
+
+    /**
+     * Return the property of this clause.
+     *
+     * @return  The property of this clause. Never null.
+     */
+    Property<? super T, ?> getProperty()
+    {
+      return property_;
+    }
+
+    /**
+     * Compile this clause into a predicate on the queried objects.
+     *
+     * @return  The predicate. Never null.
+     */
+    @SuppressWarnings("unchecked")
+    Predicate<T> compile()
+    {
+      final Function<? super T, ?> accessor = property_.getAccessor();
+      final Predicate<Object> test = (Predicate<Object>) condition_.getTest();
+
+      return object -> test.test(accessor.apply(object));
+    }
+
+    /**
+     * Evaluate this clause using the specified index.
+     *
+     * @param index  Index to use. Non-null.
+     * @return       Bitmap of objects satisfying this clause. Never null.
+     */
+    Bitmap evaluate(BitmapIndex<?> index)
+    {
+      return condition_.evaluate(index, property_.getName());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+      return property_.getName() + " " + condition_;
+    }
+  }
+
+  /**
+   * A property to order by and a direction.
+   *
+   * @param <T>  Type of objects being queried.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  static final class Ordering<T>
+  {
+    /** Property to order by. Non-null. */
+    private final Property<? super T, ? extends Comparable<?>> property_;
+
+    /** True if ascending, false if descending. */
+    private final boolean isAscending_;
+
+    /**
+     * Create an ordering.
+     *
+     * @param property     Property to order by. Non-null.
+     * @param isAscending  True if ascending, false if descending.
+     */
+    <V extends Comparable<? super V>> Ordering(Property<? super T, V> property, boolean isAscending)
+    {
+      assert property != null : "property cannot be null";
+
+      property_ = property;
+      isAscending_ = isAscending;
+    }
+
+    /**
+     * Compile this ordering into a comparator of the queried objects.
+     * Absent values are ordered last regardless of direction.
+     *
+     * @return  The comparator. Never null.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Comparator<T> compile()
+    {
+      final Function<? super T, ? extends Comparable> accessor = (Function<? super T, ? extends Comparable>) property_.getAccessor();
+      final int sign = isAscending_ ? 1 : -1;
+
+      return (object1, object2) -> {
+        Comparable value1 = accessor.apply(object1);
+        Comparable value2 = accessor.apply(object2);
+
+        if (value1 == null)
+          return value2 == null ? 0 : 1;
+
+        if (value2 == null)
+          return -1;
+
+        return sign * value1.compareTo(value2);
+      };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+      return property_.getName() + (isAscending_ ? " ASC" : " DESC");
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package no.petroware.npdio.snapshot;
+
+/**
+ * The change of one row of an NPD table between two loads, as part of
+ * a {@link NpdChangeEvent}. A row is added, removed or modified, and is
+ * identified across loads by its key, the NPDID for NPD objects.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of the rows of the table.
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdChange<T>
+{
+  /** Key of the changed row. Non-null. */
+  private final String key_;
+
+  /** The row before the change. Null if the row is added. */
+  private final T oldRow_;
+
+  /** The row after the change. Null if the row is removed. */
+  private final T newRow_;
+
+  /**
+   * Create a change.
+   *
+   * @param key     Key of the changed row. Non-null.
+   * @param oldRow  The row before the change. Null if added.
+   * @param newRow  The row after the change. Null if removed.
+   */
+  NpdChange(String key, T oldRow, T newRow)
+  {
+    assert key != null : "key cannot be null";
+    assert oldRow != null || newRow != null : "oldRow and newRow cannot both be null";
+
+    key_ = key;
+    oldRow_ = oldRow;
+    newRow_ = newRow;
+  }
+
+  /**
+   * Return key of the changed row.
+   *
+   * @return  Key of the changed row, the NPDID for NPD objects. Never null.
+   */
+  public String getKey()
+  {
+    return key_;
+  }
+
+  /**
+   * Return the row as it was before the change.
+   *
+   * @return  The row before the change, or null if the row is added.
+   */
+  public T getOldRow()
+  {
+    return oldRow_;
+  }
+
+  /**
+   * Return the row as it is after the change.
+   *
+   * @return  The row after the change, or null if the row is removed.
+   */
+  public T getNewRow()
+  {
+    return newRow_;
+  }
+
+  /**
+   * Check if this change is an added row.
+   *
+   * @return  True if the row is added, false otherwise.
+   */
+  public boolean isAdded()
+  {
+    return oldRow_ == null;
+  }
+
+  /**
+   * Check if this change is a removed row.
+   *
+   * @return  True if the row is removed, false otherwise.
+   */
+  public boolean isRemoved()
+  {
+    return newRow_ == null;
+  }
+
+  /**
+   * Check if this change is a modified row.
+   *
+   * @return  True if the row is modified, false otherwise.
+   */
+  public boolean isModified()
+  {
+    return oldRow_ != null && newRow_ != null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    String type = isAdded() ? "added" : isRemoved() ? "removed" : "modified";
+    return key_ + " " + type;
+  }
+}
@@ -0,0 +1,213 @@
+package no.petroware.npdio.snapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The changes of one NPD table by a refresh, as delivered to
+ * {@link NpdChangeListener}s. The rows added, removed and modified are
+ * given in one batch, each identified by its key, the NPDID for NPD
+ * objects.
+ * <p>
+ * The first load of a table is reported with all rows added. Rows
+ * without a key cannot be tracked and are not reported.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of the rows of the table.
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdChangeEvent<T>
+{
+  /** The table changed. Non-null. */
+  private final NpdTable<T> table_;
+
+  /** The snapshot before the refresh. Non-null. */
+  private final NpdSnapshot oldSnapshot_;
+
+  /** The snapshot published by the refresh. Non-null. */
+  private final NpdSnapshot newSnapshot_;
+
+  /** The added rows, in order of the new content. Non-null. */
+  private final List<NpdChange<T>> added_ = new ArrayList<>();
+
+  /** The removed rows, in order of the old content. Non-null. */
+  private final List<NpdChange<T>> removed_ = new ArrayList<>();
+
+  /** The modified rows, in order of the new content. Non-null. */
+  private final List<NpdChange<T>> modified_ = new ArrayList<>();
+
+  /** All changes by key. Non-null. */
+  private final Map<String, NpdChange<T>> changes_ = new HashMap<>();
+
+  /**
+   * Create the change event of the specified table between the two
+   * specified snapshots.
+   *
+   * @param table        Table changed. Non-null.
+   * @param oldSnapshot  Snapshot before the refresh. Non-null.
+   * @param newSnapshot  Snapshot published by the refresh. Must contain table. Non-null.
+   */
+  NpdChangeEvent(NpdTable<T> table, NpdSnapshot oldSnapshot, NpdSnapshot newSnapshot)
+  {
+    assert table != null : "table cannot be null";
+    assert oldSnapshot != null : "oldSnapshot cannot be null";
+    assert newSnapshot != null : "newSnapshot cannot be null";
+    assert newSnapshot.contains(table) : "newSnapshot must contain table";
+
+    table_ = table;
+    oldSnapshot_ = oldSnapshot;
+    newSnapshot_ = newSnapshot;
+
+    List<T> oldRows = oldSnapshot.get(table);
+    List<T> newRows = newSnapshot.get(table);
+
+    // Same content, like a load that was discarded
+    if (oldRows == newRows)
+      return;
+
+    RowIndex oldIndex = oldRows != null ? oldSnapshot.getIndex(table) : null;
+    RowIndex newIndex = newSnapshot.getIndex(table);
+
+    for (int newPosition = 0; newPosition < newIndex.size(); newPosition++) {
+      String key = newIndex.getKey(newPosition);
+      if (key == null)
+        continue;
+
+      T newRow = newRows.get(newPosition);
+      int oldPosition = oldIndex != null ? oldIndex.getPosition(key) : -1;
+      if (oldPosition == -1)
+        add(added_, new NpdChange<>(key, null, newRow));
+      else {
+        T oldRow = oldRows.get(oldPosition);
+        if (!RowIndex.isSame(oldIndex, oldRow, oldPosition, newIndex, newRow, newPosition))
+          add(modified_, new NpdChange<>(key, oldRow, newRow));
+      }
+    }
+
+    for (int oldPosition = 0; oldIndex != null && oldPosition < oldIndex.size(); oldPosition++) {
+      String key = oldIndex.getKey(oldPosition);
+      if (key != null && newIndex.getPosition(key) == -1)
+        add(removed_, new NpdChange<>(key, oldRows.get(oldPosition), null));
+    }
+  }
+
+  /**
+   * Add the specified change to the specified list and to the
+   * changes by key.
+   *
+   * @param changes  List to add to. Non-null.
+   * @param change   Change to add. Non-null.
+   */
+  private void add(List<NpdChange<T>> changes, NpdChange<T> change)
+  {
+    changes.add(change);
+    changes_.put(change.getKey(), change);
+  }
+
+  /**
+   * Return the table changed.
+   *
+   * @return  The table changed. Never null.
+   */
+  public NpdTable<T> getTable()
+  {
+    return table_;
+  }
+
+  /**
+   * Return the snapshot before the refresh.
+   *
+   * @return  The snapshot before the refresh. Never null.
+   */
+  public NpdSnapshot getOldSnapshot()
+  {
+    return oldSnapshot_;
+  }
+
+  /**
+   * Return the snapshot published by the refresh. This is not
+   * necessarily the current snapshot of the holder.
+   *
+   * @return  The snapshot published by the refresh. Never null.
+   */
+  public NpdSnapshot getNewSnapshot()
+  {
+    return newSnapshot_;
+  }
+
+  /**
+   * Return the rows added by the refresh.
+   *
+   * @return  The added rows. Never null.
+   */
+  public List<NpdChange<T>> getAdded()
+  {
+    return Collections.unmodifiableList(added_);
+  }
+
+  /**
+   * Return the rows removed by the refresh.
+   *
+   * @return  The removed rows. Never null.
+   */
+  public List<NpdChange<T>> getRemoved()
+  {
+    return Collections.unmodifiableList(removed_);
+  }
+
+  /**
+   * Return the rows modified by the refresh.
+   *
+   * @return  The modified rows. Never null.
+   */
+  public List<NpdChange<T>> getModified()
+  {
+    return Collections.unmodifiableList(modified_);
+  }
+
+  /**
+   * Return the change of the row of the specified key.
+   *
+   * @param key  Key of row, the NPDID for NPD objects. Non-null.
+   * @return     The change of the row, or null if it is not changed.
+   * @throws IllegalArgumentException  If key is null.
+   */
+  public NpdChange<T> getChange(String key)
+  {
+    if (key == null)
+      throw new IllegalArgumentException("key cannot be null");
+
+    return changes_.get(key);
+  }
+
+  /**
+   * Return the number of changes of this event.
+   *
+   * @return  Number of added, removed and modified rows. [0,&gt;.
+   */
+  public int getNChanges()
+  {
+    return changes_.size();
+  }
+
+  /**
+   * Check if this event holds no changes.
+   *
+   * @return  True if there are no changes, false otherwise.
+   */
+  public boolean isEmpty()
+  {
+    return changes_.isEmpty();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return table_ + ": " + added_.size() + " added, " + removed_.size() + " removed, " + modified_.size() + " modified";
+  }
+}
@@ -0,0 +1,19 @@
+package no.petroware.npdio.snapshot;
+
+/**
+ * Listener for changes of an NPD table held by a {@link NpdSnapshotHolder}.
+ *
+ * @param <T>  Type of the rows of the table.
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public interface NpdChangeListener<T>
+{
+  /**
+   * Notify that the table has been refreshed with changed content.
+   * Called from the event thread of the holder, one event at the time
+   * and in the order the refreshes were published.
+   *
+   * @param event  The changes of the refresh. Never empty. Non-null.
+   */
+  void tableChanged(NpdChangeEvent<T> event);
+}
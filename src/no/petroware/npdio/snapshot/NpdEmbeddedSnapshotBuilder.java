@@ -0,0 +1,187 @@
+package no.petroware.npdio.snapshot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
+import no.petroware.npdio.company.NpdCompanyReader;
+import no.petroware.npdio.discovery.NpdDiscoveryReader;
+import no.petroware.npdio.facility.NpdFixedFacilityReader;
+import no.petroware.npdio.facility.NpdMoveableFacilityReader;
+import no.petroware.npdio.field.NpdFieldReader;
+import no.petroware.npdio.field.ProductionReader;
+import no.petroware.npdio.license.NpdLicenseReader;
+import no.petroware.npdio.pipeline.NpdPipelineReader;
+import no.petroware.npdio.survey.NpdSurveyReader;
+import no.petroware.npdio.well.NpdDevelopmentWellboreReader;
+import no.petroware.npdio.well.NpdExplorationWellboreReader;
+import no.petroware.npdio.well.NpdOtherWellboreReader;
+
+/**
+ * Builds the embedded snapshot of all NPD tables, being a GZIP
+ * compressed copy of each NPD file as a class path resource. The
+ * <em>readAll</em> methods of the readers fall back to the embedded
+ * snapshot when the NPD fact pages cannot be read, so that
+ * installations without network access start with the data as of
+ * the build.
+ * <p>
+ * The snapshot is downloaded into a directory and added to the jar:
+ *
+ * <pre>
+ *   java -cp NpdIo.jar no.petroware.npdio.snapshot.NpdEmbeddedSnapshotBuilder embedded
+ *   jar uf NpdIo.jar -C embedded .
+ * </pre>
+ *
+ * The files are stored as downloaded and parsed by the regular readers
+ * when used, so the instances read from the snapshot are identical to
+ * those read from the fact pages at build time, sync dates included.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdEmbeddedSnapshotBuilder
+{
+  /** The logger instance */
+  private static final Logger logger_ = Logger.getLogger(NpdEmbeddedSnapshotBuilder.class.getName());
+
+  /** Size of copy buffer. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Private constructor to prevent client instantiation.
+   */
+  private NpdEmbeddedSnapshotBuilder()
+  {
+    assert false : "This constructor should never be called";
+  }
+
+  /**
+   * Return the readers of all the NPD tables.
+   *
+   * @return  Readers of all NPD tables. Never null.
+   */
+  private static NpdReader<?>[] getReaders()
+  {
+    return new NpdReader<?>[] {
+      NpdCompanyReader.newDefaultReader(),
+      NpdDiscoveryReader.newDefaultReader(),
+      NpdFixedFacilityReader.newDefaultReader(),
+      NpdMoveableFacilityReader.newDefaultReader(),
+      NpdFieldReader.newDefaultReader(),
+      ProductionReader.newDefaultReader(),
+      NpdLicenseReader.newDefaultReader(),
+      NpdPipelineReader.newDefaultReader(),
+      NpdSurveyReader.newDefaultReader(),
+      NpdDevelopmentWellboreReader.newDefaultReader(),
+      NpdExplorationWellboreReader.newDefaultReader(),
+      NpdOtherWellboreReader.newDefaultReader()
+    };
+  }
+
+  /**
+   * Download all NPD tables into the embedded snapshot resources below
+   * the specified directory. Each table is checked to parse into at
+   * least one instance before it replaces an earlier file.
+   *
+   * @param directory  Root directory of class path resources. Non-null.
+   * @throws IllegalArgumentException  If directory is null.
+   * @throws IOException  If a table cannot be downloaded or written.
+   */
+  public static void build(File directory)
+    throws IOException
+  {
+    if (directory == null)
+      throw new IllegalArgumentException("directory cannot be null");
+
+    for (NpdReader<?> reader : getReaders()) {
+      String resourceName = NpdSource.getEmbeddedResourceName(reader.getClass());
+      File file = new File(directory, resourceName.substring(1));
+      File tmpFile = new File(file.getPath() + ".tmp");
+
+      File parent = file.getParentFile();
+      if (!parent.isDirectory() && !parent.mkdirs())
+        throw new IOException("Unable to create " + parent);
+
+      int nInstances;
+      try {
+        // Download the live file as is
+        try (InputStream inputStream = reader.getSource().open();
+             OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE)) {
+          byte[] buffer = new byte[BUFFER_SIZE];
+          int nBytes;
+          while ((nBytes = inputStream.read(buffer)) != -1)
+            outputStream.write(buffer, 0, nBytes);
+        }
+
+        // Check that it parses by the regular reader
+        NpdSource source = NpdSource.newGzipSource(NpdSource.newFileSource(tmpFile));
+        List<?> instances = newReader(reader.getClass(), source).read();
+        if (instances.isEmpty())
+          throw new IOException("No instances read from " + reader.getSource());
+
+        nInstances = instances.size();
+
+        if (file.exists() && !file.delete())
+          throw new IOException("Unable to replace " + file);
+
+        if (!tmpFile.renameTo(file))
+          throw new IOException("Unable to create " + file);
+      }
+      finally {
+        // Left behind only if the table failed
+        if (tmpFile.exists() && !tmpFile.delete())
+          logger_.log(Level.WARNING, "Unable to delete " + tmpFile);
+      }
+
+      logger_.log(Level.INFO, file + ": " + nInstances + " instances, " + file.length() + " bytes");
+    }
+  }
+
+  /**
+   * Create a reader of the specified class for the specified source.
+   *
+   * @param readerClass  Class of reader to create. Non-null.
+   * @param source       Source to read. Non-null.
+   * @return             The reader. Never null.
+   * @throws IOException  If the reader cannot be created.
+   */
+  private static NpdReader<?> newReader(Class<?> readerClass, NpdSource source)
+    throws IOException
+  {
+    assert readerClass != null : "readerClass cannot be null";
+    assert source != null : "source cannot be null";
+
+    try {
+      return (NpdReader<?>) readerClass.getConstructor(NpdSource.class).newInstance(source);
+    }
+    catch (ReflectiveOperationException exception) {
+      throw new IOException("Unable to create " + readerClass.getName(), exception);
+    }
+  }
+
+  /**
+   * Build the embedded snapshot.
+   *
+   * @param arguments  Root directory of class path resources to write
+   *                   to. Default is the current directory.
+   */
+  public static void main(String[] arguments)
+  {
+    File directory = new File(arguments.length > 0 ? arguments[0] : ".");
+
+    try {
+      build(directory);
+    }
+    catch (IOException exception) {
+      exception.printStackTrace();
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package no.petroware.npdio.snapshot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable set of NPD tables as loaded at some point in time.
+ * Snapshots are published by {@link NpdSnapshotHolder}, which replaces
+ * the snapshot as a whole whenever a table is refreshed. A client holding
+ * on to a snapshot therefore sees a consistent view of all its tables
+ * regardless of refreshes taking place meanwhile.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdSnapshot
+{
+  /** The snapshot with no tables. */
+  static final NpdSnapshot EMPTY = new NpdSnapshot(new HashMap<>());
+
+  /** Content of each table. Never modified after construction. Non-null. */
+  private final Map<NpdTable<?>, Content> contents_;
+
+  /**
+   * Create a snapshot of the specified contents.
+   *
+   * @param contents  Content of each table. Owned by the snapshot. Non-null.
+   */
+  private NpdSnapshot(Map<NpdTable<?>, Content> contents)
+  {
+    assert contents != null : "contents cannot be null";
+    contents_ = contents;
+  }
+
+  /**
+   * Return a new snapshot equal to this, but with the specified
+   * content of the specified table.
+   *
+   * @param table     Table to set content of. Non-null.
+   * @param rows      Rows of the table. Unmodifiable. Non-null.
+   * @param loadTime  Time the rows were loaded. Milliseconds since the epoch.
+   * @return          The new snapshot. Never null.
+   */
+  <T> NpdSnapshot with(NpdTable<T> table, List<T> rows, long loadTime)
+  {
+    assert table != null : "table cannot be null";
+    assert rows != null : "rows cannot be null";
+
+    Map<NpdTable<?>, Content> contents = new HashMap<>(contents_);
+    contents.put(table, new Content(rows, loadTime));
+    return new NpdSnapshot(contents);
+  }
+
+  /**
+   * Return the tables of this snapshot.
+   *
+   * @return  The tables of this snapshot. Never null.
+   */
+  public Set<NpdTable<?>> getTables()
+  {
+    return Collections.unmodifiableSet(contents_.keySet());
+  }
+
+  /**
+   * Check if this snapshot contains the specified table.
+   *
+   * @param table  Table to check. Non-null.
+   * @return       True if the table is loaded in this snapshot, false otherwise.
+   * @throws IllegalArgumentException  If table is null.
+   */
+  public boolean contains(NpdTable<?> table)
+  {
+    if (table == null)
+      throw new IllegalArgumentException("table cannot be null");
+
+    return contents_.containsKey(table);
+  }
+
+  /**
+   * Return the rows of the specified table.
+   *
+   * @param <T>    Type of the rows of the table.
+   * @param table  Table to get rows of. Non-null.
+   * @return       The rows of the table, or null if the table is not
+   *               loaded in this snapshot. Unmodifiable.
+   * @throws IllegalArgumentException  If table is null.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> List<T> get(NpdTable<T> table)
+  {
+    if (table == null)
+      throw new IllegalArgumentException("table cannot be null");
+
+    Content content = contents_.get(table);
+
+    // Safe, as rows are only put through with(NpdTable<T>, List<T>, ...)
+    return content != null ? (List<T>) content.rows_ : null;
+  }
+
+  /**
+   * Return the time the specified table was loaded.
+   *
+   * @param table  Table to get load time of. Non-null.
+   * @return       Load time in milliseconds since the epoch, or -1 if
+   *               the table is not loaded in this snapshot.
+   * @throws IllegalArgumentException  If table is null.
+   */
+  public long getLoadTime(NpdTable<?> table)
+  {
+    if (table == null)
+      throw new IllegalArgumentException("table cannot be null");
+
+    Content content = contents_.get(table);
+    return content != null ? content.loadTime_ : -1L;
+  }
+
+  /**
+   * Return the age of the data of the specified table, i.e. the time
+   * since it was loaded.
+   *
+   * @param table  Table to get age of. Non-null.
+   * @return       Age in milliseconds, or -1 if the table is not loaded
+   *               in this snapshot.
+   * @throws IllegalArgumentException  If table is null.
+   */
+  public long getAge(NpdTable<?> table)
+  {
+    long loadTime = getLoadTime(table);
+    return loadTime != -1L ? Math.max(0L, System.currentTimeMillis() - loadTime) : -1L;
+  }
+
+  /**
+   * Return the index of the rows of the specified table. The index is
+   * built on first request and kept with the content of the table,
+   * also in later snapshots holding the same content.
+   *
+   * @param table  Table to get index of. Non-null.
+   * @return       Index of the rows of the table, or null if the table
+   *               is not loaded in this snapshot.
+   */
+  @SuppressWarnings("unchecked")
+  <T> RowIndex getIndex(NpdTable<T> table)
+  {
+    assert table != null : "table cannot be null";
+
+    Content content = contents_.get(table);
+    if (content == null)
+      return null;
+
+    // Racing threads may build the index twice, which is harmless
+    RowIndex index = content.index_;
+    if (index == null) {
+      index = new RowIndex(table, (List<T>) content.rows_);
+      content.index_ = index;
+    }
+
+    return index;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    StringBuilder s = new StringBuilder();
+    for (Map.Entry<NpdTable<?>, Content> entry : contents_.entrySet()) {
+      if (s.length() > 0)
+        s.append(", ");
+      s.append(entry.getKey() + "=" + entry.getValue().rows_.size());
+    }
+    return "[" + s + "]";
+  }
+
+  /**
+   * The content of one table.
+   *
+   * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+   */
+  private static final class Content
+  {
+    /** The rows of the table. Unmodifiable. Non-null. */
+    private final List<?> rows_;
+
+    /** Time the rows were loaded. Milliseconds since the epoch. */
+    private final long loadTime_;
+
+    /** Index of the rows. Null until requested. */
+    private volatile RowIndex index_;
+
+    /**
+     * Create table content.
+     *
+     * @param rows      The rows of the table. Unmodifiable. Non-null.
+     * @param loadTime  Time the rows were loaded.
+     */
+    Content(List<?> rows, long loadTime)
+    {
+      assert rows != null : "rows cannot be null";
+      rows_ = rows;
+      loadTime_ = loadTime;
+    }
+  }
+}
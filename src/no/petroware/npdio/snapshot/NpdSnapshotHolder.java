@@ -0,0 +1,379 @@
+package no.petroware.npdio.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds NPD tables in memory and refreshes them in the background,
+ * each table on a schedule of its own:
+ *
+ * <pre>
+ *   NpdSnapshotHolder holder = new NpdSnapshotHolder();
+ *   holder.schedule(NpdTable.DEVELOPMENT_WELLBORES, 1, TimeUnit.HOURS);
+ *   holder.schedule(NpdTable.PRODUCTION, 1, TimeUnit.DAYS);
+ *   :
+ *   NpdSnapshot snapshot = holder.getSnapshot();
+ *   List&lt;NpdDevelopmentWellbore&gt; wellbores = snapshot.get(NpdTable.DEVELOPMENT_WELLBORES);
+ * </pre>
+ *
+ * A refresh loads the table off to the side and then publishes a new
+ * {@link NpdSnapshot} by a single atomic reference swap. Clients never
+ * see a partly updated table and never block or lock when reading.
+ * If a refresh fails, the failure is logged and the previous content is
+ * kept. The age of each table tells how stale it is.
+ * <p>
+ * Content is stamped with the time its load started. A load finishing
+ * after a load that started later is discarded, so content never goes
+ * back in time.
+ * <p>
+ * Clients may listen for the changes of a table:
+ *
+ * <pre>
+ *   holder.addChangeListener(NpdTable.FIELDS, event -&gt; {
+ *     for (NpdChange&lt;NpdField&gt; change : event.getModified())
+ *       :
+ *   });
+ * </pre>
+ *
+ * The rows added, removed and modified by a refresh are found by key
+ * (the NPDID for NPD objects) and a fingerprint of each row that is
+ * computed once and kept with the content, and are delivered as one
+ * {@link NpdChangeEvent} per refreshed table. Events are computed and
+ * delivered on an event thread of the holder, in the order the
+ * refreshes were published, so a slow listener never delays refreshes
+ * or readers. It does delay later events though.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdSnapshotHolder implements Closeable
+{
+  /** The logger instance */
+  private static final Logger logger_ = Logger.getLogger(NpdSnapshotHolder.class.getName());
+
+  /** Number of threads of the scheduler created by the holder itself. */
+  private static final int N_SCHEDULER_THREADS = 2;
+
+  /** The current snapshot. Non-null. */
+  private final AtomicReference<NpdSnapshot> snapshot_ = new AtomicReference<>(NpdSnapshot.EMPTY);
+
+  /** Scheduled refreshes by table. Non-null. */
+  private final Map<NpdTable<?>, ScheduledFuture<?>> schedules_ = new ConcurrentHashMap<>();
+
+  /** Scheduler running the refreshes. Non-null. */
+  private final ScheduledExecutorService scheduler_;
+
+  /** Indicates if the scheduler is created by, and shut down with, this holder. */
+  private final boolean isOwnScheduler_;
+
+  /** Change listeners by table. Non-null. */
+  private final Map<NpdTable<?>, List<NpdChangeListener<?>>> listeners_ = new ConcurrentHashMap<>();
+
+  /** Thread delivering change events. Null until the first listener is added. */
+  private ExecutorService eventExecutor_;
+
+  /**
+   * Create a snapshot holder refreshing tables on the specified scheduler.
+   * The scheduler is not shut down when the holder is closed.
+   *
+   * @param scheduler  Scheduler running the refreshes. Non-null.
+   * @throws IllegalArgumentException  If scheduler is null.
+   */
+  public NpdSnapshotHolder(ScheduledExecutorService scheduler)
+  {
+    if (scheduler == null)
+      throw new IllegalArgumentException("scheduler cannot be null");
+
+    scheduler_ = scheduler;
+    isOwnScheduler_ = false;
+  }
+
+  /**
+   * Create a snapshot holder refreshing tables on daemon threads of
+   * its own.
+   */
+  public NpdSnapshotHolder()
+  {
+    AtomicInteger threadNo = new AtomicInteger();
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(N_SCHEDULER_THREADS, runnable -> {
+      Thread thread = new Thread(runnable, "NpdSnapshotHolder-" + threadNo.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.setRemoveOnCancelPolicy(true);
+
+    scheduler_ = scheduler;
+    isOwnScheduler_ = true;
+  }
+
+  /**
+   * Refresh the specified table periodically, starting now. Replaces
+   * any earlier schedule of the table.
+   *
+   * @param table   Table to refresh. Non-null.
+   * @param period  Time between refreshes. [1,&gt;.
+   * @param unit    Unit of period. Non-null.
+   * @throws IllegalArgumentException  If table or unit is null, or period is not positive.
+   */
+  public void schedule(NpdTable<?> table, long period, TimeUnit unit)
+  {
+    if (table == null)
+      throw new IllegalArgumentException("table cannot be null");
+
+    if (period <= 0)
+      throw new IllegalArgumentException("Invalid period: " + period);
+
+    if (unit == null)
+      throw new IllegalArgumentException("unit cannot be null");
+
+    Runnable task = () -> {
+      try {
+        refresh(table);
+      }
+      catch (IOException | RuntimeException exception) {
+        // Keep the old content. Throwing would stop the schedule.
+        logger_.log(Level.WARNING, "Unable to refresh " + table, exception);
+      }
+    };
+
+    ScheduledFuture<?> schedule = scheduler_.scheduleAtFixedRate(task, 0L, period, unit);
+    ScheduledFuture<?> oldSchedule = schedules_.put(table, schedule);
+    if (oldSchedule != null)
+      oldSchedule.cancel(false);
+  }
+
+  /**
+   * Stop refreshing the specified table. Its current content is kept.
+   *
+   * @param table  Table to stop refreshing. Non-null.
+   * @throws IllegalArgumentException  If table is null.
+   */
+  public void unschedule(NpdTable<?> table)
+  {
+    if (table == null)
+      throw new IllegalArgumentException("table cannot be null");
+
+    ScheduledFuture<?> schedule = schedules_.remove(table);
+    if (schedule != null)
+      schedule.cancel(false);
+  }
+
+  /**
+   * Refresh the specified table now, in the calling thread.
+   *
+   * @param table  Table to refresh. Non-null.
+   * @throws IllegalArgumentException  If table is null.
+   * @throws IOException  If the table cannot be loaded. The previous content is kept.
+   */
+  public void refresh(NpdTable<?> table)
+    throws IOException
+  {
+    if (table == null)
+      throw new IllegalArgumentException("table cannot be null");
+
+    refreshTable(table);
+  }
+
+  /**
+   * Load the specified table and publish it in a new snapshot.
+   *
+   * @param <T>    Type of the rows of the table.
+   * @param table  Table to refresh. Non-null.
+   * @throws IOException  If the table cannot be loaded.
+   */
+  private <T> void refreshTable(NpdTable<T> table)
+    throws IOException
+  {
+    assert table != null : "table cannot be null";
+
+    long loadTime = System.currentTimeMillis();
+    List<T> rows = Collections.unmodifiableList(new ArrayList<>(table.load()));
+
+    // Publishing and queueing the event together keeps events in publish order.
+    // Readers go by the atomic reference and never take this lock.
+    synchronized (snapshot_) {
+      NpdSnapshot oldSnapshot = snapshot_.get();
+
+      // Discard if a later load has already been published
+      if (oldSnapshot.getLoadTime(table) > loadTime)
+        return;
+
+      NpdSnapshot newSnapshot = oldSnapshot.with(table, rows, loadTime);
+      snapshot_.set(newSnapshot);
+
+      if (listeners_.containsKey(table))
+        fireTableChanged(table, oldSnapshot, newSnapshot);
+    }
+  }
+
+  /**
+   * Add a listener for the changes of the specified table. The listener
+   * gets events of refreshes published from now on.
+   *
+   * @param <T>       Type of the rows of the table.
+   * @param table     Table to listen to. Non-null.
+   * @param listener  Listener to add. Non-null.
+   * @throws IllegalArgumentException  If table or listener is null.
+   */
+  public <T> void addChangeListener(NpdTable<T> table, NpdChangeListener<T> listener)
+  {
+    if (table == null)
+      throw new IllegalArgumentException("table cannot be null");
+
+    if (listener == null)
+      throw new IllegalArgumentException("listener cannot be null");
+
+    synchronized (snapshot_) {
+      if (eventExecutor_ == null) {
+        eventExecutor_ = Executors.newSingleThreadExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "NpdSnapshotHolder-events");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
+
+    listeners_.computeIfAbsent(table, t -> new CopyOnWriteArrayList<>()).add(listener);
+  }
+
+  /**
+   * Remove a listener for the changes of the specified table. Events
+   * already queued may still be delivered to it.
+   *
+   * @param <T>       Type of the rows of the table.
+   * @param table     Table listened to. Non-null.
+   * @param listener  Listener to remove. Non-null.
+   * @throws IllegalArgumentException  If table or listener is null.
+   */
+  public <T> void removeChangeListener(NpdTable<T> table, NpdChangeListener<T> listener)
+  {
+    if (table == null)
+      throw new IllegalArgumentException("table cannot be null");
+
+    if (listener == null)
+      throw new IllegalArgumentException("listener cannot be null");
+
+    listeners_.computeIfPresent(table, (t, listeners) -> {
+      listeners.remove(listener);
+      return listeners.isEmpty() ? null : listeners;
+    });
+  }
+
+  /**
+   * Queue computation and delivery of the change event of the
+   * specified table to its listeners.
+   *
+   * @param <T>          Type of the rows of the table.
+   * @param table        Table changed. Non-null.
+   * @param oldSnapshot  Snapshot before the refresh. Non-null.
+   * @param newSnapshot  Snapshot published by the refresh. Non-null.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> void fireTableChanged(NpdTable<T> table, NpdSnapshot oldSnapshot, NpdSnapshot newSnapshot)
+  {
+    assert Thread.holdsLock(snapshot_) : "Must hold the publish lock";
+
+    Runnable task = () -> {
+      List<NpdChangeListener<?>> listeners = listeners_.get(table);
+      if (listeners == null)
+        return;
+
+      NpdChangeEvent<T> event = new NpdChangeEvent<>(table, oldSnapshot, newSnapshot);
+      if (event.isEmpty())
+        return;
+
+      for (NpdChangeListener<?> listener : listeners) {
+        try {
+          // Safe, as listeners are only added through addChangeListener(NpdTable<T>, NpdChangeListener<T>)
+          ((NpdChangeListener<T>) listener).tableChanged(event);
+        }
+        catch (RuntimeException exception) {
+          logger_.log(Level.WARNING, "Change listener of " + table + " failed", exception);
+        }
+      }
+    };
+
+    try {
+      eventExecutor_.execute(task);
+    }
+    catch (RejectedExecutionException exception) {
+      // The holder is closed
+    }
+  }
+
+  /**
+   * Return the current snapshot. The snapshot is not affected by later
+   * refreshes, so a client wanting a consistent view across several
+   * tables should get the snapshot once and read the tables from it.
+   *
+   * @return  The current snapshot. Never null.
+   */
+  public NpdSnapshot getSnapshot()
+  {
+    return snapshot_.get();
+  }
+
+  /**
+   * Return the current rows of the specified table.
+   *
+   * @param <T>    Type of the rows of the table.
+   * @param table  Table to get rows of. Non-null.
+   * @return       The rows of the table, or null if not yet loaded. Unmodifiable.
+   * @throws IllegalArgumentException  If table is null.
+   */
+  public <T> List<T> get(NpdTable<T> table)
+  {
+    return snapshot_.get().get(table);
+  }
+
+  /**
+   * Return the age of the current content of the specified table.
+   *
+   * @param table  Table to get age of. Non-null.
+   * @return       Age in milliseconds, or -1 if the table is not yet loaded.
+   * @throws IllegalArgumentException  If table is null.
+   */
+  public long getAge(NpdTable<?> table)
+  {
+    return snapshot_.get().getAge(table);
+  }
+
+  /**
+   * Stop all refreshes. If the holder created its own scheduler, it
+   * is shut down. Change events already queued are delivered. The
+   * current snapshot remains available.
+   */
+  @Override
+  public void close()
+  {
+    for (ScheduledFuture<?> schedule : schedules_.values())
+      schedule.cancel(false);
+    schedules_.clear();
+
+    if (isOwnScheduler_)
+      scheduler_.shutdownNow();
+
+    synchronized (snapshot_) {
+      if (eventExecutor_ != null)
+        eventExecutor_.shutdown();
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package no.petroware.npdio.snapshot;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdReader;
+
+import no.petroware.npdio.company.NpdCompany;
+import no.petroware.npdio.company.NpdCompanyReader;
+import no.petroware.npdio.discovery.NpdDiscovery;
+import no.petroware.npdio.discovery.NpdDiscoveryReader;
+import no.petroware.npdio.facility.NpdFixedFacility;
+import no.petroware.npdio.facility.NpdFixedFacilityReader;
+import no.petroware.npdio.facility.NpdMoveableFacility;
+import no.petroware.npdio.facility.NpdMoveableFacilityReader;
+import no.petroware.npdio.field.NpdField;
+import no.petroware.npdio.field.NpdFieldReader;
+import no.petroware.npdio.field.Production;
+import no.petroware.npdio.field.ProductionReader;
+import no.petroware.npdio.license.NpdLicense;
+import no.petroware.npdio.license.NpdLicenseReader;
+import no.petroware.npdio.pipeline.NpdPipeline;
+import no.petroware.npdio.pipeline.NpdPipelineReader;
+import no.petroware.npdio.survey.NpdSurvey;
+import no.petroware.npdio.survey.NpdSurveyReader;
+import no.petroware.npdio.well.NpdDevelopmentWellbore;
+import no.petroware.npdio.well.NpdDevelopmentWellboreReader;
+import no.petroware.npdio.well.NpdExplorationWellbore;
+import no.petroware.npdio.well.NpdExplorationWellboreReader;
+import no.petroware.npdio.well.NpdOtherWellbore;
+import no.petroware.npdio.well.NpdOtherWellboreReader;
+
+/**
+ * A table of NPD data that can be held in a {@link NpdSnapshot}, being
+ * a name and the means to load its content. Tables for the standard NPD
+ * files are predefined. Clients may define others, like a table read
+ * from a local copy of a file:
+ *
+ * <pre>
+ *   NpdTable&lt;NpdField&gt; fields = new NpdTable&lt;&gt;("field", () -&gt; new NpdFieldReader(url).read());
+ * </pre>
+ *
+ * The predefined tables always read the NPD files, bypassing
+ * {@link no.petroware.npdio.NpdReaderCache} and the embedded snapshot, so
+ * that the load time of the content tells its age. Loaders of other tables should do the same,
+ * see {@link NpdReader#setCached}.
+ * <p>
+ * Tables are identified by instance.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of the rows of the table.
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class NpdTable<T>
+{
+  /** All NPD companies. */
+  public static final NpdTable<NpdCompany> COMPANIES = new NpdTable<>("company", () -> read(NpdCompanyReader.newDefaultReader()));
+
+  /** All NPD discoveries. */
+  public static final NpdTable<NpdDiscovery> DISCOVERIES = new NpdTable<>("discovery", () -> read(NpdDiscoveryReader.newDefaultReader()));
+
+  /** All NPD fixed facilities. */
+  public static final NpdTable<NpdFixedFacility> FIXED_FACILITIES = new NpdTable<>("fixedFacility", () -> read(NpdFixedFacilityReader.newDefaultReader()));
+
+  /** All NPD moveable facilities. */
+  public static final NpdTable<NpdMoveableFacility> MOVEABLE_FACILITIES = new NpdTable<>("moveableFacility", () -> read(NpdMoveableFacilityReader.newDefaultReader()));
+
+  /** All NPD fields. */
+  public static final NpdTable<NpdField> FIELDS = new NpdTable<>("field", () -> read(NpdFieldReader.newDefaultReader()));
+
+  /** Monthly production entries of all NPD fields. */
+  public static final NpdTable<Production.Entry> PRODUCTION = new NpdTable<>("production", () -> read(ProductionReader.newDefaultReader()),
+                                                                             entry -> entry.getNpdidField() + " " + entry.getYear() + "." + entry.getMonth());
+
+  /** All NPD licenses. */
+  public static final NpdTable<NpdLicense> LICENSES = new NpdTable<>("license", () -> read(NpdLicenseReader.newDefaultReader()));
+
+  /** All NPD pipelines. */
+  public static final NpdTable<NpdPipeline> PIPELINES = new NpdTable<>("pipeline", () -> read(NpdPipelineReader.newDefaultReader()));
+
+  /** All NPD surveys. */
+  public static final NpdTable<NpdSurvey> SURVEYS = new NpdTable<>("survey", () -> read(NpdSurveyReader.newDefaultReader()));
+
+  /** All NPD development wellbores. */
+  public static final NpdTable<NpdDevelopmentWellbore> DEVELOPMENT_WELLBORES = new NpdTable<>("developmentWellbore", () -> read(NpdDevelopmentWellboreReader.newDefaultReader()));
+
+  /** All NPD exploration wellbores. */
+  public static final NpdTable<NpdExplorationWellbore> EXPLORATION_WELLBORES = new NpdTable<>("explorationWellbore", () -> read(NpdExplorationWellboreReader.newDefaultReader()));
+
+  /** All NPD other wellbores. */
+  public static final NpdTable<NpdOtherWellbore> OTHER_WELLBORES = new NpdTable<>("otherWellbore", () -> read(NpdOtherWellboreReader.newDefaultReader()));
+
+  /** Name of this table. Non-null. */
+  private final String name_;
+
+  /** Loader of the content of this table. Non-null. */
+  private final Callable<? extends List<T>> loader_;
+
+  /** Key of the rows of this table. Null to use the NPDID of NPD objects. */
+  private final Function<? super T, String> key_;
+
+  /**
+   * Create a table.
+   *
+   * @param name    Name of table. Non-null.
+   * @param loader  Loader of the content of the table, typically the read
+   *                method of an NPD reader. Non-null.
+   * @param key     Function returning the key identifying a row across
+   *                refreshes, used for change events. Null to use the
+   *                NPDID of rows that are NPD objects.
+   * @throws IllegalArgumentException  If name or loader is null.
+   */
+  public NpdTable(String name, Callable<? extends List<T>> loader, Function<? super T, String> key)
+  {
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+
+    if (loader == null)
+      throw new IllegalArgumentException("loader cannot be null");
+
+    name_ = name;
+    loader_ = loader;
+    key_ = key;
+  }
+
+  /**
+   * Create a table of NPD objects, or of rows without a key.
+   *
+   * @param name    Name of table. Non-null.
+   * @param loader  Loader of the content of the table, typically the read
+   *                method of an NPD reader. Non-null.
+   * @throws IllegalArgumentException  If name or loader is null.
+   */
+  public NpdTable(String name, Callable<? extends List<T>> loader)
+  {
+    this(name, loader, null);
+  }
+
+  /**
+   * Read the file of the specified reader for a refresh. The reader
+   * cache and the fallback source are bypassed, as a cached result or
+   * the embedded snapshot would be published as just loaded regardless
+   * of its age. A failing refresh keeps the previous content instead.
+   *
+   * @param reader  Reader to read. Non-null.
+   * @return        The read instances. Never null.
+   * @throws IOException  If the read operation fails for some reason.
+   */
+  private static <T> List<T> read(NpdReader<T> reader)
+    throws IOException
+  {
+    assert reader != null : "reader cannot be null";
+
+    reader.setCached(false);
+    reader.setFallbackSource(null);
+    return reader.read();
+  }
+
+  /**
+   * Return name of this table.
+   *
+   * @return  Name of this table. Never null.
+   */
+  public String getName()
+  {
+    return name_;
+  }
+
+  /**
+   * Return the key identifying the specified row of this table across
+   * refreshes.
+   *
+   * @param row  Row to get key of. Non-null.
+   * @return     Key of the row, or null if it has none.
+   */
+  String getKey(T row)
+  {
+    assert row != null : "row cannot be null";
+
+    if (key_ != null)
+      return key_.apply(row);
+
+    return row instanceof NpdObject ? ((NpdObject) row).getNpdId() : null;
+  }
+
+  /**
+   * Load the content of this table.
+   *
+   * @return  The rows of this table. Never null.
+   * @throws IOException  If the load fails for some reason.
+   */
+  List<T> load()
+    throws IOException
+  {
+    List<T> rows;
+    try {
+      rows = loader_.call();
+    }
+    catch (IOException | RuntimeException exception) {
+      throw exception;
+    }
+    catch (Exception exception) {
+      throw new IOException("Unable to load " + name_, exception);
+    }
+
+    if (rows == null)
+      throw new IOException("No content loaded for " + name_);
+
+    return rows;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return name_;
+  }
+}
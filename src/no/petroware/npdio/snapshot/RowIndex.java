@@ -0,0 +1,176 @@
+package no.petroware.npdio.snapshot;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperties;
+import no.petroware.npdio.NpdProperty;
+
+/**
+ * Keys and fingerprints of the rows of one table content, used to
+ * find what has changed between two loads of a table.
+ * <p>
+ * A row of an NPD object is fingerprinted by hashing all its property
+ * values, as NPD objects are equal by NPDID only. Other rows are
+ * fingerprinted by their hash code and confirmed by equals.
+ * The index is built once per content and kept with it, so each
+ * loaded row is fingerprinted once regardless of the number of
+ * refreshes it takes part in.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class RowIndex
+{
+  /** Row position of each key. Non-null. */
+  private final Map<String, Integer> positions_;
+
+  /** Key of each row, by position. Null for rows not indexed. Non-null. */
+  private final String[] keys_;
+
+  /** Fingerprint of each row, by position. Rows not indexed are 0. Non-null. */
+  private final long[] fingerprints_;
+
+  /**
+   * Create an index of the specified rows of the specified table.
+   * Rows without a key, and all but the first of rows sharing a key,
+   * are left out.
+   *
+   * @param table  Table the rows belong to. Non-null.
+   * @param rows   Rows to index. Non-null.
+   */
+  <T> RowIndex(NpdTable<T> table, List<T> rows)
+  {
+    assert table != null : "table cannot be null";
+    assert rows != null : "rows cannot be null";
+
+    positions_ = new HashMap<>(rows.size() * 4 / 3 + 1);
+    keys_ = new String[rows.size()];
+    fingerprints_ = new long[rows.size()];
+
+    int position = 0;
+    for (T row : rows) {
+      String key = table.getKey(row);
+      if (key != null && positions_.putIfAbsent(key, position) == null) {
+        keys_[position] = key;
+        fingerprints_[position] = getFingerprint(row);
+      }
+      position++;
+    }
+  }
+
+  /**
+   * Return the position of the row of the specified key.
+   *
+   * @param key  Key of row. Non-null.
+   * @return     Position of row, or -1 if there is no row with this key.
+   */
+  int getPosition(String key)
+  {
+    Integer position = positions_.get(key);
+    return position != null ? position : -1;
+  }
+
+  /**
+   * Return the number of row positions of this index.
+   *
+   * @return  Number of rows indexed or not. [0,&gt;.
+   */
+  int size()
+  {
+    return keys_.length;
+  }
+
+  /**
+   * Return the key of the row at the specified position.
+   *
+   * @param position  Row position. [0,size&gt;.
+   * @return          Key of the row, or null if the row is not indexed.
+   */
+  String getKey(int position)
+  {
+    return keys_[position];
+  }
+
+  /**
+   * Return the fingerprint of the row at the specified position.
+   *
+   * @param position  Row position of an indexed row.
+   * @return          Fingerprint of the row.
+   */
+  long getFingerprint(int position)
+  {
+    return fingerprints_[position];
+  }
+
+  /**
+   * Check if the two specified rows hold the same data.
+   *
+   * @param index1     Index of the first row. Non-null.
+   * @param row1       First row. Non-null.
+   * @param position1  Position of first row in index1.
+   * @param index2     Index of the second row. Non-null.
+   * @param row2       Second row. Non-null.
+   * @param position2  Position of second row in index2.
+   * @return           True if the rows hold the same data, false otherwise.
+   */
+  static boolean isSame(RowIndex index1, Object row1, int position1,
+                        RowIndex index2, Object row2, int position2)
+  {
+    if (row1 == row2)
+      return true;
+
+    if (index1.getFingerprint(position1) != index2.getFingerprint(position2))
+      return false;
+
+    // Equal fingerprints of property values are trusted for NPD objects
+    return row1 instanceof NpdObject || row1.equals(row2);
+  }
+
+  /**
+   * Return the fingerprint of the specified row.
+   *
+   * @param row  Row to fingerprint. Non-null.
+   * @return     Fingerprint of row.
+   */
+  @SuppressWarnings("unchecked")
+  private static long getFingerprint(Object row)
+  {
+    assert row != null : "row cannot be null";
+
+    if (!(row instanceof NpdObject))
+      return row.hashCode();
+
+    NpdObject npdObject = (NpdObject) row;
+
+    long fingerprint = 1125899906842597L;
+    for (NpdProperty<NpdObject> property : NpdProperties.getProperties((Class<NpdObject>) npdObject.getClass())) {
+      Object value = property.getValue(npdObject);
+      fingerprint = 31L * fingerprint + (value != null ? value.hashCode() : 0);
+      fingerprint = mix(fingerprint);
+    }
+
+    return fingerprint;
+  }
+
+  /**
+   * Spread the bits of the specified value, by the finalizer of
+   * the 64-bit MurmurHash3.
+   *
+   * @param value  Value to mix.
+   * @return       The mixed value.
+   */
+  private static long mix(long value)
+  {
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * NPD survey reader.
@@ -85,6 +88,31 @@ public final class NpdSurveyReader extends NpdReader<NpdSurvey>
     super(url);
   }
 
+  /**
+   * Create a reader for NPD surveys.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdSurveyReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD surveys at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdSurveyReader newDefaultReader()
+  {
+    NpdSurveyReader reader = new NpdSurveyReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdSurveyReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD surveys.
    * <p>
@@ -101,10 +129,36 @@ public final class NpdSurveyReader extends NpdReader<NpdSurvey>
   public static List<NpdSurvey> readAll()
     throws IOException
   {
-    NpdSurveyReader reader = new NpdSurveyReader(URL);
+    NpdSurveyReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD surveys asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD surveys. Never null.
+   */
+  public static CompletableFuture<List<NpdSurvey>> readAllAsync()
+  {
+    NpdSurveyReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD surveys asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD surveys. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdSurvey>> readAllAsync(Executor executor)
+  {
+    NpdSurveyReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD survey instance from the given tokens.
    *
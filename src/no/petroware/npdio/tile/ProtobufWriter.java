@@ -0,0 +1,224 @@
+package no.petroware.npdio.tile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal Protocol Buffers encoder, as needed for vector tiles.
+ * <p>
+ * Messages are written field by field into a growable byte array.
+ * Nested messages are written to a separate writer and then added
+ * as a length delimited field of the enclosing message.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+final class ProtobufWriter
+{
+  /** Wire type of varint fields. */
+  private static final int VARINT = 0;
+
+  /** Wire type of 64-bit fields. */
+  private static final int FIXED64 = 1;
+
+  /** Wire type of length delimited fields. */
+  private static final int LENGTH_DELIMITED = 2;
+
+  /** The buffer being written. */
+  private byte[] bytes_ = new byte[256];
+
+  /** Number of bytes written. */
+  private int size_ = 0;
+
+  /**
+   * Create an empty protobuf writer.
+   */
+  ProtobufWriter()
+  {
+    // Nothing
+  }
+
+  /**
+   * Return number of bytes written.
+   *
+   * @return  Number of bytes written. [0,&gt;.
+   */
+  int size()
+  {
+    return size_;
+  }
+
+  /**
+   * Discard the content of this writer so it can be reused.
+   */
+  void reset()
+  {
+    size_ = 0;
+  }
+
+  /**
+   * Return a copy of the bytes written.
+   *
+   * @return  The bytes written. Never null.
+   */
+  byte[] toByteArray()
+  {
+    return Arrays.copyOf(bytes_, size_);
+  }
+
+  /**
+   * Ensure there is room for the specified number of bytes.
+   *
+   * @param nBytes  Number of bytes to make room for. [0,&gt;.
+   */
+  private void ensureCapacity(int nBytes)
+  {
+    if (size_ + nBytes > bytes_.length)
+      bytes_ = Arrays.copyOf(bytes_, Math.max(2 * bytes_.length, size_ + nBytes));
+  }
+
+  /**
+   * Append the specified value as a varint.
+   *
+   * @param value  Value to append. Treated as unsigned.
+   */
+  void writeVarint(long value)
+  {
+    ensureCapacity(10);
+    while ((value & ~0x7fL) != 0) {
+      bytes_[size_++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    bytes_[size_++] = (byte) value;
+  }
+
+  /**
+   * Append a field tag.
+   *
+   * @param field     Field number. [1,&gt;.
+   * @param wireType  Wire type of the field.
+   */
+  private void writeTag(int field, int wireType)
+  {
+    writeVarint((field << 3) | wireType);
+  }
+
+  /**
+   * Return the zigzag encoding of the specified value, mapping
+   * small negative numbers to small positive ones.
+   *
+   * @param value  Value to encode.
+   * @return       The encoded value.
+   */
+  static long zigzag(long value)
+  {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * Append a varint field, used for the int32, int64, uint32, uint64,
+   * bool and enum types.
+   *
+   * @param field  Field number. [1,&gt;.
+   * @param value  Field value.
+   */
+  void writeVarint(int field, long value)
+  {
+    writeTag(field, VARINT);
+    writeVarint(value);
+  }
+
+  /**
+   * Append a double field.
+   *
+   * @param field  Field number. [1,&gt;.
+   * @param value  Field value.
+   */
+  void writeDouble(int field, double value)
+  {
+    writeTag(field, FIXED64);
+
+    long bits = Double.doubleToLongBits(value);
+    ensureCapacity(8);
+    for (int i = 0; i < 8; i++)
+      bytes_[size_++] = (byte) (bits >>> (8 * i));
+  }
+
+  /**
+   * Append a string field.
+   *
+   * @param field  Field number. [1,&gt;.
+   * @param text   Field value. Non-null.
+   */
+  void writeString(int field, String text)
+  {
+    assert text != null : "text cannot be null";
+
+    byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+
+    writeTag(field, LENGTH_DELIMITED);
+    writeVarint(utf8.length);
+    ensureCapacity(utf8.length);
+    System.arraycopy(utf8, 0, bytes_, size_, utf8.length);
+    size_ += utf8.length;
+  }
+
+  /**
+   * Append an embedded message field.
+   *
+   * @param field    Field number. [1,&gt;.
+   * @param message  Writer holding the encoded message. Non-null.
+   */
+  void writeMessage(int field, ProtobufWriter message)
+  {
+    assert message != null : "message cannot be null";
+
+    writeTag(field, LENGTH_DELIMITED);
+    writeVarint(message.size_);
+    ensureCapacity(message.size_);
+    System.arraycopy(message.bytes_, 0, bytes_, size_, message.size_);
+    size_ += message.size_;
+  }
+
+  /**
+   * Append a packed repeated varint field.
+   *
+   * @param field    Field number. [1,&gt;.
+   * @param values   Field values. Non-null.
+   * @param nValues  Number of values to write from the start of the array. [0,values.length].
+   */
+  void writePacked(int field, int[] values, int nValues)
+  {
+    assert values != null : "values cannot be null";
+    assert nValues >= 0 && nValues <= values.length : "Invalid nValues: " + nValues;
+
+    if (nValues == 0)
+      return;
+
+    int length = 0;
+    for (int i = 0; i < nValues; i++)
+      length += varintSize(values[i] & 0xffffffffL);
+
+    writeTag(field, LENGTH_DELIMITED);
+    writeVarint(length);
+    for (int i = 0; i < nValues; i++)
+      writeVarint(values[i] & 0xffffffffL);
+  }
+
+  /**
+   * Return number of bytes of the varint encoding of the specified value.
+   *
+   * @param value  Value to consider. Treated as unsigned.
+   * @return       Number of bytes of the encoded value. [1,10].
+   */
+  private static int varintSize(long value)
+  {
+    int size = 1;
+    while ((value & ~0x7fL) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+}
@@ -0,0 +1,550 @@
+package no.petroware.npdio.tile;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import no.petroware.npdio.NpdObject;
+import no.petroware.npdio.NpdProperty;
+import no.petroware.npdio.facility.NpdFixedFacility;
+import no.petroware.npdio.geo.Datum;
+import no.petroware.npdio.geo.NpdPositions;
+import no.petroware.npdio.well.NpdWellbore;
+
+/**
+ * A layer of point features in a vector tile, such as wellbores or
+ * facilities.
+ * <p>
+ * The objects of the layer are projected and sorted once, when the
+ * layer is created, so that the objects of a tile are found by a
+ * binary search. Objects without a known position are left out.
+ * <p>
+ * Web Mercator is defined on WGS 84 coordinates. The NPD gives positions
+ * in ED50, so the predefined layers transform them by
+ * {@link NpdPositions} before projecting.
+ * <p>
+ * Feature attributes are keyed by the NPD column name of each property,
+ * or the property name if it has no NPD column. Dates are encoded as
+ * yyyy-MM-dd strings. The feature ID is the NPDID of the object.
+ * Clustered features have the attributes "cluster" (true) and
+ * "point_count" only.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T>  Type of objects of the layer.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class TileLayer<T extends NpdObject>
+{
+  /** Name field number of the layer message of the vector tile schema. */
+  private static final int LAYER_NAME = 1;
+
+  /** Features field number of the layer message of the vector tile schema. */
+  private static final int LAYER_FEATURES = 2;
+
+  /** Keys field number of the layer message of the vector tile schema. */
+  private static final int LAYER_KEYS = 3;
+
+  /** Values field number of the layer message of the vector tile schema. */
+  private static final int LAYER_VALUES = 4;
+
+  /** Extent field number of the layer message of the vector tile schema. */
+  private static final int LAYER_EXTENT = 5;
+
+  /** Version field number of the layer message of the vector tile schema. */
+  private static final int LAYER_VERSION = 15;
+
+  /** ID field number of the feature message of the vector tile schema. */
+  private static final int FEATURE_ID = 1;
+
+  /** Tags field number of the feature message of the vector tile schema. */
+  private static final int FEATURE_TAGS = 2;
+
+  /** Type field number of the feature message of the vector tile schema. */
+  private static final int FEATURE_TYPE = 3;
+
+  /** Geometry field number of the feature message of the vector tile schema. */
+  private static final int FEATURE_GEOMETRY = 4;
+
+  /** String field number of the value message of the vector tile schema. */
+  private static final int VALUE_STRING = 1;
+
+  /** Double field number of the value message of the vector tile schema. */
+  private static final int VALUE_DOUBLE = 3;
+
+  /** Int field number of the value message of the vector tile schema. */
+  private static final int VALUE_INT = 4;
+
+  /** Signed int field number of the value message of the vector tile schema. */
+  private static final int VALUE_SINT = 6;
+
+  /** Boolean field number of the value message of the vector tile schema. */
+  private static final int VALUE_BOOLEAN = 7;
+
+  /** Point geometry type of the vector tile schema. */
+  private static final int POINT = 1;
+
+  /** Version of the vector tile specification being written. */
+  private static final int VERSION = 2;
+
+  /** Attribute key of clustered features. */
+  private static final String CLUSTER_KEY = "cluster";
+
+  /** Attribute key of the number of points of clustered features. */
+  private static final String POINT_COUNT_KEY = "point_count";
+
+  /** Name of this layer. Non-null. */
+  private final String name_;
+
+  /** The objects of this layer, sorted by x. Non-null. */
+  private final List<T> objects_;
+
+  /** Projected x coordinate of each object, ascending. Non-null. */
+  private final double[] x_;
+
+  /** Projected y coordinate of each object. Non-null. */
+  private final double[] y_;
+
+  /** Properties written as attributes. Non-null. */
+  private final List<NpdProperty<T>> properties_;
+
+  /** Attribute key of each property. Non-null. */
+  private final String[] keys_;
+
+  /**
+   * Create a tile layer.
+   *
+   * @param name        Name of layer. Non-null.
+   * @param objects     Objects of layer. Non-null.
+   * @param properties  Properties to write as attributes of each feature. Non-null.
+   * @param position    Function returning the position of an object as
+   *                    WGS 84 longitude and latitude in decimal degrees, or
+   *                    null if the object has no known position. Non-null.
+   * @throws IllegalArgumentException  If name, objects, properties or position is null.
+   */
+  public TileLayer(String name,
+                   Collection<T> objects,
+                   List<NpdProperty<T>> properties,
+                   Function<? super T, double[]> position)
+  {
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+
+    if (objects == null)
+      throw new IllegalArgumentException("objects cannot be null");
+
+    if (properties == null)
+      throw new IllegalArgumentException("properties cannot be null");
+
+    if (position == null)
+      throw new IllegalArgumentException("position cannot be null");
+
+    name_ = name;
+    properties_ = new ArrayList<>(properties);
+
+    keys_ = new String[properties_.size()];
+    for (int i = 0; i < keys_.length; i++) {
+      NpdProperty<T> property = properties_.get(i);
+      keys_[i] = property.getColumnName() != null ? property.getColumnName() : property.getName();
+    }
+
+    //
+    // Project the positioned objects and sort them by x
+    //
+    List<T> positionedObjects = new ArrayList<>();
+    List<double[]> points = new ArrayList<>();
+    for (T object : objects) {
+      double[] lonLat = position.apply(object);
+      if (lonLat != null) {
+        positionedObjects.add(object);
+        points.add(new double[] {WebMercator.getX(lonLat[0]), WebMercator.getY(lonLat[1])});
+      }
+    }
+
+    Integer[] order = new Integer[points.size()];
+    for (int i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, Comparator.comparingDouble(i -> points.get(i)[0]));
+
+    List<T> sortedObjects = new ArrayList<>(order.length);
+    x_ = new double[order.length];
+    y_ = new double[order.length];
+    for (int i = 0; i < order.length; i++) {
+      sortedObjects.add(positionedObjects.get(order[i]));
+      x_[i] = points.get(order[i])[0];
+      y_[i] = points.get(order[i])[1];
+    }
+
+    objects_ = Collections.unmodifiableList(sortedObjects);
+  }
+
+  /**
+   * Create a tile layer of wellbores positioned at the wellhead.
+   *
+   * @param <T>         Wellbore type.
+   * @param name        Name of layer. Non-null.
+   * @param wellbores   Wellbores of layer. Non-null.
+   * @param properties  Properties to write as attributes of each feature. Non-null.
+   * @return            The requested layer. Never null.
+   * @throws IllegalArgumentException  If name, wellbores or properties is null.
+   */
+  public static <T extends NpdWellbore> TileLayer<T> newWellboreLayer(String name,
+                                                                      Collection<T> wellbores,
+                                                                      List<NpdProperty<T>> properties)
+  {
+    return new TileLayer<T>(name, wellbores, properties,
+                            wellbore -> NpdPositions.getWellborePosition(wellbore, Datum.WGS84));
+  }
+
+  /**
+   * Create a tile layer of fixed facilities.
+   *
+   * @param name        Name of layer. Non-null.
+   * @param facilities  Facilities of layer. Non-null.
+   * @param properties  Properties to write as attributes of each feature. Non-null.
+   * @return            The requested layer. Never null.
+   * @throws IllegalArgumentException  If name, facilities or properties is null.
+   */
+  public static TileLayer<NpdFixedFacility> newFacilityLayer(String name,
+                                                             Collection<NpdFixedFacility> facilities,
+                                                             List<NpdProperty<NpdFixedFacility>> properties)
+  {
+    return new TileLayer<NpdFixedFacility>(name, facilities, properties,
+                                           facility -> NpdPositions.getFacilityPosition(facility, Datum.WGS84));
+  }
+
+  /**
+   * Return name of this layer.
+   *
+   * @return  Name of this layer. Never null.
+   */
+  public String getName()
+  {
+    return name_;
+  }
+
+  /**
+   * Return the objects of this layer having a known position.
+   *
+   * @return  The objects of this layer. Never null.
+   */
+  public List<T> getObjects()
+  {
+    return objects_;
+  }
+
+  /**
+   * Return index of the first object with x not less than the specified value.
+   *
+   * @param x  Projected x coordinate.
+   * @return   Index of the first object at or after x. [0,nObjects].
+   */
+  private int findFirst(double x)
+  {
+    int low = 0;
+    int high = x_.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (x_[middle] < x)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /**
+   * Encode the features of this layer within the specified tile,
+   * and add the layer to the tile if there are any.
+   *
+   * @param tile         Tile being written. Non-null.
+   * @param zoom         Zoom level. [0,MAX_ZOOM].
+   * @param tileX        Tile x index. [0,2<sup>zoom</sup>&gt;.
+   * @param tileY        Tile y index. [0,2<sup>zoom</sup>&gt;.
+   * @param isClustered  True to cluster nearby points, false to write all points.
+   */
+  void encode(ProtobufWriter tile, int zoom, int tileX, int tileY, boolean isClustered)
+  {
+    assert tile != null : "tile cannot be null";
+
+    int extent = VectorTileGenerator.EXTENT;
+    int buffer = VectorTileGenerator.BUFFER;
+
+    // Tile units per projected unit, and tile origin in tile units
+    double scale = (double) (1L << zoom) * extent;
+    double originX = (double) tileX * extent;
+    double originY = (double) tileY * extent;
+
+    Encoder encoder = new Encoder();
+
+    if (!isClustered) {
+      int end = findFirst((originX + extent + buffer) / scale);
+      for (int i = findFirst((originX - buffer) / scale); i < end; i++) {
+        double x = x_[i] * scale - originX;
+        double y = y_[i] * scale - originY;
+        if (y >= -buffer && y <= extent + buffer)
+          encoder.writeFeature(objects_.get(i), x, y);
+      }
+    }
+
+    else {
+      //
+      // Bucket the points into cells aligned with the tile so that
+      // neighbouring tiles agree on the clusters along their edges.
+      // The grid includes a margin of cells for the buffer.
+      //
+      int cellSize = VectorTileGenerator.CLUSTER_CELL_SIZE;
+      int nMarginCells = (buffer + cellSize - 1) / cellSize;
+      int nCells = extent / cellSize + 2 * nMarginCells;
+      double gridOrigin = - (double) nMarginCells * cellSize;
+
+      int[] counts = new int[nCells * nCells];
+      int[] firsts = new int[nCells * nCells];
+      double[] sumX = new double[nCells * nCells];
+      double[] sumY = new double[nCells * nCells];
+
+      int end = findFirst((originX + gridOrigin + nCells * cellSize) / scale);
+      for (int i = findFirst((originX + gridOrigin) / scale); i < end; i++) {
+        double x = x_[i] * scale - originX;
+        double y = y_[i] * scale - originY;
+
+        int cellX = (int) Math.floor((x - gridOrigin) / cellSize);
+        int cellY = (int) Math.floor((y - gridOrigin) / cellSize);
+        if (cellX < 0 || cellX >= nCells || cellY < 0 || cellY >= nCells)
+          continue;
+
+        int cell = cellY * nCells + cellX;
+        if (counts[cell] == 0)
+          firsts[cell] = i;
+        counts[cell]++;
+        sumX[cell] += x;
+        sumY[cell] += y;
+      }
+
+      for (int cell = 0; cell < counts.length; cell++) {
+        int count = counts[cell];
+        if (count == 0)
+          continue;
+
+        double x = sumX[cell] / count;
+        double y = sumY[cell] / count;
+        if (x < -buffer || x > extent + buffer || y < -buffer || y > extent + buffer)
+          continue;
+
+        if (count == 1)
+          encoder.writeFeature(objects_.get(firsts[cell]), x, y);
+        else
+          encoder.writeCluster(count, x, y);
+      }
+    }
+
+    if (encoder.nFeatures_ > 0)
+      tile.writeMessage(VectorTileGenerator.TILE_LAYERS, encoder.finish());
+  }
+
+  /**
+   * Encoder of the layer message of a single tile. Keeps track of the
+   * attribute keys and values, which are shared by the features of the layer.
+   */
+  private final class Encoder
+  {
+    /** The layer message being written. */
+    private final ProtobufWriter layer_ = new ProtobufWriter();
+
+    /** The feature message being written. */
+    private final ProtobufWriter feature_ = new ProtobufWriter();
+
+    /** Index of each attribute key written. */
+    private final Map<String, Integer> keyIndices_ = new LinkedHashMap<>();
+
+    /** Index of each attribute value written. */
+    private final Map<Object, Integer> valueIndices_ = new LinkedHashMap<>();
+
+    /** Key and value indices of the current feature. */
+    private final int[] tags_ = new int[2 * Math.max(keys_.length, 2)];
+
+    /** Point geometry commands of the current feature. */
+    private final int[] geometry_ = new int[3];
+
+    /** Number of features written. */
+    private int nFeatures_ = 0;
+
+    /**
+     * Add an attribute to the current feature.
+     *
+     * @param nTags  Number of tags of the current feature so far. [0,&gt;.
+     * @param key    Attribute key. Non-null.
+     * @param value  Attribute value. Non-null.
+     * @return       Number of tags after the addition.
+     */
+    private int addTag(int nTags, String key, Object value)
+    {
+      Integer keyIndex = keyIndices_.get(key);
+      if (keyIndex == null) {
+        keyIndex = keyIndices_.size();
+        keyIndices_.put(key, keyIndex);
+      }
+
+      Integer valueIndex = valueIndices_.get(value);
+      if (valueIndex == null) {
+        valueIndex = valueIndices_.size();
+        valueIndices_.put(value, valueIndex);
+      }
+
+      tags_[nTags] = keyIndex;
+      tags_[nTags + 1] = valueIndex;
+      return nTags + 2;
+    }
+
+    /**
+     * Write a point feature.
+     *
+     * @param id     Feature ID. Negative if none.
+     * @param nTags  Number of tags of the feature. [0,&gt;.
+     * @param x      X coordinate within tile.
+     * @param y      Y coordinate within tile.
+     */
+    private void writePoint(long id, int nTags, double x, double y)
+    {
+      geometry_[0] = (1 << 3) | 1; // MoveTo, one point
+      geometry_[1] = (int) ProtobufWriter.zigzag(Math.round(x));
+      geometry_[2] = (int) ProtobufWriter.zigzag(Math.round(y));
+
+      feature_.reset();
+      if (id >= 0)
+        feature_.writeVarint(FEATURE_ID, id);
+      feature_.writePacked(FEATURE_TAGS, tags_, nTags);
+      feature_.writeVarint(FEATURE_TYPE, POINT);
+      feature_.writePacked(FEATURE_GEOMETRY, geometry_, geometry_.length);
+
+      layer_.writeMessage(LAYER_FEATURES, feature_);
+      nFeatures_++;
+    }
+
+    /**
+     * Write a feature of the specified object.
+     *
+     * @param object  Object to write. Non-null.
+     * @param x       X coordinate within tile.
+     * @param y       Y coordinate within tile.
+     */
+    void writeFeature(T object, double x, double y)
+    {
+      int nTags = 0;
+      for (int i = 0; i < keys_.length; i++) {
+        Object value = properties_.get(i).getValue(object);
+        if (value != null)
+          nTags = addTag(nTags, keys_[i], value);
+      }
+
+      writePoint(toId(object.getNpdId()), nTags, x, y);
+    }
+
+    /**
+     * Write a cluster feature.
+     *
+     * @param count  Number of points in cluster. [2,&gt;.
+     * @param x      X coordinate within tile.
+     * @param y      Y coordinate within tile.
+     */
+    void writeCluster(int count, double x, double y)
+    {
+      int nTags = addTag(0, CLUSTER_KEY, Boolean.TRUE);
+      nTags = addTag(nTags, POINT_COUNT_KEY, count);
+
+      writePoint(-1, nTags, x, y);
+    }
+
+    /**
+     * Complete the layer message, adding the keys and values.
+     *
+     * @return  The layer message. Never null.
+     */
+    ProtobufWriter finish()
+    {
+      layer_.writeString(LAYER_NAME, name_);
+
+      for (String key : keyIndices_.keySet())
+        layer_.writeString(LAYER_KEYS, key);
+
+      ProtobufWriter value = new ProtobufWriter();
+      for (Object object : valueIndices_.keySet()) {
+        value.reset();
+        writeValue(value, object);
+        layer_.writeMessage(LAYER_VALUES, value);
+      }
+
+      layer_.writeVarint(LAYER_EXTENT, VectorTileGenerator.EXTENT);
+      layer_.writeVarint(LAYER_VERSION, VERSION);
+
+      return layer_;
+    }
+  }
+
+  /**
+   * Return the specified NPDID as a feature ID.
+   *
+   * @param npdId  NPDID to convert. Non-null.
+   * @return       The feature ID, or -1 if the NPDID is not a non-negative integer.
+   */
+  private static long toId(String npdId)
+  {
+    int length = npdId.length();
+    if (length == 0 || length > 18)
+      return -1;
+
+    long id = 0;
+    for (int i = 0; i < length; i++) {
+      char c = npdId.charAt(i);
+      if (c < '0' || c > '9')
+        return -1;
+      id = 10 * id + (c - '0');
+    }
+
+    return id;
+  }
+
+  /**
+   * Write the specified attribute value as a value message.
+   *
+   * @param value   Value message to write to. Non-null.
+   * @param object  Attribute value. Non-null.
+   */
+  private static void writeValue(ProtobufWriter value, Object object)
+  {
+    if (object instanceof Boolean) {
+      value.writeVarint(VALUE_BOOLEAN, (Boolean) object ? 1 : 0);
+    }
+
+    else if (object instanceof Integer || object instanceof Long) {
+      long v = ((Number) object).longValue();
+      if (v >= 0)
+        value.writeVarint(VALUE_INT, v);
+      else
+        value.writeVarint(VALUE_SINT, ProtobufWriter.zigzag(v));
+    }
+
+    else if (object instanceof Double) {
+      value.writeDouble(VALUE_DOUBLE, (Double) object);
+    }
+
+    else if (object instanceof Date) {
+      String date = Instant.ofEpochMilli(((Date) object).getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toString();
+      value.writeString(VALUE_STRING, date);
+    }
+
+    else {
+      value.writeString(VALUE_STRING, object.toString());
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package no.petroware.npdio.tile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generator of Mapbox vector tiles (MVT) of NPD objects.
+ * <p>
+ * Tiles are requested by zoom level and tile x/y index as used by web
+ * maps, and returned as encoded protocol buffers ready to be served with
+ * content type application/vnd.mapbox-vector-tile:
+ *
+ * <pre>
+ *   List&lt;NpdProperty&lt;NpdExplorationWellbore&gt;&gt; properties = Arrays.asList(
+ *     NpdProperties.getProperty(NpdExplorationWellbore.class, "Name"));
+ *
+ *   List&lt;TileLayer&lt;?&gt;&gt; layers = new ArrayList&lt;&gt;();
+ *   layers.add(TileLayer.newWellboreLayer("wellbores", wellbores, properties));
+ *
+ *   VectorTileGenerator generator = new VectorTileGenerator(layers);
+ *   byte[] tile = generator.getTile(zoom, x, y);
+ * </pre>
+ *
+ * At zoom levels up to the cluster zoom level, points closer than
+ * {@link #CLUSTER_CELL_SIZE} tile units are merged into clusters.
+ * Generated tiles are kept in a least recently used cache.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class VectorTileGenerator
+{
+  /** Number of units across a tile. */
+  public static final int EXTENT = 4096;
+
+  /** Margin in tile units of points included beyond the tile edges, to avoid clipped symbols. */
+  public static final int BUFFER = 64;
+
+  /** Size in tile units of the grid cells used for clustering. */
+  public static final int CLUSTER_CELL_SIZE = 64;
+
+  /** Highest zoom level supported. */
+  public static final int MAX_ZOOM = 24;
+
+  /** Default highest zoom level where points are clustered. */
+  public static final int DEFAULT_CLUSTER_ZOOM = 9;
+
+  /** Default maximum number of tiles in cache. */
+  public static final int DEFAULT_CACHE_SIZE = 4096;
+
+  /** Layer field number of the tile message. */
+  static final int TILE_LAYERS = 3;
+
+  /** The layers of the tiles. Non-null. */
+  private final List<TileLayer<?>> layers_;
+
+  /** Highest zoom level where points are clustered. */
+  private final int clusterZoom_;
+
+  /** Cached tiles by tile key, in access order. Guarded by itself. */
+  private final Map<Long, byte[]> cache_;
+
+  /**
+   * Create a vector tile generator.
+   *
+   * @param layers       Layers of the tiles. Non-null.
+   * @param clusterZoom  Highest zoom level where points are clustered. -1 for no clustering.
+   * @param cacheSize    Maximum number of tiles to cache. 0 for no caching. [0,&gt;.
+   * @throws IllegalArgumentException  If layers is null or cacheSize is negative.
+   */
+  public VectorTileGenerator(List<TileLayer<?>> layers, int clusterZoom, final int cacheSize)
+  {
+    if (layers == null)
+      throw new IllegalArgumentException("layers cannot be null");
+
+    if (cacheSize < 0)
+      throw new IllegalArgumentException("Invalid cacheSize: " + cacheSize);
+
+    layers_ = new ArrayList<>(layers);
+    clusterZoom_ = clusterZoom;
+    cache_ = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest)
+      {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Create a vector tile generator with default clustering and cache size.
+   *
+   * @param layers  Layers of the tiles. Non-null.
+   * @throws IllegalArgumentException  If layers is null.
+   */
+  public VectorTileGenerator(List<TileLayer<?>> layers)
+  {
+    this(layers, DEFAULT_CLUSTER_ZOOM, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Return the specified tile.
+   *
+   * @param zoom  Zoom level. [0,MAX_ZOOM].
+   * @param x     Tile x index, increasing eastwards. [0,2<sup>zoom</sup>&gt;.
+   * @param y     Tile y index, increasing southwards. [0,2<sup>zoom</sup>&gt;.
+   * @return      The encoded tile. Empty if there are no features in the tile. Never null.
+   * @throws IllegalArgumentException  If zoom, x or y is out of range.
+   */
+  public byte[] getTile(int zoom, int x, int y)
+  {
+    if (zoom < 0 || zoom > MAX_ZOOM)
+      throw new IllegalArgumentException("Invalid zoom: " + zoom);
+
+    int nTiles = 1 << zoom;
+    if (x < 0 || x >= nTiles || y < 0 || y >= nTiles)
+      throw new IllegalArgumentException("Invalid tile: " + zoom + "/" + x + "/" + y);
+
+    Long key = ((long) zoom << 58) | ((long) x << 29) | y;
+
+    byte[] tile;
+    synchronized (cache_) {
+      tile = cache_.get(key);
+    }
+
+    if (tile == null) {
+      tile = createTile(zoom, x, y);
+      synchronized (cache_) {
+        cache_.put(key, tile);
+      }
+    }
+
+    return tile.clone();
+  }
+
+  /**
+   * Encode the specified tile.
+   *
+   * @param zoom  Zoom level. [0,MAX_ZOOM].
+   * @param x     Tile x index. [0,2<sup>zoom</sup>&gt;.
+   * @param y     Tile y index. [0,2<sup>zoom</sup>&gt;.
+   * @return      The encoded tile. Never null.
+   */
+  private byte[] createTile(int zoom, int x, int y)
+  {
+    boolean isClustered = zoom <= clusterZoom_;
+
+    ProtobufWriter tile = new ProtobufWriter();
+    for (TileLayer<?> layer : layers_)
+      layer.encode(tile, zoom, x, y, isClustered);
+
+    return tile.toByteArray();
+  }
+
+  /**
+   * Return number of tiles currently in the cache.
+   *
+   * @return  Number of cached tiles. [0,&gt;.
+   */
+  public int getNCachedTiles()
+  {
+    synchronized (cache_) {
+      return cache_.size();
+    }
+  }
+
+  /**
+   * Remove all tiles from the cache.
+   */
+  public void clearCache()
+  {
+    synchronized (cache_) {
+      cache_.clear();
+    }
+  }
+}
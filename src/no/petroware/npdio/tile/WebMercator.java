@@ -0,0 +1,98 @@
+package no.petroware.npdio.tile;
+
+/**
+ * Spherical (web) mercator projection as used by web map tiles.
+ * <p>
+ * Positions are projected to the unit square with x increasing
+ * eastwards from the antimeridian and y increasing southwards from
+ * latitude {@link #MAX_LATITUDE}. At zoom level z the square is split
+ * into 2<sup>z</sup> by 2<sup>z</sup> tiles.
+ *
+ * @author <a href="mailto:info@petroware.no">Petroware AS</a>
+ */
+public final class WebMercator
+{
+  /** The northern and southern limit of the projection. */
+  public static final double MAX_LATITUDE = 85.0511287798066;
+
+  /**
+   * Private constructor to prevent client instantiation.
+   */
+  private WebMercator()
+  {
+    assert false : "This constructor should never be called";
+  }
+
+  /**
+   * Return the projected x coordinate of the specified longitude.
+   *
+   * @param longitude  Longitude in decimal degrees. [-180,180].
+   * @return           Projected x coordinate. [0,1].
+   */
+  public static double getX(double longitude)
+  {
+    return (longitude + 180.0) / 360.0;
+  }
+
+  /**
+   * Return the projected y coordinate of the specified latitude.
+   * Latitudes beyond {@link #MAX_LATITUDE} are clamped.
+   *
+   * @param latitude  Latitude in decimal degrees. [-90,90].
+   * @return          Projected y coordinate. [0,1].
+   */
+  public static double getY(double latitude)
+  {
+    double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+    double sin = Math.sin(Math.toRadians(clamped));
+    return 0.5 - Math.log((1.0 + sin) / (1.0 - sin)) / (4.0 * Math.PI);
+  }
+
+  /**
+   * Return the longitude of the specified projected x coordinate.
+   *
+   * @param x  Projected x coordinate. [0,1].
+   * @return   Longitude in decimal degrees. [-180,180].
+   */
+  public static double getLongitude(double x)
+  {
+    return 360.0 * x - 180.0;
+  }
+
+  /**
+   * Return the latitude of the specified projected y coordinate.
+   *
+   * @param y  Projected y coordinate. [0,1].
+   * @return   Latitude in decimal degrees.
+   */
+  public static double getLatitude(double y)
+  {
+    return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1.0 - 2.0 * y))));
+  }
+
+  /**
+   * Return the x index of the tile containing the specified longitude.
+   *
+   * @param longitude  Longitude in decimal degrees. [-180,180].
+   * @param zoom       Zoom level. [0,&gt;.
+   * @return           Tile x index. [0,2<sup>zoom</sup>&gt;.
+   */
+  public static int getTileX(double longitude, int zoom)
+  {
+    int nTiles = 1 << zoom;
+    return Math.max(0, Math.min(nTiles - 1, (int) Math.floor(getX(longitude) * nTiles)));
+  }
+
+  /**
+   * Return the y index of the tile containing the specified latitude.
+   *
+   * @param latitude  Latitude in decimal degrees. [-90,90].
+   * @param zoom      Zoom level. [0,&gt;.
+   * @return          Tile y index. [0,2<sup>zoom</sup>&gt;.
+   */
+  public static int getTileY(double latitude, int zoom)
+  {
+    int nTiles = 1 << zoom;
+    return Math.max(0, Math.min(nTiles - 1, (int) Math.floor(getY(latitude) * nTiles)));
+  }
+}
@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * Reader for NPD development wellbores.
@@ -185,6 +188,31 @@ public final class NpdDevelopmentWellboreReader extends NpdReader<NpdDevelopment
     super(url);
   }
 
+  /**
+   * Create a reader for NPD development wellbores.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdDevelopmentWellboreReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD development wellbores at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdDevelopmentWellboreReader newDefaultReader()
+  {
+    NpdDevelopmentWellboreReader reader = new NpdDevelopmentWellboreReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdDevelopmentWellboreReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD development wellbores.
    * <p>
@@ -201,10 +229,36 @@ public final class NpdDevelopmentWellboreReader extends NpdReader<NpdDevelopment
   public static List<NpdDevelopmentWellbore> readAll()
     throws IOException
   {
-    NpdDevelopmentWellboreReader reader = new NpdDevelopmentWellboreReader(URL);
+    NpdDevelopmentWellboreReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD development wellbores asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD development wellbores. Never null.
+   */
+  public static CompletableFuture<List<NpdDevelopmentWellbore>> readAllAsync()
+  {
+    NpdDevelopmentWellboreReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD development wellbores asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD development wellbores. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdDevelopmentWellbore>> readAllAsync(Executor executor)
+  {
+    NpdDevelopmentWellboreReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD development wellbore instance based on the tokens
    * from the CSV file.
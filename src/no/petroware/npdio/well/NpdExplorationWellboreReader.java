@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * Reader for NPD exploration wellbores.
@@ -209,6 +212,31 @@ public final class NpdExplorationWellboreReader extends NpdReader<NpdExploration
     super(url);
   }
 
+  /**
+   * Create a reader for NPD exploration wellbores.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdExplorationWellboreReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD exploration wellbores at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdExplorationWellboreReader newDefaultReader()
+  {
+    NpdExplorationWellboreReader reader = new NpdExplorationWellboreReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdExplorationWellboreReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD exploration wellbores.
    * <p>
@@ -225,10 +253,36 @@ public final class NpdExplorationWellboreReader extends NpdReader<NpdExploration
   public static List<NpdExplorationWellbore> readAll()
     throws IOException
   {
-    NpdExplorationWellboreReader reader = new NpdExplorationWellboreReader(URL);
+    NpdExplorationWellboreReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD exploration wellbores asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD exploration wellbores. Never null.
+   */
+  public static CompletableFuture<List<NpdExplorationWellbore>> readAllAsync()
+  {
+    NpdExplorationWellboreReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD exploration wellbores asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD exploration wellbores. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdExplorationWellbore>> readAllAsync(Executor executor)
+  {
+    NpdExplorationWellboreReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD exploration wellbore instance based on the tokens
    * from the CSV file.
@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import no.petroware.npdio.NpdReader;
+import no.petroware.npdio.NpdSource;
 
 /**
  * Reader for NPD <em>other</em> wellbores.
@@ -129,6 +132,31 @@ public final class NpdOtherWellboreReader extends NpdReader<NpdOtherWellbore>
     super(url);
   }
 
+  /**
+   * Create a reader for NPD <em>other</em> wellbores.
+   *
+   * @param source  Source of file to read, like a local copy. Non-null.
+   * @throws IllegalArgumentException  If source is null.
+   */
+  public NpdOtherWellboreReader(NpdSource source)
+  {
+    super(source);
+  }
+
+  /**
+   * Create a reader for NPD <em>other</em> wellbores at the NPD fact pages, falling back to
+   * the embedded snapshot of the table, if any, when the fact pages
+   * cannot be read. See {@link NpdReader#setFallbackSource}.
+   *
+   * @return  The reader. Never null.
+   */
+  public static NpdOtherWellboreReader newDefaultReader()
+  {
+    NpdOtherWellboreReader reader = new NpdOtherWellboreReader(URL);
+    reader.setFallbackSource(NpdSource.getEmbeddedSource(NpdOtherWellboreReader.class));
+    return reader;
+  }
+
   /**
    * Read all NPD <em>other</em> wellbores.
    * <p>
@@ -145,10 +173,36 @@ public final class NpdOtherWellboreReader extends NpdReader<NpdOtherWellbore>
   public static List<NpdOtherWellbore> readAll()
     throws IOException
   {
-    NpdOtherWellboreReader reader = new NpdOtherWellboreReader(URL);
+    NpdOtherWellboreReader reader = newDefaultReader();
     return reader.read();
   }
 
+  /**
+   * Read all NPD <em>other</em> wellbores asynchronously.
+   * See {@link NpdReader#readAsync()}.
+   *
+   * @return  Future of all NPD other wellbores. Never null.
+   */
+  public static CompletableFuture<List<NpdOtherWellbore>> readAllAsync()
+  {
+    NpdOtherWellboreReader reader = newDefaultReader();
+    return reader.readAsync();
+  }
+
+  /**
+   * Read all NPD <em>other</em> wellbores asynchronously on the specified executor.
+   * See {@link NpdReader#readAsync(Executor)}.
+   *
+   * @param executor  Executor to read on. Non-null.
+   * @return          Future of all NPD other wellbores. Never null.
+   * @throws IllegalArgumentException  If executor is null.
+   */
+  public static CompletableFuture<List<NpdOtherWellbore>> readAllAsync(Executor executor)
+  {
+    NpdOtherWellboreReader reader = newDefaultReader();
+    return reader.readAsync(executor);
+  }
+
   /**
    * Create a new NPD other wellbore instance based on the tokens
    * from the CSV file.